@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building field values and hashing keys, which the workloads do for every operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class HarnessBenchmark
+{
+	/**
+	 * The field length; 100 is the default of CoreWorkload.
+	 */
+	@Param({"100", "1000"})
+	int fieldlength;
+
+	byte[] buffer=new byte[4096];
+	long keynum=0;
+
+	/**
+	 * Create a field value and read it all, as a DB binding does when it sends the value.
+	 */
+	@Benchmark
+	public int randomByteIteratorNextBuf()
+	{
+		RandomByteIterator it=new RandomByteIterator(fieldlength);
+		int read=0;
+		while (it.hasNext())
+		{
+			read=it.nextBuf(buffer,read);
+		}
+		return read;
+	}
+
+	@Benchmark
+	public long fnvHash64()
+	{
+		return Utils.FNVhash64(keynum++);
+	}
+
+	/**
+	 * Build a key name as CoreWorkload does with insertorder=hashed.
+	 */
+	@Benchmark
+	public String hashedKeyName()
+	{
+		return "user"+Utils.hash(keynum++);
+	}
+}
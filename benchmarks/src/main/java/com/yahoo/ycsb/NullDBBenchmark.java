@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.workloads.CoreWorkload;
+
+/**
+ * One complete transaction of workloada (choosing the operation and key, building the values, measuring)
+ * against NullDB, which does no work of its own. This is the most operations per second the harness can drive;
+ * run it with -t 1 for the maximum per core.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(1)
+public class NullDBBenchmark
+{
+	@Param({"zipfian", "uniform"})
+	String requestdistribution;
+
+	Properties props;
+	CoreWorkload workload;
+
+	@State(Scope.Thread)
+	public static class ClientState
+	{
+		DB db;
+		Object threadstate;
+
+		@Setup
+		public void setup(NullDBBenchmark benchmark, ThreadParams thread) throws Exception
+		{
+			db=DBFactory.newDB(NullDB.class.getName(),benchmark.props);
+			db.init();
+			threadstate=benchmark.workload.initThread(benchmark.props,thread.getThreadIndex(),thread.getThreadCount());
+		}
+
+		@TearDown
+		public void teardown() throws DBException
+		{
+			db.cleanup();
+		}
+	}
+
+	@Setup
+	public void setup() throws WorkloadException
+	{
+		props=new Properties();
+		props.setProperty(Client.RECORD_COUNT_PROPERTY,"1000000");
+		props.setProperty(Client.OPERATION_COUNT_PROPERTY,"1000000");
+		props.setProperty(CoreWorkload.READ_PROPORTION_PROPERTY,"0.5");
+		props.setProperty(CoreWorkload.UPDATE_PROPORTION_PROPERTY,"0.5");
+		props.setProperty(CoreWorkload.REQUEST_DISTRIBUTION_PROPERTY,requestdistribution);
+		Measurements.setProperties(props);
+		workload=new CoreWorkload();
+		workload.init(props);
+	}
+
+	@Benchmark
+	public boolean transaction(ClientState client)
+	{
+		return workload.doTransaction(client.db,client.threadstate);
+	}
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.generator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The key and operation choosers that run once or more per operation. The generators are shared by all
+ * the benchmark threads, as they are shared by all the client threads of a workload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class GeneratorBenchmark
+{
+	@Param({"1000", "10000000"})
+	long items;
+
+	ZipfianGenerator zipfian;
+	ScrambledZipfianGenerator scrambled;
+	DiscreteGenerator operations;
+
+	@Setup
+	public void setup()
+	{
+		zipfian=new ZipfianGenerator(items);
+		scrambled=new ScrambledZipfianGenerator(items);
+
+		//the mix of workloada
+		operations=new DiscreteGenerator();
+		operations.addValue(0.5,"READ");
+		operations.addValue(0.5,"UPDATE");
+	}
+
+	@Benchmark
+	public int zipfianNextInt()
+	{
+		return zipfian.nextInt();
+	}
+
+	@Benchmark
+	public int scrambledZipfianNextInt()
+	{
+		return scrambled.nextInt();
+	}
+
+	@Benchmark
+	public String discreteNextString()
+	{
+		return operations.nextString();
+	}
+}
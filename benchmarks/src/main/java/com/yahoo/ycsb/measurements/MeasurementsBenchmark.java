@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Recording a latency, which DBWrapper does after every operation. All the threads record into the same
+ * Measurements, so running with more threads shows the cost of the contention on it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class MeasurementsBenchmark
+{
+	@Param({"histogram", "timeseries"})
+	String measurementtype;
+
+	Measurements measurements;
+
+	@State(Scope.Thread)
+	public static class Latency
+	{
+		int latency=0;
+
+		int next()
+		{
+			//cycle through 0..10ms so the buckets used vary
+			latency=(latency+997)%10000;
+			return latency;
+		}
+	}
+
+	@Setup
+	public void setup()
+	{
+		Properties props=new Properties();
+		props.setProperty("measurementtype",measurementtype);
+		measurements=new Measurements(props);
+	}
+
+	@Benchmark
+	public void measure(Latency latency)
+	{
+		measurements.measure("READ",latency.next());
+	}
+
+	@Benchmark
+	public void measureAndReportReturnCode(Latency latency)
+	{
+		measurements.measure("READ",latency.next());
+		measurements.reportReturnCode("READ",0);
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.workloads;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.WorkloadException;
+
+/**
+ * Building the record of an insert or update. This is in the workloads package, as buildValues()
+ * and buildComplexValues() are package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class ComplexWorkloadBenchmark
+{
+	@Param({"10"})
+	String fieldcount;
+
+	@Param({"100"})
+	String fieldlength;
+
+	ComplexWorkload workload;
+
+	@Setup
+	public void setup() throws WorkloadException
+	{
+		Properties props=new Properties();
+		props.setProperty(Client.RECORD_COUNT_PROPERTY,"1000000");
+		props.setProperty(Client.OPERATION_COUNT_PROPERTY,"1000000");
+		props.setProperty(ComplexWorkload.FIELD_COUNT_PROPERTY,fieldcount);
+		props.setProperty(ComplexWorkload.FIELD_LENGTH_PROPERTY,fieldlength);
+		workload=new ComplexWorkload();
+		workload.init(props);
+	}
+
+	@Benchmark
+	public HashMap<String,ByteIterator> buildValues()
+	{
+		return workload.buildValues();
+	}
+
+	@Benchmark
+	public HashMap<String,Object> buildComplexValues()
+	{
+		return workload.buildComplexValues();
+	}
+}
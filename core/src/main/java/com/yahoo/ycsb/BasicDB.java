@@ -44,6 +44,14 @@ public class BasicDB extends DB
 		todelay=0;
 	}
 
+	/**
+	 * @return whether operations are printed when basicdb.verbose is not set
+	 */
+	String verboseDefault()
+	{
+		return VERBOSE_DEFAULT;
+	}
+
 	
 	void delay()
 	{
@@ -65,9 +73,9 @@ public class BasicDB extends DB
 	 * Called once per DB instance; there is one DB instance per client thread.
 	 */
 	@SuppressWarnings("unchecked")
-	public void init()
+	public void init() throws DBException
 	{
-		verbose=Boolean.parseBoolean(getProperties().getProperty(VERBOSE, VERBOSE_DEFAULT));
+		verbose=Boolean.parseBoolean(getProperties().getProperty(VERBOSE, verboseDefault()));
 		todelay=Integer.parseInt(getProperties().getProperty(SIMULATE_DELAY, SIMULATE_DELAY_DEFAULT));
 		
 		if (verbose)
@@ -394,6 +402,87 @@ public class BasicDB extends DB
 		return 0;
 	}
 
+	/**
+	 * Write a record in the database, creating it if it is missing. Any field/value pairs in the specified values
+	 * HashMap will be written into the record with the specified record key.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to write.
+	 * @param values A HashMap of field/value pairs to write in the record
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int upsert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		delay();
+
+		if (verbose)
+		{
+			System.out.print("UPSERT "+table+" "+key+" [ ");
+			if (values!=null)
+			{
+				for (String k : values.keySet())
+				{
+					System.out.print(k+"="+values.get(k)+" ");
+				}
+			}
+			System.out.println("]");
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Update a record in the database if its version is the expected one. Any field/value pairs in the specified values
+	 * HashMap will be written into the record with the specified record key.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to write.
+	 * @param versionfield The field of the record that holds its version
+	 * @param expected The version read, or null if the record had no versionfield
+	 * @param values A HashMap of field/value pairs to update in the record
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int conditionalUpdate(String table, String key, String versionfield, ByteIterator expected, HashMap<String,ByteIterator> values)
+	{
+		delay();
+
+		if (verbose)
+		{
+			System.out.print("CONDITIONAL UPDATE "+table+" "+key+" if "+versionfield+"="+expected+" [ ");
+			if (values!=null)
+			{
+				for (String k : values.keySet())
+				{
+					System.out.print(k+"="+values.get(k)+" ");
+				}
+			}
+			System.out.println("]");
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Add delta to a counter field of a record in the database.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to write.
+	 * @param field The counter field
+	 * @param delta The amount to add
+	 * @return Zero on success, a non-zero error code on error
+	 */
+	public int increment(String table, String key, String field, long delta)
+	{
+		delay();
+
+		if (verbose)
+		{
+			System.out.println("INCREMENT "+table+" "+key+" "+field+" "+delta);
+		}
+
+		return 0;
+	}
+
         /**
          * Insert a record in the database. Any field/value pairs in the specified values HashMap will be written into the record with the specified
          * record key.
@@ -0,0 +1,396 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import com.yahoo.ycsb.cache.EvictionPolicy;
+import com.yahoo.ycsb.measurements.Counters;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * An in-process cache in front of the DB, shared by all the client threads, to see how the hit rate under the
+ * request distribution changes the load on the DB and the latency (dbwrappers=com.yahoo.ycsb.CachingDB).
+ *
+ * Reads of all the fields of a record are cached; a read of some of the fields is served from a cached record,
+ * but is not cached itself when it misses. Updates and inserts either write through, updating the cached record
+ * once the DB accepted them, or invalidate it (cache.writepolicy). Deletes invalidate. Scans and the secondary
+ * and complex operations go straight to the DB.
+ *
+ * The capacity is cache.capacity records, or cache.capacitybytes bytes of field names and values if it is set.
+ * The cache is split into cache.segments segments, each with its own lock and eviction policy (cache.eviction):
+ * lru, clock or tinylfu (W-TinyLFU).
+ *
+ * The hits, misses, evictions and invalidations are exported as [CACHE], and the latency of the reads that
+ * reached the DB as [CACHE MISS READ].
+ */
+public class CachingDB extends DelegatingDB
+{
+	public static final String CAPACITY="cache.capacity";
+	public static final String CAPACITY_DEFAULT="10000";
+
+	public static final String CAPACITY_BYTES="cache.capacitybytes";
+
+	public static final String EVICTION="cache.eviction";
+	public static final String EVICTION_DEFAULT="lru";
+
+	/**
+	 * writethrough or invalidate.
+	 */
+	public static final String WRITE_POLICY="cache.writepolicy";
+	public static final String WRITE_POLICY_DEFAULT="writethrough";
+
+	public static final String SEGMENTS="cache.segments";
+	public static final String SEGMENTS_DEFAULT="16";
+
+	/**
+	 * The cache counters, and the hit rate.
+	 */
+	static class CacheCounters extends Counters
+	{
+		CacheCounters()
+		{
+			super("CACHE");
+		}
+
+		public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+		{
+			super.exportMeasurements(exporter);
+			long hits=get("Hits");
+			long lookups=hits+get("Misses");
+			if (lookups>0)
+			{
+				exporter.write(getName(),"HitRate(%)",100.0*hits/lookups);
+			}
+		}
+	}
+
+	static EvictionPolicy[] segments=null;
+	static int users=0;
+
+	boolean writethrough;
+	boolean bybytes;
+	Counters counters;
+	Measurements measurements;
+
+	public CachingDB(DB db)
+	{
+		super(db);
+	}
+
+	public void init() throws DBException
+	{
+		super.init();
+		Properties p=getProperties();
+		writethrough=p.getProperty(WRITE_POLICY,WRITE_POLICY_DEFAULT).compareTo("writethrough")==0;
+		bybytes=p.getProperty(CAPACITY_BYTES)!=null;
+		measurements=Measurements.getMeasurements();
+		counters=measurements.registerCounters(new CacheCounters());
+
+		synchronized (CachingDB.class)
+		{
+			if (users++==0)
+			{
+				int count=Integer.parseInt(p.getProperty(SEGMENTS,SEGMENTS_DEFAULT));
+				long capacity;
+				long expectedentries;
+				if (bybytes)
+				{
+					capacity=Long.parseLong(p.getProperty(CAPACITY_BYTES));
+					long recordsize=Long.parseLong(p.getProperty("fieldcount","10"))*(6+Long.parseLong(p.getProperty("fieldlength","100")));
+					expectedentries=Math.max(1,capacity/recordsize);
+				}
+				else
+				{
+					capacity=Long.parseLong(p.getProperty(CAPACITY,CAPACITY_DEFAULT));
+					expectedentries=capacity;
+				}
+				segments=new EvictionPolicy[count];
+				for (int i=0; i<count; i++)
+				{
+					try
+					{
+						segments[i]=EvictionPolicy.create(p.getProperty(EVICTION,EVICTION_DEFAULT),Math.max(1,capacity/count),expectedentries/count);
+					}
+					catch (IllegalArgumentException e)
+					{
+						users--;
+						throw new DBException(e.getMessage());
+					}
+				}
+			}
+		}
+	}
+
+	public void cleanup() throws DBException
+	{
+		synchronized (CachingDB.class)
+		{
+			if (--users==0)
+			{
+				segments=null;
+			}
+		}
+		super.cleanup();
+	}
+
+	static String cacheKey(String table, String key)
+	{
+		return table+"/"+key;
+	}
+
+	static EvictionPolicy segment(String cachekey)
+	{
+		return segments[(cachekey.hashCode()&Integer.MAX_VALUE)%segments.length];
+	}
+
+	long weigh(Map<String,?> record)
+	{
+		if (!bybytes)
+		{
+			return 1;
+		}
+		long size=0;
+		for (Map.Entry<String,?> field : record.entrySet())
+		{
+			size+=field.getKey().length()+DBWrapper.sizeOf(field.getValue());
+		}
+		return size;
+	}
+
+	void store(String cachekey, HashMap<String,Object> record)
+	{
+		EvictionPolicy segment=segment(cachekey);
+		int evicted;
+		synchronized (segment)
+		{
+			evicted=segment.put(cachekey,record,weigh(record));
+		}
+		if (evicted>0)
+		{
+			counters.add("Evictions",evicted);
+		}
+	}
+
+	void invalidate(String cachekey)
+	{
+		EvictionPolicy segment=segment(cachekey);
+		boolean removed;
+		synchronized (segment)
+		{
+			removed=segment.remove(cachekey);
+		}
+		if (removed)
+		{
+			counters.add("Invalidations",1);
+		}
+	}
+
+	/**
+	 * Take the values out of their iterators, so they can be both written and cached.
+	 */
+	static HashMap<String,byte[]> drain(HashMap<String,ByteIterator> values)
+	{
+		HashMap<String,byte[]> bytes=new HashMap<String,byte[]>();
+		for (Map.Entry<String,ByteIterator> value : values.entrySet())
+		{
+			bytes.put(value.getKey(),value.getValue().toArray());
+		}
+		return bytes;
+	}
+
+	static HashMap<String,ByteIterator> iterators(HashMap<String,byte[]> bytes)
+	{
+		HashMap<String,ByteIterator> values=new HashMap<String,ByteIterator>();
+		for (Map.Entry<String,byte[]> value : bytes.entrySet())
+		{
+			values.put(value.getKey(),new ByteArrayByteIterator(value.getValue()));
+		}
+		return values;
+	}
+
+	@SuppressWarnings("unchecked")
+	public int read(String table, String key, Set<String> fields, HashMap<String,Object> result)
+	{
+		String cachekey=cacheKey(table,key);
+		EvictionPolicy segment=segment(cachekey);
+		HashMap<String,Object> cached;
+		synchronized (segment)
+		{
+			cached=(HashMap<String,Object>)segment.get(cachekey);
+		}
+		if (cached!=null)
+		{
+			counters.add("Hits",1);
+			if (fields==null)
+			{
+				result.putAll(cached);
+			}
+			else
+			{
+				for (String field : fields)
+				{
+					if (cached.containsKey(field))
+					{
+						result.put(field,cached.get(field));
+					}
+				}
+			}
+			return 0;
+		}
+
+		counters.add("Misses",1);
+		long st=System.nanoTime();
+		int res=_db.read(table,key,fields,result);
+		long en=System.nanoTime();
+		measurements.measure("CACHE MISS READ",(int)((en-st)/1000));
+		if ( (res==0) && (fields==null) )
+		{
+			//hits share the cached values, which an iterator would only give to the first reader
+			HashMap<String,Object> record=new HashMap<String,Object>();
+			for (Map.Entry<String,Object> field : result.entrySet())
+			{
+				Object value=field.getValue();
+				if (value instanceof ByteIterator)
+				{
+					value=((ByteIterator)value).toArray();
+					field.setValue(value);
+				}
+				record.put(field.getKey(),value);
+			}
+			store(cachekey,record);
+		}
+		return res;
+	}
+
+	public int update(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		String cachekey=cacheKey(table,key);
+		if (!writethrough)
+		{
+			//invalidated once written, or a concurrent read miss could cache the record it replaces
+			int res=_db.update(table,key,values);
+			invalidate(cachekey);
+			return res;
+		}
+
+		HashMap<String,byte[]> bytes=drain(values);
+		return written(cachekey,_db.update(table,key,iterators(bytes)),bytes);
+	}
+
+	/**
+	 * An upsert is cached like an update: merged into a cached record, while a record that is not cached stays
+	 * out of the cache, as only some of its fields may have been written.
+	 */
+	public int upsert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		String cachekey=cacheKey(table,key);
+		if (!writethrough)
+		{
+			int res=_db.upsert(table,key,values);
+			invalidate(cachekey);
+			return res;
+		}
+
+		HashMap<String,byte[]> bytes=drain(values);
+		return written(cachekey,_db.upsert(table,key,iterators(bytes)),bytes);
+	}
+
+	/**
+	 * Merge the values of a write through into the cached record, if any, or drop it if the write failed.
+	 */
+	@SuppressWarnings("unchecked")
+	int written(String cachekey, int res, HashMap<String,byte[]> bytes)
+	{
+		EvictionPolicy segment=segment(cachekey);
+		if (res!=0)
+		{
+			invalidate(cachekey);
+			return res;
+		}
+		synchronized (segment)
+		{
+			HashMap<String,Object> cached=(HashMap<String,Object>)segment.get(cachekey);
+			if (cached!=null)
+			{
+				//cached records are shared with readers, replace rather than change them
+				HashMap<String,Object> record=new HashMap<String,Object>(cached);
+				record.putAll(bytes);
+				counters.add("Evictions",segment.put(cachekey,record,weigh(record)));
+			}
+		}
+		return res;
+	}
+
+	public int insert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		String cachekey=cacheKey(table,key);
+		if (!writethrough)
+		{
+			int res=_db.insert(table,key,values);
+			invalidate(cachekey);
+			return res;
+		}
+
+		HashMap<String,byte[]> bytes=drain(values);
+		int res=_db.insert(table,key,iterators(bytes));
+		if (res==0)
+		{
+			store(cachekey,new HashMap<String,Object>(bytes));
+		}
+		else
+		{
+			invalidate(cachekey);
+		}
+		return res;
+	}
+
+	public int complexinsert(String table, String key, HashMap<String,Object> values)
+	{
+		int res=_db.complexinsert(table,key,values);
+		invalidate(cacheKey(table,key));
+		return res;
+	}
+
+	public int conditionalUpdate(String table, String key, String versionfield, ByteIterator expected, HashMap<String,ByteIterator> values)
+	{
+		//only the DB knows whether it wrote, so the cached record is dropped rather than updated
+		int res=_db.conditionalUpdate(table,key,versionfield,expected,values);
+		invalidate(cacheKey(table,key));
+		return res;
+	}
+
+	public int increment(String table, String key, String field, long delta)
+	{
+		int res=_db.increment(table,key,field,delta);
+		invalidate(cacheKey(table,key));
+		return res;
+	}
+
+	public int delete(String table, String key)
+	{
+		int res=_db.delete(table,key);
+		invalidate(cacheKey(table,key));
+		return res;
+	}
+}
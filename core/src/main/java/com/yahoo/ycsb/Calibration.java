@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.yahoo.ycsb.measurements.LatencyHistogram;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.RunResult;
+
+/**
+ * The results of a calibration run against NullDB (calibrate=true): the highest throughput the client can
+ * drive with this workload and thread count, and the latency floor of each operation, i.e. the time spent in
+ * the client itself. Exported as [CALIBRATION] rows next to the real run, with a warning when the run was
+ * close enough to the ceiling to be limited by the client rather than by the database.
+ */
+class Calibration
+{
+	public static final String CALIBRATE_PROPERTY="calibrate";
+
+	/**
+	 * The number of operations of the calibration run.
+	 */
+	public static final String OPERATION_COUNT_PROPERTY="calibrate.operationcount";
+	public static final String OPERATION_COUNT_DEFAULT="100000";
+
+	/**
+	 * An operation is flagged when its average latency is less than this many times its calibrated floor.
+	 */
+	public static final String MARGIN_PROPERTY="calibrate.margin";
+	public static final String MARGIN_DEFAULT="10";
+
+	/**
+	 * The run is flagged as client-bound when its throughput is at least this fraction of the calibrated ceiling.
+	 */
+	public static final String CEILING_FRACTION_PROPERTY="calibrate.ceilingfraction";
+	public static final String CEILING_FRACTION_DEFAULT="0.5";
+
+	static final String METRIC="CALIBRATION";
+
+	RunResult result;
+	int threadcount;
+	double margin;
+	double ceilingfraction;
+
+	Calibration(RunResult result, int threadcount, double margin, double ceilingfraction)
+	{
+		this.result=result;
+		this.threadcount=threadcount;
+		this.margin=margin;
+		this.ceilingfraction=ceilingfraction;
+	}
+
+	double getCeiling()
+	{
+		Double throughput=result.get("OVERALL","Throughput(ops/sec)");
+		return (throughput==null) ? 0 : throughput;
+	}
+
+	/**
+	 * @return the calibrated average latency of each operation
+	 */
+	Map<String,Double> getFloors()
+	{
+		Map<String,Double> floors=new HashMap<String,Double>();
+		for (String metric : result.measurements.keySet())
+		{
+			Double average=result.get(metric,"AverageLatency(us)");
+			//closing the DB instances is not an operation of the workload
+			if ( (average!=null) && (!metric.equals("OVERALL")) && (!metric.equals("CLEANUP")) )
+			{
+				floors.put(metric,average);
+			}
+		}
+		return floors;
+	}
+
+	/**
+	 * Write the calibration, and if the measurements of the real run are given, whether it was client-bound.
+	 *
+	 * @param throughput the throughput of the real run
+	 * @param actual the measurements of the real run, or null
+	 */
+	void exportMeasurements(MeasurementsExporter exporter, double throughput, RunResult actual) throws IOException
+	{
+		double ceiling=getCeiling();
+		exporter.write(METRIC,"Throughput(ops/sec)",ceiling);
+		if (ceiling>0)
+		{
+			exporter.write(METRIC,"HarnessTimePerOp(us)",threadcount*1000000.0/ceiling);
+		}
+
+		Map<String,Double> floors=getFloors();
+		for (Map.Entry<String,Double> floor : floors.entrySet())
+		{
+			exporter.write(METRIC,floor.getKey()+" AverageLatency(us)",floor.getValue());
+			LatencyHistogram histogram=result.histograms.get(floor.getKey());
+			if (histogram!=null)
+			{
+				exporter.write(METRIC,floor.getKey()+" 99thPercentileLatency(us)",histogram.getPercentile(99));
+			}
+		}
+
+		if (actual==null)
+		{
+			return;
+		}
+
+		if ( (ceiling>0) && (throughput>=ceilingfraction*ceiling) )
+		{
+			exporter.write(METRIC,"ClientBound",1);
+			System.err.println("Warning: the throughput of "+throughput+" ops/sec is "+Math.round(100*throughput/ceiling)
+					+"% of what the client alone can do ("+ceiling+" ops/sec); the run is likely limited by the client, not the database.");
+		}
+		else
+		{
+			exporter.write(METRIC,"ClientBound",0);
+		}
+
+		for (Map.Entry<String,Double> floor : floors.entrySet())
+		{
+			Double average=actual.get(floor.getKey(),"AverageLatency(us)");
+			if ( (average==null) || (floor.getValue()<=0) )
+			{
+				continue;
+			}
+			double ratio=average/floor.getValue();
+			exporter.write(METRIC,floor.getKey()+" LatencyOverFloor",ratio);
+			if (ratio<margin)
+			{
+				System.err.println("Warning: the average "+floor.getKey()+" latency of "+average+" us is only "+Math.round(ratio*10)/10.0
+						+" times the "+floor.getValue()+" us spent in the client; its latency measures the client as much as the database.");
+			}
+		}
+	}
+}
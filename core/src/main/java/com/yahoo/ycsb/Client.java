@@ -23,7 +23,12 @@ import java.text.DecimalFormat;
 import java.util.*;
 
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.KeyspaceHeatmap;
+import com.yahoo.ycsb.measurements.PauseDetector;
+import com.yahoo.ycsb.measurements.SlowOperationSampler;
+import com.yahoo.ycsb.measurements.exporter.HistogramMeasurementsExporter;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.RunResultExporter;
 import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
 
 //import org.apache.log4j.BasicConfigurator;
@@ -148,6 +153,7 @@ class ClientThread extends Thread
 	int _threadcount;
 	Object _workloadstate;
 	Properties _props;
+	String _namespace;
 
 
 	/**
@@ -163,6 +169,16 @@ class ClientThread extends Thread
 	 * @param targetperthreadperms target number of operations per thread per ms
 	 */
 	public ClientThread(DB db, boolean dotransactions, Workload workload, int threadid, int threadcount, Properties props, int opcount, double targetperthreadperms)
+	{
+		this(db,dotransactions,workload,threadid,threadcount,props,opcount,targetperthreadperms,null);
+	}
+
+	/**
+	 * Constructor for a thread of a workload group.
+	 *
+	 * @param namespace the measurement namespace of the group, or null for none
+	 */
+	public ClientThread(DB db, boolean dotransactions, Workload workload, int threadid, int threadcount, Properties props, int opcount, double targetperthreadperms, String namespace)
 	{
 		//TODO: consider removing threadcount and threadid
 		_db=db;
@@ -174,6 +190,7 @@ class ClientThread extends Thread
 		_threadid=threadid;
 		_threadcount=threadcount;
 		_props=props;
+		_namespace=namespace;
 		//System.out.println("Interval = "+interval);
 	}
 
@@ -184,6 +201,8 @@ class ClientThread extends Thread
 
 	public void run()
 	{
+		Measurements.setNamespace(_namespace);
+
 		try
 		{
 			_db.init();
@@ -339,6 +358,20 @@ public class Client
    */
   public static final String MAX_EXECUTION_TIME = "maxexecutiontime";
 
+	/**
+	 * Run the transaction phase this many times against the same data, with the same workload instance,
+	 * and report the mean, standard deviation and 95% confidence interval over the trials. The measurements
+	 * of trial i are exported to exportfile.i. The summary, printed or exported to exportfile, also has the
+	 * client cost, byte counts and counters of the last trial, and the pauses, slow operations and heatmap of
+	 * all the trials.
+	 */
+	public static final String REPEAT_PROPERTY="repeat";
+
+	/**
+	 * The name of a TrialReset class to run between the trials of a repeated run.
+	 */
+	public static final String REPEAT_RESET_PROPERTY="repeat.reset";
+
 	public static void usageMessage()
 	{
 		System.out.println("Usage: java com.yahoo.ycsb.Client [options]");
@@ -358,6 +391,12 @@ public class Client
 		System.out.println("                  values in the propertyfile");
 		System.out.println("  -s:  show status during run (default: no status)");
 		System.out.println("  -l label:  use label for status (e.g. to label one experiment out of a whole batch)");
+		System.out.println("  -p repeat=n:  run the transaction phase n times and report confidence intervals");
+		System.out.println("  -p calibrate=true:  first run against NullDB, to report the throughput ceiling");
+		System.out.println("                      and latency floor of the client itself");
+		System.out.println("  -p groups=a,b:  run several workloads at once against the DB, each with the");
+		System.out.println("                  properties group.a.<name>=value (or group.a.propertyfile=file)");
+		System.out.println("                  and measured under its own name, e.g. [a:READ]");
 		System.out.println("");
 		System.out.println("Required properties:");
 		System.out.println("  "+WORKLOAD_PROPERTY+": the name of the workload class to use (e.g. com.yahoo.ycsb.workloads.CoreWorkload)");
@@ -369,7 +408,8 @@ public class Client
 
 	public static boolean checkRequiredProperties(Properties props)
 	{
-		if (props.getProperty(WORKLOAD_PROPERTY)==null)
+		//the groups are checked when they are created, a group may set its own workload
+		if ( (props.getProperty(WORKLOAD_PROPERTY)==null) && (props.getProperty(WorkloadGroup.GROUPS_PROPERTY)==null) )
 		{
 			System.out.println("Missing property: "+WORKLOAD_PROPERTY);
 			return false;
@@ -384,50 +424,300 @@ public class Client
 	 * loaded from conf.
 	 * @throws IOException Either failed to write to output stream or failed to close it.
 	 */
-	private static void exportMeasurements(Properties props, int opcount, long runtime)
-			throws IOException
+	private static void exportMeasurements(Properties props, String exportFile, int opcount, long runtime,
+			List<WorkloadGroup> groups, Calibration calibration) throws IOException
 	{
 		MeasurementsExporter exporter = null;
 		try
 		{
-			// if no destination file is provided the results will be written to stdout
-			OutputStream out;
-			String exportFile = props.getProperty("exportfile");
-			if (exportFile == null)
+			exporter = createExporter(props, exportFile);
+			writeMeasurements(exporter, props, opcount, runtime, groups, calibration);
+		} finally
+		{
+			if (exporter != null)
 			{
-				out = System.out;
-			} else
+				exporter.close();
+			}
+		}
+	}
+
+	/**
+	 * Create the exporter loaded from conf, writing to the given file, or to sysout if it is null.
+	 */
+	private static MeasurementsExporter createExporter(Properties props, String exportFile)
+			throws IOException
+	{
+		// if no destination file is provided the results will be written to stdout
+		OutputStream out;
+		if (exportFile == null)
+		{
+			out = System.out;
+		} else
+		{
+			out = new FileOutputStream(exportFile);
+		}
+
+		// if no exporter is provided the default text one will be used
+		String exporterStr = props.getProperty("exporter", "com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter");
+		try
+		{
+			return (MeasurementsExporter) Class.forName(exporterStr).getConstructor(OutputStream.class).newInstance(out);
+		} catch (Exception e)
+		{
+			System.err.println("Could not find exporter " + exporterStr
+					+ ", will use default text reporter.");
+			e.printStackTrace();
+			return new TextMeasurementsExporter(out);
+		}
+	}
+
+	/**
+	 * Write the overall results and all the measurements of a run, with the throughput of each group if there
+	 * are named ones, and how they compare to the calibration run if there was one.
+	 */
+	private static void writeMeasurements(MeasurementsExporter exporter, Properties props, int opcount, long runtime,
+			List<WorkloadGroup> groups, Calibration calibration) throws IOException
+	{
+		if (exporter instanceof HistogramMeasurementsExporter)
+		{
+			writeMetadata((HistogramMeasurementsExporter) exporter, props, runtime);
+		}
+
+		exporter.write("OVERALL", "RunTime(ms)", runtime);
+		double throughput = 1000.0 * ((double) opcount) / ((double) runtime);
+		exporter.write("OVERALL", "Throughput(ops/sec)", throughput);
+		for (WorkloadGroup g : groups)
+		{
+			if (g.name != null)
 			{
-				out = new FileOutputStream(exportFile);
+				exporter.write(g.name + ":OVERALL", "Operations", g.opsdone);
+				exporter.write(g.name + ":OVERALL", "Throughput(ops/sec)", 1000.0 * ((double) g.opsdone) / ((double) runtime));
 			}
+		}
+
+		Measurements.getMeasurements().exportMeasurements(exporter);
 
-			// if no exporter is provided the default text one will be used
-			String exporterStr = props.getProperty("exporter", "com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter");
+		if (calibration != null)
+		{
+			RunResultExporter actual = new RunResultExporter();
+			Measurements.getMeasurements().exportMeasurements(actual);
+			calibration.exportMeasurements(exporter, throughput, actual.getResult());
+		}
+	}
+
+	/**
+	 * Run the workload against NullDB, with the same properties and number of threads as the real run,
+	 * to find how fast the client itself can go. Uses its own workload instances, so the real run starts
+	 * from fresh generators, and leaves the measurements empty. The operations are split between the
+	 * groups as in the real run, without their targets.
+	 */
+	static Calibration calibrate(Properties props, boolean dotransactions)
+	{
+		List<WorkloadGroup> groups=null;
+		try
+		{
+			groups=WorkloadGroup.create(props,dotransactions);
+		}
+		catch (WorkloadException e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			System.exit(0);
+		}
+
+		int opcount=Integer.parseInt(props.getProperty(Calibration.OPERATION_COUNT_PROPERTY,Calibration.OPERATION_COUNT_DEFAULT));
+		long total=0;
+		for (WorkloadGroup g : groups)
+		{
+			total+=g.opcount;
+		}
+		for (WorkloadGroup g : groups)
+		{
+			g.opcount=(total>0) ? (int)(((long)opcount)*g.opcount/total) : opcount/groups.size();
+			g.targetperthreadperms=-1;
+		}
+		System.err.println("Calibrating the client with "+opcount+" operations against "+NullDB.class.getName()+".");
+		long[] result=runTrial(NullDB.class.getName(),props,dotransactions,groups,false,"",0);
+
+		RunResultExporter capture=new RunResultExporter();
+		try
+		{
+			writeMeasurements(capture,props,(int)result[0],result[1],groups,null);
+			for (WorkloadGroup g : groups)
+			{
+				g.workload.cleanup();
+			}
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			e.printStackTrace(System.out);
+			System.exit(0);
+		}
+		Measurements.getMeasurements().reset();
+
+		return new Calibration(capture.getResult(),WorkloadGroup.threadcount(groups),
+				Double.parseDouble(props.getProperty(Calibration.MARGIN_PROPERTY,Calibration.MARGIN_DEFAULT)),
+				Double.parseDouble(props.getProperty(Calibration.CEILING_FRACTION_PROPERTY,Calibration.CEILING_FRACTION_DEFAULT)));
+	}
+
+	/**
+	 * Run the client threads of all the groups once, each with its own DB instance, and wait for them to finish.
+	 * The operations of each group are left in its opsdone.
+	 *
+	 * @return {the number of operations done, the run time in ms}
+	 */
+	static long[] runTrial(String dbname, Properties props, boolean dotransactions, List<WorkloadGroup> groups,
+			boolean status, String label, long maxExecutionTime)
+	{
+		Vector<Thread> threads=new Vector<Thread>();
+		List<Workload> workloads=new ArrayList<Workload>();
+
+		for (WorkloadGroup g : groups)
+		{
+			for (int threadid=0; threadid<g.threadcount; threadid++)
+			{
+				DB db=null;
+				try
+				{
+					db=DBFactory.newDB(dbname,g.props);
+				}
+				catch (UnknownDBException e)
+				{
+					System.out.println("Unknown DB "+dbname);
+					System.exit(0);
+				}
+
+				Thread t=new ClientThread(db,dotransactions,g.workload,threadid,g.threadcount,g.props,g.opcount/g.threadcount,
+						g.targetperthreadperms,g.name);
+
+				threads.add(t);
+				//t.start();
+			}
+			workloads.add(g.workload);
+		}
+
+		StatusThread statusthread=null;
+
+		if (status)
+		{
+			boolean standardstatus=false;
+			if (props.getProperty("measurementtype","").compareTo("timeseries")==0) 
+			{
+				standardstatus=true;
+			}	
+			statusthread=new StatusThread(threads,label,standardstatus);
+			statusthread.start();
+		}
+
+		long st=System.currentTimeMillis();
+
+		for (Thread t : threads)
+		{
+			t.start();
+		}
+		
+    Thread terminator = null;
+    
+    if (maxExecutionTime > 0) {
+      terminator = new TerminatorThread(maxExecutionTime, threads, workloads);
+      terminator.start();
+    }
+    
+    int opsDone = 0;
+
+		for (Thread t : threads)
+		{
 			try
 			{
-				exporter = (MeasurementsExporter) Class.forName(exporterStr).getConstructor(OutputStream.class).newInstance(out);
-			} catch (Exception e)
+				t.join();
+			}
+			catch (InterruptedException e)
 			{
-				System.err.println("Could not find exporter " + exporterStr
-						+ ", will use default text reporter.");
-				e.printStackTrace();
-				exporter = new TextMeasurementsExporter(out);
 			}
+		}
 
-			exporter.write("OVERALL", "RunTime(ms)", runtime);
-			double throughput = 1000.0 * ((double) opcount) / ((double) runtime);
-			exporter.write("OVERALL", "Throughput(ops/sec)", throughput);
+		for (WorkloadGroup g : groups)
+		{
+			g.opsdone=0;
+			for (Thread t : threads)
+			{
+				if (((ClientThread)t)._workload==g.workload)
+				{
+					g.opsdone+=((ClientThread)t).getOpsDone();
+				}
+			}
+			opsDone+=g.opsdone;
+		}
 
-			Measurements.getMeasurements().exportMeasurements(exporter);
-		} finally
+		long en=System.currentTimeMillis();
+		
+		if (terminator != null && !terminator.isInterrupted()) {
+      terminator.interrupt();
+    }
+
+		if (status)
 		{
-			if (exporter != null)
+			statusthread.interrupt();
+		}
+
+		return new long[]{opsDone,en-st};
+	}
+
+	/**
+	 * Describe the run for exporters that keep it with the results: every property, the revision
+	 * of the benchmark, the JVM, and the start and end time of the run.
+	 */
+	static void writeMetadata(HistogramMeasurementsExporter exporter, Properties props, long runtime)
+			throws IOException
+	{
+		for (String name : props.stringPropertyNames())
+		{
+			exporter.writeMetadata("property." + name, props.getProperty(name));
+		}
+		exporter.writeMetadata("revision", props.getProperty("revision", gitRevision()));
+		exporter.writeMetadata("jvm", System.getProperty("java.vm.name") + " " + System.getProperty("java.version"));
+		long end = System.currentTimeMillis();
+		exporter.writeMetadata("start", Long.toString(end - runtime));
+		exporter.writeMetadata("end", Long.toString(end));
+	}
+
+	/**
+	 * The git revision, found once for all the exports of the run.
+	 */
+	static String revision=null;
+
+	/**
+	 * @return the git revision of the working directory, or "unknown" if it is not a git checkout
+	 */
+	static synchronized String gitRevision()
+	{
+		if (revision==null)
+		{
+			revision=readGitRevision();
+		}
+		return revision;
+	}
+
+	static String readGitRevision()
+	{
+		try
+		{
+			Process p = new ProcessBuilder("git", "rev-parse", "HEAD").redirectErrorStream(true).start();
+			BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()));
+			String line = in.readLine();
+			in.close();
+			if ( (p.waitFor() == 0) && (line != null) )
 			{
-				exporter.close();
+				return line.trim();
 			}
 		}
+		catch (Exception e)
+		{
+		}
+		return "unknown";
 	}
-	
+
 	@SuppressWarnings("unchecked")
 	public static void main(String[] args)
 	{
@@ -435,8 +725,6 @@ public class Client
 		Properties props=new Properties();
 		Properties fileprops=new Properties();
 		boolean dotransactions=true;
-		int threadcount=1;
-		int target=0;
 		boolean status=false;
 		String label="";
 
@@ -605,18 +893,8 @@ public class Client
 		
 		long maxExecutionTime = Integer.parseInt(props.getProperty(MAX_EXECUTION_TIME, "0"));
 
-		//get number of threads, target and db
-		threadcount=Integer.parseInt(props.getProperty("threadcount","1"));
+		//get the db; the number of threads and the target are per workload group
 		dbname=props.getProperty("db","com.yahoo.ycsb.BasicDB");
-		target=Integer.parseInt(props.getProperty("target","0"));
-		
-		//compute the target throughput
-		double targetperthreadperms=-1;
-		if (target>0)
-		{
-			double targetperthread=((double)target)/((double)threadcount);
-			targetperthreadperms=targetperthread/1000.0;
-		}	 
 
 		System.out.println("YCSB Client 0.1");
 		System.out.print("Command line:");
@@ -650,28 +928,45 @@ public class Client
 		
 		//set up measurements
 		Measurements.setProperties(props);
-		
-		//load the workload
-		ClassLoader classLoader = Client.class.getClassLoader();
 
-		Workload workload=null;
+		//measure the client alone first, before anything else is attached to the measurements
+		Calibration calibration=null;
+		if (Boolean.parseBoolean(props.getProperty(Calibration.CALIBRATE_PROPERTY,"false")))
+		{
+			calibration=calibrate(props,dotransactions);
+		}
 
-		try 
+		//watch for pauses of the client JVM itself, so they are not blamed on the DB
+		PauseDetector pausedetector=null;
+		if (Boolean.parseBoolean(props.getProperty(PauseDetector.ENABLED,PauseDetector.ENABLED_DEFAULT)))
 		{
-			Class workloadclass = classLoader.loadClass(props.getProperty(WORKLOAD_PROPERTY));
+			pausedetector=new PauseDetector(props);
+			Measurements.getMeasurements().setPauseDetector(pausedetector);
+			pausedetector.start();
+		}
 
-			workload=(Workload)workloadclass.newInstance();
+		//keep the requests behind the slowest operations
+		if (Boolean.parseBoolean(props.getProperty(SlowOperationSampler.ENABLED,SlowOperationSampler.ENABLED_DEFAULT)))
+		{
+			SlowOperationSampler sampler=new SlowOperationSampler(props);
+			sampler.register();
+			Measurements.getMeasurements().setSlowOperationSampler(sampler);
 		}
-		catch (Exception e) 
-		{  
-			e.printStackTrace();
-			e.printStackTrace(System.out);
-			System.exit(0);
+
+		//latency by key-space region, to find hot keys and ranges
+		if (Boolean.parseBoolean(props.getProperty(KeyspaceHeatmap.ENABLED,KeyspaceHeatmap.ENABLED_DEFAULT)))
+		{
+			Measurements.getMeasurements().setKeyspaceHeatmap(new KeyspaceHeatmap(props));
 		}
+		
+		//load the workloads, one unless there are groups
+		ClassLoader classLoader = Client.class.getClassLoader();
+
+		List<WorkloadGroup> groups=null;
 
 		try
 		{
-			workload.init(props);
+			groups=WorkloadGroup.create(props,dotransactions);
 		}
 		catch (WorkloadException e)
 		{
@@ -686,99 +981,95 @@ public class Client
 
 		System.err.println("Starting test.");
 
-		int opcount;
-		if (dotransactions)
-		{
-			opcount=Integer.parseInt(props.getProperty(OPERATION_COUNT_PROPERTY,"0"));
-		}
-		else
-		{
-			if (props.containsKey(INSERT_COUNT_PROPERTY))
-			{
-				opcount=Integer.parseInt(props.getProperty(INSERT_COUNT_PROPERTY,"0"));
-			}
-			else
-			{
-				opcount=Integer.parseInt(props.getProperty(RECORD_COUNT_PROPERTY,"0"));
-			}
-		}
-
-		Vector<Thread> threads=new Vector<Thread>();
+		int repeat=dotransactions ? Integer.parseInt(props.getProperty(REPEAT_PROPERTY,"1")) : 1;
+		String exportFile=props.getProperty("exportfile");
 
-		for (int threadid=0; threadid<threadcount; threadid++)
+		TrialReset reset=null;
+		if ( (repeat>1) && (props.getProperty(REPEAT_RESET_PROPERTY)!=null) )
 		{
-			DB db=null;
 			try
 			{
-				db=DBFactory.newDB(dbname,props);
+				reset=(TrialReset)classLoader.loadClass(props.getProperty(REPEAT_RESET_PROPERTY)).newInstance();
 			}
-			catch (UnknownDBException e)
+			catch (Exception e)
 			{
-				System.out.println("Unknown DB "+dbname);
+				e.printStackTrace();
+				e.printStackTrace(System.out);
 				System.exit(0);
 			}
-
-			Thread t=new ClientThread(db,dotransactions,workload,threadid,threadcount,props,opcount/threadcount,targetperthreadperms);
-
-			threads.add(t);
-			//t.start();
 		}
 
-		StatusThread statusthread=null;
+		TrialSummary summary=new TrialSummary();
 
-		if (status)
-		{
-			boolean standardstatus=false;
-			if (props.getProperty("measurementtype","").compareTo("timeseries")==0) 
-			{
-				standardstatus=true;
-			}	
-			statusthread=new StatusThread(threads,label,standardstatus);
-			statusthread.start();
-		}
-
-		long st=System.currentTimeMillis();
+		int opsDone=0;
+		long runtime=0;
 
-		for (Thread t : threads)
+		for (int trial=1; trial<=repeat; trial++)
 		{
-			t.start();
-		}
-		
-    Thread terminator = null;
-    
-    if (maxExecutionTime > 0) {
-      terminator = new TerminatorThread(maxExecutionTime, threads, workload);
-      terminator.start();
-    }
-    
-    int opsDone = 0;
-
-		for (Thread t : threads)
-		{
-			try
+			if (repeat>1)
 			{
-				t.join();
-				opsDone += ((ClientThread)t).getOpsDone();
+				System.err.println("Starting trial "+trial+" of "+repeat+".");
 			}
-			catch (InterruptedException e)
+
+			long[] result=runTrial(dbname,props,dotransactions,groups,status,label,maxExecutionTime);
+			opsDone=(int)result[0];
+			runtime=result[1];
+
+			if (repeat>1)
 			{
+				try
+				{
+					RunResultExporter capture=new RunResultExporter();
+					writeMeasurements(capture, props, opsDone, runtime, groups, null);
+					summary.add(capture.getResult());
+					if (exportFile != null)
+					{
+						exportMeasurements(props, exportFile + "." + trial, opsDone, runtime, groups, calibration);
+					}
+				} catch (IOException e)
+				{
+					System.err.println("Could not export measurements, error: " + e.getMessage());
+					e.printStackTrace();
+					System.exit(-1);
+				}
+
+				if (trial<repeat)
+				{
+					if (reset!=null)
+					{
+						try
+						{
+							reset.reset(props,trial);
+						}
+						catch (DBException e)
+						{
+							e.printStackTrace();
+							e.printStackTrace(System.out);
+							System.exit(0);
+						}
+					}
+
+					//the generators carry on where the previous trial stopped
+					for (WorkloadGroup g : groups)
+					{
+						g.workload.clearStopRequest();
+					}
+					Measurements.getMeasurements().reset();
+				}
 			}
 		}
 
-		long en=System.currentTimeMillis();
-		
-		if (terminator != null && !terminator.isInterrupted()) {
-      terminator.interrupt();
-    }
-
-		if (status)
+		if (pausedetector!=null)
 		{
-			statusthread.interrupt();
+			pausedetector.interrupt();
 		}
 
 		try
 		{
-			workload.cleanup();
+			for (WorkloadGroup g : groups)
+			{
+				g.workload.cleanup();
+			}
 		}
 		catch (WorkloadException e)
 		{
@@ -789,7 +1080,26 @@ public class Client
 
 		try
 		{
-			exportMeasurements(props, opsDone, en - st);
+			if (repeat>1)
+			{
+				MeasurementsExporter exporter = createExporter(props, exportFile);
+				try
+				{
+					summary.exportMeasurements(exporter);
+					Measurements.getMeasurements().exportMeasurements(exporter, false);
+					if (calibration != null)
+					{
+						calibration.exportMeasurements(exporter, 0, null);
+					}
+				} finally
+				{
+					exporter.close();
+				}
+			}
+			else
+			{
+				exportMeasurements(props, exportFile, opsDone, runtime, groups, calibration);
+			}
 		} catch (IOException e)
 		{
 			System.err.println("Could not export measurements, error: " + e.getMessage());
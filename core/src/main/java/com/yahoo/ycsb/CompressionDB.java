@@ -0,0 +1,315 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+import com.yahoo.ycsb.compress.Codec;
+import com.yahoo.ycsb.measurements.Counters;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Compresses the values of inserts and updates before they reach the DB and decompresses the values that reads
+ * and scans return, to weigh the bytes saved against the client CPU spent (dbwrappers=com.yahoo.ycsb.CompressionDB).
+ *
+ * compression.codec is a codec (none, lz, deflate or deflate:1 to deflate:9) or a comma separated list of them;
+ * with a list each key is compressed with one of the codecs, picked by its hash, so a single run compares them.
+ * Values are framed with the id of their codec, and are decoded whichever codec wrote them.
+ *
+ * For each codec [COMPRESSION codec] has the raw and stored bytes, the compression ratio, and the time spent
+ * compressing per write and decompressing per read, in CPU time of the client thread where the JVM measures it.
+ * With several codecs, the latency of each operation through the layer is measured per codec as
+ * [COMPRESSION codec OPERATION].
+ */
+public class CompressionDB extends DelegatingDB
+{
+	public static final String CODEC="compression.codec";
+	public static final String CODEC_DEFAULT="deflate";
+
+	/**
+	 * Whether to measure CPU time rather than elapsed time, when the JVM supports it.
+	 */
+	public static final String CPU_TIME="compression.cputime";
+	public static final String CPU_TIME_DEFAULT="true";
+
+	static class CompressionCounters extends Counters
+	{
+		CompressionCounters(String codec)
+		{
+			super("COMPRESSION "+codec);
+		}
+
+		public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+		{
+			super.exportMeasurements(exporter);
+			long stored=get("StoredBytes");
+			if (stored>0)
+			{
+				exporter.write(getName(),"CompressionRatio",((double)get("RawBytes"))/stored);
+			}
+			long writes=get("Writes");
+			if (writes>0)
+			{
+				exporter.write(getName(),"CompressTimePerWrite(us)",get("CompressTime(ns)")/1000.0/writes);
+			}
+			long reads=get("Reads");
+			if (reads>0)
+			{
+				exporter.write(getName(),"DecompressTimePerRead(us)",get("DecompressTime(ns)")/1000.0/reads);
+			}
+		}
+	}
+
+	Codec[] codecs;
+	Counters[] counters;
+	Codec[] decoders;
+	boolean percodec;
+	ThreadMXBean cpu=null;
+	Measurements measurements;
+
+	public CompressionDB(DB db)
+	{
+		super(db);
+	}
+
+	public void init() throws DBException
+	{
+		super.init();
+		Properties p=getProperties();
+		measurements=Measurements.getMeasurements();
+		String[] names=p.getProperty(CODEC,CODEC_DEFAULT).split(",");
+		codecs=new Codec[names.length];
+		counters=new Counters[names.length];
+		for (int i=0; i<names.length; i++)
+		{
+			try
+			{
+				codecs[i]=Codec.create(names[i].trim());
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new DBException(e.getMessage());
+			}
+			counters[i]=measurements.registerCounters(new CompressionCounters(codecs[i].getName()));
+		}
+		decoders=Codec.decoders();
+		percodec=codecs.length>1;
+
+		if (Boolean.parseBoolean(p.getProperty(CPU_TIME,CPU_TIME_DEFAULT)))
+		{
+			ThreadMXBean bean=ManagementFactory.getThreadMXBean();
+			if (bean.isCurrentThreadCpuTimeSupported())
+			{
+				if (!bean.isThreadCpuTimeEnabled())
+				{
+					bean.setThreadCpuTimeEnabled(true);
+				}
+				cpu=bean;
+			}
+		}
+	}
+
+	long now()
+	{
+		return (cpu!=null) ? cpu.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+
+	int codecOf(String key)
+	{
+		return (key.hashCode()&Integer.MAX_VALUE)%codecs.length;
+	}
+
+	HashMap<String,ByteIterator> compress(int c, HashMap<String,ByteIterator> values)
+	{
+		Codec codec=codecs[c];
+		HashMap<String,ByteIterator> compressed=new HashMap<String,ByteIterator>();
+		long raw=0;
+		long stored=0;
+		long st=now();
+		for (Map.Entry<String,ByteIterator> value : values.entrySet())
+		{
+			byte[] bytes=value.getValue().toArray();
+			byte[] framed=codec.encode(bytes);
+			raw+=bytes.length;
+			stored+=framed.length;
+			compressed.put(value.getKey(),new ByteArrayByteIterator(framed));
+		}
+		long en=now();
+		counters[c].add("Writes",1);
+		counters[c].add("RawBytes",raw);
+		counters[c].add("StoredBytes",stored);
+		counters[c].add("CompressTime(ns)",en-st);
+		return compressed;
+	}
+
+	/**
+	 * Replace the framed values of a record by their raw values.
+	 */
+	long decompress(HashMap<String,Object> record)
+	{
+		long undecodable=0;
+		for (Map.Entry<String,Object> field : record.entrySet())
+		{
+			Object value=field.getValue();
+			byte[] framed;
+			if (value instanceof byte[])
+			{
+				framed=(byte[])value;
+			}
+			else if (value instanceof ByteIterator)
+			{
+				framed=((ByteIterator)value).toArray();
+			}
+			else
+			{
+				continue;
+			}
+			int id=Codec.idOf(framed);
+			if (id<0)
+			{
+				undecodable++;
+				continue;
+			}
+			try
+			{
+				field.setValue(decoders[id].decode(framed));
+			}
+			catch (RuntimeException e)
+			{
+				//not written through this layer or malformed, leave it as it is
+				undecodable++;
+			}
+		}
+		return undecodable;
+	}
+
+	void decompressed(int c, long st, long undecodable)
+	{
+		long en=now();
+		counters[c].add("Reads",1);
+		counters[c].add("DecompressTime(ns)",en-st);
+		if (undecodable>0)
+		{
+			counters[c].add("UndecodableValues",undecodable);
+		}
+	}
+
+	void measure(int c, String op, long st)
+	{
+		if (percodec)
+		{
+			long en=System.nanoTime();
+			measurements.measure("COMPRESSION "+codecs[c].getName()+" "+op,(int)((en-st)/1000));
+		}
+	}
+
+	public int read(String table, String key, Set<String> fields, HashMap<String,Object> result)
+	{
+		int c=codecOf(key);
+		long st=System.nanoTime();
+		int res=_db.read(table,key,fields,result);
+		if (res==0)
+		{
+			long dst=now();
+			decompressed(c,dst,decompress(result));
+		}
+		measure(c,"READ",st);
+		return res;
+	}
+
+	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,Object>> result)
+	{
+		int c=codecOf(startkey);
+		long st=System.nanoTime();
+		int res=_db.scan(table,startkey,recordcount,fields,result);
+		if (res==0)
+		{
+			long dst=now();
+			long undecodable=0;
+			for (HashMap<String,Object> record : result)
+			{
+				undecodable+=decompress(record);
+			}
+			decompressed(c,dst,undecodable);
+		}
+		measure(c,"SCAN",st);
+		return res;
+	}
+
+	public int update(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		int c=codecOf(key);
+		long st=System.nanoTime();
+		int res=_db.update(table,key,compress(c,values));
+		measure(c,"UPDATE",st);
+		return res;
+	}
+
+	public int upsert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		int c=codecOf(key);
+		long st=System.nanoTime();
+		int res=_db.upsert(table,key,compress(c,values));
+		measure(c,"UPSERT",st);
+		return res;
+	}
+
+	/**
+	 * The expected version is framed as the version was when it was written, the codecs encoding a value the same
+	 * way every time, so the DB can compare the stored bytes.
+	 */
+	public int conditionalUpdate(String table, String key, String versionfield, ByteIterator expected, HashMap<String,ByteIterator> values)
+	{
+		int c=codecOf(key);
+		long st=System.nanoTime();
+		ByteIterator framed=(expected==null) ? null : new ByteArrayByteIterator(codecs[c].encode(expected.toArray()));
+		int res=_db.conditionalUpdate(table,key,versionfield,framed,compress(c,values));
+		measure(c,"CONDITIONAL UPDATE",st);
+		return res;
+	}
+
+	/**
+	 * Counters are kept by the DB in its own format, so increments pass through and their fields are read back as
+	 * they are.
+	 */
+	public int increment(String table, String key, String field, long delta)
+	{
+		int c=codecOf(key);
+		long st=System.nanoTime();
+		int res=_db.increment(table,key,field,delta);
+		measure(c,"INCREMENT",st);
+		return res;
+	}
+
+	public int insert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		int c=codecOf(key);
+		long st=System.nanoTime();
+		int res=_db.insert(table,key,compress(c,values));
+		measure(c,"INSERT",st);
+		return res;
+	}
+}
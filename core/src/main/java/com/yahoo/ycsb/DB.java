@@ -43,6 +43,16 @@ import java.util.Vector;
  */
 public abstract class DB
 {
+	/**
+	 * The return code of the optional operations a binding does not implement, such as conditionalUpdate.
+	 */
+	public static final int UNSUPPORTED=-2;
+
+	/**
+	 * The return code of a conditional update that did not write, because the record changed since it was read.
+	 */
+	public static final int CONFLICT=-3;
+
 	/**
 	 * Properties for configuring this DB.
 	 */
@@ -233,6 +243,57 @@ public abstract class DB
 	 */
 	public abstract int update(String table, String key, HashMap<String,ByteIterator> values);
 
+	/**
+	 * Write a record whether or not it exists (insert-or-update): the field/value pairs in values are written into
+	 * the record with the specified key, overwriting existing values with the same field name, and the record is
+	 * created if it is missing. Bindings that implement it do it in one call to the store, e.g. an update with the
+	 * upsert flag; the others return UNSUPPORTED.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to write.
+	 * @param values A HashMap of field/value pairs to write in the record
+	 * @return Zero on success, UNSUPPORTED if the binding does not implement upserts, another non-zero error code on error.
+	 */
+	public int upsert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		return UNSUPPORTED;
+	}
+
+	/**
+	 * Update a record only if it did not change since it was read (compare-and-set): the field/value pairs in values
+	 * are written only if the versionfield of the record still holds expected. Values normally set the versionfield
+	 * to a new version too. Bindings that implement it check and write atomically, e.g. with the version in the
+	 * query of the update; the others return UNSUPPORTED.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to write.
+	 * @param versionfield The field of the record that holds its version
+	 * @param expected The version read, or null if the record had no versionfield
+	 * @param values A HashMap of field/value pairs to update in the record
+	 * @return Zero on success, CONFLICT if the record is missing or its version is not the expected one, UNSUPPORTED if
+	 * the binding does not implement conditional updates, another non-zero error code on error.
+	 */
+	public int conditionalUpdate(String table, String key, String versionfield, ByteIterator expected, HashMap<String,ByteIterator> values)
+	{
+		return UNSUPPORTED;
+	}
+
+	/**
+	 * Add delta to a counter field of a record, atomically, without reading it first. A record without the field
+	 * starts the counter at 0. Bindings that implement it use the native increment of the store, e.g. $inc; the
+	 * others return UNSUPPORTED.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to write.
+	 * @param field The counter field
+	 * @param delta The amount to add, negative to decrement
+	 * @return Zero on success, UNSUPPORTED if the binding does not implement increments, another non-zero error code on error.
+	 */
+	public int increment(String table, String key, String field, long delta)
+	{
+		return UNSUPPORTED;
+	}
+
 	/**
 	 * Delete a record from the database. 
 	 *
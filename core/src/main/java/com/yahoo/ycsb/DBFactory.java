@@ -46,6 +46,26 @@ public class DBFactory
 	 
 	 ret.setProperties(properties);
 
+	 //chain the client side layers, the first one listed ends up in front
+	 String wrappers=properties.getProperty(DelegatingDB.WRAPPERS_PROPERTY,"").trim();
+	 if (wrappers.length()>0)
+	 {
+	    String[] names=wrappers.split(",");
+	    for (int i=names.length-1; i>=0; i--)
+	    {
+	       try
+	       {
+		  Class wrapperclass = classLoader.loadClass(names[i].trim());
+		  ret=(DB)wrapperclass.getConstructor(DB.class).newInstance(ret);
+	       }
+	       catch (Exception e)
+	       {
+		  e.printStackTrace();
+		  return null;
+	       }
+	    }
+	 }
+
 	 return new DBWrapper(ret);
       }
       
@@ -17,12 +17,22 @@
 
 package com.yahoo.ycsb;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.Vector;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import com.yahoo.ycsb.measurements.ByteCounts;
+import com.yahoo.ycsb.measurements.ClientCost;
+import com.yahoo.ycsb.measurements.KeyspaceHeatmap;
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.PauseDetector;
+import com.yahoo.ycsb.measurements.SlowOperationSampler;
 
 /**
  * Wrapper around a "real" DB that measures latencies and counts return codes.
@@ -31,11 +41,174 @@ public class DBWrapper extends DB
 {
 	DB _db;
 	Measurements _measurements;
+	PauseDetector _pausedetector;
+	SlowOperationSampler _slowoperations;
+	KeyspaceHeatmap _heatmap;
+	boolean _bytecounts;
+
+	//client side cost sampling, see ClientCost
+	boolean _clientcost;
+	int _costinterval;
+	int _costcounter=0;
+	boolean _costsampled=false;
+	long _cpustart;
+	long _allocstart;
+	long _cpucost;
+	long _alloccost;
+	ThreadMXBean _threadbean;
+	com.sun.management.ThreadMXBean _allocbean;
 
 	public DBWrapper(DB db)
 	{
 		_db=db;
 		_measurements=Measurements.getMeasurements();
+		_pausedetector=_measurements.getPauseDetector();
+		_slowoperations=_measurements.getSlowOperationSampler();
+		_heatmap=_measurements.getKeyspaceHeatmap();
+
+		Properties p=db.getProperties();
+		_bytecounts=Boolean.parseBoolean(p.getProperty(ByteCounts.ENABLED,ByteCounts.ENABLED_DEFAULT));
+		_clientcost=Boolean.parseBoolean(p.getProperty(ClientCost.ENABLED,ClientCost.ENABLED_DEFAULT));
+		_costinterval=Integer.parseInt(p.getProperty(ClientCost.SAMPLE_INTERVAL,ClientCost.SAMPLE_INTERVAL_DEFAULT));
+		if (_clientcost)
+		{
+			_threadbean=ManagementFactory.getThreadMXBean();
+			if (_threadbean.isCurrentThreadCpuTimeSupported())
+			{
+				_threadbean.setThreadCpuTimeEnabled(true);
+			}
+			else
+			{
+				_threadbean=null;
+			}
+			ThreadMXBean bean=ManagementFactory.getThreadMXBean();
+			if ( (bean instanceof com.sun.management.ThreadMXBean) && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported() )
+			{
+				_allocbean=(com.sun.management.ThreadMXBean)bean;
+				_allocbean.setThreadAllocatedMemoryEnabled(true);
+			}
+		}
+	}
+
+	/**
+	 * Count the payload of a single operation, if byte counting is enabled.
+	 *
+	 * @param op The name of the operation, e.g. "READ"
+	 * @param in The number of bytes sent to the DB
+	 * @param out The result returned by the DB, or null
+	 */
+	void countBytes(String op, long in, Object out)
+	{
+		if (_bytecounts)
+		{
+			_measurements.reportBytes(op,in,sizeOf(out));
+		}
+	}
+
+	/**
+	 * Estimate the payload size of a value passed to or returned by the DB. Strings count one byte per character,
+	 * numbers and dates eight bytes; maps and collections are the sum of their keys and values.
+	 */
+	static long sizeOf(Object o)
+	{
+		if (o==null)
+		{
+			return 0;
+		}
+		else if (o instanceof ByteIterator)
+		{
+			return ((ByteIterator)o).bytesLeft();
+		}
+		else if (o instanceof byte[])
+		{
+			return ((byte[])o).length;
+		}
+		else if (o instanceof String)
+		{
+			return ((String)o).length();
+		}
+		else if (o instanceof Map)
+		{
+			long size=0;
+			for (Map.Entry<?,?> e : ((Map<?,?>)o).entrySet())
+			{
+				size+=sizeOf(e.getKey())+sizeOf(e.getValue());
+			}
+			return size;
+		}
+		else if (o instanceof Collection)
+		{
+			long size=0;
+			for (Object v : (Collection<?>)o)
+			{
+				size+=sizeOf(v);
+			}
+			return size;
+		}
+		return 8;
+	}
+
+	/**
+	 * Take the starting sample of the client side cost, if this operation is to be sampled.
+	 */
+	void beginCost()
+	{
+		if ( (!_clientcost) || (++_costcounter<_costinterval) )
+		{
+			return;
+		}
+		_costcounter=0;
+		_costsampled=true;
+		_cpustart=(_threadbean!=null) ? _threadbean.getCurrentThreadCpuTime() : -1;
+		_allocstart=(_allocbean!=null) ? _allocbean.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+	}
+
+	/**
+	 * Take the ending sample of the client side cost, before the operation is recorded, so the cost does not
+	 * include the bookkeeping of the measurements.
+	 */
+	void endCost()
+	{
+		_cpucost=(_threadbean!=null) ? _threadbean.getCurrentThreadCpuTime()-_cpustart : -1;
+		_alloccost=(_allocbean!=null) ? _allocbean.getThreadAllocatedBytes(Thread.currentThread().getId())-_allocstart : -1;
+	}
+
+	/**
+	 * Record the latency and the return code of a single operation. The remaining arguments describe
+	 * the request for the slow operation sampler; those that do not apply are null (or 0).
+	 *
+	 * @param op The name of the operation, e.g. "READ"
+	 * @param st The start of the operation, from System.nanoTime()
+	 * @param en The end of the operation, from System.nanoTime()
+	 * @param res The return code of the operation
+	 */
+	void measure(String op, long st, long en, int res, String key, String field, Object value,
+			String field2, Object lower, Object upper, int scanlength)
+	{
+		if (_costsampled)
+		{
+			endCost();
+		}
+		int latency=(int)((en-st)/1000);
+		_measurements.measure(op,latency);
+		_measurements.reportReturnCode(op,res);
+		if (_slowoperations!=null)
+		{
+			_slowoperations.offer(op,latency,res,key,field,value,field2,lower,upper,scanlength);
+		}
+		if (_heatmap!=null)
+		{
+			_heatmap.measure(op,en,latency);
+		}
+		if (_pausedetector!=null)
+		{
+			_pausedetector.reportOperation(st,en);
+		}
+		if (_costsampled)
+		{
+			_costsampled=false;
+			_measurements.reportClientCost(op,_cpucost,_alloccost);
+		}
 	}
 
 	/**
@@ -86,11 +259,12 @@ public class DBWrapper extends DB
 	 */
 	public int read(String table, String key, Set<String> fields, HashMap<String,Object> result)
 	{
+		beginCost();
 		long st=System.nanoTime();
 		int res=_db.read(table,key,fields,result);
 		long en=System.nanoTime();
-		_measurements.measure("READ",(int)((en-st)/1000));
-		_measurements.reportReturnCode("READ",res);
+		measure("READ",st,en,res,key,null,null,null,null,null,0);
+		countBytes("READ",0,result);
 		return res;
 	}
 
@@ -106,11 +280,12 @@ public class DBWrapper extends DB
 	 */
 	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,Object>> result)
 	{
+		beginCost();
 		long st=System.nanoTime();
 		int res=_db.scan(table,startkey,recordcount,fields,result);
 		long en=System.nanoTime();
-		_measurements.measure("SCAN",(int)((en-st)/1000));
-		_measurements.reportReturnCode("SCAN",res);
+		measure("SCAN",st,en,res,startkey,null,null,null,null,null,recordcount);
+		countBytes("SCAN",0,result);
 		return res;
 	}
 	
@@ -127,11 +302,12 @@ public class DBWrapper extends DB
          */
         public int read(String table, String fieldname, Object key, Set<String> fields, HashMap<String, Object> result)
         {
+                beginCost();
                 long st=System.nanoTime();
                 int res=_db.read(table,fieldname,key,fields,result);
                 long en=System.nanoTime();
-                _measurements.measure("SECONDARY READ",(int)((en-st)/1000));
-                _measurements.reportReturnCode("SECONDARY READ",res);
+                measure("SECONDARY READ",st,en,res,null,fieldname,key,null,null,null,0);
+                countBytes("SECONDARY READ",0,result);
                 return res;
         }
 
@@ -152,11 +328,12 @@ public class DBWrapper extends DB
         public int read(String table, String fieldname, Object key, String fieldname2, Object lbdate, Object ubdate, 
 			Set<String> fields, HashMap<String, Object> result)
 	{
+                beginCost();
                 long st=System.nanoTime();
                 int res=_db.read(table,fieldname,key,fieldname2, lbdate, ubdate, fields,result);
                 long en=System.nanoTime();
-                _measurements.measure("COMPLEX READ",(int)((en-st)/1000));
-                _measurements.reportReturnCode("COMPLEX READ",res);
+                measure("COMPLEX READ",st,en,res,null,fieldname,key,fieldname2,lbdate,ubdate,0);
+                countBytes("COMPLEX READ",0,result);
                 return res;
 	}
 
@@ -175,11 +352,12 @@ public class DBWrapper extends DB
         public int scan(String table, String fieldname, Object startkey, int recordcount, 
 			Set<String> fields, Vector<HashMap<String, Object>> result)
         {
+                beginCost();
                 long st=System.nanoTime();
                 int res=_db.scan(table,fieldname,startkey,recordcount,fields,result);
                 long en=System.nanoTime();
-                _measurements.measure("SECONDARAY SCAN",(int)((en-st)/1000));
-                _measurements.reportReturnCode("SECONDARAY SCAN",res);
+                measure("SECONDARAY SCAN",st,en,res,null,fieldname,startkey,null,null,null,recordcount);
+                countBytes("SECONDARAY SCAN",0,result);
                 return res;
         }
 
@@ -201,11 +379,12 @@ public class DBWrapper extends DB
         public int scan(String table, String fieldname, Object startkey, String fieldname2, Object lbdate, Object ubdate, int recordcount, 
 		        Set<String> fields, Vector<HashMap<String, Object>> result)
 	{
+                beginCost();
                 long st=System.nanoTime();
                 int res=_db.scan(table,fieldname,startkey,fieldname2, lbdate, ubdate,recordcount,fields,result);
                 long en=System.nanoTime();
-                _measurements.measure("COMPLEX SCAN",(int)((en-st)/1000));
-                _measurements.reportReturnCode("COMPLEX SCAN",res);
+                measure("COMPLEX SCAN",st,en,res,null,fieldname,startkey,fieldname2,lbdate,ubdate,recordcount);
+                countBytes("COMPLEX SCAN",0,result);
                 return res;
 	}
 
@@ -227,11 +406,12 @@ public class DBWrapper extends DB
         public int aggregate(String table,String fieldNameMatch, Object startkeyMatch, Object endkeyMatch, int aggregaterecordcount,
                                       String fieldNameGroup, String groupfunction, int topNresults, Vector<HashMap<String,Object>> result)
         {
+                beginCost();
                 long st=System.nanoTime();
                 int res=_db.aggregate(table,fieldNameMatch,startkeyMatch,endkeyMatch,aggregaterecordcount,fieldNameGroup,groupfunction,topNresults,result);
                 long en=System.nanoTime();
-                _measurements.measure("AGGREGATE",(int)((en-st)/1000));
-                _measurements.reportReturnCode("AGGREGATE",res);
+                measure("AGGREGATE",st,en,res,null,fieldNameGroup,groupfunction,fieldNameMatch,startkeyMatch,endkeyMatch,aggregaterecordcount);
+                countBytes("AGGREGATE",0,result);
                 return res;
         }
 
@@ -247,11 +427,12 @@ public class DBWrapper extends DB
          */
         public int aggregate(String table, String fieldNameGroup, int len, Vector<HashMap<String,Object>> result)
         {
+                beginCost();
                 long st=System.nanoTime();
                 int res=_db.aggregate(table,fieldNameGroup,len,result);
                 long en=System.nanoTime();
-                _measurements.measure("AGGREGATE",(int)((en-st)/1000));
-                _measurements.reportReturnCode("AGGREGATE",res);
+                measure("AGGREGATE",st,en,res,null,fieldNameGroup,null,null,null,null,len);
+                countBytes("AGGREGATE",0,result);
                 return res;
         }
 
@@ -266,11 +447,78 @@ public class DBWrapper extends DB
 	 */
 	public int update(String table, String key, HashMap<String,ByteIterator> values)
 	{
+		long in=_bytecounts ? sizeOf(values) : 0;
+		beginCost();
 		long st=System.nanoTime();
 		int res=_db.update(table,key,values);
 		long en=System.nanoTime();
-		_measurements.measure("UPDATE",(int)((en-st)/1000));
-		_measurements.reportReturnCode("UPDATE",res);
+		measure("UPDATE",st,en,res,key,null,null,null,null,null,0);
+		countBytes("UPDATE",in,null);
+		return res;
+	}
+
+	/**
+	 * Write a record in the database, creating it if it is missing.
+	 * Measured as UPSERT.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to write.
+	 * @param values A HashMap of field/value pairs to write in the record
+	 * @return Zero on success, UNSUPPORTED or another non-zero error code on error.
+	 */
+	public int upsert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		long in=_bytecounts ? sizeOf(values) : 0;
+		beginCost();
+		long st=System.nanoTime();
+		int res=_db.upsert(table,key,values);
+		long en=System.nanoTime();
+		measure("UPSERT",st,en,res,key,null,null,null,null,null,0);
+		countBytes("UPSERT",in,null);
+		return res;
+	}
+
+	/**
+	 * Update a record only if its version is the expected one.
+	 * Measured as CONDITIONAL UPDATE; conflicts are counted as Return=-3.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to write.
+	 * @param versionfield The field of the record that holds its version
+	 * @param expected The version read, or null if the record had no versionfield
+	 * @param values A HashMap of field/value pairs to update in the record
+	 * @return Zero on success, CONFLICT if the version is not the expected one, UNSUPPORTED or another non-zero error code on error.
+	 */
+	public int conditionalUpdate(String table, String key, String versionfield, ByteIterator expected, HashMap<String,ByteIterator> values)
+	{
+		long in=_bytecounts ? sizeOf(values) : 0;
+		beginCost();
+		long st=System.nanoTime();
+		int res=_db.conditionalUpdate(table,key,versionfield,expected,values);
+		long en=System.nanoTime();
+		measure("CONDITIONAL UPDATE",st,en,res,key,null,null,null,null,null,0);
+		countBytes("CONDITIONAL UPDATE",in,null);
+		return res;
+	}
+
+	/**
+	 * Add delta to a counter field of a record.
+	 * Measured as INCREMENT.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to write.
+	 * @param field The counter field
+	 * @param delta The amount to add
+	 * @return Zero on success, UNSUPPORTED or another non-zero error code on error.
+	 */
+	public int increment(String table, String key, String field, long delta)
+	{
+		beginCost();
+		long st=System.nanoTime();
+		int res=_db.increment(table,key,field,delta);
+		long en=System.nanoTime();
+		measure("INCREMENT",st,en,res,key,null,null,null,null,null,0);
+		countBytes("INCREMENT",0,null);
 		return res;
 	}
 
@@ -286,11 +534,13 @@ public class DBWrapper extends DB
          */
         public int complexinsert(String table, String key, HashMap<String,Object> values)
         {
+                long in=_bytecounts ? sizeOf(values) : 0;
+                beginCost();
                 long st=System.nanoTime();
                 int res=_db.complexinsert(table,key,values);
                 long en=System.nanoTime();
-                _measurements.measure("COMPLEX INSERT",(int)((en-st)/1000));
-                _measurements.reportReturnCode("COMPLEX INSERT",res);
+                measure("COMPLEX INSERT",st,en,res,key,null,null,null,null,null,0);
+                countBytes("COMPLEX INSERT",in,null);
                 return res;
         }
 
@@ -305,11 +555,13 @@ public class DBWrapper extends DB
 	 */
 	public int insert(String table, String key, HashMap<String,ByteIterator> values)
 	{
+		long in=_bytecounts ? sizeOf(values) : 0;
+		beginCost();
 		long st=System.nanoTime();
 		int res=_db.insert(table,key,values);
 		long en=System.nanoTime();
-		_measurements.measure("INSERT",(int)((en-st)/1000));
-		_measurements.reportReturnCode("INSERT",res);
+		measure("INSERT",st,en,res,key,null,null,null,null,null,0);
+		countBytes("INSERT",in,null);
 		return res;
 	}
 
@@ -322,11 +574,12 @@ public class DBWrapper extends DB
 	 */
 	public int delete(String table, String key)
 	{
+		beginCost();
 		long st=System.nanoTime();
 		int res=_db.delete(table,key);
 		long en=System.nanoTime();
-		_measurements.measure("DELETE",(int)((en-st)/1000));
-		_measurements.reportReturnCode("DELETE",res);
+		measure("DELETE",st,en,res,key,null,null,null,null,null,0);
+		countBytes("DELETE",0,null);
 		return res;
 	}
 }
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * A DB that passes every operation on to another DB. Client-side layers, such as CachingDB, extend it and
+ * override the operations they change.
+ *
+ * Layers are chained in front of the DB with the dbwrappers property, a comma separated list of classes with
+ * a constructor that takes the DB to delegate to; the first one listed is the closest to the client. DBWrapper
+ * stays in front of all of them, so the latencies include the work of the layers.
+ */
+public class DelegatingDB extends DB
+{
+	/**
+	 * The layers to put in front of the DB.
+	 */
+	public static final String WRAPPERS_PROPERTY="dbwrappers";
+
+	protected DB _db;
+
+	public DelegatingDB(DB db)
+	{
+		_db=db;
+	}
+
+	public void setProperties(Properties p)
+	{
+		_db.setProperties(p);
+	}
+
+	public Properties getProperties()
+	{
+		return _db.getProperties();
+	}
+
+	public void init() throws DBException
+	{
+		_db.init();
+	}
+
+	public void cleanup() throws DBException
+	{
+		_db.cleanup();
+	}
+
+	public int read(String table, String key, Set<String> fields, HashMap<String,Object> result)
+	{
+		return _db.read(table,key,fields,result);
+	}
+
+	public int read(String table, String fieldname, Object key, Set<String> fields, HashMap<String,Object> result)
+	{
+		return _db.read(table,fieldname,key,fields,result);
+	}
+
+	public int read(String table, String fieldname, Object key, String fieldname2, Object lbdate, Object ubdate,
+			Set<String> fields, HashMap<String,Object> result)
+	{
+		return _db.read(table,fieldname,key,fieldname2,lbdate,ubdate,fields,result);
+	}
+
+	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,Object>> result)
+	{
+		return _db.scan(table,startkey,recordcount,fields,result);
+	}
+
+	public int scan(String table, String fieldname, Object startkey, int recordcount, Set<String> fields,
+			Vector<HashMap<String,Object>> result)
+	{
+		return _db.scan(table,fieldname,startkey,recordcount,fields,result);
+	}
+
+	public int scan(String table, String fieldname, Object startkey, String fieldname2, Object lbdate, Object ubdate,
+			int recordcount, Set<String> fields, Vector<HashMap<String,Object>> result)
+	{
+		return _db.scan(table,fieldname,startkey,fieldname2,lbdate,ubdate,recordcount,fields,result);
+	}
+
+	public int aggregate(String table, String fieldNameMatch, Object startkeyMatch, Object endkeyMatch, int aggregaterecordcount,
+			String fieldNameGroup, String groupfunction, int topNresults, Vector<HashMap<String,Object>> result)
+	{
+		return _db.aggregate(table,fieldNameMatch,startkeyMatch,endkeyMatch,aggregaterecordcount,fieldNameGroup,groupfunction,topNresults,result);
+	}
+
+	public int aggregate(String table, String fieldNameGroup, int len, Vector<HashMap<String,Object>> result)
+	{
+		return _db.aggregate(table,fieldNameGroup,len,result);
+	}
+
+	public int complexinsert(String table, String key, HashMap<String,Object> values)
+	{
+		return _db.complexinsert(table,key,values);
+	}
+
+	public int insert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		return _db.insert(table,key,values);
+	}
+
+	public int update(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		return _db.update(table,key,values);
+	}
+
+	public int upsert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		return _db.upsert(table,key,values);
+	}
+
+	public int conditionalUpdate(String table, String key, String versionfield, ByteIterator expected, HashMap<String,ByteIterator> values)
+	{
+		return _db.conditionalUpdate(table,key,versionfield,expected,values);
+	}
+
+	public int increment(String table, String key, String field, long delta)
+	{
+		return _db.increment(table,key,field,delta);
+	}
+
+	public int delete(String table, String key)
+	{
+		return _db.delete(table,key);
+	}
+}
@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+/**
+ * A DB that does no work, to measure how fast the client itself can go (see the calibrate property of Client).
+ *
+ * Unlike BasicDB it never prints or sleeps. Writes read their values, as a real binding does when it sends
+ * them, since that is where RandomByteIterator generates the bytes. Reads, scans and aggregates return records
+ * of nulldb.fieldcount fields of nulldb.fieldlength bytes, taken from a pool built once, so results have a
+ * realistic size without allocating or copying much per operation. Every operation succeeds.
+ */
+public class NullDB extends DB
+{
+	/**
+	 * The number of fields of a returned record; by default the fieldcount of the workload.
+	 */
+	public static final String FIELD_COUNT="nulldb.fieldcount";
+
+	/**
+	 * The length of each returned field; by default the fieldlength of the workload.
+	 */
+	public static final String FIELD_LENGTH="nulldb.fieldlength";
+
+	/**
+	 * The number of different records in the pool.
+	 */
+	public static final String POOL_SIZE="nulldb.poolsize";
+	public static final String POOL_SIZE_DEFAULT="64";
+
+	static HashMap<String,Object>[] pool=null;
+	static HashMap<String,Object>[] aggregatepool=null;
+
+	byte[] buffer=new byte[4096];
+
+	/**
+	 * Build the pool of records, once for all the instances.
+	 */
+	@SuppressWarnings("unchecked")
+	static synchronized void buildPool(Properties p)
+	{
+		if (pool!=null)
+		{
+			return;
+		}
+		int fieldcount=Integer.parseInt(p.getProperty(FIELD_COUNT,p.getProperty("fieldcount","10")));
+		int fieldlength=Integer.parseInt(p.getProperty(FIELD_LENGTH,p.getProperty("fieldlength","100")));
+		int poolsize=Integer.parseInt(p.getProperty(POOL_SIZE,POOL_SIZE_DEFAULT));
+
+		HashMap<String,Object>[] records=new HashMap[poolsize];
+		HashMap<String,Object>[] groups=new HashMap[poolsize];
+		for (int i=0; i<poolsize; i++)
+		{
+			records[i]=new HashMap<String,Object>();
+			for (int f=0; f<fieldcount; f++)
+			{
+				records[i].put("field"+f,new RandomByteIterator(fieldlength).toArray());
+			}
+			groups[i]=new HashMap<String,Object>();
+			groups[i].put("_id","group"+i);
+			groups[i].put("total",Integer.valueOf(i));
+		}
+		aggregatepool=groups;
+		pool=records;
+	}
+
+	public void init()
+	{
+		buildPool(getProperties());
+	}
+
+	static HashMap<String,Object> record(Object key)
+	{
+		return pool[(key==null) ? 0 : (key.hashCode()&Integer.MAX_VALUE)%pool.length];
+	}
+
+	/**
+	 * Fill the result with the requested fields of a pooled record.
+	 */
+	static void fill(Object key, Set<String> fields, HashMap<String,Object> result)
+	{
+		HashMap<String,Object> record=record(key);
+		if (fields==null)
+		{
+			result.putAll(record);
+		}
+		else
+		{
+			for (String field : fields)
+			{
+				Object value=record.get(field);
+				if (value!=null)
+				{
+					result.put(field,value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add recordcount pooled records to the result. Records with all the fields are shared, not copied.
+	 */
+	static void fill(Object startkey, int recordcount, Set<String> fields, Vector<HashMap<String,Object>> result)
+	{
+		int first=(startkey==null) ? 0 : (startkey.hashCode()&Integer.MAX_VALUE);
+		for (int i=0; i<recordcount; i++)
+		{
+			HashMap<String,Object> record=pool[(first+i)%pool.length];
+			if (fields!=null)
+			{
+				HashMap<String,Object> subset=new HashMap<String,Object>();
+				fill(Integer.valueOf(first+i),fields,subset);
+				record=subset;
+			}
+			result.add(record);
+		}
+	}
+
+	static void fillGroups(int count, Vector<HashMap<String,Object>> result)
+	{
+		for (int i=0; i<count; i++)
+		{
+			result.add(aggregatepool[i%aggregatepool.length]);
+		}
+	}
+
+	/**
+	 * Read all the values to be written, as a binding would to send them.
+	 */
+	void consume(Map<String,?> values)
+	{
+		for (Object value : values.values())
+		{
+			if (value instanceof ByteIterator)
+			{
+				ByteIterator it=(ByteIterator)value;
+				while (it.hasNext())
+				{
+					it.nextBuf(buffer,0);
+				}
+			}
+		}
+	}
+
+	public int read(String table, String key, Set<String> fields, HashMap<String,Object> result)
+	{
+		fill(key,fields,result);
+		return 0;
+	}
+
+	public int read(String table, String fieldname, Object key, Set<String> fields, HashMap<String,Object> result)
+	{
+		fill(key,fields,result);
+		return 0;
+	}
+
+	public int read(String table, String fieldname, Object key, String fieldname2, Object lbdate, Object ubdate,
+			Set<String> fields, HashMap<String,Object> result)
+	{
+		fill(key,fields,result);
+		return 0;
+	}
+
+	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,Object>> result)
+	{
+		fill(startkey,recordcount,fields,result);
+		return 0;
+	}
+
+	public int scan(String table, String fieldname, Object startkey, int recordcount, Set<String> fields,
+			Vector<HashMap<String,Object>> result)
+	{
+		fill(startkey,recordcount,fields,result);
+		return 0;
+	}
+
+	public int scan(String table, String fieldname, Object startkey, String fieldname2, Object lbdate, Object ubdate,
+			int recordcount, Set<String> fields, Vector<HashMap<String,Object>> result)
+	{
+		fill(startkey,recordcount,fields,result);
+		return 0;
+	}
+
+	public int aggregate(String table, String fieldNameMatch, Object startkeyMatch, Object endkeyMatch, int aggregaterecordcount,
+			String fieldNameGroup, String groupfunction, int topNresults, Vector<HashMap<String,Object>> result)
+	{
+		fillGroups(topNresults,result);
+		return 0;
+	}
+
+	public int aggregate(String table, String fieldNameGroup, int len, Vector<HashMap<String,Object>> result)
+	{
+		fillGroups(len,result);
+		return 0;
+	}
+
+	public int complexinsert(String table, String key, HashMap<String,Object> values)
+	{
+		consume(values);
+		return 0;
+	}
+
+	public int insert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		consume(values);
+		return 0;
+	}
+
+	public int update(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		consume(values);
+		return 0;
+	}
+
+	public int upsert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		consume(values);
+		return 0;
+	}
+
+	public int conditionalUpdate(String table, String key, String versionfield, ByteIterator expected, HashMap<String,ByteIterator> values)
+	{
+		consume(values);
+		return 0;
+	}
+
+	public int increment(String table, String key, String field, long delta)
+	{
+		return 0;
+	}
+
+	public int delete(String table, String key)
+	{
+		return 0;
+	}
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import com.yahoo.ycsb.measurements.LatencyHistogram;
+import com.yahoo.ycsb.measurements.Statistics;
+import com.yahoo.ycsb.measurements.exporter.BinaryMeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.RunResult;
+
+/**
+ * Compare the binary result files (see BinaryMeasurementsExporter) of a set of baseline runs with those of
+ * a set of candidate runs, e.g. before and after a DB configuration change.
+ *
+ * For the throughput and for the mean and percentile latencies of every operation, the mean over the runs of
+ * each set is reported with the relative difference and, when both sets have at least two runs, its 95%
+ * confidence interval. A difference is a regression when it is worse than the threshold and the whole interval
+ * is on the worse side of zero; without at least two runs per set nothing is reported as a regression. The exit status is 1 if there is any regression,
+ * so the comparison can be used as a gate; it is 2 if a result file could not be read.
+ */
+public class RunComparison
+{
+	public static final double DEFAULT_THRESHOLD=5.0;
+
+	static final double[] PERCENTILES={50,95,99,99.9};
+
+	static DecimalFormat d=new DecimalFormat("#.##");
+
+	public static void usageMessage()
+	{
+		System.out.println("Usage: java com.yahoo.ycsb.RunComparison [options] baseline... -- candidate...");
+		System.out.println("Options:");
+		System.out.println("  -threshold n: only report differences of more than n percent as regressions (default "+DEFAULT_THRESHOLD+")");
+		System.out.println();
+		System.out.println("The runs must have been exported with -p exporter="+BinaryMeasurementsExporter.class.getName());
+	}
+
+	static List<RunResult> read(List<String> files) throws IOException
+	{
+		List<RunResult> ret=new ArrayList<RunResult>();
+		for (String file : files)
+		{
+			FileInputStream in=new FileInputStream(file);
+			try
+			{
+				ret.add(BinaryMeasurementsExporter.read(in));
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * The value of one measurement, e.g. the 99th percentile, of a metric in a single run.
+	 */
+	static abstract class Value
+	{
+		String name;
+		boolean higherisbetter;
+
+		Value(String name, boolean higherisbetter)
+		{
+			this.name=name;
+			this.higherisbetter=higherisbetter;
+		}
+
+		/**
+		 * @return the value, or null if the run does not have it
+		 */
+		abstract Double get(RunResult run, String metric);
+	}
+
+	static Value percentile(final double percentile)
+	{
+		return new Value(d.format(percentile)+"thPercentileLatency(us)",false)
+		{
+			Double get(RunResult run, String metric)
+			{
+				LatencyHistogram h=run.histograms.get(metric);
+				return (h==null) ? null : Double.valueOf(h.getPercentile(percentile));
+			}
+		};
+	}
+
+	static double[] values(List<RunResult> runs, String metric, Value value)
+	{
+		double[] ret=new double[runs.size()];
+		for (int i=0; i<runs.size(); i++)
+		{
+			Double v=value.get(runs.get(i),metric);
+			if (v==null)
+			{
+				return null;
+			}
+			ret[i]=v;
+		}
+		return ret;
+	}
+
+	/**
+	 * Compare one value and print the result.
+	 *
+	 * @return true if it is a regression
+	 */
+	static boolean compare(String metric, Value value, List<RunResult> baseline, List<RunResult> candidate, double threshold)
+	{
+		double[] a=values(baseline,metric,value);
+		double[] b=values(candidate,metric,value);
+		if ( (a==null) || (b==null) )
+		{
+			return false;
+		}
+
+		double meana=Statistics.mean(a);
+		double meanb=Statistics.mean(b);
+		double scale=(meana==0) ? 0 : 100.0/meana;
+		double delta=(meanb-meana)*scale;
+		double[] interval=Statistics.differenceInterval(a,b);
+
+		//the difference in the direction that is worse, so positive means slower or less throughput
+		double worse=value.higherisbetter ? -delta : delta;
+		boolean regression=(interval!=null) && (scale!=0) && (worse>threshold) && (value.higherisbetter ? interval[1]<0 : interval[0]>0);
+		boolean improvement=(interval!=null) && (scale!=0) && (-worse>threshold) && (value.higherisbetter ? interval[0]>0 : interval[1]<0);
+
+		StringBuilder sb=new StringBuilder();
+		sb.append('[').append(metric).append("], ").append(value.name);
+		sb.append(", baseline ").append(d.format(meana));
+		sb.append(", candidate ").append(d.format(meanb));
+		if (scale==0)
+		{
+			sb.append(", delta ").append(d.format(meanb-meana));
+		}
+		else
+		{
+			sb.append(", delta ").append((delta>=0) ? "+" : "").append(d.format(delta)).append('%');
+			if (interval!=null)
+			{
+				sb.append(" (95% CI ").append(d.format(interval[0]*scale)).append("% .. ").append(d.format(interval[1]*scale)).append("%)");
+			}
+		}
+		if (regression)
+		{
+			sb.append(", REGRESSION");
+		}
+		else if (improvement)
+		{
+			sb.append(", improvement");
+		}
+		System.out.println(sb);
+		return regression;
+	}
+
+	public static void main(String[] args)
+	{
+		double threshold=DEFAULT_THRESHOLD;
+		List<String> baselinefiles=new ArrayList<String>();
+		List<String> candidatefiles=new ArrayList<String>();
+
+		List<String> files=baselinefiles;
+		for (int argindex=0; argindex<args.length; argindex++)
+		{
+			if (args[argindex].equals("-threshold"))
+			{
+				argindex++;
+				if (argindex>=args.length)
+				{
+					usageMessage();
+					System.exit(0);
+				}
+				threshold=Double.parseDouble(args[argindex]);
+			}
+			else if (args[argindex].equals("--"))
+			{
+				files=candidatefiles;
+			}
+			else if (args[argindex].startsWith("-"))
+			{
+				usageMessage();
+				System.exit(0);
+			}
+			else
+			{
+				files.add(args[argindex]);
+			}
+		}
+
+		if ( (baselinefiles.size()==0) || (candidatefiles.size()==0) )
+		{
+			usageMessage();
+			System.exit(0);
+		}
+
+		List<RunResult> baseline;
+		List<RunResult> candidate;
+		try
+		{
+			baseline=read(baselinefiles);
+			candidate=read(candidatefiles);
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not read result file: "+e.getMessage());
+			System.exit(2);
+			return;
+		}
+
+		System.out.println("Comparing "+baseline.size()+" baseline run(s) with "+candidate.size()+" candidate run(s)");
+
+		//show what differs between the configurations
+		RunResult firstbaseline=baseline.get(0);
+		RunResult firstcandidate=candidate.get(0);
+		TreeSet<String> keys=new TreeSet<String>(firstbaseline.metadata.keySet());
+		keys.addAll(firstcandidate.metadata.keySet());
+		for (String key : keys)
+		{
+			String va=firstbaseline.metadata.get(key);
+			String vb=firstcandidate.metadata.get(key);
+			if ( (!key.equals("start")) && (!key.equals("end")) && ((va==null) ? (vb!=null) : (!va.equals(vb))) )
+			{
+				System.out.println("[METADATA], "+key+", "+va+" -> "+vb);
+			}
+		}
+
+		boolean regression=false;
+
+		regression|=compare("OVERALL",new Value("Throughput(ops/sec)",true)
+		{
+			Double get(RunResult run, String metric)
+			{
+				return run.get(metric,name);
+			}
+		},baseline,candidate,threshold);
+
+		List<Value> latencies=new ArrayList<Value>();
+		latencies.add(new Value("AverageLatency(us)",false)
+		{
+			Double get(RunResult run, String metric)
+			{
+				LatencyHistogram h=run.histograms.get(metric);
+				return (h==null) ? null : Double.valueOf(h.getMean());
+			}
+		});
+		for (double p : PERCENTILES)
+		{
+			latencies.add(percentile(p));
+		}
+
+		for (String metric : firstbaseline.histograms.keySet())
+		{
+			for (Value value : latencies)
+			{
+				regression|=compare(metric,value,baseline,candidate,threshold);
+			}
+
+			//the percentiles over all the operations of all the runs of each set
+			LatencyHistogram pooleda=new LatencyHistogram();
+			LatencyHistogram pooledb=new LatencyHistogram();
+			for (RunResult run : baseline)
+			{
+				if (run.histograms.containsKey(metric))
+				{
+					pooleda.merge(run.histograms.get(metric));
+				}
+			}
+			for (RunResult run : candidate)
+			{
+				if (run.histograms.containsKey(metric))
+				{
+					pooledb.merge(run.histograms.get(metric));
+				}
+			}
+			StringBuilder sb=new StringBuilder("["+metric+"], Pooled, baseline");
+			for (double p : PERCENTILES)
+			{
+				sb.append(" p").append(d.format(p)).append('=').append(pooleda.getPercentile(p));
+			}
+			sb.append(", candidate");
+			for (double p : PERCENTILES)
+			{
+				sb.append(" p").append(d.format(p)).append('=').append(pooledb.getPercentile(p));
+			}
+			System.out.println(sb);
+		}
+
+		System.exit(regression ? 1 : 0);
+	}
+}
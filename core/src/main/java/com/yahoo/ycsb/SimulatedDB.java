@@ -0,0 +1,384 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+import com.yahoo.ycsb.generator.ConstantIntegerGenerator;
+import com.yahoo.ycsb.generator.ExponentialGenerator;
+import com.yahoo.ycsb.generator.HistogramGenerator;
+import com.yahoo.ycsb.generator.IntegerGenerator;
+import com.yahoo.ycsb.generator.UniformIntegerGenerator;
+import com.yahoo.ycsb.generator.ZipfianGenerator;
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * A BasicDB in front of a simulated server whose latency is known, to check the latencies the client measures
+ * and its throttling.
+ *
+ * The server has simdb.workers workers shared by all the client threads, served in arrival order. Each operation
+ * waits for a free worker, then holds it for a service time drawn from the distribution of its kind (read, scan,
+ * update, insert, delete or aggregate). Every simdb.stall.interval ms the server stops serving for
+ * simdb.stall.duration ms, as for a garbage collection, and the operations queue up behind the stall.
+ *
+ * The server measures each operation from its arrival to its completion and reports it as "SIMULATED &lt;operation&gt;",
+ * and the time it queued as "SIMULATED &lt;operation&gt; QUEUE", next to the latencies measured by the client.
+ */
+public class SimulatedDB extends BasicDB
+{
+	/**
+	 * The number of server workers.
+	 */
+	public static final String WORKERS="simdb.workers";
+	public static final String WORKERS_DEFAULT="4";
+
+	/**
+	 * The service time distribution: constant, uniform (from 0 to twice the mean), exponential, zipfian
+	 * (scaled to the mean, from 0 to about 8 times it) or histogram. Can be set per kind of operation as
+	 * simdb.distribution.&lt;kind&gt;.
+	 */
+	public static final String DISTRIBUTION="simdb.distribution";
+	public static final String DISTRIBUTION_DEFAULT="exponential";
+
+	/**
+	 * The mean service time in us. Can be set per kind of operation as simdb.servicetime.&lt;kind&gt;.
+	 */
+	public static final String SERVICE_TIME="simdb.servicetime";
+	public static final String SERVICE_TIME_DEFAULT="1000";
+
+	/**
+	 * The histogram file of the histogram distribution, in us. Can be set per kind of operation as
+	 * simdb.histogram.&lt;kind&gt;.
+	 */
+	public static final String HISTOGRAM_FILE="simdb.histogram";
+	public static final String HISTOGRAM_FILE_DEFAULT="hist.txt";
+
+	/**
+	 * The time between two stalls of the server in ms, or 0 for no stalls.
+	 */
+	public static final String STALL_INTERVAL="simdb.stall.interval";
+	public static final String STALL_INTERVAL_DEFAULT="0";
+
+	/**
+	 * The length of a stall in ms.
+	 */
+	public static final String STALL_DURATION="simdb.stall.duration";
+	public static final String STALL_DURATION_DEFAULT="100";
+
+	static final String[] KINDS={"read","scan","update","insert","delete","aggregate"};
+
+	/**
+	 * Zipfian service times with a given mean. Zipfian values from 0 to twice the mean are mostly near 0, with a
+	 * mean of about a quarter of it, so they are scaled by the configured mean over the mean of the zipfian
+	 * distribution. The generator only approximates the distribution, which leaves the mean a few percent low.
+	 */
+	static class ScaledZipfianGenerator extends IntegerGenerator
+	{
+		ZipfianGenerator zipfian;
+		double scale;
+		int mean;
+
+		ScaledZipfianGenerator(int mean)
+		{
+			this.mean=mean;
+			long items=2L*mean+1;
+			zipfian=new ZipfianGenerator(0,items-1);
+			double sum=0;
+			double weights=0;
+			for (long i=0; i<items; i++)
+			{
+				double weight=1/Math.pow(i+1,ZipfianGenerator.ZIPFIAN_CONSTANT);
+				sum+=i*weight;
+				weights+=weight;
+			}
+			double zipfianmean=sum/weights;
+			scale=(zipfianmean>0) ? mean/zipfianmean : 0;
+		}
+
+		public int nextInt()
+		{
+			int value=(int)Math.round(zipfian.nextInt()*scale);
+			setLastInt(value);
+			return value;
+		}
+
+		public double mean()
+		{
+			return mean;
+		}
+	}
+
+	/**
+	 * The state of the server, shared by all the DB instances.
+	 */
+	static class Server extends Thread
+	{
+		int workers;
+		Semaphore queue;
+		HashMap<String,IntegerGenerator> servicetimes=new HashMap<String,IntegerGenerator>();
+		long stallinterval;
+		long stallduration;
+		int users=0;
+
+		Server(Properties p) throws DBException
+		{
+			setDaemon(true);
+			setName("SimulatedDB stalls");
+			workers=Integer.parseInt(p.getProperty(WORKERS,WORKERS_DEFAULT));
+			//fair, so the operations are served in the order they arrive
+			queue=new Semaphore(workers,true);
+			for (String kind : KINDS)
+			{
+				servicetimes.put(kind,getServiceTimeGenerator(p,kind));
+			}
+			stallinterval=Long.parseLong(p.getProperty(STALL_INTERVAL,STALL_INTERVAL_DEFAULT));
+			stallduration=Long.parseLong(p.getProperty(STALL_DURATION,STALL_DURATION_DEFAULT));
+		}
+
+		/**
+		 * Take all the workers for the length of a stall, every stall interval.
+		 */
+		public void run()
+		{
+			try
+			{
+				while (true)
+				{
+					sleep(stallinterval);
+					queue.acquire(workers);
+					try
+					{
+						sleep(stallduration);
+					}
+					finally
+					{
+						queue.release(workers);
+					}
+				}
+			}
+			catch (InterruptedException e)
+			{
+				//cleaned up
+			}
+		}
+	}
+
+	static Server server=null;
+
+	static IntegerGenerator getServiceTimeGenerator(Properties p, String kind) throws DBException
+	{
+		String distribution=p.getProperty(DISTRIBUTION+"."+kind,p.getProperty(DISTRIBUTION,DISTRIBUTION_DEFAULT));
+		int mean=Integer.parseInt(p.getProperty(SERVICE_TIME+"."+kind,p.getProperty(SERVICE_TIME,SERVICE_TIME_DEFAULT)));
+		if (distribution.compareTo("constant")==0)
+		{
+			return new ConstantIntegerGenerator(mean);
+		}
+		else if (distribution.compareTo("uniform")==0)
+		{
+			return new UniformIntegerGenerator(0,2*mean);
+		}
+		else if (distribution.compareTo("exponential")==0)
+		{
+			return new ExponentialGenerator(mean);
+		}
+		else if (distribution.compareTo("zipfian")==0)
+		{
+			return new ScaledZipfianGenerator(mean);
+		}
+		else if (distribution.compareTo("histogram")==0)
+		{
+			String file=p.getProperty(HISTOGRAM_FILE+"."+kind,p.getProperty(HISTOGRAM_FILE,HISTOGRAM_FILE_DEFAULT));
+			try
+			{
+				return new HistogramGenerator(file);
+			}
+			catch (IOException e)
+			{
+				throw new DBException("Couldn't read service time histogram file: "+file,e);
+			}
+		}
+		throw new DBException("Unknown service time distribution \""+distribution+"\"");
+	}
+
+	/**
+	 * Printing every operation would add the console to the latencies measured, so it is off unless
+	 * basicdb.verbose asks for it.
+	 */
+	String verboseDefault()
+	{
+		return "false";
+	}
+
+	public void init() throws DBException
+	{
+		super.init();
+		synchronized (SimulatedDB.class)
+		{
+			if (server==null)
+			{
+				server=new Server(getProperties());
+				if (server.stallinterval>0)
+				{
+					server.start();
+				}
+			}
+			server.users++;
+		}
+	}
+
+	public void cleanup() throws DBException
+	{
+		synchronized (SimulatedDB.class)
+		{
+			if (--server.users==0)
+			{
+				server.interrupt();
+				server=null;
+			}
+		}
+	}
+
+	/**
+	 * Queue for a worker and hold it for a service time of the given kind, and report the latency of the server.
+	 */
+	void serve(String operation, String kind)
+	{
+		Server s=server;
+		long arrival=System.nanoTime();
+		s.queue.acquireUninterruptibly();
+		long start=System.nanoTime();
+		try
+		{
+			long deadline=start+1000L*s.servicetimes.get(kind).nextInt();
+			long remaining;
+			while ((remaining=deadline-System.nanoTime())>0)
+			{
+				LockSupport.parkNanos(remaining);
+			}
+		}
+		finally
+		{
+			s.queue.release();
+		}
+		long end=System.nanoTime();
+
+		Measurements measurements=Measurements.getMeasurements();
+		measurements.measure("SIMULATED "+operation,(int)((end-arrival)/1000));
+		measurements.measure("SIMULATED "+operation+" QUEUE",(int)((start-arrival)/1000));
+	}
+
+	public int read(String table, String key, Set<String> fields, HashMap<String,Object> result)
+	{
+		serve("READ","read");
+		return super.read(table,key,fields,result);
+	}
+
+	public int read(String table, String fieldname, Object key, Set<String> fields, HashMap<String,Object> result)
+	{
+		serve("SECONDARY READ","read");
+		return super.read(table,fieldname,key,fields,result);
+	}
+
+	public int read(String table, String fieldname, Object key, String fieldname2, Object lbdate, Object ubdate,
+			Set<String> fields, HashMap<String,Object> result)
+	{
+		serve("COMPLEX READ","read");
+		return super.read(table,fieldname,key,fieldname2,lbdate,ubdate,fields,result);
+	}
+
+	public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String,Object>> result)
+	{
+		serve("SCAN","scan");
+		return super.scan(table,startkey,recordcount,fields,result);
+	}
+
+	public int scan(String table, String fieldname, Object startkey, int recordcount, Set<String> fields,
+			Vector<HashMap<String,Object>> result)
+	{
+		serve("SECONDARAY SCAN","scan");
+		return super.scan(table,fieldname,startkey,recordcount,fields,result);
+	}
+
+	public int scan(String table, String fieldname, Object startkey, String fieldname2, Object lbdate, Object ubdate,
+			int recordcount, Set<String> fields, Vector<HashMap<String,Object>> result)
+	{
+		serve("COMPLEX SCAN","scan");
+		return super.scan(table,fieldname,startkey,fieldname2,lbdate,ubdate,recordcount,fields,result);
+	}
+
+	public int aggregate(String table, String fieldNameMatch, Object startkeyMatch, Object endkeyMatch, int aggregaterecordcount,
+			String fieldNameGroup, String groupfunction, int topNresults, Vector<HashMap<String,Object>> result)
+	{
+		serve("AGGREGATE","aggregate");
+		return super.aggregate(table,fieldNameMatch,startkeyMatch,endkeyMatch,aggregaterecordcount,fieldNameGroup,groupfunction,topNresults,result);
+	}
+
+	public int aggregate(String table, String fieldNameGroup, int len, Vector<HashMap<String,Object>> result)
+	{
+		serve("AGGREGATE","aggregate");
+		return super.aggregate(table,fieldNameGroup,len,result);
+	}
+
+	public int update(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		serve("UPDATE","update");
+		return super.update(table,key,values);
+	}
+
+	public int upsert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		serve("UPSERT","update");
+		return super.upsert(table,key,values);
+	}
+
+	public int conditionalUpdate(String table, String key, String versionfield, ByteIterator expected, HashMap<String,ByteIterator> values)
+	{
+		serve("CONDITIONAL UPDATE","update");
+		return super.conditionalUpdate(table,key,versionfield,expected,values);
+	}
+
+	public int increment(String table, String key, String field, long delta)
+	{
+		serve("INCREMENT","update");
+		return super.increment(table,key,field,delta);
+	}
+
+	public int complexinsert(String table, String key, HashMap<String,Object> values)
+	{
+		serve("COMPLEX INSERT","insert");
+		return super.complexinsert(table,key,values);
+	}
+
+	public int insert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		serve("INSERT","insert");
+		return super.insert(table,key,values);
+	}
+
+	public int delete(String table, String key)
+	{
+		serve("DELETE","delete");
+		return super.delete(table,key);
+	}
+}
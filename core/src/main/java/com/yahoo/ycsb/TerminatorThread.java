@@ -16,6 +16,8 @@
  */
 package com.yahoo.ycsb;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Vector;
 
 /**
@@ -31,14 +33,19 @@ public class TerminatorThread extends Thread {
   
   private Vector<Thread> threads;
   private long maxExecutionTime;
-  private Workload workload;
+  private List<Workload> workloads;
   private long waitTimeOutInMS;
   
   public TerminatorThread(long maxExecutionTime, Vector<Thread> threads, 
       Workload workload) {
+    this(maxExecutionTime, threads, Collections.singletonList(workload));
+  }
+
+  public TerminatorThread(long maxExecutionTime, Vector<Thread> threads,
+      List<Workload> workloads) {
     this.maxExecutionTime = maxExecutionTime;
     this.threads = threads;
-    this.workload = workload;
+    this.workloads = workloads;
     waitTimeOutInMS = 2000;
     System.err.println("Maximum execution time specified as: " + maxExecutionTime + " secs");
   }
@@ -51,7 +58,9 @@ public class TerminatorThread extends Thread {
       return;
     }
     System.err.println("Maximum time elapsed. Requesting stop for the workload.");
-    workload.requestStop();
+    for (Workload workload : workloads) {
+      workload.requestStop();
+    }
     System.err.println("Stop requested for workload. Now Joining!");
     for (Thread t : threads) {
       while (t.isAlive()) {
@@ -59,7 +68,7 @@ public class TerminatorThread extends Thread {
           t.join(waitTimeOutInMS);
           if (t.isAlive()) {
             System.err.println("Still waiting for thread " + t.getName() + " to complete. " +
-                "Workload status: " + workload.isStopRequested());
+                "Workload status: " + stopRequested());
           }
         } catch (InterruptedException e) {
           // Do nothing. Don't know why I was interrupted.
@@ -67,4 +76,18 @@ public class TerminatorThread extends Thread {
       }
     }
   }
+
+  /**
+   * @return whether a stop was requested, for each workload
+   */
+  String stopRequested() {
+    StringBuilder status = new StringBuilder();
+    for (Workload workload : workloads) {
+      if (status.length() > 0) {
+        status.append(",");
+      }
+      status.append(workload.isStopRequested());
+    }
+    return status.toString();
+  }
 }
@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+
+/**
+ * A hook that brings the database back to a comparable state between the trials of a repeated run
+ * (repeat=N), e.g. by compacting, flushing caches or undoing the writes of the previous trial.
+ * Set repeat.reset to the name of the implementing class; it needs a public no-argument constructor.
+ */
+public interface TrialReset
+{
+	/**
+	 * Called after each trial but the last, when no client threads are running.
+	 *
+	 * @param props The properties of the run
+	 * @param trial The number of the trial that just finished, starting at 1
+	 */
+	public void reset(Properties props, int trial) throws DBException;
+}
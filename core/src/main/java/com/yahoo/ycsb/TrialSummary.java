@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.yahoo.ycsb.measurements.LatencyHistogram;
+import com.yahoo.ycsb.measurements.Statistics;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.RunResult;
+
+/**
+ * Summarizes the trials of a repeated run (repeat=N): for the throughput and for the mean and percentile
+ * latencies of each operation, the value of every trial, their mean, standard deviation and 95% confidence
+ * interval, and the trials that are outliers.
+ *
+ * A trial is an outlier when its modified z-score, 0.6745*(value-median)/MAD, is more than 3.5 (Iglewicz and
+ * Hoaglin); the median and MAD are not pulled along by the outlier itself as the mean and standard deviation are.
+ * When the MAD is 0, (value-median)/(1.253314*mean absolute deviation) is used instead.
+ */
+class TrialSummary
+{
+	static final double[] PERCENTILES={95,99,99.9};
+
+	static final double OUTLIER_SCORE=3.5;
+
+	List<RunResult> trials=new ArrayList<RunResult>();
+
+	void add(RunResult trial)
+	{
+		trials.add(trial);
+	}
+
+	static double median(double[] values)
+	{
+		double[] sorted=values.clone();
+		Arrays.sort(sorted);
+		int mid=sorted.length/2;
+		return ((sorted.length%2)==1) ? sorted[mid] : (sorted[mid-1]+sorted[mid])/2;
+	}
+
+	/**
+	 * @return the indexes of the outlier values
+	 */
+	static List<Integer> outliers(double[] values)
+	{
+		List<Integer> ret=new ArrayList<Integer>();
+		if (values.length<3)
+		{
+			return ret;
+		}
+		double median=median(values);
+		double[] deviations=new double[values.length];
+		for (int i=0; i<values.length; i++)
+		{
+			deviations[i]=Math.abs(values[i]-median);
+		}
+		//with a MAD of 0 (most trials agree exactly) use the mean absolute deviation, scaled to match
+		double scale=0.6745/median(deviations);
+		if (Double.isInfinite(scale))
+		{
+			scale=1/(1.253314*Statistics.mean(deviations));
+		}
+		if (Double.isInfinite(scale))
+		{
+			return ret;
+		}
+		for (int i=0; i<values.length; i++)
+		{
+			if (deviations[i]*scale>OUTLIER_SCORE)
+			{
+				ret.add(i);
+			}
+		}
+		return ret;
+	}
+
+	void export(MeasurementsExporter exporter, String metric, String measurement, double[] values) throws IOException
+	{
+		String name="TRIALS "+metric;
+		for (int i=0; i<values.length; i++)
+		{
+			exporter.write(name, measurement+" Trial"+(i+1), values[i]);
+		}
+		exporter.write(name, measurement+" Mean", Statistics.mean(values));
+		exporter.write(name, measurement+" StdDev", Statistics.stddev(values));
+		double[] interval=Statistics.meanInterval(values);
+		if (interval!=null)
+		{
+			exporter.write(name, measurement+" 95%CILow", interval[0]);
+			exporter.write(name, measurement+" 95%CIHigh", interval[1]);
+		}
+		for (int i : outliers(values))
+		{
+			exporter.write(name, measurement+" Outlier", i+1);
+			System.err.println("Trial "+(i+1)+" is an outlier for "+metric+" "+measurement+": "+values[i]);
+		}
+	}
+
+	void exportMeasurements(MeasurementsExporter exporter) throws IOException
+	{
+		exporter.write("TRIALS", "Trials", trials.size());
+
+		double[] throughput=new double[trials.size()];
+		for (int i=0; i<trials.size(); i++)
+		{
+			throughput[i]=trials.get(i).get("OVERALL","Throughput(ops/sec)");
+		}
+		export(exporter,"OVERALL","Throughput(ops/sec)",throughput);
+
+		for (String metric : trials.get(0).histograms.keySet())
+		{
+			double[] average=new double[trials.size()];
+			double[][] percentiles=new double[PERCENTILES.length][trials.size()];
+			boolean complete=true;
+			for (int i=0; i<trials.size(); i++)
+			{
+				LatencyHistogram h=trials.get(i).histograms.get(metric);
+				if (h==null)
+				{
+					complete=false;
+					break;
+				}
+				average[i]=h.getMean();
+				for (int p=0; p<PERCENTILES.length; p++)
+				{
+					percentiles[p][i]=h.getPercentile(PERCENTILES[p]);
+				}
+			}
+			if (!complete)
+			{
+				continue;
+			}
+			export(exporter,metric,"AverageLatency(us)",average);
+			for (int p=0; p<PERCENTILES.length; p++)
+			{
+				String percentile=(PERCENTILES[p]==Math.floor(PERCENTILES[p])) ? Integer.toString((int)PERCENTILES[p]) : Double.toString(PERCENTILES[p]);
+				export(exporter,metric,percentile+"thPercentileLatency(us)",percentiles[p]);
+			}
+		}
+	}
+}
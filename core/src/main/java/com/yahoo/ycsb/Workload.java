@@ -109,4 +109,11 @@ public abstract class Workload
         if (stopRequested.get() == true) return true;
         else return false;
       }
+
+      /**
+       * Clear a stop request, so the Client can run the workload again for another trial.
+       */
+      void clearStopRequest() {
+        stopRequested.set(false);
+      }
 }
@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * One of the workloads a client runs at the same time against the same DB, e.g. a latency sensitive key-value
+ * mix next to an analytics tenant running aggregates (groups=oltp,analytics). Each group has its own workload
+ * instance, properties, threads and target, and its threads record into the measurement namespace of the group,
+ * so the operations of each group are exported under its own name, e.g. [oltp:READ].
+ *
+ * The properties of a group are the properties of the run, then those of the file group.&lt;name&gt;.propertyfile,
+ * then every group.&lt;name&gt;.&lt;property&gt;, so group.analytics.threadcount=2 sets the threadcount of the
+ * analytics group only. A run without groups is a single group without a name, whose measurements are not
+ * namespaced.
+ */
+class WorkloadGroup
+{
+	public static final String GROUPS_PROPERTY="groups";
+
+	public static final String GROUP_PREFIX="group.";
+
+	public static final String PROPERTY_FILE_PROPERTY="propertyfile";
+
+	/**
+	 * The name of the group, its measurement namespace, or null for the workload of a run without groups.
+	 */
+	String name;
+	Properties props;
+	Workload workload;
+	int threadcount;
+	int opcount;
+	double targetperthreadperms;
+
+	/**
+	 * The operations the threads of the group did in the last trial.
+	 */
+	int opsdone;
+
+	WorkloadGroup(String name, Properties props, boolean dotransactions)
+	{
+		this.name=name;
+		this.props=props;
+		threadcount=Integer.parseInt(props.getProperty("threadcount","1"));
+		int target=Integer.parseInt(props.getProperty("target","0"));
+		targetperthreadperms=-1;
+		if (target>0)
+		{
+			targetperthreadperms=(((double)target)/((double)threadcount))/1000.0;
+		}
+
+		if (dotransactions)
+		{
+			opcount=Integer.parseInt(props.getProperty(Client.OPERATION_COUNT_PROPERTY,"0"));
+		}
+		else if (props.containsKey(Client.INSERT_COUNT_PROPERTY))
+		{
+			opcount=Integer.parseInt(props.getProperty(Client.INSERT_COUNT_PROPERTY,"0"));
+		}
+		else
+		{
+			opcount=Integer.parseInt(props.getProperty(Client.RECORD_COUNT_PROPERTY,"0"));
+		}
+	}
+
+	/**
+	 * @return the properties of a group: those of the run, overridden by those of the group
+	 */
+	static Properties groupProperties(Properties props, String name) throws WorkloadException
+	{
+		Properties groupprops=new Properties();
+		groupprops.putAll(props);
+
+		String prefix=GROUP_PREFIX+name+".";
+		String propfile=props.getProperty(prefix+PROPERTY_FILE_PROPERTY);
+		if (propfile!=null)
+		{
+			try
+			{
+				FileInputStream in=new FileInputStream(propfile);
+				try
+				{
+					groupprops.load(in);
+				}
+				finally
+				{
+					in.close();
+				}
+			}
+			catch (IOException e)
+			{
+				throw new WorkloadException("Could not read the property file of group "+name+": "+e.getMessage(),e);
+			}
+		}
+
+		for (String prop : props.stringPropertyNames())
+		{
+			if (prop.startsWith(prefix))
+			{
+				groupprops.setProperty(prop.substring(prefix.length()),props.getProperty(prop));
+			}
+		}
+		return groupprops;
+	}
+
+	/**
+	 * Create the groups of a run, each with its workload loaded and initialized.
+	 */
+	static List<WorkloadGroup> create(Properties props, boolean dotransactions) throws WorkloadException
+	{
+		List<WorkloadGroup> groups=new ArrayList<WorkloadGroup>();
+		String names=props.getProperty(GROUPS_PROPERTY);
+		if (names==null)
+		{
+			groups.add(new WorkloadGroup(null,props,dotransactions));
+		}
+		else
+		{
+			for (String name : names.split(","))
+			{
+				name=name.trim();
+				if (name.length()==0)
+				{
+					continue;
+				}
+				for (WorkloadGroup g : groups)
+				{
+					if (g.name.equals(name))
+					{
+						throw new WorkloadException("Group "+name+" is listed twice in "+GROUPS_PROPERTY);
+					}
+				}
+				groups.add(new WorkloadGroup(name,groupProperties(props,name),dotransactions));
+			}
+			if (groups.isEmpty())
+			{
+				throw new WorkloadException("No group names in "+GROUPS_PROPERTY);
+			}
+		}
+
+		for (WorkloadGroup g : groups)
+		{
+			String workloadclass=g.props.getProperty(Client.WORKLOAD_PROPERTY);
+			if (workloadclass==null)
+			{
+				throw new WorkloadException("Missing property "+Client.WORKLOAD_PROPERTY+((g.name==null) ? "" : " of group "+g.name));
+			}
+			try
+			{
+				g.workload=(Workload)Client.class.getClassLoader().loadClass(workloadclass).newInstance();
+			}
+			catch (Exception e)
+			{
+				throw new WorkloadException("Could not load workload "+workloadclass+": "+e,e);
+			}
+			g.workload.init(g.props);
+		}
+		return groups;
+	}
+
+	/**
+	 * @return the threads of all the groups
+	 */
+	static int threadcount(List<WorkloadGroup> groups)
+	{
+		int threads=0;
+		for (WorkloadGroup g : groups)
+		{
+			threads+=g.threadcount;
+		}
+		return threads;
+	}
+}
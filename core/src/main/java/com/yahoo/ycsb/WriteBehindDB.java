@@ -0,0 +1,565 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.yahoo.ycsb.measurements.Counters;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * A write-behind buffer in front of the DB, to see how much coalescing repeated writes to hot keys saves the DB
+ * (dbwrappers=com.yahoo.ycsb.WriteBehindDB).
+ *
+ * Updates, upserts and inserts return as soon as they are buffered. All the client threads share one buffer, keyed
+ * by table and key, so writes to a key that is already buffered are merged into the buffered one, whichever thread
+ * made them, and the DB sees one write per key and flush. A background thread with a DB of its own writes the buffer
+ * to the DB in batches of writebehind.batchsize keys, whenever that many keys are buffered or every
+ * writebehind.interval milliseconds. A writer that finds writebehind.maxpending keys buffered flushes a batch
+ * itself, through its own DB. The writes of a key reach the DB in the order they were buffered: a write waits for
+ * the earlier writes of its key still on their way to the DB. The buffer is set up by the first layer initialized,
+ * with its properties, and written out by the last one cleaned up.
+ *
+ * Reads and the other operations go straight to the DB of the client thread, without waiting for the flushes, and
+ * do not see the buffered writes. A delete drops the buffered writes of its key, a conditional update or an
+ * increment writes them before it; both wait for the writes of their key already on their way to the DB, and for
+ * no others.
+ *
+ * Exported as [WRITEBEHIND] (the writes, the writes that reached the DB, the coalescing ratio and the batch size),
+ * [WRITEBEHIND FLUSH] (the latency of a batch) and [WRITEBEHIND STALENESS] (how long the oldest write merged into
+ * a key waited before it reached the DB, the window in which a read would not see it).
+ */
+public class WriteBehindDB extends DelegatingDB
+{
+	public static final String BATCH_SIZE="writebehind.batchsize";
+	public static final String BATCH_SIZE_DEFAULT="100";
+
+	/**
+	 * Milliseconds between flushes of a buffer that does not fill a batch.
+	 */
+	public static final String INTERVAL="writebehind.interval";
+	public static final String INTERVAL_DEFAULT="100";
+
+	public static final String MAX_PENDING="writebehind.maxpending";
+	public static final String MAX_PENDING_DEFAULT="10000";
+
+	static class WriteBehindCounters extends Counters
+	{
+		WriteBehindCounters()
+		{
+			super("WRITEBEHIND");
+		}
+
+		public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+		{
+			super.exportMeasurements(exporter);
+			long flushed=get("FlushedWrites");
+			if (flushed>0)
+			{
+				exporter.write(getName(),"CoalescingRatio",((double)get("Writes"))/flushed);
+			}
+			long batches=get("Batches");
+			if (batches>0)
+			{
+				exporter.write(getName(),"AverageBatchSize",((double)flushed)/batches);
+			}
+		}
+	}
+
+	/**
+	 * The buffered writes to a key.
+	 */
+	static class Pending
+	{
+		final String table;
+		final String key;
+		final HashMap<String,byte[]> values=new HashMap<String,byte[]>();
+		boolean insert=false;
+		boolean upsert=false;
+
+		/**
+		 * Taken out of the buffer to be written or dropped; later writes to the key start a new one.
+		 */
+		boolean flushed=false;
+
+		/**
+		 * Written to the DB, or dropped.
+		 */
+		boolean written=false;
+
+		/**
+		 * The writes to the key taken before this one, which reach the DB first.
+		 */
+		Pending previous=null;
+
+		long first=System.nanoTime();
+
+		Pending(String table, String key)
+		{
+			this.table=table;
+			this.key=key;
+		}
+
+		synchronized void done()
+		{
+			written=true;
+			notifyAll();
+		}
+
+		synchronized void awaitWritten()
+		{
+			while (!written)
+			{
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The buffer shared by the layers of all the client threads, and the thread that flushes it.
+	 */
+	static class Buffer
+	{
+		/**
+		 * The writes not taken yet, by table/key.
+		 */
+		final ConcurrentHashMap<String,Pending> pending=new ConcurrentHashMap<String,Pending>();
+
+		/**
+		 * The last writes taken of each key that are not written yet, by table/key.
+		 */
+		final ConcurrentHashMap<String,Pending> inflight=new ConcurrentHashMap<String,Pending>();
+
+		final int batchsize;
+		final long interval;
+		final int maxpending;
+		final Counters counters;
+		final Measurements measurements;
+
+		/**
+		 * The DB of the flusher, used by no client thread.
+		 */
+		final DB db;
+		final Thread flusher;
+		volatile boolean closed=false;
+
+		/**
+		 * The layers using the buffer.
+		 */
+		int users=0;
+
+		Buffer(Properties p, DB flusherdb)
+		{
+			batchsize=Integer.parseInt(p.getProperty(BATCH_SIZE,BATCH_SIZE_DEFAULT));
+			interval=Long.parseLong(p.getProperty(INTERVAL,INTERVAL_DEFAULT));
+			maxpending=Integer.parseInt(p.getProperty(MAX_PENDING,MAX_PENDING_DEFAULT));
+			measurements=Measurements.getMeasurements();
+			counters=measurements.registerCounters(new WriteBehindCounters());
+			db=flusherdb;
+
+			flusher=new Thread("writebehind-flusher")
+			{
+				public void run()
+				{
+					while (!closed)
+					{
+						synchronized (pending)
+						{
+							if ( (pending.size()<batchsize) && (!closed) )
+							{
+								try
+								{
+									pending.wait(interval);
+								}
+								catch (InterruptedException e)
+								{
+									return;
+								}
+							}
+						}
+						while (!pending.isEmpty())
+						{
+							flushBatch(db);
+						}
+					}
+				}
+			};
+			flusher.setDaemon(true);
+			flusher.start();
+		}
+
+		void close() throws DBException
+		{
+			closed=true;
+			synchronized (pending)
+			{
+				pending.notify();
+			}
+			try
+			{
+				flusher.join();
+			}
+			catch (InterruptedException e)
+			{
+				throw new DBException(e);
+			}
+			while (!pending.isEmpty())
+			{
+				flushBatch(db);
+			}
+			db.cleanup();
+		}
+
+		/**
+		 * Take the writes to a key out of the buffer, behind the writes to the key taken before.
+		 *
+		 * @return the values to write, or null if another thread took them first
+		 */
+		HashMap<String,byte[]> take(Pending p)
+		{
+			synchronized (p)
+			{
+				if (p.flushed)
+				{
+					return null;
+				}
+				p.flushed=true;
+				//in flight before it leaves the buffer, so the next writes to the key find it
+				p.previous=inflight.put(p.table+"/"+p.key,p);
+				pending.remove(p.table+"/"+p.key,p);
+				return new HashMap<String,byte[]>(p.values);
+			}
+		}
+
+		/**
+		 * Write a batch of the buffer to the DB.
+		 */
+		void flushBatch(DB db)
+		{
+			Vector<Pending> batch=new Vector<Pending>();
+			Vector<HashMap<String,byte[]>> values=new Vector<HashMap<String,byte[]>>();
+			Iterator<Pending> it=pending.values().iterator();
+			while ( (batch.size()<batchsize) && (it.hasNext()) )
+			{
+				Pending p=it.next();
+				HashMap<String,byte[]> taken=take(p);
+				if (taken!=null)
+				{
+					batch.add(p);
+					values.add(taken);
+				}
+			}
+			if (batch.isEmpty())
+			{
+				return;
+			}
+
+			long st=System.nanoTime();
+			for (int i=0; i<batch.size(); i++)
+			{
+				write(db,batch.get(i),values.get(i));
+			}
+			long en=System.nanoTime();
+			measurements.measure("WRITEBEHIND FLUSH",(int)((en-st)/1000));
+			counters.add("FlushedWrites",batch.size());
+			counters.add("Batches",1);
+		}
+
+		/**
+		 * Write the values taken from a key to the DB, after the writes to the key taken before them.
+		 */
+		void write(DB db, Pending p, HashMap<String,byte[]> values)
+		{
+			if (p.previous!=null)
+			{
+				p.previous.awaitWritten();
+				p.previous=null;
+			}
+			HashMap<String,ByteIterator> iterators=new HashMap<String,ByteIterator>();
+			for (Map.Entry<String,byte[]> value : values.entrySet())
+			{
+				iterators.put(value.getKey(),new ByteArrayByteIterator(value.getValue()));
+			}
+			int res;
+			if (p.insert)
+			{
+				res=db.insert(p.table,p.key,iterators);
+			}
+			else if (p.upsert)
+			{
+				res=db.upsert(p.table,p.key,iterators);
+			}
+			else
+			{
+				res=db.update(p.table,p.key,iterators);
+			}
+			long now=System.nanoTime();
+			measurements.measure("WRITEBEHIND STALENESS",(int)((now-p.first)/1000));
+			if (res!=0)
+			{
+				counters.add("FailedWrites",1);
+			}
+			done(p);
+		}
+
+		void done(Pending p)
+		{
+			p.done();
+			inflight.remove(p.table+"/"+p.key,p);
+		}
+
+		/**
+		 * Wait until the writes to a key taken so far reached the DB.
+		 */
+		void awaitInflight(String table, String key)
+		{
+			Pending last=inflight.get(table+"/"+key);
+			if (last!=null)
+			{
+				last.awaitWritten();
+			}
+		}
+	}
+
+	static Buffer shared=null;
+
+	Buffer buffer;
+
+	public WriteBehindDB(DB db)
+	{
+		super(db);
+	}
+
+	/**
+	 * @return a new instance of a chain of layers and DB, with the same classes and properties
+	 */
+	static DB newChain(DB db) throws DBException
+	{
+		try
+		{
+			if (db instanceof DelegatingDB)
+			{
+				return db.getClass().getConstructor(DB.class).newInstance(newChain(((DelegatingDB)db)._db));
+			}
+			DB copy=db.getClass().newInstance();
+			copy.setProperties(db.getProperties());
+			return copy;
+		}
+		catch (DBException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new DBException("Could not create a DB for the write-behind flusher: "+e);
+		}
+	}
+
+	public void init() throws DBException
+	{
+		super.init();
+		synchronized (WriteBehindDB.class)
+		{
+			if (shared==null)
+			{
+				DB flusherdb=newChain(_db);
+				flusherdb.init();
+				shared=new Buffer(getProperties(),flusherdb);
+			}
+			shared.users++;
+			buffer=shared;
+		}
+	}
+
+	public void cleanup() throws DBException
+	{
+		synchronized (WriteBehindDB.class)
+		{
+			buffer.users--;
+			if (buffer.users==0)
+			{
+				buffer.close();
+				shared=null;
+			}
+		}
+		super.cleanup();
+	}
+
+	/**
+	 * Merge a write into the buffer. An insert replaces the buffered writes of its key; an upsert merged with
+	 * updates is written as an upsert of all their values, unless an insert is buffered.
+	 */
+	int buffer(String table, String key, HashMap<String,ByteIterator> values, boolean insert, boolean upsert)
+	{
+		HashMap<String,byte[]> bytes=new HashMap<String,byte[]>();
+		for (Map.Entry<String,ByteIterator> value : values.entrySet())
+		{
+			bytes.put(value.getKey(),value.getValue().toArray());
+		}
+
+		String bufferkey=table+"/"+key;
+		while (true)
+		{
+			Pending p=buffer.pending.get(bufferkey);
+			if (p==null)
+			{
+				//fill it in before the flusher can see it
+				Pending fresh=new Pending(table,key);
+				fresh.insert=insert;
+				fresh.upsert=upsert;
+				fresh.values.putAll(bytes);
+				p=buffer.pending.putIfAbsent(bufferkey,fresh);
+				if (p==null)
+				{
+					break;
+				}
+			}
+			synchronized (p)
+			{
+				if (p.flushed)
+				{
+					//taken by a flush in the meantime
+					continue;
+				}
+				if (insert)
+				{
+					p.values.clear();
+					p.insert=true;
+					p.upsert=false;
+				}
+				else if (upsert && !p.insert)
+				{
+					p.upsert=true;
+				}
+				p.values.putAll(bytes);
+			}
+			break;
+		}
+		buffer.counters.add("Writes",1);
+
+		int size=buffer.pending.size();
+		if (size>=buffer.maxpending)
+		{
+			buffer.counters.add("WriterFlushes",1);
+			buffer.flushBatch(_db);
+		}
+		else if (size>=buffer.batchsize)
+		{
+			synchronized (buffer.pending)
+			{
+				buffer.pending.notify();
+			}
+		}
+		return 0;
+	}
+
+	public int insert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		return buffer(table,key,values,true,false);
+	}
+
+	public int update(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		return buffer(table,key,values,false,false);
+	}
+
+	public int upsert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		return buffer(table,key,values,false,true);
+	}
+
+	/**
+	 * Write the buffered writes of a key to the DB ahead of the others, and wait for those already on their way.
+	 */
+	void flushKey(String table, String key)
+	{
+		Pending p=buffer.pending.get(table+"/"+key);
+		HashMap<String,byte[]> taken=(p==null) ? null : buffer.take(p);
+		if (taken!=null)
+		{
+			buffer.write(_db,p,taken);
+			buffer.counters.add("FlushedWrites",1);
+		}
+		else
+		{
+			buffer.awaitInflight(table,key);
+		}
+	}
+
+	/**
+	 * A conditional update needs the answer of the DB, so it is not buffered: the buffered writes of its key are
+	 * written first, then the update goes to the DB.
+	 */
+	public int conditionalUpdate(String table, String key, String versionfield, ByteIterator expected, HashMap<String,ByteIterator> values)
+	{
+		flushKey(table,key);
+		return _db.conditionalUpdate(table,key,versionfield,expected,values);
+	}
+
+	/**
+	 * An increment is applied by the DB to the value it holds, so it goes to the DB after the buffered writes of
+	 * its key, like a conditional update.
+	 */
+	public int increment(String table, String key, String field, long delta)
+	{
+		flushKey(table,key);
+		return _db.increment(table,key,field,delta);
+	}
+
+	public int delete(String table, String key)
+	{
+		Pending p=buffer.pending.get(table+"/"+key);
+		if ( (p!=null) && (buffer.take(p)!=null) )
+		{
+			//dropped, once the writes to the key taken before it are written
+			if (p.previous!=null)
+			{
+				p.previous.awaitWritten();
+			}
+			buffer.done(p);
+			buffer.counters.add("DroppedWrites",1);
+		}
+		buffer.awaitInflight(table,key);
+		return _db.delete(table,key);
+	}
+
+	public int read(String table, String key, Set<String> fields, HashMap<String,Object> result)
+	{
+		if (buffer.pending.containsKey(table+"/"+key) || buffer.inflight.containsKey(table+"/"+key))
+		{
+			buffer.counters.add("StaleReads",1);
+		}
+		return _db.read(table,key,fields,result);
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.cache;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * The clock approximation of LRU: an access only sets a flag, and the hand going round the entries to find one
+ * to evict gives the flagged ones a second chance.
+ */
+public class ClockPolicy extends EvictionPolicy
+{
+	static class Node extends Entry
+	{
+		String key;
+		boolean referenced=false;
+		boolean removed=false;
+
+		Node(String key, Object value, long weight)
+		{
+			super(value,weight);
+			this.key=key;
+		}
+	}
+
+	HashMap<String,Node> entries=new HashMap<String,Node>();
+
+	//the entries in clock order, the hand at the head; removed entries are dropped when the hand reaches them
+	ArrayDeque<Node> clock=new ArrayDeque<Node>();
+
+	public ClockPolicy(long capacity)
+	{
+		super(capacity);
+	}
+
+	public Object get(String key)
+	{
+		Node n=entries.get(key);
+		if (n==null)
+		{
+			return null;
+		}
+		n.referenced=true;
+		return n.value;
+	}
+
+	public int put(String key, Object value, long w)
+	{
+		Node n=entries.get(key);
+		if (n!=null)
+		{
+			weight+=w-n.weight;
+			n.value=value;
+			n.weight=w;
+			n.referenced=true;
+		}
+		else
+		{
+			n=new Node(key,value,w);
+			entries.put(key,n);
+			clock.addLast(n);
+			weight+=w;
+		}
+
+		int evicted=0;
+		while ( (weight>capacity) && (!clock.isEmpty()) )
+		{
+			Node hand=clock.pollFirst();
+			if (hand.removed)
+			{
+				continue;
+			}
+			if (hand.referenced)
+			{
+				hand.referenced=false;
+				clock.addLast(hand);
+			}
+			else
+			{
+				entries.remove(hand.key);
+				weight-=hand.weight;
+				evicted++;
+			}
+		}
+		return evicted;
+	}
+
+	public boolean remove(String key)
+	{
+		Node n=entries.remove(key);
+		if (n!=null)
+		{
+			n.removed=true;
+			weight-=n.weight;
+			if (clock.size()>2*entries.size()+16)
+			{
+				//mostly removed entries, e.g. with invalidate on update; don't let them pile up
+				ArrayDeque<Node> live=new ArrayDeque<Node>(entries.size());
+				for (Node c : clock)
+				{
+					if (!c.removed)
+					{
+						live.addLast(c);
+					}
+				}
+				clock=live;
+			}
+		}
+		return n!=null;
+	}
+}
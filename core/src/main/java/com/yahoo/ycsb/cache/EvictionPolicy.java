@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.cache;
+
+/**
+ * A bounded map from key to value that decides which entries to evict when it is full. The capacity is a
+ * total weight: 1 per entry to bound the number of entries, or the size of each value to bound the bytes.
+ *
+ * Not thread safe; CachingDB splits its cache into segments, each with its own policy and lock.
+ */
+public abstract class EvictionPolicy
+{
+	/**
+	 * A cached value and its weight.
+	 */
+	static class Entry
+	{
+		Object value;
+		long weight;
+
+		Entry(Object value, long weight)
+		{
+			this.value=value;
+			this.weight=weight;
+		}
+	}
+
+	protected long capacity;
+
+	protected long weight=0;
+
+	protected EvictionPolicy(long capacity)
+	{
+		this.capacity=capacity;
+	}
+
+	/**
+	 * Create a policy by name: lru, clock or tinylfu.
+	 *
+	 * @param expectedentries the number of entries the capacity holds, to size the tinylfu frequency sketch
+	 */
+	public static EvictionPolicy create(String name, long capacity, long expectedentries)
+	{
+		if (name.compareTo("lru")==0)
+		{
+			return new LruPolicy(capacity);
+		}
+		else if (name.compareTo("clock")==0)
+		{
+			return new ClockPolicy(capacity);
+		}
+		else if (name.compareTo("tinylfu")==0)
+		{
+			return new TinyLfuPolicy(capacity,expectedentries);
+		}
+		throw new IllegalArgumentException("Unknown eviction policy \""+name+"\"");
+	}
+
+	/**
+	 * @return the value of the key, or null if it is not cached; counts as an access
+	 */
+	public abstract Object get(String key);
+
+	/**
+	 * Add or replace the value of a key, evicting entries until the total weight fits the capacity. A value
+	 * heavier than the whole capacity is not kept. Not an access: a value is usually put after a get missed, which
+	 * already counted it.
+	 *
+	 * @return the number of entries evicted
+	 */
+	public abstract int put(String key, Object value, long weight);
+
+	/**
+	 * @return whether the key was cached
+	 */
+	public abstract boolean remove(String key);
+
+	/**
+	 * @return the total weight of the cached entries
+	 */
+	public long getWeight()
+	{
+		return weight;
+	}
+}
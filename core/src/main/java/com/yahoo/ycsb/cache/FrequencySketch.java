@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.cache;
+
+/**
+ * A count-min sketch of how often keys were accessed recently, for TinyLfuPolicy: four rows of counters
+ * that saturate at 15, all halved once the number of accesses reaches ten times the width, so old
+ * popularity fades.
+ */
+public class FrequencySketch
+{
+	static final int ROWS=4;
+	static final int MAX=15;
+	static final int[] SEEDS={0x9E3779B9,0x85EBCA6B,0xC2B2AE35,0x27D4EB2F};
+
+	int[][] counters;
+	int mask;
+	long accesses=0;
+	long resetafter;
+
+	/**
+	 * @param expectedentries the number of entries in the cache; the width is the next power of two
+	 */
+	public FrequencySketch(long expectedentries)
+	{
+		int width=Integer.highestOneBit((int)Math.max(16,Math.min(1<<24,expectedentries))-1)<<1;
+		counters=new int[ROWS][width];
+		mask=width-1;
+		resetafter=10L*width;
+	}
+
+	int index(String key, int row)
+	{
+		int h=key.hashCode()*SEEDS[row];
+		h^=h>>>16;
+		return h&mask;
+	}
+
+	public void increment(String key)
+	{
+		for (int row=0; row<ROWS; row++)
+		{
+			int i=index(key,row);
+			if (counters[row][i]<MAX)
+			{
+				counters[row][i]++;
+			}
+		}
+		if (++accesses>=resetafter)
+		{
+			for (int[] row : counters)
+			{
+				for (int i=0; i<row.length; i++)
+				{
+					row[i]>>>=1;
+				}
+			}
+			accesses/=2;
+		}
+	}
+
+	public int frequency(String key)
+	{
+		int min=MAX;
+		for (int row=0; row<ROWS; row++)
+		{
+			min=Math.min(min,counters[row][index(key,row)]);
+		}
+		return min;
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Evicts the least recently used entry.
+ */
+public class LruPolicy extends EvictionPolicy
+{
+	LinkedHashMap<String,Entry> entries=new LinkedHashMap<String,Entry>(16,0.75f,true);
+
+	public LruPolicy(long capacity)
+	{
+		super(capacity);
+	}
+
+	public Object get(String key)
+	{
+		Entry e=entries.get(key);
+		return (e==null) ? null : e.value;
+	}
+
+	public int put(String key, Object value, long w)
+	{
+		Entry old=entries.put(key,new Entry(value,w));
+		weight+=w-((old==null) ? 0 : old.weight);
+		int evicted=0;
+		Iterator<Entry> eldest=entries.values().iterator();
+		while ( (weight>capacity) && (eldest.hasNext()) )
+		{
+			weight-=eldest.next().weight;
+			eldest.remove();
+			evicted++;
+		}
+		return evicted;
+	}
+
+	public boolean remove(String key)
+	{
+		Entry old=entries.remove(key);
+		if (old!=null)
+		{
+			weight-=old.weight;
+		}
+		return old!=null;
+	}
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * W-TinyLFU: new entries go to a small LRU window (1% of the capacity); an entry leaving the window only
+ * enters the main segmented LRU if it was accessed more often, according to a FrequencySketch, than the entry
+ * it would evict. The main space is split into a probation part and a protected part (80%) for the entries
+ * that were accessed again while on probation.
+ */
+public class TinyLfuPolicy extends EvictionPolicy
+{
+	LinkedHashMap<String,Entry> window=new LinkedHashMap<String,Entry>(16,0.75f,true);
+	LinkedHashMap<String,Entry> probation=new LinkedHashMap<String,Entry>(16,0.75f,true);
+	LinkedHashMap<String,Entry> protect=new LinkedHashMap<String,Entry>(16,0.75f,true);
+	long windowweight=0;
+	long protectweight=0;
+	long windowcapacity;
+	long protectcapacity;
+
+	FrequencySketch sketch;
+
+	public TinyLfuPolicy(long capacity, long expectedentries)
+	{
+		super(capacity);
+		windowcapacity=Math.max(1,capacity/100);
+		protectcapacity=(long)(0.8*(capacity-windowcapacity));
+		sketch=new FrequencySketch(expectedentries);
+	}
+
+	public Object get(String key)
+	{
+		sketch.increment(key);
+		Entry e=window.get(key);
+		if (e==null)
+		{
+			e=protect.get(key);
+		}
+		if ( (e==null) && ((e=probation.remove(key))!=null) )
+		{
+			//accessed again on probation
+			protect.put(key,e);
+			protectweight+=e.weight;
+			demote();
+		}
+		return (e==null) ? null : e.value;
+	}
+
+	/**
+	 * Move the least recently used protected entries back to probation while protected is over its capacity.
+	 */
+	void demote()
+	{
+		Iterator<Map.Entry<String,Entry>> eldest=protect.entrySet().iterator();
+		while ( (protectweight>protectcapacity) && (eldest.hasNext()) )
+		{
+			Map.Entry<String,Entry> e=eldest.next();
+			eldest.remove();
+			protectweight-=e.getValue().weight;
+			probation.put(e.getKey(),e.getValue());
+		}
+	}
+
+	public int put(String key, Object value, long w)
+	{
+		Entry e=window.get(key);
+		if (e==null)
+		{
+			e=protect.get(key);
+			if (e!=null)
+			{
+				protectweight+=w-e.weight;
+			}
+		}
+		if (e==null)
+		{
+			e=probation.get(key);
+		}
+		if (e!=null)
+		{
+			if (window.containsKey(key))
+			{
+				windowweight+=w-e.weight;
+			}
+			weight+=w-e.weight;
+			e.value=value;
+			e.weight=w;
+		}
+		else
+		{
+			window.put(key,new Entry(value,w));
+			windowweight+=w;
+			weight+=w;
+		}
+
+		int evicted=0;
+		Iterator<Map.Entry<String,Entry>> eldest=window.entrySet().iterator();
+		while ( (windowweight>windowcapacity) && (eldest.hasNext()) )
+		{
+			Map.Entry<String,Entry> candidate=eldest.next();
+			eldest.remove();
+			windowweight-=candidate.getValue().weight;
+			evicted+=admit(candidate.getKey(),candidate.getValue());
+		}
+		demote();
+		evicted+=evictMain();
+		return evicted;
+	}
+
+	/**
+	 * Move an entry leaving the window to probation if it wins against the entries it would evict.
+	 *
+	 * @return the number of entries evicted
+	 */
+	int admit(String key, Entry candidate)
+	{
+		int evicted=0;
+		int frequency=sketch.frequency(key);
+		while (weight-windowweight>capacity-windowcapacity)
+		{
+			LinkedHashMap<String,Entry> from=probation.isEmpty() ? protect : probation;
+			if (from.isEmpty())
+			{
+				break;
+			}
+			Map.Entry<String,Entry> victim=from.entrySet().iterator().next();
+			if (sketch.frequency(victim.getKey())>=frequency)
+			{
+				weight-=candidate.weight;
+				return evicted+1;
+			}
+			from.remove(victim.getKey());
+			weight-=victim.getValue().weight;
+			if (from==protect)
+			{
+				protectweight-=victim.getValue().weight;
+			}
+			evicted++;
+		}
+		probation.put(key,candidate);
+		return evicted;
+	}
+
+	/**
+	 * Evict from probation, then protected, while the whole cache is over its capacity, e.g. after an entry grew.
+	 */
+	int evictMain()
+	{
+		int evicted=0;
+		while (weight>capacity)
+		{
+			LinkedHashMap<String,Entry> from=probation.isEmpty() ? protect : probation;
+			if (from.isEmpty())
+			{
+				from=window;
+			}
+			if (from.isEmpty())
+			{
+				break;
+			}
+			Map.Entry<String,Entry> victim=from.entrySet().iterator().next();
+			from.remove(victim.getKey());
+			weight-=victim.getValue().weight;
+			if (from==protect)
+			{
+				protectweight-=victim.getValue().weight;
+			}
+			else if (from==window)
+			{
+				windowweight-=victim.getValue().weight;
+			}
+			evicted++;
+		}
+		return evicted;
+	}
+
+	public boolean remove(String key)
+	{
+		Entry e=window.remove(key);
+		if (e!=null)
+		{
+			windowweight-=e.weight;
+		}
+		else if ((e=protect.remove(key))!=null)
+		{
+			protectweight-=e.weight;
+		}
+		else
+		{
+			e=probation.remove(key);
+		}
+		if (e!=null)
+		{
+			weight-=e.weight;
+		}
+		return e!=null;
+	}
+}
@@ -0,0 +1,211 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.compress;
+
+import java.util.Arrays;
+
+/**
+ * Compresses field values. A compressed value is framed as the id of the codec, the length of the raw value as
+ * a varint, and the compressed bytes; a value that does not get smaller is stored raw under the none codec, so
+ * every value can be decoded whichever codec wrote it.
+ *
+ * Not thread safe: a codec reuses its output buffer and its compressor state, so each client thread has its own.
+ */
+public abstract class Codec
+{
+	public static final int NONE=0;
+	public static final int DEFLATE=1;
+	public static final int LZ=2;
+
+	/**
+	 * The output buffer, reused across values and grown as needed.
+	 */
+	protected byte[] buffer=new byte[1024];
+
+	String name;
+
+	/**
+	 * Create a codec by name: none, lz, deflate, or deflate:<level> with a level from 1 to 9.
+	 */
+	public static Codec create(String name)
+	{
+		Codec codec;
+		if (name.compareTo("none")==0)
+		{
+			codec=new NoneCodec();
+		}
+		else if (name.compareTo("lz")==0)
+		{
+			codec=new LzCodec();
+		}
+		else if (name.compareTo("deflate")==0)
+		{
+			codec=new DeflateCodec(6);
+		}
+		else if (name.startsWith("deflate:"))
+		{
+			int level;
+			try
+			{
+				level=Integer.parseInt(name.substring("deflate:".length()));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new IllegalArgumentException("Bad deflate level in \""+name+"\"");
+			}
+			if ( (level<1) || (level>9) )
+			{
+				throw new IllegalArgumentException("Bad deflate level in \""+name+"\"");
+			}
+			codec=new DeflateCodec(level);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown codec \""+name+"\"");
+		}
+		codec.name=name;
+		return codec;
+	}
+
+	/**
+	 * @return a codec for each id, to decode values written by any codec
+	 */
+	public static Codec[] decoders()
+	{
+		Codec[] decoders=new Codec[3];
+		decoders[NONE]=create("none");
+		decoders[DEFLATE]=create("deflate");
+		decoders[LZ]=create("lz");
+		return decoders;
+	}
+
+	/**
+	 * @return the id of the codec that wrote a framed value, or -1 if it is not one
+	 */
+	public static int idOf(byte[] framed)
+	{
+		if ( (framed.length<2) || (framed[0]<NONE) || (framed[0]>LZ) )
+		{
+			return -1;
+		}
+		return framed[0];
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	protected abstract int id();
+
+	/**
+	 * Compress a value into the buffer, from an offset.
+	 *
+	 * @return the end of the compressed bytes in the buffer, or -1 if they would not be smaller than the value
+	 */
+	protected abstract int compress(byte[] src, int off);
+
+	/**
+	 * Decompress len bytes from an offset into dst, which has the length of the raw value.
+	 */
+	protected abstract void decompress(byte[] src, int off, int len, byte[] dst);
+
+	/**
+	 * @return the largest raw length that len compressed bytes can decompress to
+	 */
+	protected abstract long maxLength(int len);
+
+	/**
+	 * @return the framed value
+	 */
+	public byte[] encode(byte[] raw)
+	{
+		int off=putHeader(id(),raw.length);
+		int end=compress(raw,off);
+		if ( (end<0) || (end-off>=raw.length) )
+		{
+			off=putHeader(NONE,raw.length);
+			end=off+raw.length;
+			ensure(end);
+			System.arraycopy(raw,0,buffer,off,raw.length);
+		}
+		return Arrays.copyOf(buffer,end);
+	}
+
+	/**
+	 * @return the raw value of a value framed by this codec
+	 */
+	public byte[] decode(byte[] framed)
+	{
+		int length=0;
+		int shift=0;
+		int off=1;
+		byte b;
+		do
+		{
+			if ( (off>=framed.length) || (shift>28) )
+			{
+				throw new IllegalArgumentException("Truncated value");
+			}
+			b=framed[off++];
+			length|=(b&0x7f)<<shift;
+			shift+=7;
+		} while (b<0);
+		//checked before allocating, a corrupt length could be anything
+		if ( (length<0) || (length>maxLength(framed.length-off)) )
+		{
+			throw new IllegalArgumentException("Corrupt value");
+		}
+		byte[] raw=new byte[length];
+		decompress(framed,off,framed.length-off,raw);
+		return raw;
+	}
+
+	int putHeader(int id, int length)
+	{
+		ensure(6);
+		buffer[0]=(byte)id;
+		return putVarint(1,length);
+	}
+
+	/**
+	 * Make the buffer at least size bytes long, keeping its contents.
+	 */
+	protected void ensure(int size)
+	{
+		if (buffer.length<size)
+		{
+			buffer=Arrays.copyOf(buffer,Math.max(size,buffer.length*2));
+		}
+	}
+
+	/**
+	 * @return the offset after the varint
+	 */
+	protected int putVarint(int off, int value)
+	{
+		ensure(off+5);
+		while ((value&~0x7f)!=0)
+		{
+			buffer[off++]=(byte)((value&0x7f)|0x80);
+			value>>>=7;
+		}
+		buffer[off++]=(byte)value;
+		return off;
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.compress;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Raw deflate (no zlib header or checksum) at a given level, reusing its Deflater and Inflater.
+ */
+class DeflateCodec extends Codec
+{
+	/**
+	 * The largest compression ratio deflate can reach.
+	 */
+	static final int MAX_RATIO=1032;
+
+	Deflater deflater;
+	Inflater inflater=new Inflater(true);
+
+	DeflateCodec(int level)
+	{
+		deflater=new Deflater(level,true);
+	}
+
+	protected int id()
+	{
+		return DEFLATE;
+	}
+
+	protected long maxLength(int len)
+	{
+		return ((long)len)*MAX_RATIO;
+	}
+
+	protected int compress(byte[] src, int off)
+	{
+		deflater.reset();
+		deflater.setInput(src);
+		deflater.finish();
+		int end=off;
+		int limit=off+src.length;
+		ensure(limit);
+		while (!deflater.finished())
+		{
+			if (end>=limit)
+			{
+				return -1;
+			}
+			end+=deflater.deflate(buffer,end,limit-end);
+		}
+		return end;
+	}
+
+	protected void decompress(byte[] src, int off, int len, byte[] dst)
+	{
+		inflater.reset();
+		inflater.setInput(src,off,len);
+		try
+		{
+			int n=0;
+			while (n<dst.length)
+			{
+				int inflated=inflater.inflate(dst,n,dst.length-n);
+				if ( (inflated==0) && (inflater.needsInput() || inflater.finished()) )
+				{
+					throw new IllegalArgumentException("Truncated value");
+				}
+				n+=inflated;
+			}
+		}
+		catch (DataFormatException e)
+		{
+			throw new IllegalArgumentException("Corrupt value: "+e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.compress;
+
+/**
+ * A byte oriented LZ77 codec in the style of LZ4: it only replaces repeats of 4 or more bytes within the last
+ * 64KB by a back reference, found through a hash of the next 4 bytes, and does no entropy coding. Much cheaper
+ * than deflate, and compresses less.
+ *
+ * The compressed value is a series of sequences: the number of literal bytes as a varint, the literals, then,
+ * unless the value is complete, the offset of the match as 2 bytes and its length minus 4 as a varint of at most
+ * 2 bytes, so a corrupt value cannot claim more than a bounded length for its size.
+ */
+class LzCodec extends Codec
+{
+	static final int HASH_BITS=12;
+	static final int MIN_MATCH=4;
+	static final int MAX_OFFSET=65535;
+	static final int MAX_MATCH=MIN_MATCH+0x3fff;
+
+	/**
+	 * Positions by hash, offset by base so that the entries of previous values need not be cleared.
+	 */
+	int[] table=new int[1<<HASH_BITS];
+	int base=1;
+
+	int next;
+
+	protected int id()
+	{
+		return LZ;
+	}
+
+	static int read32(byte[] b, int i)
+	{
+		return (b[i]&0xff)|((b[i+1]&0xff)<<8)|((b[i+2]&0xff)<<16)|((b[i+3]&0xff)<<24);
+	}
+
+	static int hash(int v)
+	{
+		return (v*-1640531535)>>>(32-HASH_BITS);
+	}
+
+	protected int compress(byte[] src, int off)
+	{
+		int n=src.length;
+		if (base>Integer.MAX_VALUE-n-1)
+		{
+			java.util.Arrays.fill(table,0);
+			base=1;
+		}
+		int limit=off+n;
+		int out=off;
+		int anchor=0;
+		int i=0;
+		while (i+MIN_MATCH<=n)
+		{
+			int v=read32(src,i);
+			int h=hash(v);
+			int ref=table[h]-base;
+			table[h]=base+i;
+			if ( (ref<0) || (i-ref>MAX_OFFSET) || (read32(src,ref)!=v) )
+			{
+				i++;
+				continue;
+			}
+			int length=MIN_MATCH;
+			while ( (i+length<n) && (length<MAX_MATCH) && (src[ref+length]==src[i+length]) )
+			{
+				length++;
+			}
+
+			out=putLiterals(out,src,anchor,i-anchor);
+			ensure(out+7);
+			buffer[out++]=(byte)(i-ref);
+			buffer[out++]=(byte)((i-ref)>>>8);
+			out=putVarint(out,length-MIN_MATCH);
+			if (out>=limit)
+			{
+				return -1;
+			}
+			i+=length;
+			anchor=i;
+		}
+		if (anchor<n)
+		{
+			out=putLiterals(out,src,anchor,n-anchor);
+		}
+		base+=n+1;
+		return out;
+	}
+
+	int putLiterals(int out, byte[] src, int from, int count)
+	{
+		out=putVarint(out,count);
+		ensure(out+count);
+		System.arraycopy(src,from,buffer,out,count);
+		return out+count;
+	}
+
+	/**
+	 * A match takes at least 4 bytes of its sequence, and a literal a byte.
+	 */
+	protected long maxLength(int len)
+	{
+		return ((long)len)*(MAX_MATCH/4+1);
+	}
+
+	protected void decompress(byte[] src, int off, int len, byte[] dst)
+	{
+		int end=off+len;
+		int in=off;
+		int out=0;
+		try
+		{
+			while (out<dst.length)
+			{
+				int literals=readVarint(src,in,end);
+				in=next;
+				if ( (in+literals>end) || (out+literals>dst.length) )
+				{
+					throw new IllegalArgumentException("Corrupt value");
+				}
+				System.arraycopy(src,in,dst,out,literals);
+				in+=literals;
+				out+=literals;
+				if (out==dst.length)
+				{
+					break;
+				}
+
+				if (in+2>end)
+				{
+					throw new IllegalArgumentException("Truncated value");
+				}
+				int offset=(src[in]&0xff)|((src[in+1]&0xff)<<8);
+				in+=2;
+				int length=readVarint(src,in,end)+MIN_MATCH;
+				in=next;
+				int from=out-offset;
+				if ( (offset==0) || (from<0) || (length>MAX_MATCH) || (out+length>dst.length) )
+				{
+					throw new IllegalArgumentException("Corrupt value");
+				}
+				//byte by byte, the match may overlap what it copies
+				for (int k=0; k<length; k++)
+				{
+					dst[out++]=dst[from+k];
+				}
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			throw new IllegalArgumentException("Corrupt value");
+		}
+	}
+
+	/**
+	 * @return the value; sets next to the offset after it
+	 */
+	int readVarint(byte[] src, int in, int end)
+	{
+		int value=0;
+		int shift=0;
+		byte b;
+		do
+		{
+			if ( (in>=end) || (shift>28) )
+			{
+				throw new IllegalArgumentException("Truncated value");
+			}
+			b=src[in++];
+			value|=(b&0x7f)<<shift;
+			shift+=7;
+		} while (b<0);
+		next=in;
+		return value;
+	}
+}
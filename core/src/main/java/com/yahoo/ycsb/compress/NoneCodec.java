@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.compress;
+
+/**
+ * Stores values as they are, to measure the cost of the layer itself.
+ */
+class NoneCodec extends Codec
+{
+	protected int id()
+	{
+		return NONE;
+	}
+
+	protected int compress(byte[] src, int off)
+	{
+		return -1;
+	}
+
+	protected long maxLength(int len)
+	{
+		return len;
+	}
+
+	protected void decompress(byte[] src, int off, int len, byte[] dst)
+	{
+		if (len!=dst.length)
+		{
+			throw new IllegalArgumentException("Corrupt value");
+		}
+		System.arraycopy(src,off,dst,0,len);
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Counts the payload bytes sent (bytes in) and received (bytes out) by one kind of operation, such as READ.
+ * Keeps the totals, a bytes/sec time series and a power-of-two histogram of the payload size of each operation.
+ * Only atomic adds are done per operation, but sizing the values and results of each operation is not free, so
+ * this is off unless bytecounts=true.
+ */
+public class ByteCounts
+{
+	/**
+	 * Whether to count payload bytes.
+	 */
+	public static final String ENABLED="bytecounts";
+	public static final String ENABLED_DEFAULT="false";
+
+	/**
+	 * Granularity of the bytes/sec time series. Units are milliseconds.
+	 */
+	public static final String GRANULARITY="bytecounts.granularity";
+	public static final String GRANULARITY_DEFAULT="1000";
+
+	/**
+	 * Bucket i counts the operations with a payload of less than 2^i bytes; the last one everything larger.
+	 */
+	static final int SIZE_BUCKETS=40;
+
+	String _name;
+	int _granularity;
+
+	AtomicLong operations=new AtomicLong(0);
+	AtomicLong bytesin=new AtomicLong(0);
+	AtomicLong bytesout=new AtomicLong(0);
+	AtomicLongArray sizes=new AtomicLongArray(SIZE_BUCKETS);
+
+	long start;
+	volatile long currentunit=0;
+	AtomicLong unitin=new AtomicLong(0);
+	AtomicLong unitout=new AtomicLong(0);
+
+	/**
+	 * Completed time series intervals, as {start of the interval in ms, bytes in, bytes out}.
+	 */
+	Vector<long[]> series=new Vector<long[]>();
+
+	public ByteCounts(String name, int granularity)
+	{
+		_name=name;
+		_granularity=granularity;
+		start=System.currentTimeMillis();
+	}
+
+	public String getName()
+	{
+		return _name;
+	}
+
+	/**
+	 * Count the payload of one operation.
+	 */
+	public void report(long in, long out)
+	{
+		long unit=((System.currentTimeMillis()-start)/_granularity)*_granularity;
+		if (unit!=currentunit)
+		{
+			endOfUnit(unit);
+		}
+
+		operations.incrementAndGet();
+		bytesin.addAndGet(in);
+		bytesout.addAndGet(out);
+		unitin.addAndGet(in);
+		unitout.addAndGet(out);
+
+		long size=in+out;
+		int bucket=(size==0) ? 0 : 64-Long.numberOfLeadingZeros(size);
+		sizes.incrementAndGet(Math.min(bucket,SIZE_BUCKETS-1));
+	}
+
+	synchronized void endOfUnit(long unit)
+	{
+		if (unit<=currentunit)
+		{
+			return;
+		}
+		flushUnit();
+		currentunit=unit;
+	}
+
+	/**
+	 * Add the bytes of the current interval so far to the time series, adding to the interval if it is there
+	 * already, so an export in the middle of an interval leaves it open for the reports that follow.
+	 */
+	synchronized void flushUnit()
+	{
+		long in=unitin.getAndSet(0);
+		long out=unitout.getAndSet(0);
+		if ( (in==0) && (out==0) )
+		{
+			return;
+		}
+		long[] last=series.isEmpty() ? null : series.lastElement();
+		if ( (last!=null) && (last[0]==currentunit) )
+		{
+			last[1]+=in;
+			last[2]+=out;
+		}
+		else
+		{
+			series.add(new long[]{currentunit,in,out});
+		}
+	}
+
+	public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+	{
+		flushUnit();
+
+		long ops=operations.get();
+		//the run ends with the last interval that saw any bytes
+		double seconds=series.isEmpty() ? 0 : (series.lastElement()[0]+_granularity)/1000.0;
+		exporter.write(getName(), "BytesIn", (double)bytesin.get());
+		exporter.write(getName(), "BytesOut", (double)bytesout.get());
+		if (ops>0)
+		{
+			exporter.write(getName(), "AverageBytesIn(bytes/op)", ((double)bytesin.get())/((double)ops));
+			exporter.write(getName(), "AverageBytesOut(bytes/op)", ((double)bytesout.get())/((double)ops));
+		}
+		if (seconds>0)
+		{
+			exporter.write(getName(), "Bandwidth(MB/sec)", (bytesin.get()+bytesout.get())/1048576.0/seconds);
+		}
+
+		for (int i=0; i<SIZE_BUCKETS; i++)
+		{
+			long count=sizes.get(i);
+			if (count>0)
+			{
+				String bucket=(i==SIZE_BUCKETS-1) ? ">="+(1L<<(i-1)) : "<"+(1L<<i);
+				exporter.write(getName(), "Size"+bucket+"(bytes)", (int)count);
+			}
+		}
+
+		double persecond=1000.0/_granularity;
+		for (long[] unit : series)
+		{
+			exporter.write(getName(), "BytesIn@"+unit[0]+"(bytes/sec)", unit[1]*persecond);
+			exporter.write(getName(), "BytesOut@"+unit[0]+"(bytes/sec)", unit[2]*persecond);
+		}
+	}
+}
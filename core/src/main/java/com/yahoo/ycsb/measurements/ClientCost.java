@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * The client side cost of one kind of operation, such as READ: the CPU time and the heap
+ * allocated by the calling thread while the DB binding executed the operation.
+ * Samples are taken by DBWrapper, around every operation or around every Nth one.
+ */
+public class ClientCost
+{
+	/**
+	 * Whether to sample the client side cost of operations.
+	 */
+	public static final String ENABLED="clientcost";
+	public static final String ENABLED_DEFAULT="false";
+
+	/**
+	 * Sample one out of this many operations in each thread.
+	 */
+	public static final String SAMPLE_INTERVAL="clientcost.sampleinterval";
+	public static final String SAMPLE_INTERVAL_DEFAULT="1";
+
+	String _name;
+	AtomicLong samples=new AtomicLong(0);
+	AtomicLong cpusamples=new AtomicLong(0);
+	AtomicLong cpu=new AtomicLong(0);
+	AtomicLong allocsamples=new AtomicLong(0);
+	AtomicLong allocated=new AtomicLong(0);
+
+	public ClientCost(String name)
+	{
+		_name=name;
+	}
+
+	public String getName()
+	{
+		return _name;
+	}
+
+	/**
+	 * Add one sample.
+	 *
+	 * @param cpunanos CPU time used by the thread in nanoseconds, or a negative value if not available
+	 * @param allocbytes bytes allocated by the thread, or a negative value if not available
+	 */
+	public void report(long cpunanos, long allocbytes)
+	{
+		samples.incrementAndGet();
+		if (cpunanos>=0)
+		{
+			cpusamples.incrementAndGet();
+			cpu.addAndGet(cpunanos);
+		}
+		if (allocbytes>=0)
+		{
+			allocsamples.incrementAndGet();
+			allocated.addAndGet(allocbytes);
+		}
+	}
+
+	public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+	{
+		exporter.write(getName(), "ClientCostSamples", (int)samples.get());
+		if (cpusamples.get()>0)
+		{
+			exporter.write(getName(), "ClientCPU(us/op)", ((double)cpu.get())/1000.0/((double)cpusamples.get()));
+		}
+		if (allocsamples.get()>0)
+		{
+			exporter.write(getName(), "ClientAllocated(bytes/op)", ((double)allocated.get())/((double)allocsamples.get()));
+		}
+	}
+}
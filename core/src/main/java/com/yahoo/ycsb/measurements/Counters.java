@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Named event counters of a client side component, such as the hits and misses of a cache, exported
+ * under the name of the component. Subclasses add derived values, such as a hit rate, by overriding
+ * exportMeasurements.
+ */
+public class Counters
+{
+	String _name;
+	ConcurrentHashMap<String,AtomicLong> counters=new ConcurrentHashMap<String,AtomicLong>();
+
+	public Counters(String name)
+	{
+		_name=name;
+	}
+
+	public String getName()
+	{
+		return _name;
+	}
+
+	public void add(String counter, long delta)
+	{
+		AtomicLong value=counters.get(counter);
+		if (value==null)
+		{
+			counters.putIfAbsent(counter,new AtomicLong(0));
+			value=counters.get(counter);
+		}
+		value.addAndGet(delta);
+	}
+
+	public long get(String counter)
+	{
+		AtomicLong value=counters.get(counter);
+		return (value==null) ? 0 : value.get();
+	}
+
+	public void reset()
+	{
+		counters.clear();
+	}
+
+	public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+	{
+		for (Map.Entry<String,AtomicLong> counter : new TreeMap<String,AtomicLong>(counters).entrySet())
+		{
+			long value=counter.getValue().get();
+			if (value<=Integer.MAX_VALUE)
+			{
+				exporter.write(getName(), counter.getKey(), (int)value);
+			}
+			else
+			{
+				exporter.write(getName(), counter.getKey(), (double)value);
+			}
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Latency by key-space region and time interval, to find hot keys and hot ranges (shard or region hotspots)
+ * that an aggregate histogram hides.
+ *
+ * The key space 0..heatmap.keyspace-1 (the keynum before any hashing, so insertorder=hashed does not matter)
+ * is split into heatmap.regions equal regions, and time into heatmap.intervals intervals of heatmap.granularity ms;
+ * operations after the last interval, or on keys beyond the key space, are counted in the last interval or region.
+ * Each operation type has two fixed size primitive arrays, so memory does not grow with the number of operations.
+ *
+ * Workloads tell the heatmap which keynum the next DB operation of the calling thread is for with setKeynum();
+ * DBWrapper then adds the latency of that operation to the right cell.
+ */
+public class KeyspaceHeatmap
+{
+	/**
+	 * Whether to collect the heatmap.
+	 */
+	public static final String ENABLED="heatmap";
+	public static final String ENABLED_DEFAULT="false";
+
+	/**
+	 * The number of key-space regions (10 gives deciles).
+	 */
+	public static final String REGIONS="heatmap.regions";
+	public static final String REGIONS_DEFAULT="10";
+
+	/**
+	 * The size of the key space to split, by default the recordcount.
+	 */
+	public static final String KEYSPACE="heatmap.keyspace";
+
+	/**
+	 * Length of a time interval. Units are milliseconds.
+	 */
+	public static final String GRANULARITY="heatmap.granularity";
+	public static final String GRANULARITY_DEFAULT="10000";
+
+	/**
+	 * The maximum number of time intervals.
+	 */
+	public static final String INTERVALS="heatmap.intervals";
+	public static final String INTERVALS_DEFAULT="360";
+
+	/**
+	 * Prefix of the files the heatmaps are written to; one file per operation type is written.
+	 */
+	public static final String FILE="heatmap.file";
+	public static final String FILE_DEFAULT="heatmap";
+
+	/**
+	 * Format of the heatmap files: csv or json.
+	 */
+	public static final String FORMAT="heatmap.format";
+	public static final String FORMAT_DEFAULT="csv";
+
+	static volatile boolean enabled=false;
+
+	static final ThreadLocal<long[]> currentkeynum=new ThreadLocal<long[]>()
+	{
+		protected long[] initialValue()
+		{
+			return new long[]{-1};
+		}
+	};
+
+	/**
+	 * Set the keynum the next DB operation of the calling thread is for. Does nothing if no heatmap is collected.
+	 */
+	public static void setKeynum(long keynum)
+	{
+		if (enabled)
+		{
+			currentkeynum.get()[0]=keynum;
+		}
+	}
+
+	/**
+	 * The heatmap of one operation type; cell [interval*regions+region].
+	 */
+	class Map
+	{
+		AtomicLongArray operations=new AtomicLongArray(_intervals*_regions);
+		AtomicLongArray latency=new AtomicLongArray(_intervals*_regions);
+	}
+
+	int _regions;
+	long _keyspace;
+	int _granularity;
+	int _intervals;
+	String _file;
+	String _format;
+	long _start;
+
+	ConcurrentHashMap<String,Map> _maps=new ConcurrentHashMap<String,Map>();
+
+	public KeyspaceHeatmap(Properties props)
+	{
+		_regions=Integer.parseInt(props.getProperty(REGIONS,REGIONS_DEFAULT));
+		_keyspace=Long.parseLong(props.getProperty(KEYSPACE,props.getProperty("recordcount","1")));
+		_granularity=Integer.parseInt(props.getProperty(GRANULARITY,GRANULARITY_DEFAULT));
+		_intervals=Integer.parseInt(props.getProperty(INTERVALS,INTERVALS_DEFAULT));
+		_file=props.getProperty(FILE,FILE_DEFAULT);
+		_format=props.getProperty(FORMAT,FORMAT_DEFAULT);
+		_start=System.nanoTime();
+		enabled=true;
+	}
+
+	/**
+	 * Add the latency of an operation that ended at en (from System.nanoTime()) to the heatmap, if the workload
+	 * set the keynum for it.
+	 */
+	public void measure(String operation, long en, int latency)
+	{
+		long[] slot=currentkeynum.get();
+		long keynum=slot[0];
+		if (keynum<0)
+		{
+			return;
+		}
+		slot[0]=-1;
+
+		Map map=_maps.get(operation);
+		if (map==null)
+		{
+			_maps.putIfAbsent(operation,new Map());
+			map=_maps.get(operation);
+		}
+
+		int region=(int)Math.min(_regions-1,keynum*_regions/_keyspace);
+		int interval=(int)Math.min(_intervals-1,(en-_start)/1000000L/_granularity);
+		int cell=interval*_regions+region;
+		map.operations.incrementAndGet(cell);
+		map.latency.addAndGet(cell,latency);
+	}
+
+	/**
+	 * Write the per-region totals to the exporter, and the full heatmaps to their files.
+	 */
+	public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+	{
+		for (String name : _maps.keySet())
+		{
+			Map map=_maps.get(name);
+			long[] ops=new long[_regions];
+			long[] lat=new long[_regions];
+			int lastinterval=0;
+			for (int cell=0; cell<_intervals*_regions; cell++)
+			{
+				ops[cell%_regions]+=map.operations.get(cell);
+				lat[cell%_regions]+=map.latency.get(cell);
+				if (map.operations.get(cell)>0)
+				{
+					lastinterval=cell/_regions;
+				}
+			}
+			for (int r=0; r<_regions; r++)
+			{
+				exporter.write("KEYSPACE "+name, "Region"+r+" Operations", (double)ops[r]);
+				exporter.write("KEYSPACE "+name, "Region"+r+" AverageLatency(us)", (ops[r]==0) ? 0 : ((double)lat[r])/((double)ops[r]));
+			}
+
+			String filename=_file+"-"+name.replace(' ','_')+"."+_format;
+			if (_format.equals("json"))
+			{
+				writeJson(filename,name,map,lastinterval);
+			}
+			else
+			{
+				writeCsv(filename,map,lastinterval);
+			}
+		}
+	}
+
+	void writeCsv(String filename, Map map, int lastinterval) throws IOException
+	{
+		BufferedWriter bw=new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename)));
+		try
+		{
+			bw.write("time(ms),region,firstkeynum,operations,averagelatency(us)");
+			bw.newLine();
+			for (int i=0; i<=lastinterval; i++)
+			{
+				for (int r=0; r<_regions; r++)
+				{
+					int cell=i*_regions+r;
+					long ops=map.operations.get(cell);
+					double avg=(ops==0) ? 0 : ((double)map.latency.get(cell))/((double)ops);
+					bw.write(((long)i*_granularity)+","+r+","+(r*_keyspace/_regions)+","+ops+","+avg);
+					bw.newLine();
+				}
+			}
+		}
+		finally
+		{
+			bw.close();
+		}
+	}
+
+	void writeJson(String filename, String name, Map map, int lastinterval) throws IOException
+	{
+		JsonGenerator g=new JsonFactory().createJsonGenerator(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename))));
+		try
+		{
+			g.writeStartObject();
+			g.writeStringField("operation", name);
+			g.writeNumberField("granularity", _granularity);
+			g.writeNumberField("regions", _regions);
+			g.writeNumberField("keyspace", _keyspace);
+			g.writeArrayFieldStart("operations");
+			for (int i=0; i<=lastinterval; i++)
+			{
+				g.writeStartArray();
+				for (int r=0; r<_regions; r++)
+				{
+					g.writeNumber(map.operations.get(i*_regions+r));
+				}
+				g.writeEndArray();
+			}
+			g.writeEndArray();
+			g.writeArrayFieldStart("averagelatency");
+			for (int i=0; i<=lastinterval; i++)
+			{
+				g.writeStartArray();
+				for (int r=0; r<_regions; r++)
+				{
+					long ops=map.operations.get(i*_regions+r);
+					g.writeNumber((ops==0) ? 0 : ((double)map.latency.get(i*_regions+r))/((double)ops));
+				}
+				g.writeEndArray();
+			}
+			g.writeEndArray();
+			g.writeEndObject();
+		}
+		finally
+		{
+			g.close();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A log-linear latency histogram with microsecond resolution, that can be saved and merged with the
+ * histograms of other runs.
+ *
+ * Latencies below 256us each have their own bucket; above that every power of two is split into 128 buckets,
+ * so any percentile is accurate to within 1% of its value, from 0us up to Integer.MAX_VALUE us, in 3200 buckets.
+ * Not thread safe; the owning OneMeasurement synchronizes.
+ */
+public class LatencyHistogram
+{
+	static final int SUB_BUCKET_BITS=7;
+	static final int SUB_BUCKETS=1<<SUB_BUCKET_BITS;
+	static final int LINEAR=2*SUB_BUCKETS;
+	static final int BUCKETS=LINEAR+(31-SUB_BUCKET_BITS-1)*SUB_BUCKETS;
+
+	long[] counts=new long[BUCKETS];
+	long count=0;
+	long sum=0;
+	int min=-1;
+	int max=-1;
+
+	static int bucketOf(int latency)
+	{
+		if (latency<LINEAR)
+		{
+			return latency;
+		}
+		int shift=(31-Integer.numberOfLeadingZeros(latency))-SUB_BUCKET_BITS;
+		return LINEAR+(shift-1)*SUB_BUCKETS+((latency>>shift)-SUB_BUCKETS);
+	}
+
+	/**
+	 * @return the highest latency that falls into the given bucket
+	 */
+	static int highestOf(int bucket)
+	{
+		if (bucket<LINEAR)
+		{
+			return bucket;
+		}
+		int shift=(bucket-LINEAR)/SUB_BUCKETS+1;
+		long mantissa=(bucket-LINEAR)%SUB_BUCKETS+SUB_BUCKETS;
+		return (int)Math.min(Integer.MAX_VALUE,((mantissa+1)<<shift)-1);
+	}
+
+	public void record(int latency)
+	{
+		if (latency<0)
+		{
+			latency=0;
+		}
+		counts[bucketOf(latency)]++;
+		count++;
+		sum+=latency;
+		if ( (min<0) || (latency<min) )
+		{
+			min=latency;
+		}
+		if (latency>max)
+		{
+			max=latency;
+		}
+	}
+
+	/**
+	 * Add the latencies of another histogram to this one.
+	 */
+	public void merge(LatencyHistogram other)
+	{
+		for (int i=0; i<BUCKETS; i++)
+		{
+			counts[i]+=other.counts[i];
+		}
+		count+=other.count;
+		sum+=other.sum;
+		if ( (min<0) || ( (other.min>=0) && (other.min<min) ) )
+		{
+			min=other.min;
+		}
+		max=Math.max(max,other.max);
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	public double getMean()
+	{
+		return (count==0) ? 0 : ((double)sum)/((double)count);
+	}
+
+	public int getMin()
+	{
+		return min;
+	}
+
+	public int getMax()
+	{
+		return max;
+	}
+
+	/**
+	 * @param percentile between 0 and 100, e.g. 99.9
+	 * @return the latency in us that this percentage of the operations did not exceed, or -1 if there are none
+	 */
+	public int getPercentile(double percentile)
+	{
+		if (count==0)
+		{
+			return -1;
+		}
+		long rank=Math.max(1,(long)Math.ceil(percentile/100.0*count));
+		long seen=0;
+		for (int i=0; i<BUCKETS; i++)
+		{
+			seen+=counts[i];
+			if (seen>=rank)
+			{
+				return Math.min(highestOf(i),max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Write the histogram, storing only the buckets that are not empty.
+	 */
+	public void write(DataOutputStream out) throws IOException
+	{
+		int used=0;
+		for (int i=0; i<BUCKETS; i++)
+		{
+			if (counts[i]>0)
+			{
+				used++;
+			}
+		}
+		out.writeLong(count);
+		out.writeLong(sum);
+		out.writeInt(min);
+		out.writeInt(max);
+		out.writeInt(used);
+		for (int i=0; i<BUCKETS; i++)
+		{
+			if (counts[i]>0)
+			{
+				out.writeShort(i);
+				out.writeLong(counts[i]);
+			}
+		}
+	}
+
+	public static LatencyHistogram read(DataInputStream in) throws IOException
+	{
+		LatencyHistogram h=new LatencyHistogram();
+		h.count=in.readLong();
+		h.sum=in.readLong();
+		h.min=in.readInt();
+		h.max=in.readInt();
+		int used=in.readInt();
+		for (int i=0; i<used; i++)
+		{
+			int bucket=in.readShort();
+			h.counts[bucket]=in.readLong();
+		}
+		return h;
+	}
+}
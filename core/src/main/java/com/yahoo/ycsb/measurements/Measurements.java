@@ -20,6 +20,7 @@ package com.yahoo.ycsb.measurements;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
@@ -56,9 +57,64 @@ public class Measurements
 		return singleton;
 	}
 
+	/**
+	 * The namespace of a thread, with the names it qualified so far, so measuring an operation does not build its
+	 * name again each time. Only used by its thread.
+	 */
+	static class Namespace
+	{
+		final String name;
+		final HashMap<String,String> qualified=new HashMap<String,String>();
+
+		Namespace(String name)
+		{
+			this.name=name;
+		}
+
+		String qualify(String operation)
+		{
+			String q=qualified.get(operation);
+			if (q==null)
+			{
+				q=name+":"+operation;
+				qualified.put(operation,q);
+			}
+			return q;
+		}
+	}
+
+	static ThreadLocal<Namespace> namespace=new ThreadLocal<Namespace>();
+
+      /**
+       * Record the measurements of the calling thread under a namespace, e.g. the workload group it runs for, so
+       * its READ is measured as namespace:READ. Null records them without one.
+       */
+	public static void setNamespace(String ns)
+	{
+		namespace.set((ns==null) ? null : new Namespace(ns));
+	}
+
+	static String qualify(String operation)
+	{
+		Namespace ns=namespace.get();
+		return (ns==null) ? operation : ns.qualify(operation);
+	}
+
 	HashMap<String,OneMeasurement> data;
 	boolean histogram=true;
 
+	PauseDetector pausedetector=null;
+
+	SlowOperationSampler slowoperations=null;
+
+	KeyspaceHeatmap heatmap=null;
+
+	ConcurrentHashMap<String,ClientCost> clientcosts=new ConcurrentHashMap<String,ClientCost>();
+
+	ConcurrentHashMap<String,ByteCounts> bytecounts=new ConcurrentHashMap<String,ByteCounts>();
+
+	ConcurrentHashMap<String,Counters> counters=new ConcurrentHashMap<String,Counters>();
+
 	private Properties _props;
 	
       /**
@@ -92,11 +148,27 @@ public class Measurements
 		}
 	}
 
+      /**
+       * Forget all the measurements taken so far, e.g. between the trials of a repeated run. The pause detector,
+       * slow operation sampler and heatmap are not reset; they cover all the trials.
+       */
+	public synchronized void reset()
+	{
+		data=new HashMap<String,OneMeasurement>();
+		clientcosts.clear();
+		bytecounts.clear();
+		for (Counters c : counters.values())
+		{
+			c.reset();
+		}
+	}
+
       /**
        * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured value.
        */
 	public synchronized void measure(String operation, int latency)
 	{
+		operation=qualify(operation);
 		if (!data.containsKey(operation))
 		{
 			synchronized(this)
@@ -124,6 +196,7 @@ public class Measurements
        */
 	public void reportReturnCode(String operation, int code)
 	{
+		operation=qualify(operation);
 		if (!data.containsKey(operation))
 		{
 			synchronized(this)
@@ -137,6 +210,48 @@ public class Measurements
 		data.get(operation).reportReturnCode(code);
 	}
 	
+      /**
+       * Report the client side CPU time and heap allocation of a single DB operation.
+       */
+	public void reportClientCost(String operation, long cpunanos, long allocbytes)
+	{
+		operation=qualify(operation);
+		ClientCost cost=clientcosts.get(operation);
+		if (cost==null)
+		{
+			clientcosts.putIfAbsent(operation,new ClientCost(operation));
+			cost=clientcosts.get(operation);
+		}
+		cost.report(cpunanos,allocbytes);
+	}
+
+      /**
+       * Report the payload bytes sent and received by a single DB operation.
+       */
+	public void reportBytes(String operation, long in, long out)
+	{
+		operation=qualify(operation);
+		ByteCounts counts=bytecounts.get(operation);
+		if (counts==null)
+		{
+			int granularity=Integer.parseInt(_props.getProperty(ByteCounts.GRANULARITY,ByteCounts.GRANULARITY_DEFAULT));
+			bytecounts.putIfAbsent(operation,new ByteCounts(operation,granularity));
+			counts=bytecounts.get(operation);
+		}
+		counts.report(in,out);
+	}
+
+      /**
+       * Register the counters of a client side component, to be exported with the measurements.
+       *
+       * @return the counters already registered under the same name, if any, or the given ones
+       */
+	public Counters registerCounters(Counters c)
+	{
+		Counters previous=counters.putIfAbsent(c.getName(),c);
+		return (previous==null) ? c : previous;
+	}
+
   /**
    * Export the current measurements to a suitable format.
    * 
@@ -144,12 +259,104 @@ public class Measurements
    * @throws IOException Thrown if the export failed.
    */
   public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+  {
+    exportMeasurements(exporter, true);
+  }
+
+  /**
+   * Export the current measurements, with or without the latencies of the operations, e.g. to add the other
+   * sections of the last trial to the summary of a repeated run, which has the latencies of every trial.
+   */
+  public void exportMeasurements(MeasurementsExporter exporter, boolean latencies) throws IOException
   {
     for (OneMeasurement measurement : data.values())
     {
-      measurement.exportMeasurements(exporter);
+      if (latencies)
+      {
+        measurement.exportMeasurements(exporter);
+      }
+
+      ClientCost cost=clientcosts.get(measurement.getName());
+      if (cost!=null)
+      {
+        cost.exportMeasurements(exporter);
+      }
+
+      ByteCounts counts=bytecounts.get(measurement.getName());
+      if (counts!=null)
+      {
+        counts.exportMeasurements(exporter);
+      }
+    }
+
+    if (pausedetector!=null)
+    {
+      pausedetector.exportMeasurements(exporter);
+    }
+
+    if (slowoperations!=null)
+    {
+      slowoperations.exportMeasurements(exporter);
+    }
+
+    if (heatmap!=null)
+    {
+      heatmap.exportMeasurements(exporter);
+    }
+
+    for (Counters c : counters.values())
+    {
+      c.exportMeasurements(exporter);
     }
   }
+
+      /**
+       * Attach a detector for client side pauses. Its statistics are added to the status output and the export.
+       */
+	public void setPauseDetector(PauseDetector detector)
+	{
+		pausedetector=detector;
+	}
+
+      /**
+       * Return the detector for client side pauses, or null if it is not enabled.
+       */
+	public PauseDetector getPauseDetector()
+	{
+		return pausedetector;
+	}
+
+      /**
+       * Attach a sampler that keeps the request of the slowest operations. They are added to the export.
+       */
+	public void setSlowOperationSampler(SlowOperationSampler sampler)
+	{
+		slowoperations=sampler;
+	}
+
+      /**
+       * Return the sampler of slow operations, or null if it is not enabled.
+       */
+	public SlowOperationSampler getSlowOperationSampler()
+	{
+		return slowoperations;
+	}
+
+      /**
+       * Attach a latency heatmap by key-space region. Its per-region totals are added to the export.
+       */
+	public void setKeyspaceHeatmap(KeyspaceHeatmap map)
+	{
+		heatmap=map;
+	}
+
+      /**
+       * Return the latency heatmap by key-space region, or null if it is not enabled.
+       */
+	public KeyspaceHeatmap getKeyspaceHeatmap()
+	{
+		return heatmap;
+	}
 	
       /**
        * Return a one line summary of the measurements.
@@ -161,6 +368,11 @@ public class Measurements
 		{
 			ret+=m.getSummary()+" ";
 		}
+
+		if (pausedetector!=null)
+		{
+			ret+=pausedetector.getSummary();
+		}
 		
 		return ret;
 	}
@@ -22,6 +22,7 @@ import java.text.DecimalFormat;
 import java.util.HashMap;
 import java.util.Properties;
 
+import com.yahoo.ycsb.measurements.exporter.HistogramMeasurementsExporter;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
 
@@ -50,6 +51,9 @@ public class OneMeasurementHistogram extends OneMeasurement
 	int max;
 	HashMap<Integer,int[]> returncodes;
 
+	//full resolution latencies, for exporters that keep histograms
+	LatencyHistogram fine=new LatencyHistogram();
+
 	public OneMeasurementHistogram(String name, Properties props)
 	{
 		super(name);
@@ -96,6 +100,7 @@ public class OneMeasurementHistogram extends OneMeasurement
 		}
 		operations++;
 		totallatency+=latency;
+		fine.record(latency);
 		windowoperations++;
 		windowtotallatency+=latency;
 
@@ -147,6 +152,11 @@ public class OneMeasurementHistogram extends OneMeasurement
       exporter.write(getName(), Integer.toString(i), histogram[i]);
     }
     exporter.write(getName(), ">"+_buckets, histogramoverflow);
+
+    if (exporter instanceof HistogramMeasurementsExporter)
+    {
+      ((HistogramMeasurementsExporter)exporter).writeHistogram(getName(), fine);
+    }
   }
 
 	@Override
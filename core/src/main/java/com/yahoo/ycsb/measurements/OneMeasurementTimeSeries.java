@@ -17,30 +17,28 @@
 
 package com.yahoo.ycsb.measurements;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.HashMap;
 import java.util.Properties;
-import java.util.Vector;
 
+import com.yahoo.ycsb.measurements.exporter.HistogramMeasurementsExporter;
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
-class SeriesUnit
-{
-	/**
-	 * @param time
-	 * @param average
-	 */
-	public SeriesUnit(long time, double average) {
-		this.time = time;
-		this.average = average;
-	}
-	public long time;
-	public double average; 
-}
-
 /**
  * A time series measurement of a metric, such as READ LATENCY.
+ *
+ * The most recent intervals are kept in a fixed size ring buffer; when it is full the oldest interval is
+ * appended to a spill file as (time, operations, average), 20 bytes per interval, so memory use does not
+ * grow with the length of the run. The export reads the spilled intervals back before the buffered ones.
  */
 public class OneMeasurementTimeSeries extends OneMeasurement 
 {
@@ -50,14 +48,38 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 	public static final String GRANULARITY="timeseries.granularity";
 	
 	public static final String GRANULARITY_DEFAULT="1000";
+
+	/**
+	 * The number of intervals kept in memory before older ones are spilled to disk.
+	 */
+	public static final String BUFFER_SIZE="timeseries.buffersize";
+
+	public static final String BUFFER_SIZE_DEFAULT="1024";
+
+	/**
+	 * The directory of the spill files, by default the system temporary directory.
+	 */
+	public static final String SPILL_DIR="timeseries.spilldir";
 	
 	int _granularity;
-	Vector<SeriesUnit> _measurements;
+
+	//ring buffer of the most recent intervals
+	long[] _times;
+	int[] _counts;
+	double[] _averages;
+	int _first=0;
+	int _size=0;
+
+	File _spillfile=null;
+	DataOutputStream _spill=null;
+	String _spilldir;
+	long _spilled=0;
+	long _dropped=0;
 	
 	long start=-1;
 	long currentunit=-1;
 	int count=0;
-	int sum=0;
+	long sum=0;
 	int operations=0;
 	long totallatency=0;
 	
@@ -69,12 +91,19 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 	int max=-1;
 
 	private HashMap<Integer, int[]> returncodes;
+
+	//full resolution latencies, for exporters that keep histograms
+	LatencyHistogram fine=new LatencyHistogram();
 	
 	public OneMeasurementTimeSeries(String name, Properties props)
 	{
 		super(name);
 		_granularity=Integer.parseInt(props.getProperty(GRANULARITY,GRANULARITY_DEFAULT));
-		_measurements=new Vector<SeriesUnit>();
+		int buffersize=Integer.parseInt(props.getProperty(BUFFER_SIZE,BUFFER_SIZE_DEFAULT));
+		_times=new long[buffersize];
+		_counts=new int[buffersize];
+		_averages=new double[buffersize];
+		_spilldir=props.getProperty(SPILL_DIR,System.getProperty("java.io.tmpdir"));
 		returncodes=new HashMap<Integer,int[]>();
 	}
 	
@@ -92,8 +121,10 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 		
 		if ( (unit>currentunit) || (forceend) )
 		{
-			double avg=((double)sum)/((double)count);
-			_measurements.add(new SeriesUnit(currentunit,avg));
+			if (count>0)
+			{
+				add(currentunit,count,((double)sum)/((double)count));
+			}
 			
 			currentunit=unit;
 			
@@ -101,14 +132,66 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 			sum=0;
 		}
 	}
+
+	/**
+	 * Add a completed interval to the ring buffer, spilling the oldest one if it is full.
+	 */
+	void add(long time, int ops, double average)
+	{
+		if (_size==_times.length)
+		{
+			spill(_times[_first],_counts[_first],_averages[_first]);
+			_first=(_first+1)%_times.length;
+			_size--;
+		}
+		int slot=(_first+_size)%_times.length;
+		_times[slot]=time;
+		_counts[slot]=ops;
+		_averages[slot]=average;
+		_size++;
+	}
+
+	void spill(long time, int ops, double average)
+	{
+		try
+		{
+			if (_spill==null)
+			{
+				if (_dropped>0)
+				{
+					//the spill file could not be written before, don't keep retrying
+					_dropped++;
+					return;
+				}
+				if (_spillfile==null)
+				{
+					_spillfile=File.createTempFile("ycsb-timeseries-",".bin",new File(_spilldir));
+					_spillfile.deleteOnExit();
+				}
+				//closed by an export, the intervals spilled after it go on in the same file
+				_spill=new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_spillfile,true)));
+			}
+			_spill.writeLong(time);
+			_spill.writeInt(ops);
+			_spill.writeDouble(average);
+			_spilled++;
+		}
+		catch (IOException e)
+		{
+			System.err.println("Could not spill time series "+getName()+" to disk, dropping older intervals: "+e.getMessage());
+			_spill=null;
+			_dropped++;
+		}
+	}
 	
 	@Override
-	public void measure(int latency) 
+	public synchronized void measure(int latency) 
 	{
 		checkEndOfUnit(false);
 		
 		count++;
 		sum+=latency;
+		fine.record(latency);
 		totallatency+=latency;
 		operations++;
 		windowoperations++;
@@ -127,7 +210,7 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 
 
   @Override
-  public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+  public synchronized void exportMeasurements(MeasurementsExporter exporter) throws IOException
   {
     checkEndOfUnit(true);
 
@@ -142,16 +225,55 @@ public class OneMeasurementTimeSeries extends OneMeasurement
     {
       int[] val=returncodes.get(I);
       exporter.write(getName(), "Return="+I, val[0]);
-    }     
+    }
+
+    if (_dropped>0)
+    {
+      exporter.write(getName(), "DroppedIntervals", (int)_dropped);
+    }
+
+    if (exporter instanceof HistogramMeasurementsExporter)
+    {
+      ((HistogramMeasurementsExporter)exporter).writeHistogram(getName(), fine);
+    }
+
+    if (_spillfile!=null)
+    {
+      if (_spill!=null)
+      {
+        //closed rather than flushed, so a spilled series does not hold a file handle until the JVM exits
+        _spill.close();
+        _spill=null;
+      }
+      DataInputStream in=new DataInputStream(new BufferedInputStream(new FileInputStream(_spillfile)));
+      try
+      {
+        for (long i=0; i<_spilled; i++)
+        {
+          long time=in.readLong();
+          in.readInt();
+          exporter.write(getName(), Long.toString(time), in.readDouble());
+        }
+      }
+      catch (EOFException e)
+      {
+        System.err.println("Spill file of time series "+getName()+" is truncated: "+e.getMessage());
+      }
+      finally
+      {
+        in.close();
+      }
+    }
 
-    for (SeriesUnit unit : _measurements)
+    for (int i=0; i<_size; i++)
     {
-      exporter.write(getName(), Long.toString(unit.time), unit.average);
+      int slot=(_first+i)%_times.length;
+      exporter.write(getName(), Long.toString(_times[slot]), _averages[slot]);
     }
   }
 	
 	@Override
-	public void reportReturnCode(int code) {
+	public synchronized void reportReturnCode(int code) {
 		Integer Icode=code;
 		if (!returncodes.containsKey(Icode))
 		{
@@ -164,7 +286,7 @@ public class OneMeasurementTimeSeries extends OneMeasurement
 	}
 
 	@Override
-	public String getSummary() {
+	public synchronized String getSummary() {
 		if (windowoperations==0)
 		{
 			return "";
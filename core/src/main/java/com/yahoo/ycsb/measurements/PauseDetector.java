@@ -0,0 +1,326 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+class Pause
+{
+	/**
+	 * @param start start of the pause, in ms since the detector was started
+	 * @param duration length of the pause in ms
+	 * @param cause what paused the client, e.g. STALL or the name of a garbage collector
+	 */
+	public Pause(double start, double duration, String cause) {
+		this.start = start;
+		this.duration = duration;
+		this.cause = cause;
+	}
+	public double start;
+	public double duration;
+	public String cause;
+}
+
+/**
+ * Detects pauses of the client JVM (garbage collections, safepoints, an overloaded client host)
+ * so that they can be told apart from latency caused by the database.
+ *
+ * A high resolution sleeper thread wakes up every pausedetector.resolution ms; a wakeup that is
+ * late by more than pausedetector.threshold ms is recorded as a client stall. Garbage collections
+ * are additionally reported through the GarbageCollectorMXBean notifications. Operations taking at
+ * least pausedetector.slowlatency us are checked against the recent stalls, so the export can state
+ * how many slow operations overlapped with a client pause.
+ */
+public class PauseDetector extends Thread implements NotificationListener
+{
+	/**
+	 * Whether to run the pause detector at all.
+	 */
+	public static final String ENABLED="pausedetector";
+	public static final String ENABLED_DEFAULT="false";
+
+	/**
+	 * How long the sleeper thread sleeps between wakeups. Units are milliseconds.
+	 */
+	public static final String RESOLUTION="pausedetector.resolution";
+	public static final String RESOLUTION_DEFAULT="1";
+
+	/**
+	 * How late a wakeup must be before it is counted as a client stall. Units are milliseconds.
+	 */
+	public static final String THRESHOLD="pausedetector.threshold";
+	public static final String THRESHOLD_DEFAULT="10";
+
+	/**
+	 * Operations at least this slow are checked for overlap with a client pause. Units are microseconds.
+	 */
+	public static final String SLOW_LATENCY="pausedetector.slowlatency";
+	public static final String SLOW_LATENCY_DEFAULT="10000";
+
+	/**
+	 * The maximum number of pauses kept in the exported timeline.
+	 */
+	public static final String MAX_EVENTS="pausedetector.maxevents";
+	public static final String MAX_EVENTS_DEFAULT="1000";
+
+	static final String GC_NOTIFICATION="com.sun.management.gc.notification";
+
+	/**
+	 * Number of recent stalls kept for overlap checks.
+	 */
+	static final int RECENT=64;
+
+	long _resolution;
+	long _threshold;
+	long _slowlatency;
+	int _maxevents;
+
+	long _base;
+	volatile long _lastwake;
+
+	long[] _recentstart=new long[RECENT];
+	long[] _recentend=new long[RECENT];
+	int _recentnext=0;
+
+	Vector<Pause> _timeline=new Vector<Pause>();
+
+	long _stalls=0;
+	long _stalltotal=0;
+	long _stallmax=0;
+	long _gcs=0;
+	long _gctotal=0;
+
+	//keep a windowed version of these stats for printing status
+	long _windowstalls=0;
+	long _windowstallmax=0;
+	long _windowgcs=0;
+
+	AtomicLong _slowops=new AtomicLong(0);
+	AtomicLong _slowopspaused=new AtomicLong(0);
+
+	public PauseDetector(Properties props)
+	{
+		super("PauseDetector");
+		setDaemon(true);
+		_resolution=Long.parseLong(props.getProperty(RESOLUTION,RESOLUTION_DEFAULT));
+		_threshold=Long.parseLong(props.getProperty(THRESHOLD,THRESHOLD_DEFAULT))*1000000L;
+		_slowlatency=Long.parseLong(props.getProperty(SLOW_LATENCY,SLOW_LATENCY_DEFAULT))*1000L;
+		_maxevents=Integer.parseInt(props.getProperty(MAX_EVENTS,MAX_EVENTS_DEFAULT));
+		_base=System.nanoTime();
+		_lastwake=_base;
+	}
+
+	/**
+	 * Sleep, and record every wakeup that is later than the threshold.
+	 */
+	public void run()
+	{
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			if (gc instanceof NotificationEmitter)
+			{
+				((NotificationEmitter)gc).addNotificationListener(this,null,null);
+			}
+		}
+
+		long expected=_resolution*1000000L;
+		_lastwake=System.nanoTime();
+
+		while (!isInterrupted())
+		{
+			try
+			{
+				sleep(_resolution);
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+
+			long now=System.nanoTime();
+			long late=now-_lastwake-expected;
+			if (late>_threshold)
+			{
+				recordStall(now-late,now);
+			}
+			_lastwake=now;
+		}
+
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+		{
+			if (gc instanceof NotificationEmitter)
+			{
+				try
+				{
+					((NotificationEmitter)gc).removeNotificationListener(this);
+				}
+				catch (ListenerNotFoundException e)
+				{
+					// do nothing.
+				}
+			}
+		}
+	}
+
+	synchronized void recordStall(long st, long en)
+	{
+		_recentstart[_recentnext]=st;
+		_recentend[_recentnext]=en;
+		_recentnext=(_recentnext+1)%RECENT;
+
+		long duration=en-st;
+		_stalls++;
+		_stalltotal+=duration;
+		_windowstalls++;
+		if (duration>_stallmax)
+		{
+			_stallmax=duration;
+		}
+		if (duration>_windowstallmax)
+		{
+			_windowstallmax=duration;
+		}
+
+		addToTimeline(st,duration/1000000.0,"STALL");
+	}
+
+	void addToTimeline(long st, double duration, String cause)
+	{
+		if (_timeline.size()<_maxevents)
+		{
+			_timeline.add(new Pause((st-_base)/1000000.0,duration,cause));
+		}
+	}
+
+	/**
+	 * Called by the JVM at the end of each garbage collection.
+	 */
+	public void handleNotification(Notification notification, Object handback)
+	{
+		if (!GC_NOTIFICATION.equals(notification.getType()))
+		{
+			return;
+		}
+
+		CompositeData info=(CompositeData)notification.getUserData();
+		CompositeData gcinfo=(CompositeData)info.get("gcInfo");
+		long duration=((Long)gcinfo.get("duration")).longValue();
+		long now=System.nanoTime();
+
+		synchronized(this)
+		{
+			_gcs++;
+			_gctotal+=duration;
+			_windowgcs++;
+			if (duration*1000000L>_threshold)
+			{
+				addToTimeline(now-duration*1000000L,duration,info.get("gcName")+" "+info.get("gcAction"));
+			}
+		}
+	}
+
+	/**
+	 * Check a single DB operation against the recorded client stalls. Only operations taking at least
+	 * pausedetector.slowlatency are considered, so this is cheap for the common case.
+	 *
+	 * @param st start of the operation, from System.nanoTime()
+	 * @param en end of the operation, from System.nanoTime()
+	 */
+	public void reportOperation(long st, long en)
+	{
+		if (en-st<_slowlatency)
+		{
+			return;
+		}
+
+		_slowops.incrementAndGet();
+		if (overlapsPause(st,en))
+		{
+			_slowopspaused.incrementAndGet();
+		}
+	}
+
+	synchronized boolean overlapsPause(long st, long en)
+	{
+		//the sleeper itself is late, so a stall is going on that has not been recorded yet
+		if (en-_lastwake>_resolution*1000000L+_threshold)
+		{
+			return true;
+		}
+
+		for (int i=0; i<RECENT; i++)
+		{
+			if ( (_recentend[i]!=0) && (_recentstart[i]<en) && (_recentend[i]>st) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Export the pause statistics and the pause timeline.
+	 */
+	public synchronized void exportMeasurements(MeasurementsExporter exporter) throws IOException
+	{
+		exporter.write("CLIENT PAUSES", "Stalls", (int)_stalls);
+		exporter.write("CLIENT PAUSES", "TotalStallTime(ms)", _stalltotal/1000000.0);
+		exporter.write("CLIENT PAUSES", "MaxStall(ms)", _stallmax/1000000.0);
+		exporter.write("CLIENT PAUSES", "GarbageCollections", (int)_gcs);
+		exporter.write("CLIENT PAUSES", "TotalGCTime(ms)", (int)_gctotal);
+		exporter.write("CLIENT PAUSES", "SlowOperations", (int)_slowops.get());
+		exporter.write("CLIENT PAUSES", "SlowOperationsDuringPause", (int)_slowopspaused.get());
+
+		DecimalFormat d = new DecimalFormat("#.##");
+		for (Pause p : _timeline)
+		{
+			exporter.write("CLIENT PAUSES", "Pause@"+d.format(p.start)+"ms("+p.cause+")", p.duration);
+		}
+	}
+
+	/**
+	 * Return a one line summary of the pauses since the last call, to annotate the status output.
+	 */
+	public synchronized String getSummary()
+	{
+		if ( (_windowstalls==0) && (_windowgcs==0) )
+		{
+			return "";
+		}
+		DecimalFormat d = new DecimalFormat("#.##");
+		String ret="[CLIENT PAUSES Stalls="+_windowstalls+" MaxStall(ms)="+d.format(_windowstallmax/1000000.0)+" GCs="+_windowgcs+"]";
+		_windowstalls=0;
+		_windowstallmax=0;
+		_windowgcs=0;
+		return ret;
+	}
+}
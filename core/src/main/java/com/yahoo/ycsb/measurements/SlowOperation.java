@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.util.Date;
+
+/**
+ * One slow DB operation captured by the SlowOperationSampler, together with the request that caused it.
+ * Fields that do not apply to the operation are null (or 0 for the scan length).
+ */
+public class SlowOperation
+{
+	public String operation;
+	public int latency;
+	public long timestamp;
+	public long threadid;
+	public int returncode;
+
+	/** The record key, or the start key of a scan. */
+	public String key;
+	/** The secondary field and value of secondary and complex reads, scans and aggregates. */
+	public String field;
+	public Object value;
+	/** The compound range field and bounds of complex reads, scans and aggregates. */
+	public String field2;
+	public Object lower;
+	public Object upper;
+	/** The number of records requested by scans and aggregates. */
+	public int scanlength;
+
+	public SlowOperation(String operation, int latency, int returncode, String key, String field, Object value,
+			String field2, Object lower, Object upper, int scanlength)
+	{
+		this.operation=operation;
+		this.latency=latency;
+		this.returncode=returncode;
+		this.key=key;
+		this.field=field;
+		this.value=value;
+		this.field2=field2;
+		this.lower=lower;
+		this.upper=upper;
+		this.scanlength=scanlength;
+		this.timestamp=System.currentTimeMillis();
+		this.threadid=Thread.currentThread().getId();
+	}
+
+	/**
+	 * Describe the request, without the operation name and latency.
+	 */
+	public String describe()
+	{
+		StringBuilder sb=new StringBuilder();
+		if (key!=null)
+		{
+			sb.append("key=").append(key).append(' ');
+		}
+		if (field!=null)
+		{
+			sb.append(field);
+			if (value!=null)
+			{
+				sb.append('=').append(value);
+			}
+			sb.append(' ');
+		}
+		if (field2!=null)
+		{
+			sb.append(field2).append("=[").append(lower).append(", ").append(upper).append("] ");
+		}
+		if (scanlength>0)
+		{
+			sb.append("length=").append(scanlength).append(' ');
+		}
+		sb.append("time=").append(new Date(timestamp)).append(" thread=").append(threadid).append(" return=").append(returncode);
+		return sb.toString();
+	}
+
+	public String toString()
+	{
+		return operation+" "+latency+"us "+describe();
+	}
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.ObjectName;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Keeps the full request of the slowest operations, so the keys and queries behind the tail latency can be found.
+ *
+ * Two sets are kept: the top N slowest operations of each type, and the most recent operations slower than
+ * slowops.threshold in a bounded, lock-free ring buffer. Both are dumped at export, and on demand through JMX
+ * (com.yahoo.ycsb:type=SlowOperations). An operation faster than the threshold and faster than the current
+ * top N of its type is rejected by a map lookup and two comparisons, without allocating or locking.
+ */
+public class SlowOperationSampler implements SlowOperationSamplerMBean
+{
+	/**
+	 * Whether to sample slow operations.
+	 */
+	public static final String ENABLED="slowops";
+	public static final String ENABLED_DEFAULT="false";
+
+	/**
+	 * How many of the slowest operations to keep per operation type.
+	 */
+	public static final String TOP_N="slowops.topn";
+	public static final String TOP_N_DEFAULT="10";
+
+	/**
+	 * Operations at least this slow are always captured in the ring buffer. Units are microseconds.
+	 */
+	public static final String THRESHOLD="slowops.threshold";
+	public static final String THRESHOLD_DEFAULT="100000";
+
+	/**
+	 * How many operations over the threshold to keep. With 0 they are only counted.
+	 */
+	public static final String BUFFER_SIZE="slowops.buffersize";
+	public static final String BUFFER_SIZE_DEFAULT="1000";
+
+	static final Comparator<SlowOperation> BY_LATENCY=new Comparator<SlowOperation>()
+	{
+		public int compare(SlowOperation a, SlowOperation b)
+		{
+			return (a.latency<b.latency) ? -1 : ((a.latency==b.latency) ? 0 : 1);
+		}
+	};
+
+	/**
+	 * The slowest operations of a single type, as a min-heap on latency.
+	 */
+	class TopN
+	{
+		PriorityQueue<SlowOperation> heap=new PriorityQueue<SlowOperation>(_topn+1,BY_LATENCY);
+		volatile int floor=-1;
+
+		synchronized void offer(SlowOperation op)
+		{
+			heap.add(op);
+			if (heap.size()>_topn)
+			{
+				heap.poll();
+			}
+			if (heap.size()>=_topn)
+			{
+				floor=heap.peek().latency;
+			}
+		}
+
+		synchronized List<SlowOperation> sorted()
+		{
+			List<SlowOperation> ret=new ArrayList<SlowOperation>(heap);
+			Collections.sort(ret,Collections.reverseOrder(BY_LATENCY));
+			return ret;
+		}
+	}
+
+	int _topn;
+	int _threshold;
+
+	ConcurrentHashMap<String,TopN> _tops=new ConcurrentHashMap<String,TopN>();
+
+	AtomicReferenceArray<SlowOperation> _ring;
+	AtomicLong _ringnext=new AtomicLong(0);
+
+	public SlowOperationSampler(Properties props)
+	{
+		_topn=Integer.parseInt(props.getProperty(TOP_N,TOP_N_DEFAULT));
+		_threshold=Integer.parseInt(props.getProperty(THRESHOLD,THRESHOLD_DEFAULT));
+		_ring=new AtomicReferenceArray<SlowOperation>(Math.max(0,Integer.parseInt(props.getProperty(BUFFER_SIZE,BUFFER_SIZE_DEFAULT))));
+	}
+
+	/**
+	 * Make the sampler available through JMX.
+	 */
+	public void register()
+	{
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this,new ObjectName("com.yahoo.ycsb:type=SlowOperations"));
+		}
+		catch (Exception e)
+		{
+			System.err.println("Could not register slow operation sampler with JMX: "+e.getMessage());
+		}
+	}
+
+	/**
+	 * Offer a completed operation. Arguments that do not apply to the operation should be null (or 0 for the scan length).
+	 */
+	public void offer(String operation, int latency, int returncode, String key, String field, Object value,
+			String field2, Object lower, Object upper, int scanlength)
+	{
+		TopN top=_tops.get(operation);
+		if (top==null)
+		{
+			_tops.putIfAbsent(operation,new TopN());
+			top=_tops.get(operation);
+		}
+
+		boolean overthreshold=(latency>=_threshold);
+		if ( (!overthreshold) && (latency<=top.floor) )
+		{
+			return;
+		}
+
+		SlowOperation op=new SlowOperation(operation,latency,returncode,key,field,value,field2,lower,upper,scanlength);
+		if (overthreshold)
+		{
+			long next=_ringnext.getAndIncrement();
+			if (_ring.length()>0)
+			{
+				_ring.set((int)(next%_ring.length()),op);
+			}
+		}
+		if (latency>top.floor)
+		{
+			top.offer(op);
+		}
+	}
+
+	/**
+	 * @return the operations over the threshold still in the ring buffer, oldest first
+	 */
+	public List<SlowOperation> overThreshold()
+	{
+		List<SlowOperation> ret=new ArrayList<SlowOperation>();
+		long next=_ringnext.get();
+		int size=_ring.length();
+		for (long i=Math.max(0,next-size); i<next; i++)
+		{
+			SlowOperation op=_ring.get((int)(i%size));
+			if (op!=null)
+			{
+				ret.add(op);
+			}
+		}
+		return ret;
+	}
+
+	public long getOverThresholdCount()
+	{
+		return _ringnext.get();
+	}
+
+	public String dump()
+	{
+		StringBuilder sb=new StringBuilder();
+		for (String name : _tops.keySet())
+		{
+			sb.append("Slowest ").append(name).append(" operations:\n");
+			for (SlowOperation op : _tops.get(name).sorted())
+			{
+				sb.append("  ").append(op).append('\n');
+			}
+		}
+		sb.append("Operations over ").append(_threshold).append("us (").append(getOverThresholdCount()).append(" in total):\n");
+		for (SlowOperation op : overThreshold())
+		{
+			sb.append("  ").append(op).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Export the captured operations; the measurement is the request and the value its latency in us.
+	 */
+	public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+	{
+		for (String name : _tops.keySet())
+		{
+			for (SlowOperation op : _tops.get(name).sorted())
+			{
+				exporter.write("SLOWEST "+name, op.describe(), op.latency);
+			}
+		}
+		exporter.write("SLOW OPERATIONS", "OverThreshold(>="+_threshold+"us)", (int)getOverThresholdCount());
+		for (SlowOperation op : overThreshold())
+		{
+			exporter.write("SLOW OPERATIONS", op.operation+" "+op.describe(), op.latency);
+		}
+	}
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+/**
+ * JMX interface of the SlowOperationSampler, so the captured operations can be dumped on demand
+ * (e.g. from jconsole) while the benchmark is running.
+ */
+public interface SlowOperationSamplerMBean
+{
+	/**
+	 * @return the slowest operations of each type and the most recent operations over the threshold, one per line
+	 */
+	public String dump();
+
+	/**
+	 * @return the number of operations over the threshold seen so far
+	 */
+	public long getOverThresholdCount();
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements;
+
+/**
+ * Summary statistics over the results of repeated runs, with Student t based 95% confidence intervals.
+ */
+public class Statistics
+{
+	/**
+	 * Two-sided 95% quantiles of the t distribution for 1 to 30 degrees of freedom.
+	 */
+	static final double[] T975={12.706,4.303,3.182,2.776,2.571,2.447,2.365,2.306,2.262,2.228,
+		2.201,2.179,2.160,2.145,2.131,2.120,2.110,2.101,2.093,2.086,
+		2.080,2.074,2.069,2.064,2.060,2.056,2.052,2.048,2.045,2.042};
+
+	public static double mean(double[] values)
+	{
+		double sum=0;
+		for (double v : values)
+		{
+			sum+=v;
+		}
+		return sum/values.length;
+	}
+
+	/**
+	 * @return the sample standard deviation, or 0 for fewer than two values
+	 */
+	public static double stddev(double[] values)
+	{
+		if (values.length<2)
+		{
+			return 0;
+		}
+		double mean=mean(values);
+		double squares=0;
+		for (double v : values)
+		{
+			squares+=(v-mean)*(v-mean);
+		}
+		return Math.sqrt(squares/(values.length-1));
+	}
+
+	/**
+	 * @return the two-sided 95% quantile of the t distribution; fractional degrees of freedom are rounded down
+	 */
+	public static double t975(double df)
+	{
+		if (df<1)
+		{
+			return Double.NaN;
+		}
+		if (df<=T975.length)
+		{
+			return T975[(int)df-1];
+		}
+		if (df<40)
+		{
+			return 2.042;
+		}
+		if (df<60)
+		{
+			return 2.021;
+		}
+		if (df<120)
+		{
+			return 2.000;
+		}
+		return 1.980;
+	}
+
+	/**
+	 * @return the 95% confidence interval of the mean as {low, high}, or null for fewer than two values
+	 */
+	public static double[] meanInterval(double[] values)
+	{
+		if (values.length<2)
+		{
+			return null;
+		}
+		double mean=mean(values);
+		double half=t975(values.length-1)*stddev(values)/Math.sqrt(values.length);
+		return new double[]{mean-half,mean+half};
+	}
+
+	/**
+	 * Welch's interval, which does not assume that both sets of runs have the same variance.
+	 *
+	 * @return the 95% confidence interval of mean(b)-mean(a) as {low, high}, or null if either has fewer than two values
+	 */
+	public static double[] differenceInterval(double[] a, double[] b)
+	{
+		if ( (a.length<2) || (b.length<2) )
+		{
+			return null;
+		}
+		double va=stddev(a)*stddev(a)/a.length;
+		double vb=stddev(b)*stddev(b)/b.length;
+		double diff=mean(b)-mean(a);
+		if (va+vb==0)
+		{
+			return new double[]{diff,diff};
+		}
+		double df=(va+vb)*(va+vb)/(va*va/(a.length-1)+vb*vb/(b.length-1));
+		double half=t975(df)*Math.sqrt(va+vb);
+		return new double[]{diff-half,diff+half};
+	}
+}
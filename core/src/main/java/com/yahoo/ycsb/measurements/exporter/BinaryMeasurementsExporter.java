@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements.exporter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.yahoo.ycsb.measurements.LatencyHistogram;
+
+/**
+ * Write a compact binary result file, with the metadata of the run, every measurement and the full
+ * microsecond latency histograms. The file can be read back with read(), e.g. by RunComparison.
+ *
+ * The file is a header followed by records, each starting with its type byte, and ends with END.
+ */
+public class BinaryMeasurementsExporter implements HistogramMeasurementsExporter
+{
+
+  static final int MAGIC = 0x59435342; // "YCSB"
+  static final int VERSION = 1;
+
+  static final byte END = 0;
+  static final byte METADATA = 1;
+  static final byte INT = 2;
+  static final byte DOUBLE = 3;
+  static final byte HISTOGRAM = 4;
+
+  private DataOutputStream out;
+
+  public BinaryMeasurementsExporter(OutputStream os) throws IOException
+  {
+    out = new DataOutputStream(new BufferedOutputStream(os));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+  }
+
+  public void writeMetadata(String key, String value) throws IOException
+  {
+    out.writeByte(METADATA);
+    out.writeUTF(key);
+    out.writeUTF(value);
+  }
+
+  public void write(String metric, String measurement, int i) throws IOException
+  {
+    out.writeByte(INT);
+    out.writeUTF(metric);
+    out.writeUTF(measurement);
+    out.writeInt(i);
+  }
+
+  public void write(String metric, String measurement, double d) throws IOException
+  {
+    out.writeByte(DOUBLE);
+    out.writeUTF(metric);
+    out.writeUTF(measurement);
+    out.writeDouble(d);
+  }
+
+  public void writeHistogram(String metric, LatencyHistogram histogram) throws IOException
+  {
+    out.writeByte(HISTOGRAM);
+    out.writeUTF(metric);
+    histogram.write(out);
+  }
+
+  public void close() throws IOException
+  {
+    out.writeByte(END);
+    out.close();
+  }
+
+  /**
+   * Read a result file written by this exporter.
+   *
+   * @throws IOException if the stream could not be read or is not a result file
+   */
+  public static RunResult read(InputStream is) throws IOException
+  {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+    if (in.readInt() != MAGIC)
+    {
+      throw new IOException("Not a YCSB result file");
+    }
+    int version = in.readInt();
+    if (version != VERSION)
+    {
+      throw new IOException("Unsupported result file version " + version);
+    }
+
+    RunResult result = new RunResult();
+    while (true)
+    {
+      byte type = in.readByte();
+      switch (type)
+      {
+      case END:
+        return result;
+      case METADATA:
+        result.metadata.put(in.readUTF(), in.readUTF());
+        break;
+      case INT:
+        result.put(in.readUTF(), in.readUTF(), in.readInt());
+        break;
+      case DOUBLE:
+        result.put(in.readUTF(), in.readUTF(), in.readDouble());
+        break;
+      case HISTOGRAM:
+        result.histograms.put(in.readUTF(), LatencyHistogram.read(in));
+        break;
+      default:
+        throw new IOException("Corrupt result file, unknown record type " + type);
+      }
+    }
+  }
+
+}
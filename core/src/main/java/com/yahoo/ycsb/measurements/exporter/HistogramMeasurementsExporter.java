@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements.exporter;
+
+import java.io.IOException;
+
+import com.yahoo.ycsb.measurements.LatencyHistogram;
+
+/**
+ * An exporter that also keeps the full latency histograms and the metadata of the run, so that runs
+ * can be merged and compared afterwards.
+ */
+public interface HistogramMeasurementsExporter extends MeasurementsExporter
+{
+
+  /**
+   * Write a fact about the run, for example a property or the JVM version.
+   *
+   * @param key Name of the fact, for example "jvm".
+   * @param value Value of the fact.
+   * @throws IOException if writing failed
+   */
+  public void writeMetadata(String key, String value) throws IOException;
+
+  /**
+   * Write the full latency histogram of a metric.
+   *
+   * @param metric Metric name, for example "READ".
+   * @param histogram The latencies of the metric, in us.
+   * @throws IOException if writing failed
+   */
+  public void writeHistogram(String metric, LatencyHistogram histogram) throws IOException;
+
+}
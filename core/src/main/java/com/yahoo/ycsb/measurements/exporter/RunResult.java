@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements.exporter;
+
+import java.util.HashMap;
+import java.util.TreeMap;
+
+import com.yahoo.ycsb.measurements.LatencyHistogram;
+
+/**
+ * The contents of a binary result file: the metadata of the run, its measurements by metric and name, and
+ * the latency histogram of each metric.
+ */
+public class RunResult
+{
+
+  public TreeMap<String, String> metadata = new TreeMap<String, String>();
+  public TreeMap<String, HashMap<String, Double>> measurements = new TreeMap<String, HashMap<String, Double>>();
+  public TreeMap<String, LatencyHistogram> histograms = new TreeMap<String, LatencyHistogram>();
+
+  void put(String metric, String measurement, double value)
+  {
+    HashMap<String, Double> m = measurements.get(metric);
+    if (m == null)
+    {
+      m = new HashMap<String, Double>();
+      measurements.put(metric, m);
+    }
+    m.put(measurement, value);
+  }
+
+  /**
+   * @return the measurement, or null if the run does not have it
+   */
+  public Double get(String metric, String measurement)
+  {
+    HashMap<String, Double> m = measurements.get(metric);
+    return (m == null) ? null : m.get(measurement);
+  }
+
+}
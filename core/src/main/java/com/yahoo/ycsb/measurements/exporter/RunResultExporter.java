@@ -0,0 +1,60 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+package com.yahoo.ycsb.measurements.exporter;
+
+import java.io.IOException;
+
+import com.yahoo.ycsb.measurements.LatencyHistogram;
+
+/**
+ * Keep the exported measurements in memory as a RunResult, e.g. to compare the trials of a repeated run.
+ */
+public class RunResultExporter implements HistogramMeasurementsExporter
+{
+
+  private RunResult result = new RunResult();
+
+  public RunResult getResult()
+  {
+    return result;
+  }
+
+  public void writeMetadata(String key, String value) throws IOException
+  {
+    result.metadata.put(key, value);
+  }
+
+  public void write(String metric, String measurement, int i) throws IOException
+  {
+    result.put(metric, measurement, i);
+  }
+
+  public void write(String metric, String measurement, double d) throws IOException
+  {
+    result.put(metric, measurement, d);
+  }
+
+  public void writeHistogram(String metric, LatencyHistogram histogram) throws IOException
+  {
+    result.histograms.put(metric, histogram);
+  }
+
+  public void close() throws IOException
+  {
+  }
+
+}
@@ -32,16 +32,20 @@ import com.yahoo.ycsb.generator.SkewedLatestGenerator;
 import com.yahoo.ycsb.generator.UniformIntegerGenerator;
 import com.yahoo.ycsb.generator.ZipfianGenerator;
 import com.yahoo.ycsb.generator.RandomDataGenerator;
+import com.yahoo.ycsb.measurements.KeyspaceHeatmap;
 import com.yahoo.ycsb.measurements.Measurements;
 
 import java.util.Properties;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Vector;
 import java.util.Date;
 import java.util.Calendar;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The core benchmark scenario. Represents a set of clients doing simple CRUD operations. The relative 
@@ -64,12 +68,17 @@ import java.util.TimeZone;
  * <LI><b>secondaryscanproportion</b>: what proportion of operations should be secondary scans (default: 0)
  * <LI><b>complexscanproportion</b>: what proportion of operations should be complex scans (default: 0)
  * <LI><b>readmodifywriteproportion</b>: what proportion of operations should be read a record, modify it, write it back (default: 0)
+ * <LI><b>growupdateproportion</b>: what proportion of operations should be updates that make the record larger (default: 0)
+ * <LI><b>growthperupdate</b>: how many bytes a growing update adds to the record (default: 100)
+ * <LI><b>maxdocumentsize</b>: the size, in bytes, up to which records grow; then growing updates rewrite the same size (default: 16384)
+ * <LI><b>growthmode</b>: how records grow: "field" rewrites one growing field with a longer value, "newfields" adds a field each time (default: field)
  * <LI><b>requestdistribution</b>: what distribution should be used to select the records to operate on - uniform, zipfian, hotspot, or latest (default: uniform)
  * <LI><b>maxscanlength</b>: for scans, what is the maximum number of records to scan (default: 1000)
  * <LI><b>scanlengthdistribution</b>: for scans, what distribution should be used to choose the number of records to scan, for each scan, between 1 and maxscanlength (default: uniform)
  * <LI><b>insertorder</b>: should records be inserted in order by key ("ordered"), or in hashed order ("hashed") (default: hashed)
  * <LI><b>complexreads</b>: should complex lookups be performed for read/scan operations: true or false (default: true)
- * <LI><b>secondaryreadfield</b>: Which field to be used for secondary read/scan key lookups: intkey, stringkey, or datekey (default: intkey)
+ * <LI><b>secondaryreadfield</b>: Which field to be used for secondary read/scan key lookups: intkey, stringkey, datekey, or nestedkey, an int leaf of a nested field (default: intkey)
+ * <LI><b>schema</b>: the shape of field0..N: "flat" binary values, or "nested" sub-documents and arrays with typed leaves, shaped by the nesting.* properties of DocumentSchema (default: flat)
  * <LI><b>aggregatetype</b>: Which type of aggregate to be used: simple or complex (default: simple)
  * <LI><b>aggregaterecordcount</b>: number of records to filter for aggregates (default: 10000)
  * <LI><b>groupfunction</b>: Which function to be used when grouping for aggregates: sum, avg, first, last, min, max, or count (default: sum)
@@ -92,7 +101,7 @@ public class ComplexWorkload extends Workload
 	 */
 	public static final String TABLENAME_PROPERTY_DEFAULT="complextable";
 
-	public static String table;
+	String table;
 
 
 	/**
@@ -266,6 +275,47 @@ public class ComplexWorkload extends Workload
 	 * The default proportion of transactions that are scans.
 	 */
 	public static final String READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT="0.0";
+
+	/**
+	 * The name of the property for the proportion of transactions that are updates making the record larger.
+	 */
+	public static final String GROW_UPDATE_PROPORTION_PROPERTY="growupdateproportion";
+
+	/**
+	 * The default proportion of transactions that are growing updates.
+	 */
+	public static final String GROW_UPDATE_PROPORTION_PROPERTY_DEFAULT="0.0";
+
+	/**
+	 * The name of the property for the number of bytes a growing update adds to the record.
+	 */
+	public static final String GROWTH_PER_UPDATE_PROPERTY="growthperupdate";
+
+	/**
+	 * The default growth per update.
+	 */
+	public static final String GROWTH_PER_UPDATE_PROPERTY_DEFAULT="100";
+
+	/**
+	 * The name of the property for the size, in bytes, up to which records grow.
+	 */
+	public static final String MAX_DOCUMENT_SIZE_PROPERTY="maxdocumentsize";
+
+	/**
+	 * The default maximum document size.
+	 */
+	public static final String MAX_DOCUMENT_SIZE_PROPERTY_DEFAULT="16384";
+
+	/**
+	 * The name of the property for how records grow. Options are "field", one field rewritten with a longer value
+	 * each time, and "newfields", a new field each time.
+	 */
+	public static final String GROWTH_MODE_PROPERTY="growthmode";
+
+	/**
+	 * The default growth mode.
+	 */
+	public static final String GROWTH_MODE_PROPERTY_DEFAULT="field";
 	
 	/**
 	 * The name of the property for the the distribution of requests across the keyspace. Options are "uniform", "zipfian" and "latest"
@@ -318,7 +368,18 @@ public class ComplexWorkload extends Workload
 	public static final String COMPLEX_READS_PROPERTY_DEFAULT="true";
 
 	/**
-	 * The name of the property for deciding which field to be used for secondary lookups. Options are "intkey", "stringkey", or "datekey"
+	 * The name of the property for the shape of the fields. Options are "flat" and "nested"; see DocumentSchema.
+	 */
+	public static final String SCHEMA_PROPERTY="schema";
+
+	/**
+	 * The default shape of the fields.
+	 */
+	public static final String SCHEMA_PROPERTY_DEFAULT="flat";
+
+	/**
+	 * The name of the property for deciding which field to be used for secondary lookups. Options are "intkey", "stringkey", "datekey",
+	 * or "nestedkey" for an int leaf of a nested field
 	 */
 	public static final String SECONDARY_READ_FIELD_PROPERTY="secondaryreadfield";
 	
@@ -448,6 +509,11 @@ public class ComplexWorkload extends Workload
  	 */
         boolean complexreads;
         String secondaryreadfield;
+
+	/**
+	 * The shape of nested fields, or null for flat ones
+	 */
+	DocumentSchema schema;
         String aggregatetype;
 
         /** 
@@ -456,6 +522,15 @@ public class ComplexWorkload extends Workload
         String groupfunction;
         int aggregaterecordcount;
 
+	/**
+	 * variables used with growing updates: the bytes each record has grown by so far, by key number
+	 */
+	int growthperupdate;
+	int maxdocumentsize;
+	boolean growbynewfields;
+	int basedocumentsize;
+	ConcurrentHashMap<Integer,AtomicInteger> growth=new ConcurrentHashMap<Integer,AtomicInteger>();
+
 	
 	protected static IntegerGenerator getFieldLengthGenerator(Properties p) throws WorkloadException{
 		IntegerGenerator fieldlengthgenerator;
@@ -552,6 +627,7 @@ public class ComplexWorkload extends Workload
 		double secondaryscanproportion=Double.parseDouble(p.getProperty(SECONDARY_SCAN_PROPORTION_PROPERTY,SECONDARY_SCAN_PROPORTION_PROPERTY_DEFAULT));
 		double complexscanproportion=Double.parseDouble(p.getProperty(COMPLEX_SCAN_PROPORTION_PROPERTY,COMPLEX_SCAN_PROPORTION_PROPERTY_DEFAULT));
 		double readmodifywriteproportion=Double.parseDouble(p.getProperty(READMODIFYWRITE_PROPORTION_PROPERTY,READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT));
+		double growupdateproportion=Double.parseDouble(p.getProperty(GROW_UPDATE_PROPORTION_PROPERTY,GROW_UPDATE_PROPORTION_PROPERTY_DEFAULT));
 		recordcount=Integer.parseInt(p.getProperty(Client.RECORD_COUNT_PROPERTY));
 		String requestdistrib=p.getProperty(REQUEST_DISTRIBUTION_PROPERTY,REQUEST_DISTRIBUTION_PROPERTY_DEFAULT);
 		int maxscanlength=Integer.parseInt(p.getProperty(MAX_SCAN_LENGTH_PROPERTY,MAX_SCAN_LENGTH_PROPERTY_DEFAULT));
@@ -565,7 +641,14 @@ public class ComplexWorkload extends Workload
 		aggregaterecordcount=Integer.parseInt(p.getProperty(AGGREGATE_RECORD_COUNT_PROPERTY,AGGREGATE_RECORD_COUNT_PROPERTY_DEFAULT));
                 numdistinctdatekeys=Integer.parseInt(p.getProperty(NUM_DISTINCT_DATE_KEYS_PROPERTY, NUM_DISTINCT_DATE_KEYS_PROPERTY_DEFAULT));
 
-		if (complexreads)
+		String schemaname=p.getProperty(SCHEMA_PROPERTY,SCHEMA_PROPERTY_DEFAULT);
+		if ( (schemaname.compareTo("flat")!=0) && (schemaname.compareTo("nested")!=0) )
+		{
+			throw new WorkloadException("Unknown schema \""+schemaname+"\"");
+		}
+		boolean nested=schemaname.compareTo("nested")==0;
+
+		if (complexreads || nested)
 		{
 			intkeygenerator = ComplexWorkload.getIntKeysGenerator(p);
 			stringkeygenerator = ComplexWorkload.getStringKeysGenerator(p);
@@ -576,6 +659,18 @@ public class ComplexWorkload extends Workload
         		lbdaysoffsetgenerator = new UniformIntegerGenerator( 1, (int) (numdistinctdatekeys * 0.40) );
         		ubdaysoffsetgenerator = new UniformIntegerGenerator( (int) ( 1 + numdistinctdatekeys * 0.60 ) , numdistinctdatekeys );
 		}
+
+		if (nested)
+		{
+			schema = new DocumentSchema(p, fieldcount, intkeygenerator, daysoffsetgenerator, fieldlengthgenerator);
+		}
+		if (secondaryreadfield.compareTo("nestedkey")==0)
+		{
+			if ( (schema==null) || (schema.getQueryPath()==null) )
+			{
+				throw new WorkloadException("secondaryreadfield=nestedkey needs schema=nested with an int leaf outside arrays");
+			}
+		}
 		
 		readallfields=Boolean.parseBoolean(p.getProperty(READ_ALL_FIELDS_PROPERTY,READ_ALL_FIELDS_PROPERTY_DEFAULT));
 		writeallfields=Boolean.parseBoolean(p.getProperty(WRITE_ALL_FIELDS_PROPERTY,WRITE_ALL_FIELDS_PROPERTY_DEFAULT));
@@ -649,6 +744,21 @@ public class ComplexWorkload extends Workload
 			operationchooser.addValue(readmodifywriteproportion,"READMODIFYWRITE");
 		}
 
+		if (growupdateproportion>0)
+		{
+			operationchooser.addValue(growupdateproportion,"GROWUPDATE");
+		}
+
+		growthperupdate=Integer.parseInt(p.getProperty(GROWTH_PER_UPDATE_PROPERTY,GROWTH_PER_UPDATE_PROPERTY_DEFAULT));
+		maxdocumentsize=Integer.parseInt(p.getProperty(MAX_DOCUMENT_SIZE_PROPERTY,MAX_DOCUMENT_SIZE_PROPERTY_DEFAULT));
+		String growthmode=p.getProperty(GROWTH_MODE_PROPERTY,GROWTH_MODE_PROPERTY_DEFAULT);
+		if ( (growthmode.compareTo("field")!=0) && (growthmode.compareTo("newfields")!=0) )
+		{
+			throw new WorkloadException("Unknown growth mode \""+growthmode+"\"");
+		}
+		growbynewfields=growthmode.compareTo("newfields")==0;
+		basedocumentsize=fieldcount*Integer.parseInt(p.getProperty(FIELD_LENGTH_PROPERTY,FIELD_LENGTH_PROPERTY_DEFAULT));
+
 		transactioninsertkeysequence=new CounterGenerator(recordcount);
 		if (requestdistrib.compareTo("uniform")==0)
 		{
@@ -704,6 +814,7 @@ public class ComplexWorkload extends Workload
 	}
 
 	public String buildKeyName(long keynum) {
+		KeyspaceHeatmap.setKeynum(keynum);
  		if (!orderedinserts)
  		{
  			keynum=Utils.hash(keynum);
@@ -766,6 +877,9 @@ public class ComplexWorkload extends Workload
                                 daysFromBase = daysoffsetgenerator.nextInt();
                                 complexKey = getRandomDate(daysFromBase);
                                 break;
+                        case "nestedkey":
+                                complexKey = intkeygenerator.nextInt();
+                                break;
                         case "lbdatekey":
                                 daysFromBase = lbdaysoffsetgenerator.nextInt();
                                 // generate lower bound date using random offset
@@ -815,6 +929,11 @@ public class ComplexWorkload extends Workload
                 for (int i=0; i<fieldcount; i++)
                 {
                         fieldkey = "field" + i;
+                        if (schema != null)
+                        {
+                                values.put(fieldkey,schema.buildField(i));
+                                continue;
+                        }
                         data= new RandomByteIterator(fieldlengthgenerator.nextInt());
                         values.put(fieldkey,data.toArray() );
                 }
@@ -866,6 +985,13 @@ public class ComplexWorkload extends Workload
 	HashMap<String, ByteIterator> buildUpdate() {
 		//update a random field
 		HashMap<String, ByteIterator> values=new HashMap<String,ByteIterator>();
+		if ( (schema != null) && (!schema.getBinaryPaths().isEmpty()) )
+		{
+			//a binary leaf, by its dotted path, rather than a whole nested field
+			List<String> paths=schema.getBinaryPaths();
+			values.put(paths.get(Utils.random().nextInt(paths.size())),new RandomByteIterator(fieldlengthgenerator.nextInt()));
+			return values;
+		}
 		String fieldname="field"+fieldchooser.nextString();
 		ByteIterator data = new RandomByteIterator(fieldlengthgenerator.nextInt());
 		values.put(fieldname,data);
@@ -882,7 +1008,7 @@ public class ComplexWorkload extends Workload
 	{
 		int keynum=keysequence.nextInt();
 		String dbkey = buildKeyName(keynum);
-		if ( ! complexreads) {
+		if ( ! complexreads && schema == null) {
 			HashMap<String, ByteIterator> values = buildValues();
 			if (db.insert(table,dbkey,values) == 0)
 				return true;
@@ -943,6 +1069,10 @@ public class ComplexWorkload extends Workload
 		{
 			doTransactionAggregate(db);
 		}
+		else if (op.compareTo("GROWUPDATE")==0)
+		{
+			doTransactionGrowUpdate(db);
+		}
 		else
 		{
 			doTransactionReadModifyWrite(db);
@@ -991,6 +1121,14 @@ public class ComplexWorkload extends Workload
 
 	}
 	
+	/**
+	 * @return the field secondary lookups match: secondaryreadfield, or the dotted path of the nested key
+	 */
+	String secondaryFieldName()
+	{
+		return (secondaryreadfield.compareTo("nestedkey")==0) ? schema.getQueryPath() : secondaryreadfield;
+	}
+
 	public void doTransactionSecondaryRead(DB db)
 	{
 		HashSet<String> fields=null;
@@ -1008,7 +1146,7 @@ public class ComplexWorkload extends Workload
 
 		Object keyvalue = getComplexKeyValue ( secondaryreadfield ); 
 
-		db.read(table,secondaryreadfield,keyvalue,fields,new HashMap<String,Object>());
+		db.read(table,secondaryFieldName(),keyvalue,fields,new HashMap<String,Object>());
 	}
 	
 	public void doTransactionComplexRead(DB db)
@@ -1072,6 +1210,7 @@ public class ComplexWorkload extends Workload
 
 		db.read(table,keyname,fields,new HashMap<String,Object>());
 		
+		KeyspaceHeatmap.setKeynum(keynum);
 		db.update(table,keyname,values);
 
 		long en=System.nanoTime();
@@ -1123,7 +1262,7 @@ public class ComplexWorkload extends Workload
 
 		Object startkeyvalue = getComplexKeyValue ( secondaryreadfield ); 
 
-		db.scan(table,secondaryreadfield,startkeyvalue,len,fields,new Vector<HashMap<String,Object>>());
+		db.scan(table,secondaryFieldName(),startkeyvalue,len,fields,new Vector<HashMap<String,Object>>());
 	}
 
 	public void doTransactionComplexScan(DB db)
@@ -1212,6 +1351,72 @@ public class ComplexWorkload extends Workload
 		db.update(table,keyname,values);
 	}
 
+	/**
+	 * Make a record larger by growthperupdate bytes, until it reaches maxdocumentsize; then rewrite it at the same
+	 * size. The latency and the bytes written are measured by the size of the record after the update, estimated
+	 * from fieldcount and fieldlength, as GROWING UPDATE <size>KB for the records of up to that size.
+	 */
+	public void doTransactionGrowUpdate(DB db)
+	{
+		//choose a random key
+		int keynum = nextKeynum();
+
+		String keyname=buildKeyName(keynum);
+
+		AtomicInteger grown=growth.get(keynum);
+		if (grown==null)
+		{
+			growth.putIfAbsent(keynum,new AtomicInteger(0));
+			grown=growth.get(keynum);
+		}
+
+		int before;
+		int after;
+		do
+		{
+			before=grown.get();
+			after=Math.max(before,Math.min(before+growthperupdate,maxdocumentsize-basedocumentsize));
+		} while (!grown.compareAndSet(before,after));
+
+		HashMap<String,ByteIterator> values=new HashMap<String,ByteIterator>();
+		if (after==0)
+		{
+			//the records are already at the maximum size
+			values=buildUpdate();
+		}
+		else if (growbynewfields)
+		{
+			//a new field, or the last one again once the record stopped growing
+			int added=(after+growthperupdate-1)/growthperupdate;
+			int length=(after>before) ? after-before : after-(added-1)*growthperupdate;
+			values.put("growth"+(added-1),new RandomByteIterator(length));
+		}
+		else
+		{
+			values.put("growth",new RandomByteIterator(after));
+		}
+
+		long written=0;
+		for (ByteIterator value : values.values())
+		{
+			written+=value.bytesLeft();
+		}
+
+		long st=System.nanoTime();
+		KeyspaceHeatmap.setKeynum(keynum);
+		db.update(table,keyname,values);
+		long en=System.nanoTime();
+
+		int sizekb=1;
+		while (sizekb*1024<basedocumentsize+after)
+		{
+			sizekb*=2;
+		}
+		String operation="GROWING UPDATE "+sizekb+"KB";
+		Measurements.getMeasurements().measure(operation, (int)((en-st)/1000));
+		Measurements.getMeasurements().reportBytes(operation, written, 0);
+	}
+
 	public void doTransactionInsert(DB db)
 	{
 		//choose the next key
@@ -1219,7 +1424,7 @@ public class ComplexWorkload extends Workload
 
 		String dbkey = buildKeyName(keynum);
 
-                if ( ! complexreads) {
+                if ( ! complexreads && schema == null) {
                         HashMap<String, ByteIterator> values = buildValues();
                         db.insert(table,dbkey,values);
                 } else {
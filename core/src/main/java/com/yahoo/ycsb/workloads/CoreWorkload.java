@@ -31,12 +31,16 @@ import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
 import com.yahoo.ycsb.generator.SkewedLatestGenerator;
 import com.yahoo.ycsb.generator.UniformIntegerGenerator;
 import com.yahoo.ycsb.generator.ZipfianGenerator;
+import com.yahoo.ycsb.measurements.Counters;
+import com.yahoo.ycsb.measurements.KeyspaceHeatmap;
 import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The core benchmark scenario. Represents a set of clients doing simple CRUD operations. The relative 
@@ -54,6 +58,16 @@ import java.util.Vector;
  * <LI><b>insertproportion</b>: what proportion of operations should be inserts (default: 0)
  * <LI><b>scanproportion</b>: what proportion of operations should be scans (default: 0)
  * <LI><b>readmodifywriteproportion</b>: what proportion of operations should be read a record, modify it, write it back (default: 0)
+ * <LI><b>casproportion</b>: what proportion of operations should read the version of a record, then update it only if the version is unchanged (default: 0)
+ * <LI><b>cas.versionfield</b>: the field holding the version of a record, for compare-and-set operations (default: version)
+ * <LI><b>cas.maxretries</b>: how many times a compare-and-set operation that lost to another writer rereads the version and tries again (default: 3)
+ * <LI><b>upsertproportion</b>: what proportion of operations should write a whole record, creating it if it is missing (default: 0)
+ * <LI><b>loadmode</b>: should the load phase insert records ("insert") or upsert them ("upsert"), so that an insertstart below the records already loaded re-loads an overlapping key range (default: insert)
+ * <LI><b>incrementproportion</b>: what proportion of operations should add to a counter field of a record (default: 0)
+ * <LI><b>increment.field</b>: the counter field (default: counter)
+ * <LI><b>increment.delta</b>: the amount added by each increment (default: 1)
+ * <LI><b>increment.hotcounters</b>: if set, increments go to this many records, picked uniformly, instead of by requestdistribution, so 1 has all the threads write the same record (default: unset)
+ * <LI><b>cas.hotsetfraction</b>, <b>cas.hotopnfraction</b>: if set, compare-and-set operations pick their records from a hot set of this fraction of the records, for this fraction of the operations, instead of by requestdistribution (default: unset)
  * <LI><b>requestdistribution</b>: what distribution should be used to select the records to operate on - uniform, zipfian, hotspot, or latest (default: uniform)
  * <LI><b>maxscanlength</b>: for scans, what is the maximum number of records to scan (default: 1000)
  * <LI><b>scanlengthdistribution</b>: for scans, what distribution should be used to choose the number of records to scan, for each scan, between 1 and maxscanlength (default: uniform)
@@ -73,7 +87,7 @@ public class CoreWorkload extends Workload
 	 */
 	public static final String TABLENAME_PROPERTY_DEFAULT="usertable";
 
-	public static String table;
+	String table;
 
 
 	/**
@@ -198,6 +212,108 @@ public class CoreWorkload extends Workload
 	 */
 	public static final String READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT="0.0";
 	
+	/**
+	 * The name of the property for the proportion of transactions that are compare-and-set.
+	 */
+	public static final String CAS_PROPORTION_PROPERTY="casproportion";
+
+	/**
+	 * The default proportion of transactions that are compare-and-set.
+	 */
+	public static final String CAS_PROPORTION_PROPERTY_DEFAULT="0.0";
+
+	/**
+	 * The name of the property for the field holding the version of a record.
+	 */
+	public static final String CAS_VERSION_FIELD_PROPERTY="cas.versionfield";
+
+	/**
+	 * The default field holding the version of a record.
+	 */
+	public static final String CAS_VERSION_FIELD_PROPERTY_DEFAULT="version";
+
+	/**
+	 * The name of the property for the retries of a compare-and-set that conflicted.
+	 */
+	public static final String CAS_MAX_RETRIES_PROPERTY="cas.maxretries";
+
+	/**
+	 * The default retries of a compare-and-set that conflicted.
+	 */
+	public static final String CAS_MAX_RETRIES_PROPERTY_DEFAULT="3";
+
+	/**
+	 * The name of the property for the fraction of the records in the hot set of compare-and-set operations.
+	 * Unset, they pick their records like the other operations.
+	 */
+	public static final String CAS_HOTSET_FRACTION_PROPERTY="cas.hotsetfraction";
+
+	/**
+	 * The name of the property for the fraction of compare-and-set operations on the hot set.
+	 */
+	public static final String CAS_HOTOPN_FRACTION_PROPERTY="cas.hotopnfraction";
+
+	/**
+	 * The default fraction of compare-and-set operations on the hot set.
+	 */
+	public static final String CAS_HOTOPN_FRACTION_PROPERTY_DEFAULT="0.99";
+
+	/**
+	 * The name of the property for the proportion of transactions that are upserts.
+	 */
+	public static final String UPSERT_PROPORTION_PROPERTY="upsertproportion";
+
+	/**
+	 * The default proportion of transactions that are upserts.
+	 */
+	public static final String UPSERT_PROPORTION_PROPERTY_DEFAULT="0.0";
+
+	/**
+	 * The name of the property for how the load phase writes its records. Options are "insert" and "upsert".
+	 */
+	public static final String LOAD_MODE_PROPERTY="loadmode";
+
+	/**
+	 * The default load mode.
+	 */
+	public static final String LOAD_MODE_PROPERTY_DEFAULT="insert";
+
+	/**
+	 * The name of the property for the proportion of transactions that are increments of a counter.
+	 */
+	public static final String INCREMENT_PROPORTION_PROPERTY="incrementproportion";
+
+	/**
+	 * The default proportion of transactions that are increments of a counter.
+	 */
+	public static final String INCREMENT_PROPORTION_PROPERTY_DEFAULT="0.0";
+
+	/**
+	 * The name of the property for the counter field of the increments.
+	 */
+	public static final String INCREMENT_FIELD_PROPERTY="increment.field";
+
+	/**
+	 * The default counter field of the increments.
+	 */
+	public static final String INCREMENT_FIELD_PROPERTY_DEFAULT="counter";
+
+	/**
+	 * The name of the property for the amount added by an increment.
+	 */
+	public static final String INCREMENT_DELTA_PROPERTY="increment.delta";
+
+	/**
+	 * The default amount added by an increment.
+	 */
+	public static final String INCREMENT_DELTA_PROPERTY_DEFAULT="1";
+
+	/**
+	 * The name of the property for the number of hot counters, the first records, that increments go to.
+	 * Unset, they pick their records like the other operations.
+	 */
+	public static final String INCREMENT_HOT_COUNTERS_PROPERTY="increment.hotcounters";
+
 	/**
 	 * The name of the property for the the distribution of requests across the keyspace. Options are "uniform", "zipfian" and "latest"
 	 */
@@ -258,6 +374,51 @@ public class CoreWorkload extends Workload
    */
   public static final String HOTSPOT_OPN_FRACTION_DEFAULT = "0.8";
 	
+	/**
+	 * The outcome of the compare-and-set operations, exported as [CAS]: the attempts, the conflicts with another
+	 * writer, the retries, the operations that succeeded, gave up after cas.maxretries or found conditional updates
+	 * unsupported, the conflict rate in percent of the attempts and the goodput, the successful operations per
+	 * second between the first and the last one.
+	 */
+	static class CasCounters extends Counters
+	{
+		AtomicLong first=new AtomicLong(0);
+		AtomicLong last=new AtomicLong(0);
+
+		CasCounters()
+		{
+			super("CAS");
+		}
+
+		void done(long now)
+		{
+			first.compareAndSet(0,now);
+			last.set(now);
+		}
+
+		public void reset()
+		{
+			super.reset();
+			first.set(0);
+			last.set(0);
+		}
+
+		public void exportMeasurements(MeasurementsExporter exporter) throws IOException
+		{
+			super.exportMeasurements(exporter);
+			long attempts=get("Attempts");
+			if (attempts>0)
+			{
+				exporter.write(getName(),"ConflictRate(%)",100.0*get("Conflicts")/attempts);
+			}
+			long elapsed=last.get()-first.get();
+			if (elapsed>0)
+			{
+				exporter.write(getName(),"Goodput(ops/sec)",get("Successes")*1000000000.0/elapsed);
+			}
+		}
+	}
+
 	IntegerGenerator keysequence;
 
 	DiscreteGenerator operationchooser;
@@ -272,7 +433,32 @@ public class CoreWorkload extends Workload
 	
 	boolean orderedinserts;
 
+	/**
+	 * Whether the load phase upserts its records rather than inserting them.
+	 */
+	boolean upsertload;
+
 	int recordcount;
+
+	String casversionfield;
+
+	int casmaxretries;
+
+	/**
+	 * Picks the records of compare-and-set operations, or null for them to use keychooser.
+	 */
+	IntegerGenerator caskeychooser;
+
+	CasCounters cascounters;
+
+	String incrementfield;
+
+	long incrementdelta;
+
+	/**
+	 * Picks the records of increments, or null for them to use keychooser.
+	 */
+	IntegerGenerator incrementkeychooser;
 	
 	protected static IntegerGenerator getFieldLengthGenerator(Properties p) throws WorkloadException{
 		IntegerGenerator fieldlengthgenerator;
@@ -313,6 +499,9 @@ public class CoreWorkload extends Workload
 		double insertproportion=Double.parseDouble(p.getProperty(INSERT_PROPORTION_PROPERTY,INSERT_PROPORTION_PROPERTY_DEFAULT));
 		double scanproportion=Double.parseDouble(p.getProperty(SCAN_PROPORTION_PROPERTY,SCAN_PROPORTION_PROPERTY_DEFAULT));
 		double readmodifywriteproportion=Double.parseDouble(p.getProperty(READMODIFYWRITE_PROPORTION_PROPERTY,READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT));
+		double casproportion=Double.parseDouble(p.getProperty(CAS_PROPORTION_PROPERTY,CAS_PROPORTION_PROPERTY_DEFAULT));
+		double upsertproportion=Double.parseDouble(p.getProperty(UPSERT_PROPORTION_PROPERTY,UPSERT_PROPORTION_PROPERTY_DEFAULT));
+		double incrementproportion=Double.parseDouble(p.getProperty(INCREMENT_PROPORTION_PROPERTY,INCREMENT_PROPORTION_PROPERTY_DEFAULT));
 		recordcount=Integer.parseInt(p.getProperty(Client.RECORD_COUNT_PROPERTY));
 		String requestdistrib=p.getProperty(REQUEST_DISTRIBUTION_PROPERTY,REQUEST_DISTRIBUTION_PROPERTY_DEFAULT);
 		int maxscanlength=Integer.parseInt(p.getProperty(MAX_SCAN_LENGTH_PROPERTY,MAX_SCAN_LENGTH_PROPERTY_DEFAULT));
@@ -367,6 +556,56 @@ public class CoreWorkload extends Workload
 			operationchooser.addValue(readmodifywriteproportion,"READMODIFYWRITE");
 		}
 
+		if (casproportion>0)
+		{
+			operationchooser.addValue(casproportion,"CAS");
+		}
+
+		if (upsertproportion>0)
+		{
+			operationchooser.addValue(upsertproportion,"UPSERT");
+		}
+
+		if (incrementproportion>0)
+		{
+			operationchooser.addValue(incrementproportion,"INCREMENT");
+		}
+
+		String loadmode=p.getProperty(LOAD_MODE_PROPERTY,LOAD_MODE_PROPERTY_DEFAULT);
+		if (loadmode.equals("upsert"))
+		{
+			upsertload=true;
+		}
+		else if (!loadmode.equals("insert"))
+		{
+			throw new WorkloadException("Unknown load mode \""+loadmode+"\"");
+		}
+
+		incrementfield=p.getProperty(INCREMENT_FIELD_PROPERTY,INCREMENT_FIELD_PROPERTY_DEFAULT);
+		incrementdelta=Long.parseLong(p.getProperty(INCREMENT_DELTA_PROPERTY,INCREMENT_DELTA_PROPERTY_DEFAULT));
+		if (p.getProperty(INCREMENT_HOT_COUNTERS_PROPERTY)!=null)
+		{
+			int hotcounters=Integer.parseInt(p.getProperty(INCREMENT_HOT_COUNTERS_PROPERTY));
+			if ( (hotcounters<1) || (hotcounters>recordcount) )
+			{
+				throw new WorkloadException(INCREMENT_HOT_COUNTERS_PROPERTY+" must be between 1 and the record count");
+			}
+			incrementkeychooser=new UniformIntegerGenerator(0,hotcounters-1);
+		}
+
+		casversionfield=p.getProperty(CAS_VERSION_FIELD_PROPERTY,CAS_VERSION_FIELD_PROPERTY_DEFAULT);
+		casmaxretries=Integer.parseInt(p.getProperty(CAS_MAX_RETRIES_PROPERTY,CAS_MAX_RETRIES_PROPERTY_DEFAULT));
+		if (p.getProperty(CAS_HOTSET_FRACTION_PROPERTY)!=null)
+		{
+			double hotsetfraction=Double.parseDouble(p.getProperty(CAS_HOTSET_FRACTION_PROPERTY));
+			double hotopnfraction=Double.parseDouble(p.getProperty(CAS_HOTOPN_FRACTION_PROPERTY,CAS_HOTOPN_FRACTION_PROPERTY_DEFAULT));
+			caskeychooser=new HotspotIntegerGenerator(0,recordcount-1,hotsetfraction,hotopnfraction);
+		}
+		if (casproportion>0)
+		{
+			cascounters=(CasCounters)Measurements.getMeasurements().registerCounters(new CasCounters());
+		}
+
 		transactioninsertkeysequence=new CounterGenerator(recordcount);
 		if (requestdistrib.compareTo("uniform")==0)
 		{
@@ -421,6 +660,7 @@ public class CoreWorkload extends Workload
 	}
 
 	public String buildKeyName(long keynum) {
+		KeyspaceHeatmap.setKeynum(keynum);
  		if (!orderedinserts)
  		{
  			keynum=Utils.hash(keynum);
@@ -458,7 +698,8 @@ public class CoreWorkload extends Workload
 		int keynum=keysequence.nextInt();
 		String dbkey = buildKeyName(keynum);
 		HashMap<String, ByteIterator> values = buildValues();
-		if (db.insert(table,dbkey,values) == 0)
+		int res=upsertload ? db.upsert(table,dbkey,values) : db.insert(table,dbkey,values);
+		if (res == 0)
 			return true;
 		else
 			return false;
@@ -490,6 +731,18 @@ public class CoreWorkload extends Workload
 		{
 			doTransactionScan(db);
 		}
+		else if (op.compareTo("CAS")==0)
+		{
+			doTransactionCAS(db);
+		}
+		else if (op.compareTo("UPSERT")==0)
+		{
+			doTransactionUpsert(db);
+		}
+		else if (op.compareTo("INCREMENT")==0)
+		{
+			doTransactionIncrement(db);
+		}
 		else
 		{
 			doTransactionReadModifyWrite(db);
@@ -574,6 +827,7 @@ public class CoreWorkload extends Workload
 
 		db.read(table,keyname,fields,new HashMap<String,Object>());
 		
+		KeyspaceHeatmap.setKeynum(keynum);
 		db.update(table,keyname,values);
 
 		long en=System.nanoTime();
@@ -581,6 +835,121 @@ public class CoreWorkload extends Workload
 		Measurements.getMeasurements().measure("READ-MODIFY-WRITE", (int)((en-st)/1000));
 	}
 	
+	/**
+	 * Read the version of a record, then write it with the next version only if no other writer changed the
+	 * version in between. A conflict rereads the version and tries again, up to cas.maxretries times. A record
+	 * without a version field is at version 0.
+	 */
+	public void doTransactionCAS(DB db)
+	{
+		int keynum=(caskeychooser==null) ? nextKeynum() : caskeychooser.nextInt();
+
+		String keyname=buildKeyName(keynum);
+
+		HashSet<String> fields=new HashSet<String>();
+		fields.add(casversionfield);
+
+		long st=System.nanoTime();
+		int res;
+		int retries=0;
+		while (true)
+		{
+			HashMap<String,Object> result=new HashMap<String,Object>();
+			res=db.read(table,keyname,fields,result);
+			if (res!=0)
+			{
+				break;
+			}
+
+			byte[] version=bytesOf(result.get(casversionfield));
+			long next=1;
+			if (version!=null)
+			{
+				try
+				{
+					next=Long.parseLong(new String(version))+1;
+				}
+				catch (NumberFormatException e)
+				{
+					//a version field this workload did not write, it takes over from version 1
+				}
+			}
+
+			HashMap<String,ByteIterator> values=writeallfields ? buildValues() : buildUpdate();
+			values.put(casversionfield,new StringByteIterator(Long.toString(next)));
+
+			KeyspaceHeatmap.setKeynum(keynum);
+			res=db.conditionalUpdate(table,keyname,casversionfield,(version==null) ? null : new ByteArrayByteIterator(version),values);
+			cascounters.add("Attempts",1);
+			if (res==DB.CONFLICT)
+			{
+				cascounters.add("Conflicts",1);
+				if (retries<casmaxretries)
+				{
+					retries++;
+					cascounters.add("Retries",1);
+					continue;
+				}
+				cascounters.add("GaveUp",1);
+			}
+			else if (res==DB.UNSUPPORTED)
+			{
+				cascounters.add("Unsupported",1);
+			}
+			else if (res==0)
+			{
+				cascounters.add("Successes",1);
+			}
+			break;
+		}
+		long en=System.nanoTime();
+		cascounters.done(en);
+
+		Measurements.getMeasurements().measure("CAS",(int)((en-st)/1000));
+		Measurements.getMeasurements().reportReturnCode("CAS",res);
+	}
+
+	/**
+	 * Write a whole record whether or not it exists, as an idempotent re-ingestion would.
+	 */
+	public void doTransactionUpsert(DB db)
+	{
+		int keynum=nextKeynum();
+
+		db.upsert(table,buildKeyName(keynum),buildValues());
+	}
+
+	/**
+	 * Add to the counter field of a record, without reading it. With increment.hotcounters, all the threads write
+	 * the same few records, measuring the contention of writes to a single record.
+	 */
+	public void doTransactionIncrement(DB db)
+	{
+		int keynum=(incrementkeychooser==null) ? nextKeynum() : incrementkeychooser.nextInt();
+
+		db.increment(table,buildKeyName(keynum),incrementfield,incrementdelta);
+	}
+
+	/**
+	 * @return the bytes of a value read from a DB, which may be a ByteIterator, a byte array or a String
+	 */
+	static byte[] bytesOf(Object value)
+	{
+		if (value instanceof ByteIterator)
+		{
+			return ((ByteIterator)value).toArray();
+		}
+		else if (value instanceof byte[])
+		{
+			return (byte[])value;
+		}
+		else if (value!=null)
+		{
+			return value.toString().getBytes();
+		}
+		return null;
+	}
+	
 	public void doTransactionScan(DB db)
 	{
 		//choose a random key
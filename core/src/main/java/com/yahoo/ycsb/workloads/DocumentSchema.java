@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import com.yahoo.ycsb.RandomByteIterator;
+import com.yahoo.ycsb.Utils;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.generator.IntegerGenerator;
+
+/**
+ * The shape of the fields of nested records, for ComplexWorkload with schema=nested. Each field is a tree of
+ * sub-documents (maps) and arrays (lists) with typed leaves; every record has the same shape, with new values.
+ *
+ * Properties:
+ * <UL>
+ * <LI><b>nesting.depth</b>: the levels of sub-documents and arrays below each field; 0 makes the fields typed leaves (default: 2)
+ * <LI><b>nesting.fanout</b>: the number of fields of a sub-document (default: 3)
+ * <LI><b>nesting.arrayfraction</b>: the fraction of the inner nodes that are arrays rather than sub-documents (default: 0.25)
+ * <LI><b>nesting.arraylength</b>: arrays have from 1 to this many elements, all of the same shape (default: 4)
+ * <LI><b>nesting.leaftypes</b>: the types the leaves are picked from: int, double, date, string, binary (default: all of them)
+ * <LI><b>nesting.seed</b>: the seed the shape is drawn with, so that the load and the run agree on it (default: 1)
+ * </UL>
+ *
+ * Int leaves take their values from the intkey generator and date leaves from the datekey generator, so that
+ * secondary lookups on a nested path match records as often as lookups on the flat fields do.
+ */
+public class DocumentSchema
+{
+	public static final String DEPTH_PROPERTY="nesting.depth";
+	public static final String DEPTH_PROPERTY_DEFAULT="2";
+
+	public static final String FANOUT_PROPERTY="nesting.fanout";
+	public static final String FANOUT_PROPERTY_DEFAULT="3";
+
+	public static final String ARRAY_FRACTION_PROPERTY="nesting.arrayfraction";
+	public static final String ARRAY_FRACTION_PROPERTY_DEFAULT="0.25";
+
+	public static final String ARRAY_LENGTH_PROPERTY="nesting.arraylength";
+	public static final String ARRAY_LENGTH_PROPERTY_DEFAULT="4";
+
+	public static final String LEAF_TYPES_PROPERTY="nesting.leaftypes";
+	public static final String LEAF_TYPES_PROPERTY_DEFAULT="int,double,date,string,binary";
+
+	public static final String SEED_PROPERTY="nesting.seed";
+	public static final String SEED_PROPERTY_DEFAULT="1";
+
+	static final String[] LEAF_TYPES={ "int", "double", "date", "string", "binary" };
+
+	static final int DOCUMENT=0;
+	static final int ARRAY=1;
+	static final int LEAF=2;
+
+	/**
+	 * A node of the shape: a sub-document with named children, an array of elements of one shape, or a typed leaf.
+	 */
+	static class Node
+	{
+		int kind;
+		String type;
+		List<String> names=new ArrayList<String>();
+		List<Node> children=new ArrayList<Node>();
+	}
+
+	List<Node> fields=new ArrayList<Node>();
+	int arraylength;
+
+	IntegerGenerator ints;
+	IntegerGenerator dayoffsets;
+	IntegerGenerator lengths;
+
+	/**
+	 * Dotted paths, not through arrays, to the int leaves and to the binary leaves.
+	 */
+	List<String> intpaths=new ArrayList<String>();
+	List<String> binarypaths=new ArrayList<String>();
+
+	/**
+	 * @param ints the generator of int leaf values
+	 * @param dayoffsets the generator of date leaf values, as offsets for ComplexWorkload.getRandomDate
+	 * @param lengths the generator of the lengths of string and binary leaves
+	 */
+	public DocumentSchema(Properties p, int fieldcount, IntegerGenerator ints, IntegerGenerator dayoffsets, IntegerGenerator lengths) throws WorkloadException
+	{
+		this.ints=ints;
+		this.dayoffsets=dayoffsets;
+		this.lengths=lengths;
+
+		int depth=Integer.parseInt(p.getProperty(DEPTH_PROPERTY,DEPTH_PROPERTY_DEFAULT));
+		int fanout=Integer.parseInt(p.getProperty(FANOUT_PROPERTY,FANOUT_PROPERTY_DEFAULT));
+		double arrayfraction=Double.parseDouble(p.getProperty(ARRAY_FRACTION_PROPERTY,ARRAY_FRACTION_PROPERTY_DEFAULT));
+		arraylength=Integer.parseInt(p.getProperty(ARRAY_LENGTH_PROPERTY,ARRAY_LENGTH_PROPERTY_DEFAULT));
+		String[] leaftypes=p.getProperty(LEAF_TYPES_PROPERTY,LEAF_TYPES_PROPERTY_DEFAULT).split(",");
+		for (int i=0; i<leaftypes.length; i++)
+		{
+			leaftypes[i]=leaftypes[i].trim();
+			if (!Arrays.asList(LEAF_TYPES).contains(leaftypes[i]))
+			{
+				throw new WorkloadException("Unknown leaf type \""+leaftypes[i]+"\"");
+			}
+		}
+		if ( (depth<0) || (fanout<1) || (arraylength<1) )
+		{
+			throw new WorkloadException("nesting.depth must not be negative, nesting.fanout and nesting.arraylength must be positive");
+		}
+
+		Random random=new Random(Long.parseLong(p.getProperty(SEED_PROPERTY,SEED_PROPERTY_DEFAULT)));
+		for (int i=0; i<fieldcount; i++)
+		{
+			Node field=shape(random,depth,fanout,arrayfraction,leaftypes);
+			fields.add(field);
+			collectPaths(field,"field"+i);
+		}
+	}
+
+	static Node shape(Random random, int depth, int fanout, double arrayfraction, String[] leaftypes)
+	{
+		Node node=new Node();
+		if (depth==0)
+		{
+			node.kind=LEAF;
+			node.type=leaftypes[random.nextInt(leaftypes.length)];
+		}
+		else if (random.nextDouble()<arrayfraction)
+		{
+			node.kind=ARRAY;
+			node.children.add(shape(random,depth-1,fanout,arrayfraction,leaftypes));
+		}
+		else
+		{
+			node.kind=DOCUMENT;
+			for (int i=0; i<fanout; i++)
+			{
+				node.names.add("f"+i);
+				node.children.add(shape(random,depth-1,fanout,arrayfraction,leaftypes));
+			}
+		}
+		return node;
+	}
+
+	void collectPaths(Node node, String path)
+	{
+		if (node.kind==LEAF)
+		{
+			if (node.type.compareTo("int")==0)
+			{
+				intpaths.add(path);
+			}
+			else if (node.type.compareTo("binary")==0)
+			{
+				binarypaths.add(path);
+			}
+		}
+		else if (node.kind==DOCUMENT)
+		{
+			for (int i=0; i<node.children.size(); i++)
+			{
+				collectPaths(node.children.get(i),path+"."+node.names.get(i));
+			}
+		}
+	}
+
+	/**
+	 * @return the dotted path of an int leaf, not through an array, for secondary lookups; null if there is none
+	 */
+	public String getQueryPath()
+	{
+		return intpaths.isEmpty() ? null : intpaths.get(0);
+	}
+
+	/**
+	 * @return the dotted paths of the binary leaves, not through arrays, that updates can set
+	 */
+	public List<String> getBinaryPaths()
+	{
+		return binarypaths;
+	}
+
+	/**
+	 * @return a new value of field i: a LinkedHashMap for a sub-document, an ArrayList for an array, or a leaf
+	 */
+	public Object buildField(int i)
+	{
+		return build(fields.get(i));
+	}
+
+	Object build(Node node)
+	{
+		switch (node.kind)
+		{
+			case DOCUMENT:
+				LinkedHashMap<String,Object> document=new LinkedHashMap<String,Object>();
+				for (int i=0; i<node.children.size(); i++)
+				{
+					document.put(node.names.get(i),build(node.children.get(i)));
+				}
+				return document;
+			case ARRAY:
+				int length=1+Utils.random().nextInt(arraylength);
+				ArrayList<Object> array=new ArrayList<Object>(length);
+				for (int i=0; i<length; i++)
+				{
+					array.add(build(node.children.get(0)));
+				}
+				return array;
+			default:
+				return buildLeaf(node.type);
+		}
+	}
+
+	Object buildLeaf(String type)
+	{
+		switch (type)
+		{
+			case "int":
+				return ints.nextInt();
+			case "double":
+				return Utils.random().nextDouble()*1000;
+			case "date":
+				return ComplexWorkload.getRandomDate(dayoffsets.nextInt());
+			case "string":
+				return Utils.ASCIIString(lengths.nextInt());
+			default:
+				return new RandomByteIterator(lengths.nextInt()).toArray();
+		}
+	}
+}
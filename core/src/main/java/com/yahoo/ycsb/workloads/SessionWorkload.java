@@ -0,0 +1,379 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Properties;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.StringByteIterator;
+import com.yahoo.ycsb.Utils;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.generator.ConstantIntegerGenerator;
+import com.yahoo.ycsb.generator.ExponentialGenerator;
+import com.yahoo.ycsb.generator.IntegerGenerator;
+import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
+import com.yahoo.ycsb.generator.UniformIntegerGenerator;
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Web traffic as sessions of logical users instead of independent operations: a user reads a profile, then some
+ * of the items the profile refers to, then updates one of them, with a think time before each step.
+ *
+ * The records are those of CoreWorkload plus a refs field, the keynums of refcount other records picked at
+ * load time. The items a session reads are taken from the refs of the profile it read, so a step depends on the
+ * result of the one before; a session whose profile has no refs, e.g. because it was not found, ends after the
+ * profile and is reported as broken.
+ *
+ * Each client thread runs usersperthread logical users. A transaction is one step of the user whose think time
+ * ends first, after waiting for it, so a thread keeps many users in flight and a run can have far more users
+ * than threads. Each operation is measured as usual by the DB wrapper; each session is also measured as
+ * SESSION, the time spent in its operations, and SESSION ELAPSED, from the start of its first operation to the
+ * end of its last, think times included. The return code of SESSION is 0 for a complete session, 1 for a broken one.
+ *
+ * Properties to control the client, besides those of CoreWorkload for the records, the profile key distribution
+ * and the fields read and updated:
+ * <UL>
+ * <LI><b>session.usersperthread</b>: the logical users of each client thread (default: 1)
+ * <LI><b>session.refcount</b>: the records each record refers to (default: 10)
+ * <LI><b>session.refdistribution</b>: how the referred records are picked, uniform or zipfian (default: zipfian)
+ * <LI><b>session.maxitems</b>: a session reads from 1 to this many of the referred items, uniformly (default: 5)
+ * <LI><b>session.updateproportion</b>: the fraction of the sessions that end with an update of one item read (default: 1)
+ * <LI><b>session.thinktime</b>: the mean think time before a step, in milliseconds (default: 100)
+ * <LI><b>session.thinktimedistribution</b>: constant, uniform (from 0 to twice the mean) or exponential (default: exponential)
+ * </ul>
+ */
+public class SessionWorkload extends CoreWorkload
+{
+	public static final String USERS_PER_THREAD_PROPERTY="session.usersperthread";
+	public static final String USERS_PER_THREAD_PROPERTY_DEFAULT="1";
+
+	public static final String REF_COUNT_PROPERTY="session.refcount";
+	public static final String REF_COUNT_PROPERTY_DEFAULT="10";
+
+	public static final String REF_DISTRIBUTION_PROPERTY="session.refdistribution";
+	public static final String REF_DISTRIBUTION_PROPERTY_DEFAULT="zipfian";
+
+	public static final String MAX_ITEMS_PROPERTY="session.maxitems";
+	public static final String MAX_ITEMS_PROPERTY_DEFAULT="5";
+
+	public static final String UPDATE_PROPORTION_PROPERTY="session.updateproportion";
+	public static final String UPDATE_PROPORTION_PROPERTY_DEFAULT="1";
+
+	public static final String THINK_TIME_PROPERTY="session.thinktime";
+	public static final String THINK_TIME_PROPERTY_DEFAULT="100";
+
+	public static final String THINK_TIME_DISTRIBUTION_PROPERTY="session.thinktimedistribution";
+	public static final String THINK_TIME_DISTRIBUTION_PROPERTY_DEFAULT="exponential";
+
+	/**
+	 * The field of a record that holds the keynums of the records it refers to.
+	 */
+	public static final String REFS_FIELD="refs";
+
+	static final int PROFILE=0;
+	static final int ITEMS=1;
+	static final int UPDATE=2;
+
+	/**
+	 * A logical user, and where it is in its current session.
+	 */
+	static class Session
+	{
+		int state=PROFILE;
+
+		/**
+		 * When the think time before the next step ends, in System.nanoTime().
+		 */
+		long due;
+
+		int[] items;
+		int itemcount;
+		int nextitem;
+		ArrayList<Integer> read=new ArrayList<Integer>();
+
+		long start;
+		long servicetime;
+
+		void reset()
+		{
+			state=PROFILE;
+			items=null;
+			itemcount=0;
+			nextitem=0;
+			read.clear();
+			servicetime=0;
+		}
+	}
+
+	static final Comparator<Session> BY_DUE=new Comparator<Session>()
+	{
+		public int compare(Session a, Session b)
+		{
+			return (a.due<b.due) ? -1 : ((a.due==b.due) ? 0 : 1);
+		}
+	};
+
+	int usersperthread;
+	int refcount;
+	IntegerGenerator refchooser;
+	IntegerGenerator itemcountchooser;
+	double updateproportion;
+	IntegerGenerator thinktime;
+
+	public void init(Properties p) throws WorkloadException
+	{
+		super.init(p);
+
+		usersperthread=Integer.parseInt(p.getProperty(USERS_PER_THREAD_PROPERTY,USERS_PER_THREAD_PROPERTY_DEFAULT));
+		refcount=Integer.parseInt(p.getProperty(REF_COUNT_PROPERTY,REF_COUNT_PROPERTY_DEFAULT));
+		int maxitems=Integer.parseInt(p.getProperty(MAX_ITEMS_PROPERTY,MAX_ITEMS_PROPERTY_DEFAULT));
+		updateproportion=Double.parseDouble(p.getProperty(UPDATE_PROPORTION_PROPERTY,UPDATE_PROPORTION_PROPERTY_DEFAULT));
+		if ( (usersperthread<1) || (refcount<1) || (maxitems<1) )
+		{
+			throw new WorkloadException("session.usersperthread, session.refcount and session.maxitems must be positive");
+		}
+		itemcountchooser=new UniformIntegerGenerator(1,maxitems);
+
+		String refdistrib=p.getProperty(REF_DISTRIBUTION_PROPERTY,REF_DISTRIBUTION_PROPERTY_DEFAULT);
+		if (refdistrib.equals("uniform"))
+		{
+			refchooser=new UniformIntegerGenerator(0,recordcount-1);
+		}
+		else if (refdistrib.equals("zipfian"))
+		{
+			refchooser=new ScrambledZipfianGenerator(recordcount);
+		}
+		else
+		{
+			throw new WorkloadException("Unknown ref distribution \""+refdistrib+"\"");
+		}
+
+		int mean=Integer.parseInt(p.getProperty(THINK_TIME_PROPERTY,THINK_TIME_PROPERTY_DEFAULT));
+		String thinkdistrib=p.getProperty(THINK_TIME_DISTRIBUTION_PROPERTY,THINK_TIME_DISTRIBUTION_PROPERTY_DEFAULT);
+		if ( (mean<=0) || (thinkdistrib.equals("constant")) )
+		{
+			thinktime=new ConstantIntegerGenerator(Math.max(0,mean));
+		}
+		else if (thinkdistrib.equals("uniform"))
+		{
+			thinktime=new UniformIntegerGenerator(0,2*mean);
+		}
+		else if (thinkdistrib.equals("exponential"))
+		{
+			thinktime=new ExponentialGenerator(mean);
+		}
+		else
+		{
+			throw new WorkloadException("Unknown think time distribution \""+thinkdistrib+"\"");
+		}
+	}
+
+	/**
+	 * @return the logical users of the thread, waiting for their first think time to end
+	 */
+	public Object initThread(Properties p, int mythreadid, int threadcount) throws WorkloadException
+	{
+		PriorityQueue<Session> users=new PriorityQueue<Session>(usersperthread,BY_DUE);
+		long now=System.nanoTime();
+		for (int i=0; i<usersperthread; i++)
+		{
+			Session s=new Session();
+			s.due=now+thinktime.nextInt()*1000000L;
+			users.add(s);
+		}
+		return users;
+	}
+
+	HashMap<String,ByteIterator> buildValues()
+	{
+		HashMap<String,ByteIterator> values=super.buildValues();
+		StringBuilder refs=new StringBuilder();
+		for (int i=0; i<refcount; i++)
+		{
+			if (i>0)
+			{
+				refs.append(',');
+			}
+			refs.append(refchooser.nextInt());
+		}
+		values.put(REFS_FIELD,new StringByteIterator(refs.toString()));
+		return values;
+	}
+
+	/**
+	 * @return the keynums in the refs field of a record read, or null if it has none
+	 */
+	static int[] parseRefs(HashMap<String,Object> record)
+	{
+		Object value=record.get(REFS_FIELD);
+		if (value==null)
+		{
+			return null;
+		}
+		String text;
+		if (value instanceof ByteIterator)
+		{
+			text=value.toString();
+		}
+		else if (value instanceof byte[])
+		{
+			text=new String((byte[])value);
+		}
+		else
+		{
+			text=value.toString();
+		}
+		if (text.length()==0)
+		{
+			return null;
+		}
+		String[] parts=text.split(",");
+		int[] refs=new int[parts.length];
+		try
+		{
+			for (int i=0; i<parts.length; i++)
+			{
+				refs[i]=Integer.parseInt(parts[i].trim());
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+		return refs;
+	}
+
+	HashSet<String> readFields(boolean withrefs)
+	{
+		if (readallfields)
+		{
+			return null;
+		}
+		HashSet<String> fields=new HashSet<String>();
+		fields.add("field"+fieldchooser.nextString());
+		if (withrefs)
+		{
+			fields.add(REFS_FIELD);
+		}
+		return fields;
+	}
+
+	public boolean doTransaction(DB db, Object threadstate)
+	{
+		@SuppressWarnings("unchecked")
+		PriorityQueue<Session> users=(PriorityQueue<Session>)threadstate;
+		Session s=users.poll();
+
+		long wait=s.due-System.nanoTime();
+		if (wait>0)
+		{
+			try
+			{
+				Thread.sleep(wait/1000000,(int)(wait%1000000));
+			}
+			catch (InterruptedException e)
+			{
+				// do nothing.
+			}
+		}
+
+		step(db,s);
+
+		s.due=System.nanoTime()+thinktime.nextInt()*1000000L;
+		users.add(s);
+		return true;
+	}
+
+	/**
+	 * Run the next operation of a session, and end the session if it was the last.
+	 */
+	void step(DB db, Session s)
+	{
+		long st=System.nanoTime();
+		switch (s.state)
+		{
+			case PROFILE:
+			{
+				s.start=st;
+				HashMap<String,Object> profile=new HashMap<String,Object>();
+				db.read(table,buildKeyName(nextKeynum()),readFields(true),profile);
+				s.servicetime+=System.nanoTime()-st;
+				s.items=parseRefs(profile);
+				if (s.items==null)
+				{
+					end(s,1);
+					return;
+				}
+				s.itemcount=Math.min(itemcountchooser.nextInt(),s.items.length);
+				//the first itemcount refs, in a random order, are the ones read
+				for (int i=0; i<s.itemcount; i++)
+				{
+					int j=i+Utils.random().nextInt(s.items.length-i);
+					int t=s.items[i];
+					s.items[i]=s.items[j];
+					s.items[j]=t;
+				}
+				s.state=ITEMS;
+				return;
+			}
+			case ITEMS:
+			{
+				int keynum=s.items[s.nextitem++];
+				if (db.read(table,buildKeyName(keynum),readFields(false),new HashMap<String,Object>())==0)
+				{
+					s.read.add(keynum);
+				}
+				s.servicetime+=System.nanoTime()-st;
+				if (s.nextitem<s.itemcount)
+				{
+					return;
+				}
+				if ( (s.read.isEmpty()) || (Utils.random().nextDouble()>=updateproportion) )
+				{
+					end(s,0);
+					return;
+				}
+				s.state=UPDATE;
+				return;
+			}
+			default:
+			{
+				int keynum=s.read.get(Utils.random().nextInt(s.read.size()));
+				HashMap<String,ByteIterator> values=writeallfields ? buildValues() : buildUpdate();
+				db.update(table,buildKeyName(keynum),values);
+				s.servicetime+=System.nanoTime()-st;
+				end(s,0);
+			}
+		}
+	}
+
+	void end(Session s, int code)
+	{
+		Measurements measurements=Measurements.getMeasurements();
+		measurements.measure("SESSION",(int)(s.servicetime/1000));
+		measurements.reportReturnCode("SESSION",code);
+		measurements.measure("SESSION ELAPSED",(int)((System.nanoTime()-s.start)/1000));
+		s.reset();
+	}
+}
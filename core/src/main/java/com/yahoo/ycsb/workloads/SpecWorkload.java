@@ -0,0 +1,928 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.RandomByteIterator;
+import com.yahoo.ycsb.StringByteIterator;
+import com.yahoo.ycsb.Utils;
+import com.yahoo.ycsb.Workload;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.generator.ConstantIntegerGenerator;
+import com.yahoo.ycsb.generator.CounterGenerator;
+import com.yahoo.ycsb.generator.HistogramGenerator;
+import com.yahoo.ycsb.generator.HotspotIntegerGenerator;
+import com.yahoo.ycsb.generator.IntegerGenerator;
+import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
+import com.yahoo.ycsb.generator.SkewedLatestGenerator;
+import com.yahoo.ycsb.generator.UniformIntegerGenerator;
+import com.yahoo.ycsb.generator.ZipfianGenerator;
+import com.yahoo.ycsb.measurements.KeyspaceHeatmap;
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * A workload defined by a JSON spec file instead of code: the fields of the records, and the operations of the
+ * run phase with their weights, key distributions, projections and query templates.
+ *
+ * The spec is compiled once, in init, into a table of operations, each with its generators, field sets and
+ * projections already built, and the cumulative weights of the table. A transaction draws one random number,
+ * finds its operation by binary search over the weights and runs it, so an operation of the spec costs the same
+ * as one of a hand-written workload; nothing of the spec is looked up by name while the workload runs.
+ *
+ * Properties to control the client:
+ * <UL>
+ * <LI><b>workloadspec</b>: the spec file (required)
+ * <LI><b>table</b>, <b>fieldcount</b>, <b>fieldlength</b>, <b>fieldlengthdistribution</b>, <b>insertorder</b>: as for CoreWorkload, unless the spec sets them
+ * </ul>
+ *
+ * The spec is an object with these members, all optional but operations:
+ * <UL>
+ * <LI><b>table</b>: the table name
+ * <LI><b>keyprefix</b>: the prefix of the record keys (default: user)
+ * <LI><b>insertorder</b>: hashed or ordered, as for CoreWorkload
+ * <LI><b>keys</b>: the default key distribution of the operations, a distribution over the records (default: uniform)
+ * <LI><b>record</b>: an object of field name to value; by default fieldcount fields of fieldlength random bytes
+ * <LI><b>operations</b>: an array of operations
+ * </ul>
+ *
+ * An operation has a <b>type</b>, a <b>weight</b>, and, by its type:
+ * <UL>
+ * <LI>read: <b>key</b>, <b>fields</b>
+ * <LI>update: <b>key</b>, <b>set</b>, the record fields written with new values (default: one field picked at random)
+ * <LI>insert, delete, upsert: <b>key</b> for delete and upsert; an upsert writes a whole record, its values as bytes
+ * <LI>scan: <b>key</b>, <b>length</b>, <b>fields</b>
+ * <LI>secondaryread: <b>field</b>, <b>value</b>, <b>fields</b>
+ * <LI>secondaryscan: <b>field</b>, <b>value</b>, <b>length</b>, <b>fields</b>
+ * <LI>complexread, complexscan: <b>field</b>, <b>value</b>, <b>rangefield</b>, <b>lower</b>, <b>upper</b>, <b>fields</b>, and <b>length</b> for complexscan
+ * <LI>aggregate: <b>match</b>, <b>lower</b>, <b>upper</b>, <b>limit</b>, <b>group</b>, <b>function</b>, <b>top</b>; without match, the simple aggregate of <b>length</b> records grouped by group
+ * <LI>increment: <b>key</b>, <b>field</b>, the counter field, <b>delta</b>, a number (default: 1)
+ * </ul>
+ * An operation with a <b>name</b> is also measured under that name, so templates that make the same call to the
+ * binding can be told apart. Fields is an array of field names, all fields if missing.
+ *
+ * A key is a distribution: uniform, zipfian, latest or hotspot (with hotsetfraction and hotopnfraction), over the
+ * records loaded and inserted. A number (length, limit, top) is a constant or a distribution: constant (value),
+ * uniform, zipfian, scrambledzipfian or hotspot (min and max), or histogram (file). A value is a number distribution
+ * with a type: int, the number; string, the number after a prefix; date, base plus the number times unit
+ * milliseconds (default: 2012-02-01, a day); or bytes, length random bytes.
+ */
+public class SpecWorkload extends Workload
+{
+	public static final String SPEC_PROPERTY="workloadspec";
+
+	public static final String KEY_PREFIX_DEFAULT="user";
+
+	public static final long DATE_BASE_DEFAULT=1328054400000L;
+	public static final long DATE_UNIT_DEFAULT=86400000L;
+
+	static final String[] OPERATION_TYPES={"read","update","insert","delete","scan","secondaryread","secondaryscan",
+		"complexread","complexscan","aggregate","increment","upsert"};
+
+	/**
+	 * The values of a record field or a query parameter.
+	 */
+	static abstract class Value
+	{
+		abstract Object next();
+
+		/**
+		 * @return the next value for a binding that only takes bytes
+		 */
+		ByteIterator nextBytes()
+		{
+			return new StringByteIterator(String.valueOf(next()));
+		}
+	}
+
+	static class IntValue extends Value
+	{
+		final IntegerGenerator gen;
+
+		IntValue(IntegerGenerator gen)
+		{
+			this.gen=gen;
+		}
+
+		Object next()
+		{
+			return gen.nextInt();
+		}
+	}
+
+	static class StringValue extends Value
+	{
+		final String prefix;
+		final IntegerGenerator gen;
+
+		StringValue(String prefix, IntegerGenerator gen)
+		{
+			this.prefix=prefix;
+			this.gen=gen;
+		}
+
+		Object next()
+		{
+			return prefix+gen.nextInt();
+		}
+	}
+
+	static class DateValue extends Value
+	{
+		final long base;
+		final long unit;
+		final IntegerGenerator gen;
+
+		DateValue(long base, long unit, IntegerGenerator gen)
+		{
+			this.base=base;
+			this.unit=unit;
+			this.gen=gen;
+		}
+
+		Object next()
+		{
+			return new Date(base+unit*gen.nextInt());
+		}
+	}
+
+	static class BytesValue extends Value
+	{
+		final IntegerGenerator length;
+
+		BytesValue(IntegerGenerator length)
+		{
+			this.length=length;
+		}
+
+		Object next()
+		{
+			return new RandomByteIterator(length.nextInt()).toArray();
+		}
+
+		ByteIterator nextBytes()
+		{
+			return new RandomByteIterator(length.nextInt());
+		}
+	}
+
+	/**
+	 * An operation of the spec, with everything it needs built at init.
+	 */
+	abstract class Operation
+	{
+		String name;
+
+		abstract int run(DB db);
+	}
+
+	class ReadOperation extends Operation
+	{
+		IntegerGenerator keychooser;
+		Set<String> fields;
+
+		int run(DB db)
+		{
+			return db.read(table,buildKeyName(nextKeynum(keychooser)),fields,new HashMap<String,Object>());
+		}
+	}
+
+	class UpdateOperation extends Operation
+	{
+		IntegerGenerator keychooser;
+		String[] setfields;
+		Value[] setvalues;
+
+		int run(DB db)
+		{
+			HashMap<String,ByteIterator> values=new HashMap<String,ByteIterator>();
+			if (setfields==null)
+			{
+				int i=Utils.random().nextInt(recordfields.length);
+				values.put(recordfields[i],recordvalues[i].nextBytes());
+			}
+			else
+			{
+				for (int i=0; i<setfields.length; i++)
+				{
+					values.put(setfields[i],setvalues[i].nextBytes());
+				}
+			}
+			return db.update(table,buildKeyName(nextKeynum(keychooser)),values);
+		}
+	}
+
+	class InsertOperation extends Operation
+	{
+		int run(DB db)
+		{
+			return insert(db,transactioninsertkeysequence.nextInt());
+		}
+	}
+
+	class DeleteOperation extends Operation
+	{
+		IntegerGenerator keychooser;
+
+		int run(DB db)
+		{
+			return db.delete(table,buildKeyName(nextKeynum(keychooser)));
+		}
+	}
+
+	class ScanOperation extends Operation
+	{
+		IntegerGenerator keychooser;
+		IntegerGenerator length;
+		Set<String> fields;
+
+		int run(DB db)
+		{
+			return db.scan(table,buildKeyName(nextKeynum(keychooser)),length.nextInt(),fields,
+					new Vector<HashMap<String,Object>>());
+		}
+	}
+
+	class UpsertOperation extends Operation
+	{
+		IntegerGenerator keychooser;
+
+		int run(DB db)
+		{
+			HashMap<String,ByteIterator> values=new HashMap<String,ByteIterator>();
+			for (int i=0; i<recordfields.length; i++)
+			{
+				values.put(recordfields[i],recordvalues[i].nextBytes());
+			}
+			return db.upsert(table,buildKeyName(nextKeynum(keychooser)),values);
+		}
+	}
+
+	class IncrementOperation extends Operation
+	{
+		IntegerGenerator keychooser;
+		String field;
+		IntegerGenerator delta;
+
+		int run(DB db)
+		{
+			return db.increment(table,buildKeyName(nextKeynum(keychooser)),field,delta.nextInt());
+		}
+	}
+
+	class SecondaryReadOperation extends Operation
+	{
+		String field;
+		Value value;
+		Set<String> fields;
+
+		int run(DB db)
+		{
+			return db.read(table,field,value.next(),fields,new HashMap<String,Object>());
+		}
+	}
+
+	class SecondaryScanOperation extends Operation
+	{
+		String field;
+		Value value;
+		IntegerGenerator length;
+		Set<String> fields;
+
+		int run(DB db)
+		{
+			return db.scan(table,field,value.next(),length.nextInt(),fields,new Vector<HashMap<String,Object>>());
+		}
+	}
+
+	class ComplexReadOperation extends Operation
+	{
+		String field;
+		Value value;
+		String rangefield;
+		Value lower;
+		Value upper;
+		Set<String> fields;
+
+		int run(DB db)
+		{
+			return db.read(table,field,value.next(),rangefield,lower.next(),upper.next(),fields,new HashMap<String,Object>());
+		}
+	}
+
+	class ComplexScanOperation extends ComplexReadOperation
+	{
+		IntegerGenerator length;
+
+		int run(DB db)
+		{
+			return db.scan(table,field,value.next(),rangefield,lower.next(),upper.next(),length.nextInt(),fields,
+					new Vector<HashMap<String,Object>>());
+		}
+	}
+
+	class AggregateOperation extends Operation
+	{
+		String match;
+		Value lower;
+		Value upper;
+		IntegerGenerator limit;
+		String group;
+		String function;
+		IntegerGenerator top;
+
+		int run(DB db)
+		{
+			return db.aggregate(table,match,lower.next(),upper.next(),limit.nextInt(),group,function,top.nextInt(),
+					new Vector<HashMap<String,Object>>());
+		}
+	}
+
+	class SimpleAggregateOperation extends Operation
+	{
+		String group;
+		IntegerGenerator length;
+
+		int run(DB db)
+		{
+			return db.aggregate(table,group,length.nextInt(),new Vector<HashMap<String,Object>>());
+		}
+	}
+
+	String table;
+	String keyprefix;
+	boolean orderedinserts;
+
+	String[] recordfields;
+	Value[] recordvalues;
+	boolean bytesrecord;
+
+	Operation[] operations;
+	double[] cumulativeweights;
+
+	int recordcount;
+	int operationcount;
+	double insertfraction;
+	CounterGenerator keysequence;
+	CounterGenerator transactioninsertkeysequence;
+
+	public void init(Properties p) throws WorkloadException
+	{
+		String specfile=p.getProperty(SPEC_PROPERTY);
+		if (specfile==null)
+		{
+			throw new WorkloadException("Missing property \""+SPEC_PROPERTY+"\", the workload spec file");
+		}
+		JsonNode spec;
+		try
+		{
+			spec=new ObjectMapper().readTree(new File(specfile));
+		}
+		catch (IOException e)
+		{
+			throw new WorkloadException("Couldn't read workload spec "+specfile+": "+e.getMessage(),e);
+		}
+		init(p,spec);
+	}
+
+	/**
+	 * Compile a spec already parsed.
+	 */
+	void init(Properties p, JsonNode spec) throws WorkloadException
+	{
+		if ( (spec==null) || (!spec.isObject()) )
+		{
+			throw new WorkloadException("The workload spec must be a JSON object");
+		}
+		table=text(spec,"table",p.getProperty(CoreWorkload.TABLENAME_PROPERTY,CoreWorkload.TABLENAME_PROPERTY_DEFAULT));
+		keyprefix=text(spec,"keyprefix",KEY_PREFIX_DEFAULT);
+		String insertorder=text(spec,"insertorder",p.getProperty(CoreWorkload.INSERT_ORDER_PROPERTY,CoreWorkload.INSERT_ORDER_PROPERTY_DEFAULT));
+		orderedinserts=!insertorder.equals("hashed");
+
+		recordcount=Integer.parseInt(p.getProperty(Client.RECORD_COUNT_PROPERTY,"0"));
+		operationcount=Integer.parseInt(p.getProperty(Client.OPERATION_COUNT_PROPERTY,"0"));
+		int insertstart=Integer.parseInt(p.getProperty(INSERT_START_PROPERTY,INSERT_START_PROPERTY_DEFAULT));
+		keysequence=new CounterGenerator(insertstart);
+		transactioninsertkeysequence=new CounterGenerator(recordcount);
+
+		compileRecord(p,spec.get("record"));
+
+		JsonNode ops=spec.get("operations");
+		if ( (ops==null) || (!ops.isArray()) || (ops.size()==0) )
+		{
+			throw new WorkloadException("The workload spec needs an array of operations");
+		}
+
+		//the share of inserts sizes the zipfian keyspace, as in CoreWorkload
+		double total=0;
+		double inserts=0;
+		for (int i=0; i<ops.size(); i++)
+		{
+			double weight=ops.get(i).path("weight").asDouble();
+			if (weight<0)
+			{
+				throw new WorkloadException("operations["+i+"]: weight must not be negative");
+			}
+			total+=weight;
+			if ("insert".equals(ops.get(i).path("type").asText()))
+			{
+				inserts+=weight;
+			}
+		}
+		if (total<=0)
+		{
+			throw new WorkloadException("The operations of the workload spec have no weight");
+		}
+		insertfraction=inserts/total;
+
+		JsonNode defaultkeys=spec.get("keys");
+		ArrayList<Operation> compiled=new ArrayList<Operation>();
+		ArrayList<Double> weights=new ArrayList<Double>();
+		double cumulative=0;
+		for (int i=0; i<ops.size(); i++)
+		{
+			JsonNode op=ops.get(i);
+			double weight=op.path("weight").asDouble();
+			if (weight==0)
+			{
+				continue;
+			}
+			compiled.add(compileOperation(op,defaultkeys,"operations["+i+"]"));
+			cumulative+=weight/total;
+			weights.add(cumulative);
+		}
+		operations=compiled.toArray(new Operation[compiled.size()]);
+		cumulativeweights=new double[weights.size()];
+		for (int i=0; i<cumulativeweights.length; i++)
+		{
+			cumulativeweights[i]=weights.get(i);
+		}
+		//rounding must not leave a sliver past the last operation
+		cumulativeweights[cumulativeweights.length-1]=1.0;
+	}
+
+	void compileRecord(Properties p, JsonNode record) throws WorkloadException
+	{
+		LinkedHashMap<String,Value> fields=new LinkedHashMap<String,Value>();
+		if (record==null)
+		{
+			int fieldcount=Integer.parseInt(p.getProperty(CoreWorkload.FIELD_COUNT_PROPERTY,CoreWorkload.FIELD_COUNT_PROPERTY_DEFAULT));
+			IntegerGenerator fieldlength=CoreWorkload.getFieldLengthGenerator(p);
+			for (int i=0; i<fieldcount; i++)
+			{
+				fields.put("field"+i,new BytesValue(fieldlength));
+			}
+		}
+		else
+		{
+			if (!record.isObject())
+			{
+				throw new WorkloadException("record: must be an object of field name to value");
+			}
+			Iterator<Map.Entry<String,JsonNode>> it=record.getFields();
+			while (it.hasNext())
+			{
+				Map.Entry<String,JsonNode> field=it.next();
+				fields.put(field.getKey(),compileValue(field.getValue(),"record."+field.getKey()));
+			}
+		}
+		if (fields.isEmpty())
+		{
+			throw new WorkloadException("record: a record needs at least one field");
+		}
+
+		recordfields=fields.keySet().toArray(new String[fields.size()]);
+		recordvalues=fields.values().toArray(new Value[fields.size()]);
+		bytesrecord=true;
+		for (Value v : recordvalues)
+		{
+			if (!(v instanceof BytesValue))
+			{
+				bytesrecord=false;
+			}
+		}
+	}
+
+	Operation compileOperation(JsonNode op, JsonNode defaultkeys, String path) throws WorkloadException
+	{
+		String type=text(op,"type",null);
+		if (type==null)
+		{
+			throw new WorkloadException(path+": missing type");
+		}
+		JsonNode keys=op.has("key") ? op.get("key") : defaultkeys;
+		Operation compiled;
+		switch (type)
+		{
+			case "read":
+			{
+				ReadOperation read=new ReadOperation();
+				read.keychooser=keyChooser(keys,path+".key");
+				read.fields=projection(op,path);
+				compiled=read;
+				break;
+			}
+			case "update":
+			{
+				UpdateOperation update=new UpdateOperation();
+				update.keychooser=keyChooser(keys,path+".key");
+				JsonNode set=op.get("set");
+				if (set!=null)
+				{
+					if ( (!set.isArray()) || (set.size()==0) )
+					{
+						throw new WorkloadException(path+".set: must be an array of record fields");
+					}
+					update.setfields=new String[set.size()];
+					update.setvalues=new Value[set.size()];
+					for (int i=0; i<set.size(); i++)
+					{
+						update.setfields[i]=set.get(i).asText();
+						update.setvalues[i]=recordValue(update.setfields[i],path+".set");
+					}
+				}
+				compiled=update;
+				break;
+			}
+			case "insert":
+				compiled=new InsertOperation();
+				break;
+			case "delete":
+			{
+				DeleteOperation delete=new DeleteOperation();
+				delete.keychooser=keyChooser(keys,path+".key");
+				compiled=delete;
+				break;
+			}
+			case "scan":
+			{
+				ScanOperation scan=new ScanOperation();
+				scan.keychooser=keyChooser(keys,path+".key");
+				scan.length=number(op.get("length"),1000,path+".length");
+				scan.fields=projection(op,path);
+				compiled=scan;
+				break;
+			}
+			case "upsert":
+			{
+				UpsertOperation upsert=new UpsertOperation();
+				upsert.keychooser=keyChooser(keys,path+".key");
+				compiled=upsert;
+				break;
+			}
+			case "increment":
+			{
+				IncrementOperation increment=new IncrementOperation();
+				increment.keychooser=keyChooser(keys,path+".key");
+				increment.field=required(op,"field",path);
+				increment.delta=number(op.get("delta"),1,path+".delta");
+				compiled=increment;
+				break;
+			}
+			case "secondaryread":
+			{
+				SecondaryReadOperation read=new SecondaryReadOperation();
+				read.field=required(op,"field",path);
+				read.value=queryValue(op,"value",read.field,path);
+				read.fields=projection(op,path);
+				compiled=read;
+				break;
+			}
+			case "secondaryscan":
+			{
+				SecondaryScanOperation scan=new SecondaryScanOperation();
+				scan.field=required(op,"field",path);
+				scan.value=queryValue(op,"value",scan.field,path);
+				scan.length=number(op.get("length"),1000,path+".length");
+				scan.fields=projection(op,path);
+				compiled=scan;
+				break;
+			}
+			case "complexread":
+			case "complexscan":
+			{
+				ComplexReadOperation read;
+				if (type.equals("complexscan"))
+				{
+					ComplexScanOperation scan=new ComplexScanOperation();
+					scan.length=number(op.get("length"),1000,path+".length");
+					read=scan;
+				}
+				else
+				{
+					read=new ComplexReadOperation();
+				}
+				read.field=required(op,"field",path);
+				read.value=queryValue(op,"value",read.field,path);
+				read.rangefield=required(op,"rangefield",path);
+				read.lower=queryValue(op,"lower",read.rangefield,path);
+				read.upper=queryValue(op,"upper",read.rangefield,path);
+				read.fields=projection(op,path);
+				compiled=read;
+				break;
+			}
+			case "aggregate":
+			{
+				if (!op.has("match"))
+				{
+					SimpleAggregateOperation aggregate=new SimpleAggregateOperation();
+					aggregate.group=required(op,"group",path);
+					aggregate.length=number(op.get("length"),1000,path+".length");
+					compiled=aggregate;
+					break;
+				}
+				AggregateOperation aggregate=new AggregateOperation();
+				aggregate.match=required(op,"match",path);
+				aggregate.lower=queryValue(op,"lower",aggregate.match,path);
+				aggregate.upper=queryValue(op,"upper",aggregate.match,path);
+				aggregate.limit=number(op.get("limit"),1000,path+".limit");
+				aggregate.group=required(op,"group",path);
+				aggregate.function=text(op,"function","sum");
+				aggregate.top=number(op.get("top"),20,path+".top");
+				compiled=aggregate;
+				break;
+			}
+			default:
+				throw new WorkloadException(path+": unknown type \""+type+"\", one of "+Arrays.toString(OPERATION_TYPES));
+		}
+		compiled.name=text(op,"name",null);
+		return compiled;
+	}
+
+	/**
+	 * @return the fields an operation reads, or null for all of them
+	 */
+	Set<String> projection(JsonNode op, String path) throws WorkloadException
+	{
+		JsonNode fields=op.get("fields");
+		if (fields==null)
+		{
+			return null;
+		}
+		if (!fields.isArray())
+		{
+			throw new WorkloadException(path+".fields: must be an array of field names");
+		}
+		HashSet<String> names=new HashSet<String>();
+		for (JsonNode name : fields)
+		{
+			names.add(name.asText());
+		}
+		//shared by all the calls of the operation, so the bindings must not change it
+		return Collections.unmodifiableSet(names);
+	}
+
+	Value recordValue(String field, String path) throws WorkloadException
+	{
+		for (int i=0; i<recordfields.length; i++)
+		{
+			if (recordfields[i].equals(field))
+			{
+				return recordvalues[i];
+			}
+		}
+		throw new WorkloadException(path+": \""+field+"\" is not a field of the record");
+	}
+
+	/**
+	 * A query parameter: the value given in the operation, or else the values of the record field it matches.
+	 */
+	Value queryValue(JsonNode op, String name, String field, String path) throws WorkloadException
+	{
+		if (op.has(name))
+		{
+			return compileValue(op.get(name),path+"."+name);
+		}
+		return recordValue(field,path+"."+name);
+	}
+
+	Value compileValue(JsonNode spec, String path) throws WorkloadException
+	{
+		if (!spec.isObject())
+		{
+			throw new WorkloadException(path+": a value must be an object with a type");
+		}
+		String type=text(spec,"type","int");
+		switch (type)
+		{
+			case "int":
+				return new IntValue(number(spec,0,path));
+			case "string":
+				return new StringValue(text(spec,"prefix",""),number(spec,0,path));
+			case "date":
+				return new DateValue(spec.path("base").asLong(DATE_BASE_DEFAULT),spec.path("unit").asLong(DATE_UNIT_DEFAULT),number(spec,0,path));
+			case "bytes":
+				return new BytesValue(number(spec.get("length"),100,path+".length"));
+			default:
+				throw new WorkloadException(path+": unknown value type \""+type+"\", one of int, string, date, bytes");
+		}
+	}
+
+	/**
+	 * @return the generator of a number: a constant, or a distribution
+	 */
+	IntegerGenerator number(JsonNode spec, int defaultvalue, String path) throws WorkloadException
+	{
+		if (spec==null)
+		{
+			return new ConstantIntegerGenerator(defaultvalue);
+		}
+		if (spec.isNumber())
+		{
+			return new ConstantIntegerGenerator(spec.asInt());
+		}
+		String distribution=text(spec,"distribution",spec.has("value") ? "constant" : "uniform");
+		int min=spec.path("min").asInt(0);
+		int max=spec.path("max").asInt(defaultvalue);
+		if ( (!distribution.equals("constant")) && (!distribution.equals("histogram")) && (max<min) )
+		{
+			throw new WorkloadException(path+": max is less than min");
+		}
+		switch (distribution)
+		{
+			case "constant":
+				return new ConstantIntegerGenerator(spec.path("value").asInt(defaultvalue));
+			case "uniform":
+				return new UniformIntegerGenerator(min,max);
+			case "zipfian":
+				return new ZipfianGenerator(min,max);
+			case "scrambledzipfian":
+				return new ScrambledZipfianGenerator(min,max);
+			case "hotspot":
+				return new HotspotIntegerGenerator(min,max,spec.path("hotsetfraction").asDouble(0.2),spec.path("hotopnfraction").asDouble(0.8));
+			case "histogram":
+			{
+				String file=required(spec,"file",path);
+				try
+				{
+					return new HistogramGenerator(file);
+				}
+				catch (IOException e)
+				{
+					throw new WorkloadException(path+": couldn't read histogram file "+file,e);
+				}
+			}
+			default:
+				throw new WorkloadException(path+": unknown distribution \""+distribution+"\"");
+		}
+	}
+
+	/**
+	 * @return the generator of the record numbers an operation picks, as CoreWorkload's requestdistribution
+	 */
+	IntegerGenerator keyChooser(JsonNode spec, String path) throws WorkloadException
+	{
+		String distribution=(spec==null) ? "uniform" : (spec.isTextual() ? spec.asText() : text(spec,"distribution","uniform"));
+		switch (distribution)
+		{
+			case "uniform":
+				return new UniformIntegerGenerator(0,recordcount-1);
+			case "zipfian":
+			{
+				//leave room for the keys inserted during the run, so they don't shift which keys are popular
+				int expectednewkeys=(int)(((double)operationcount)*insertfraction*2.0);
+				return new ScrambledZipfianGenerator(recordcount+expectednewkeys);
+			}
+			case "latest":
+				return new SkewedLatestGenerator(transactioninsertkeysequence);
+			case "hotspot":
+				return new HotspotIntegerGenerator(0,recordcount-1,spec.path("hotsetfraction").asDouble(0.2),spec.path("hotopnfraction").asDouble(0.8));
+			default:
+				throw new WorkloadException(path+": unknown key distribution \""+distribution+"\"");
+		}
+	}
+
+	static String text(JsonNode spec, String name, String defaultvalue)
+	{
+		JsonNode node=spec.get(name);
+		return (node==null) ? defaultvalue : node.asText();
+	}
+
+	static String required(JsonNode spec, String name, String path) throws WorkloadException
+	{
+		String value=text(spec,name,null);
+		if (value==null)
+		{
+			throw new WorkloadException(path+": missing "+name);
+		}
+		return value;
+	}
+
+	int nextKeynum(IntegerGenerator keychooser)
+	{
+		int keynum;
+		do
+		{
+			keynum=keychooser.nextInt();
+		}
+		while (keynum>transactioninsertkeysequence.lastInt());
+		return keynum;
+	}
+
+	public String buildKeyName(long keynum)
+	{
+		KeyspaceHeatmap.setKeynum(keynum);
+		if (!orderedinserts)
+		{
+			keynum=Utils.hash(keynum);
+		}
+		return keyprefix+keynum;
+	}
+
+	int insert(DB db, int keynum)
+	{
+		String key=buildKeyName(keynum);
+		if (bytesrecord)
+		{
+			HashMap<String,ByteIterator> values=new HashMap<String,ByteIterator>();
+			for (int i=0; i<recordfields.length; i++)
+			{
+				values.put(recordfields[i],recordvalues[i].nextBytes());
+			}
+			return db.insert(table,key,values);
+		}
+		HashMap<String,Object> values=new HashMap<String,Object>();
+		for (int i=0; i<recordfields.length; i++)
+		{
+			values.put(recordfields[i],recordvalues[i].next());
+		}
+		return db.complexinsert(table,key,values);
+	}
+
+	public boolean doInsert(DB db, Object threadstate)
+	{
+		return insert(db,keysequence.nextInt())==0;
+	}
+
+	/**
+	 * @return the operation of the table a random number in [0,1) falls on
+	 */
+	Operation operationFor(double r)
+	{
+		int lo=0;
+		int hi=cumulativeweights.length-1;
+		while (lo<hi)
+		{
+			int mid=(lo+hi)>>>1;
+			if (r<cumulativeweights[mid])
+			{
+				hi=mid;
+			}
+			else
+			{
+				lo=mid+1;
+			}
+		}
+		return operations[lo];
+	}
+
+	public boolean doTransaction(DB db, Object threadstate)
+	{
+		Operation op=operationFor(Utils.random().nextDouble());
+		if (op.name==null)
+		{
+			op.run(db);
+			return true;
+		}
+		long st=System.nanoTime();
+		int ret=op.run(db);
+		long en=System.nanoTime();
+		Measurements.getMeasurements().measure(op.name,(int)((en-st)/1000));
+		Measurements.getMeasurements().reportReturnCode(op.name,ret);
+		return true;
+	}
+}
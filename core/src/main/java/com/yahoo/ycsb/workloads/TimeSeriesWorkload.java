@@ -0,0 +1,392 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.workloads;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.yahoo.ycsb.Client;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.RandomByteIterator;
+import com.yahoo.ycsb.Utils;
+import com.yahoo.ycsb.Workload;
+import com.yahoo.ycsb.WorkloadException;
+import com.yahoo.ycsb.generator.CounterGenerator;
+import com.yahoo.ycsb.generator.DiscreteGenerator;
+import com.yahoo.ycsb.generator.IntegerGenerator;
+import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
+import com.yahoo.ycsb.generator.UniformIntegerGenerator;
+
+/**
+ * Sensor data: a number of series, each appending a point at a fixed interval of data time, with queries over
+ * the most recent window of data time.
+ *
+ * The points are written in order of time, one point for each series in turn, so point n is step n/seriescount of
+ * series n%seriescount, taken at starttime+step*interval. The data time advances with the points written, not the
+ * wall clock; the throughput target sets how fast it runs. A record has the name of its series in stringkey, its
+ * time in datekey, a reading in intkey and fieldcount fields of payload, and its key orders the points of a
+ * series by time. These are the fields the complex operations of the bindings match, group and accumulate.
+ *
+ * Properties to control the client:
+ * <UL>
+ * <LI><b>seriescount</b>: the number of series (default: 100)
+ * <LI><b>timeseries.interval</b>: milliseconds of data time between the points of a series (default: 1000)
+ * <LI><b>timeseries.starttime</b>: the time of the first point, in milliseconds since the epoch (default: 2013-01-01)
+ * <LI><b>timeseries.window</b>: the milliseconds of data time scans and aggregates cover (default: 60000)
+ * <LI><b>timeseries.maxlag</b>: how far behind the latest point a window may end, in milliseconds, picked uniformly (default: 0)
+ * <LI><b>timeseries.outoforderfraction</b>: the fraction of the points that arrive late (default: 0)
+ * <LI><b>timeseries.maxdelay</b>: points arrive at most this many steps of their series late (default: 10)
+ * <LI><b>timeseries.retention</b>: milliseconds of data time to keep; an insert also deletes up to two points older than that (default: 0, keep everything)
+ * <LI><b>fieldcount</b>: the number of payload fields in a record (default: 1)
+ * <LI><b>fieldlength</b>, <b>fieldlengthdistribution</b>: the size of the payload fields, as for CoreWorkload (default: 100, constant)
+ * <LI><b>insertproportion</b>: what proportion of operations append a point (default: 0.9)
+ * <LI><b>scanproportion</b>: what proportion of operations read the window of a series (default: 0.05)
+ * <LI><b>aggregateproportion</b>: what proportion of operations aggregate the readings of all series over the window, grouped by series (default: 0.05)
+ * <LI><b>readproportion</b>: what proportion of operations read the latest point of a series (default: 0)
+ * <LI><b>querydistribution</b>: which series scans and reads pick, uniform or zipfian (default: uniform)
+ * <LI><b>maxscanlength</b>: the most points a scan returns (default: 1000)
+ * <LI><b>groupfunction</b>: the aggregate of the readings, as for ComplexWorkload (default: avg)
+ * <LI><b>aggregaterecordcount</b>: the most points an aggregate reads (default: 1000)
+ * </ul>
+ *
+ * Late points are delayed within windows of maxdelay steps of their series: each point of a window is late with
+ * the given probability, and the late ones arrive, in order, after the others of their window. Every point is still
+ * written exactly once, so the load and run phases write the same records as without late arrivals.
+ */
+public class TimeSeriesWorkload extends Workload
+{
+	public static final String TABLENAME_PROPERTY="table";
+	public static final String TABLENAME_PROPERTY_DEFAULT="timeseries";
+
+	public static final String SERIES_COUNT_PROPERTY="seriescount";
+	public static final String SERIES_COUNT_PROPERTY_DEFAULT="100";
+
+	public static final String INTERVAL_PROPERTY="timeseries.interval";
+	public static final String INTERVAL_PROPERTY_DEFAULT="1000";
+
+	public static final String START_TIME_PROPERTY="timeseries.starttime";
+	public static final String START_TIME_PROPERTY_DEFAULT="1356998400000";
+
+	public static final String WINDOW_PROPERTY="timeseries.window";
+	public static final String WINDOW_PROPERTY_DEFAULT="60000";
+
+	public static final String MAX_LAG_PROPERTY="timeseries.maxlag";
+	public static final String MAX_LAG_PROPERTY_DEFAULT="0";
+
+	public static final String OUT_OF_ORDER_FRACTION_PROPERTY="timeseries.outoforderfraction";
+	public static final String OUT_OF_ORDER_FRACTION_PROPERTY_DEFAULT="0";
+
+	public static final String MAX_DELAY_PROPERTY="timeseries.maxdelay";
+	public static final String MAX_DELAY_PROPERTY_DEFAULT="10";
+
+	public static final String RETENTION_PROPERTY="timeseries.retention";
+	public static final String RETENTION_PROPERTY_DEFAULT="0";
+
+	public static final String FIELD_COUNT_PROPERTY_DEFAULT="1";
+
+	public static final String INSERT_PROPORTION_PROPERTY_DEFAULT="0.9";
+	public static final String SCAN_PROPORTION_PROPERTY_DEFAULT="0.05";
+	public static final String AGGREGATE_PROPORTION_PROPERTY_DEFAULT="0.05";
+	public static final String READ_PROPORTION_PROPERTY_DEFAULT="0";
+
+	public static final String QUERY_DISTRIBUTION_PROPERTY="querydistribution";
+	public static final String QUERY_DISTRIBUTION_PROPERTY_DEFAULT="uniform";
+
+	public static final String GROUP_FUNCTION_PROPERTY_DEFAULT="avg";
+
+	/**
+	 * The most points an insert deletes to keep up with the retention.
+	 */
+	static final int MAX_EXPIRED_PER_INSERT=2;
+
+	static final int TOP_N_RESULTS=20;
+
+	String table;
+	int seriescount;
+	long interval;
+	long starttime;
+	long window;
+	IntegerGenerator lagchooser;
+	double outoforderfraction;
+	int maxdelay;
+	long retention;
+
+	int fieldcount;
+	IntegerGenerator fieldlengthgenerator;
+
+	DiscreteGenerator operationchooser;
+	IntegerGenerator serieschooser;
+	int maxscanlength;
+	String groupfunction;
+	int aggregaterecordcount;
+
+	CounterGenerator keysequence;
+	int loadstart;
+	int loadend;
+	CounterGenerator transactioninsertkeysequence;
+	int recordcount;
+
+	/**
+	 * The next point to delete once it is older than the retention.
+	 */
+	AtomicInteger expirecursor=new AtomicInteger(0);
+
+	public void init(Properties p) throws WorkloadException
+	{
+		table=p.getProperty(TABLENAME_PROPERTY,TABLENAME_PROPERTY_DEFAULT);
+		seriescount=Integer.parseInt(p.getProperty(SERIES_COUNT_PROPERTY,SERIES_COUNT_PROPERTY_DEFAULT));
+		interval=Long.parseLong(p.getProperty(INTERVAL_PROPERTY,INTERVAL_PROPERTY_DEFAULT));
+		starttime=Long.parseLong(p.getProperty(START_TIME_PROPERTY,START_TIME_PROPERTY_DEFAULT));
+		window=Long.parseLong(p.getProperty(WINDOW_PROPERTY,WINDOW_PROPERTY_DEFAULT));
+		int maxlag=Integer.parseInt(p.getProperty(MAX_LAG_PROPERTY,MAX_LAG_PROPERTY_DEFAULT));
+		lagchooser=new UniformIntegerGenerator(0,maxlag);
+		outoforderfraction=Double.parseDouble(p.getProperty(OUT_OF_ORDER_FRACTION_PROPERTY,OUT_OF_ORDER_FRACTION_PROPERTY_DEFAULT));
+		maxdelay=Integer.parseInt(p.getProperty(MAX_DELAY_PROPERTY,MAX_DELAY_PROPERTY_DEFAULT));
+		retention=Long.parseLong(p.getProperty(RETENTION_PROPERTY,RETENTION_PROPERTY_DEFAULT));
+		if ( (seriescount<1) || (interval<1) || (window<0) || (maxlag<0) || (maxdelay<1) )
+		{
+			throw new WorkloadException("seriescount, timeseries.interval and timeseries.maxdelay must be positive, timeseries.window and timeseries.maxlag not negative");
+		}
+
+		fieldcount=Integer.parseInt(p.getProperty(CoreWorkload.FIELD_COUNT_PROPERTY,FIELD_COUNT_PROPERTY_DEFAULT));
+		fieldlengthgenerator=CoreWorkload.getFieldLengthGenerator(p);
+
+		operationchooser=new DiscreteGenerator();
+		double insertproportion=Double.parseDouble(p.getProperty(CoreWorkload.INSERT_PROPORTION_PROPERTY,INSERT_PROPORTION_PROPERTY_DEFAULT));
+		double scanproportion=Double.parseDouble(p.getProperty(CoreWorkload.SCAN_PROPORTION_PROPERTY,SCAN_PROPORTION_PROPERTY_DEFAULT));
+		double aggregateproportion=Double.parseDouble(p.getProperty(ComplexWorkload.AGGREGATE_PROPORTION_PROPERTY,AGGREGATE_PROPORTION_PROPERTY_DEFAULT));
+		double readproportion=Double.parseDouble(p.getProperty(CoreWorkload.READ_PROPORTION_PROPERTY,READ_PROPORTION_PROPERTY_DEFAULT));
+		if (insertproportion>0)
+		{
+			operationchooser.addValue(insertproportion,"INSERT");
+		}
+		if (scanproportion>0)
+		{
+			operationchooser.addValue(scanproportion,"SCAN");
+		}
+		if (aggregateproportion>0)
+		{
+			operationchooser.addValue(aggregateproportion,"AGGREGATE");
+		}
+		if (readproportion>0)
+		{
+			operationchooser.addValue(readproportion,"READ");
+		}
+
+		String querydistrib=p.getProperty(QUERY_DISTRIBUTION_PROPERTY,QUERY_DISTRIBUTION_PROPERTY_DEFAULT);
+		if (querydistrib.compareTo("uniform")==0)
+		{
+			serieschooser=new UniformIntegerGenerator(0,seriescount-1);
+		}
+		else if (querydistrib.compareTo("zipfian")==0)
+		{
+			serieschooser=new ScrambledZipfianGenerator(seriescount);
+		}
+		else
+		{
+			throw new WorkloadException("Unknown query distribution \""+querydistrib+"\"");
+		}
+		maxscanlength=Integer.parseInt(p.getProperty(CoreWorkload.MAX_SCAN_LENGTH_PROPERTY,CoreWorkload.MAX_SCAN_LENGTH_PROPERTY_DEFAULT));
+		groupfunction=p.getProperty(ComplexWorkload.GROUP_OP_NAME_FIELD_PROPERTY,GROUP_FUNCTION_PROPERTY_DEFAULT);
+		aggregaterecordcount=Integer.parseInt(p.getProperty(ComplexWorkload.AGGREGATE_RECORD_COUNT_PROPERTY,ComplexWorkload.AGGREGATE_RECORD_COUNT_PROPERTY_DEFAULT));
+
+		recordcount=Integer.parseInt(p.getProperty(Client.RECORD_COUNT_PROPERTY));
+		loadstart=Integer.parseInt(p.getProperty(INSERT_START_PROPERTY,INSERT_START_PROPERTY_DEFAULT));
+		loadend=loadstart+Integer.parseInt(p.getProperty(Client.INSERT_COUNT_PROPERTY,Integer.toString(recordcount-loadstart)));
+		keysequence=new CounterGenerator(loadstart);
+		transactioninsertkeysequence=new CounterGenerator(recordcount);
+	}
+
+	public String seriesName(int series)
+	{
+		return "series"+series;
+	}
+
+	/**
+	 * @return the key of a point, which orders the points of a series by time
+	 */
+	public String buildKeyName(int series, long step)
+	{
+		String time=Long.toString(starttime+step*interval);
+		StringBuilder key=new StringBuilder(seriesName(series)).append('-');
+		for (int i=time.length(); i<19; i++)
+		{
+			key.append('0');
+		}
+		return key.append(time).toString();
+	}
+
+	boolean isLate(int series, long step)
+	{
+		long h=Utils.FNVhash64(step*seriescount+series);
+		return (h%10000)<outoforderfraction*10000;
+	}
+
+	/**
+	 * The step written by the nth insert of the points from start to end (or on, if end is negative): the nth
+	 * point itself, or, with late arrivals, a point of its series at most maxdelay steps away.
+	 */
+	long arrivingStep(long n, long start, long end)
+	{
+		int series=(int)(n%seriescount);
+		long step=n/seriescount;
+		if (outoforderfraction<=0)
+		{
+			return step;
+		}
+
+		//the steps of this series within the points from start to end
+		long first=(start+((series-start%seriescount)+seriescount)%seriescount)/seriescount;
+		long last=(end<0) ? Long.MAX_VALUE : (end-1-((((end-1)%seriescount)-series)+seriescount)%seriescount)/seriescount;
+		long windowstart=Math.max(first,(step/maxdelay)*maxdelay);
+		long windowend=Math.min(last,(step/maxdelay)*maxdelay+maxdelay-1);
+
+		//the on time points of the window arrive first, then the late ones
+		long arrival=step-windowstart;
+		long ontime=0;
+		for (long s=windowstart; s<=windowend; s++)
+		{
+			if (!isLate(series,s))
+			{
+				if (ontime==arrival)
+				{
+					return s;
+				}
+				ontime++;
+			}
+		}
+		long late=arrival-ontime;
+		for (long s=windowstart; s<=windowend; s++)
+		{
+			if (isLate(series,s))
+			{
+				if (late==0)
+				{
+					return s;
+				}
+				late--;
+			}
+		}
+		return step;
+	}
+
+	HashMap<String,Object> buildValues(int series, long step)
+	{
+		HashMap<String,Object> values=new HashMap<String,Object>();
+		values.put("stringkey",seriesName(series));
+		values.put("datekey",new Date(starttime+step*interval));
+		values.put("intkey",Utils.random().nextInt(1000));
+		for (int i=0; i<fieldcount; i++)
+		{
+			values.put("field"+i,new RandomByteIterator(fieldlengthgenerator.nextInt()).toArray());
+		}
+		return values;
+	}
+
+	boolean insert(DB db, long n, long start, long end)
+	{
+		int series=(int)(n%seriescount);
+		long step=arrivingStep(n,start,end);
+		return db.complexinsert(table,buildKeyName(series,step),buildValues(series,step))==0;
+	}
+
+	public boolean doInsert(DB db, Object threadstate)
+	{
+		return insert(db,keysequence.nextInt(),loadstart,loadend);
+	}
+
+	public boolean doTransaction(DB db, Object threadstate)
+	{
+		String op=operationchooser.nextString();
+
+		if (op.compareTo("INSERT")==0)
+		{
+			doTransactionInsert(db);
+		}
+		else if (op.compareTo("SCAN")==0)
+		{
+			doTransactionScan(db);
+		}
+		else if (op.compareTo("AGGREGATE")==0)
+		{
+			doTransactionAggregate(db);
+		}
+		else
+		{
+			doTransactionRead(db);
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return the data time of the latest point written
+	 */
+	long now()
+	{
+		return starttime+(transactioninsertkeysequence.lastInt()/seriescount)*interval;
+	}
+
+	public void doTransactionInsert(DB db)
+	{
+		insert(db,transactioninsertkeysequence.nextInt(),recordcount,-1);
+
+		if (retention>0)
+		{
+			long expiry=now()-retention;
+			for (int i=0; i<MAX_EXPIRED_PER_INSERT; i++)
+			{
+				int n=expirecursor.get();
+				long step=n/seriescount;
+				if ( (starttime+step*interval>=expiry) || (!expirecursor.compareAndSet(n,n+1)) )
+				{
+					break;
+				}
+				db.delete(table,buildKeyName(n%seriescount,step));
+			}
+		}
+	}
+
+	public void doTransactionScan(DB db)
+	{
+		long ub=now()-lagchooser.nextInt();
+		long lb=ub-window;
+		int len=(int)Math.max(1,Math.min(maxscanlength,window/interval+1));
+
+		db.scan(table,"stringkey",seriesName(serieschooser.nextInt()),"datekey",new Date(lb),new Date(ub),len,null,
+				new Vector<HashMap<String,Object>>());
+	}
+
+	public void doTransactionAggregate(DB db)
+	{
+		long ub=now()-lagchooser.nextInt();
+		long lb=ub-window;
+
+		db.aggregate(table,"datekey",new Date(lb),new Date(ub),aggregaterecordcount,"stringkey",groupfunction,TOP_N_RESULTS,
+				new Vector<HashMap<String,Object>>());
+	}
+
+	public void doTransactionRead(DB db)
+	{
+		long step=transactioninsertkeysequence.lastInt()/seriescount-lagchooser.nextInt()/interval;
+		db.read(table,buildKeyName(serieschooser.nextInt(),Math.max(0,step)),null,new HashMap<String,Object>());
+	}
+}
@@ -0,0 +1,80 @@
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+public class TestCachingDB {
+  /**
+   * A binding that returns its values as iterators.
+   */
+  static class IteratorDB extends NullDB {
+    public int read(String table, String key, Set<String> fields, HashMap<String, Object> result) {
+      result.put("field0", new StringByteIterator("value"));
+      return 0;
+    }
+  }
+
+  @Test
+  public void testHitsGetTheValuesOfIteratorsReadOnAMiss() throws Exception {
+    Measurements.setProperties(new Properties());
+    CachingDB db = new CachingDB(new IteratorDB());
+    db.setProperties(new Properties());
+    db.init();
+    try {
+      for (int i = 0; i < 3; i++) {
+        HashMap<String, Object> result = new HashMap<String, Object>();
+        assertEquals(0, db.read("usertable", "user1", null, result));
+        assertEquals("value", new String((byte[]) result.get("field0")));
+      }
+    } finally {
+      db.cleanup();
+    }
+  }
+
+  /**
+   * A binding whose updates let a read of the caching layer run before they write, as a concurrent read would.
+   */
+  static class RacingDB extends NullDB {
+    CachingDB cache;
+    String value = "old";
+
+    public int read(String table, String key, Set<String> fields, HashMap<String, Object> result) {
+      result.put("field0", new StringByteIterator(value));
+      return 0;
+    }
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+      cache.read(table, key, null, new HashMap<String, Object>());
+      value = values.get("field0").toString();
+      return 0;
+    }
+  }
+
+  @Test
+  public void testReadDuringAnInvalidatingWriteDoesNotCacheTheOldRecord() throws Exception {
+    Measurements.setProperties(new Properties());
+    RacingDB racing = new RacingDB();
+    CachingDB db = new CachingDB(racing);
+    racing.cache = db;
+    Properties p = new Properties();
+    p.setProperty(CachingDB.WRITE_POLICY, "invalidate");
+    db.setProperties(p);
+    db.init();
+    try {
+      HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+      values.put("field0", new StringByteIterator("new"));
+      assertEquals(0, db.update("usertable", "user1", values));
+      HashMap<String, Object> result = new HashMap<String, Object>();
+      assertEquals(0, db.read("usertable", "user1", null, result));
+      assertEquals("new", new String((byte[]) result.get("field0")));
+    } finally {
+      db.cleanup();
+    }
+  }
+}
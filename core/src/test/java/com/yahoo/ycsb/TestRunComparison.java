@@ -0,0 +1,54 @@
+package com.yahoo.ycsb;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+import com.yahoo.ycsb.measurements.LatencyHistogram;
+import com.yahoo.ycsb.measurements.exporter.BinaryMeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.RunResult;
+
+public class TestRunComparison {
+  /**
+   * A run exported and read back, with its 100 reads taking latency us each.
+   */
+  RunResult run(int latency) throws Exception {
+    LatencyHistogram h = new LatencyHistogram();
+    for (int i = 0; i < 100; i++) {
+      h.record(latency);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryMeasurementsExporter exporter = new BinaryMeasurementsExporter(out);
+    exporter.write("OVERALL", "Throughput(ops/sec)", 1000000.0 / latency);
+    exporter.writeHistogram("READ", h);
+    exporter.close();
+    return BinaryMeasurementsExporter.read(new ByteArrayInputStream(out.toByteArray()));
+  }
+
+  List<RunResult> runs(int... latencies) throws Exception {
+    List<RunResult> runs = new ArrayList<RunResult>();
+    for (int latency : latencies) {
+      runs.add(run(latency));
+    }
+    return runs;
+  }
+
+  @Test
+  public void testSlowerCandidateIsARegression() throws Exception {
+    List<RunResult> baseline = runs(100, 101, 99);
+    List<RunResult> slower = runs(150, 151, 149);
+    RunComparison.Value p99 = RunComparison.percentile(99);
+    assertTrue(RunComparison.compare("READ", p99, baseline, slower, 5));
+    assertFalse(RunComparison.compare("READ", p99, slower, baseline, 5));
+    assertFalse(RunComparison.compare("READ", p99, baseline, runs(101, 100, 102), 5));
+  }
+
+  @Test
+  public void testSingleRunsAreNeverARegression() throws Exception {
+    assertFalse(RunComparison.compare("READ", RunComparison.percentile(99), runs(100), runs(200), 5));
+  }
+}
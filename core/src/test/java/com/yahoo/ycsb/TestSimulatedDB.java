@@ -0,0 +1,25 @@
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+import com.yahoo.ycsb.generator.IntegerGenerator;
+
+public class TestSimulatedDB {
+  @Test
+  public void testZipfianServiceTimesHaveTheConfiguredMean() throws Exception {
+    Properties p = new Properties();
+    p.setProperty(SimulatedDB.DISTRIBUTION, "zipfian");
+    p.setProperty(SimulatedDB.SERVICE_TIME, "1000");
+    IntegerGenerator generator = SimulatedDB.getServiceTimeGenerator(p, "read");
+    double sum = 0;
+    int samples = 200000;
+    for (int i = 0; i < samples; i++) {
+      sum += generator.nextInt();
+    }
+    //within the few percent the zipfian generator is off by
+    assertEquals(1000, sum / samples, 80);
+  }
+}
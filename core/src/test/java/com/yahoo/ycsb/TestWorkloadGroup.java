@@ -0,0 +1,65 @@
+package com.yahoo.ycsb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestWorkloadGroup {
+  @Test
+  public void testGroupPropertiesOverrideTheRun() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("workload", "com.yahoo.ycsb.workloads.CoreWorkload");
+    props.setProperty("recordcount", "100");
+    props.setProperty("operationcount", "1000");
+    props.setProperty("threadcount", "4");
+    props.setProperty("groups", "oltp, analytics");
+    props.setProperty("group.analytics.threadcount", "2");
+    props.setProperty("group.analytics.target", "100");
+    props.setProperty("group.analytics.operationcount", "50");
+
+    List<WorkloadGroup> groups = WorkloadGroup.create(props, true);
+    assertEquals(2, groups.size());
+    WorkloadGroup oltp = groups.get(0);
+    WorkloadGroup analytics = groups.get(1);
+    assertEquals("oltp", oltp.name);
+    assertEquals(4, oltp.threadcount);
+    assertEquals(1000, oltp.opcount);
+    assertTrue(oltp.targetperthreadperms < 0);
+    assertEquals("analytics", analytics.name);
+    assertEquals(2, analytics.threadcount);
+    assertEquals(50, analytics.opcount);
+    assertEquals(0.05, analytics.targetperthreadperms, 1e-9);
+    assertNotSame(oltp.workload, analytics.workload);
+    assertEquals(6, WorkloadGroup.threadcount(groups));
+  }
+
+  @Test
+  public void testGroupsUseTheirOwnTable() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("workload", "com.yahoo.ycsb.workloads.CoreWorkload");
+    props.setProperty("recordcount", "10");
+    props.setProperty("groups", "a,b");
+    props.setProperty("group.a.table", "tablea");
+    props.setProperty("group.b.table", "tableb");
+
+    List<WorkloadGroup> groups = WorkloadGroup.create(props, false);
+    final List<String> tables = new ArrayList<String>();
+    DB db = new NullDB() {
+      @Override
+      public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+        tables.add(table);
+        return 0;
+      }
+    };
+    for (WorkloadGroup g : groups) {
+      assertTrue(g.workload.doInsert(db, g.workload.initThread(g.props, 0, 1)));
+    }
+    assertEquals(2, tables.size());
+    assertEquals("tablea", tables.get(0));
+    assertEquals("tableb", tables.get(1));
+  }
+}
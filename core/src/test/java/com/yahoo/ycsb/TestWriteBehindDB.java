@@ -0,0 +1,51 @@
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+public class TestWriteBehindDB {
+  static final AtomicInteger updates = new AtomicInteger();
+
+  static class CountingDB extends NullDB {
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+      updates.incrementAndGet();
+      return 0;
+    }
+  }
+
+  @Test
+  public void testWritesOfAllThreadsToAKeyAreMerged() throws Exception {
+    Measurements.setProperties(new Properties());
+    Properties props = new Properties();
+    props.setProperty(WriteBehindDB.INTERVAL, "60000");
+    WriteBehindDB[] dbs = new WriteBehindDB[2];
+    for (int i = 0; i < dbs.length; i++) {
+      dbs[i] = new WriteBehindDB(new CountingDB());
+      dbs[i].setProperties(props);
+      dbs[i].init();
+    }
+    assertSame(dbs[0].buffer, dbs[1].buffer);
+
+    updates.set(0);
+    for (int i = 0; i < 5; i++) {
+      for (WriteBehindDB db : dbs) {
+        HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+        values.put("field0", new StringByteIterator("value" + i));
+        assertEquals(0, db.update("usertable", "hot", values));
+      }
+    }
+    assertEquals(0, updates.get());
+
+    // the last layer cleaned up writes the buffer out
+    dbs[0].cleanup();
+    assertEquals(0, updates.get());
+    dbs[1].cleanup();
+    assertEquals(1, updates.get());
+  }
+}
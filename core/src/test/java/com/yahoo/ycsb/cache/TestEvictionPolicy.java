@@ -0,0 +1,62 @@
+package com.yahoo.ycsb.cache;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestEvictionPolicy {
+  @Test
+  public void testWeightStaysWithinCapacity() {
+    for (String name : new String[] { "lru", "clock", "tinylfu" }) {
+      EvictionPolicy policy = EvictionPolicy.create(name, 100, 100);
+      int evicted = 0;
+      for (int i = 0; i < 1000; i++) {
+        evicted += policy.put("key" + i, i, 1 + (i % 3));
+        assertTrue(name, policy.getWeight() <= 100);
+      }
+      //every insert was either kept or evicted
+      int kept = 0;
+      for (int i = 0; i < 1000; i++) {
+        if (policy.get("key" + i) != null) {
+          kept++;
+        }
+      }
+      assertEquals(name, 1000, kept + evicted);
+    }
+  }
+
+  @Test
+  public void testRemoveReleasesWeight() {
+    for (String name : new String[] { "lru", "clock", "tinylfu" }) {
+      EvictionPolicy policy = EvictionPolicy.create(name, 10, 10);
+      policy.put("a", "1", 4);
+      assertEquals(name, "1", policy.get("a"));
+      assertTrue(name, policy.remove("a"));
+      assertFalse(name, policy.remove("a"));
+      assertNull(name, policy.get("a"));
+      assertEquals(name, 0, policy.getWeight());
+    }
+  }
+
+  @Test
+  public void testTinyLfuKeepsFrequentKeys() {
+    EvictionPolicy policy = EvictionPolicy.create("tinylfu", 100, 100);
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 50; i++) {
+        if (policy.get("hot" + i) == null) {
+          policy.put("hot" + i, i, 1);
+        }
+      }
+    }
+    //a scan of keys seen once should not flush the frequently read ones
+    for (int i = 0; i < 1000; i++) {
+      policy.put("cold" + i, i, 1);
+    }
+    int kept = 0;
+    for (int i = 0; i < 50; i++) {
+      if (policy.get("hot" + i) != null) {
+        kept++;
+      }
+    }
+    assertTrue("kept " + kept, kept >= 45);
+  }
+}
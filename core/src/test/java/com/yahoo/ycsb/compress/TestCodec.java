@@ -0,0 +1,82 @@
+package com.yahoo.ycsb.compress;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestCodec {
+  static final String[] CODECS = { "none", "lz", "deflate", "deflate:1", "deflate:9" };
+
+  byte[] value(Random random, int length, int alphabet) {
+    byte[] value = new byte[length];
+    for (int i = 0; i < length; i++) {
+      value[i] = (byte) ('a' + random.nextInt(alphabet));
+    }
+    return value;
+  }
+
+  @Test
+  public void testRoundTrip() {
+    Random random = new Random(42);
+    Codec[] decoders = Codec.decoders();
+    for (String name : CODECS) {
+      Codec codec = Codec.create(name);
+      for (int length : new int[] { 0, 1, 3, 4, 5, 100, 1000, 70000 }) {
+        for (int alphabet : new int[] { 1, 4, 26 }) {
+          byte[] raw = value(random, length, alphabet);
+          byte[] framed = codec.encode(raw);
+          int id = Codec.idOf(framed);
+          assertTrue(name, id >= 0);
+          assertTrue(name + " " + length, Arrays.equals(raw, decoders[id].decode(framed)));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testRepetitiveValuesShrink() {
+    byte[] raw = new byte[1000];
+    for (int i = 0; i < raw.length; i++) {
+      raw[i] = (byte) ("abcdefgh".charAt(i % 8));
+    }
+    for (String name : new String[] { "lz", "deflate" }) {
+      byte[] framed = Codec.create(name).encode(raw);
+      assertTrue(name + " " + framed.length, framed.length < 100);
+      assertFalse(name, Codec.idOf(framed) == Codec.NONE);
+    }
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testTruncatedValueIsRejected() {
+    byte[] raw = new byte[1000];
+    Arrays.fill(raw, (byte) 'x');
+    byte[] framed = Codec.create("lz").encode(raw);
+    Codec.decoders()[Codec.LZ].decode(Arrays.copyOf(framed, framed.length - 1));
+  }
+
+  @Test
+  public void testCorruptLengthIsRejected() {
+    byte[] raw = new byte[1000];
+    Arrays.fill(raw, (byte) 'x');
+    for (String name : new String[] { "none", "lz", "deflate" }) {
+      byte[] framed = Codec.create(name).encode(raw);
+      Codec decoder = Codec.decoders()[Codec.idOf(framed)];
+      //the 2 byte length of 1000, replaced by a length of almost 2GB, then by a varint that does not end
+      byte[][] corrupt = { { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07 },
+          { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff } };
+      for (byte[] length : corrupt) {
+        byte[] value = new byte[framed.length - 2 + length.length];
+        value[0] = framed[0];
+        System.arraycopy(length, 0, value, 1, length.length);
+        System.arraycopy(framed, 3, value, 1 + length.length, framed.length - 3);
+        try {
+          decoder.decode(value);
+          fail(name);
+        } catch (IllegalArgumentException e) {
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package com.yahoo.ycsb.measurements;
+
+import java.io.ByteArrayOutputStream;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
+
+public class TestByteCounts {
+  String export(ByteCounts counts) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TextMeasurementsExporter exporter = new TextMeasurementsExporter(out);
+    counts.exportMeasurements(exporter);
+    exporter.close();
+    return out.toString();
+  }
+
+  @Test
+  public void testReportsAfterAnExportAreCounted() throws Exception {
+    //one interval for the whole test
+    ByteCounts counts = new ByteCounts("READ", 3600000);
+    counts.report(10, 100);
+    String first = export(counts);
+    assertTrue(first, first.contains("BytesIn@0(bytes/sec)"));
+
+    counts.report(20, 200);
+    String second = export(counts);
+    assertTrue(second, second.contains("[READ], BytesIn, 30"));
+    assertEquals(1, counts.series.size());
+    assertEquals(30, counts.series.get(0)[1]);
+    assertEquals(300, counts.series.get(0)[2]);
+    assertEquals(0, counts.currentunit);
+  }
+}
@@ -0,0 +1,73 @@
+package com.yahoo.ycsb.measurements;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestLatencyHistogram {
+  @Test
+  public void testBucketsCoverEveryLatencyWithinOnePercent() {
+    for (int latency : new int[] { 0, 1, 255, 256, 257, 258, 511, 512, 1000, 65535, 65536, Integer.MAX_VALUE }) {
+      int bucket = LatencyHistogram.bucketOf(latency);
+      assertTrue(latency + " " + bucket, bucket >= 0 && bucket < LatencyHistogram.BUCKETS);
+      int highest = LatencyHistogram.highestOf(bucket);
+      assertTrue(latency + " " + highest, highest >= latency);
+      assertTrue(latency + " " + highest, highest - latency <= latency / 100);
+      if (bucket > 0) {
+        assertEquals(bucket - 1, LatencyHistogram.bucketOf(LatencyHistogram.highestOf(bucket - 1)));
+        assertEquals(bucket, LatencyHistogram.bucketOf(LatencyHistogram.highestOf(bucket - 1) + 1));
+      }
+    }
+  }
+
+  @Test
+  public void testPercentilesAtTheLinearEdge() {
+    LatencyHistogram h = new LatencyHistogram();
+    for (int latency = 1; latency <= 256; latency++) {
+      h.record(latency);
+    }
+    assertEquals(128, h.getPercentile(50));
+    assertEquals(255, h.getPercentile(99.6));
+    //256 is the first latency that shares its bucket, but it is the largest recorded
+    assertEquals(256, h.getPercentile(100));
+    assertEquals(1, h.getPercentile(0));
+  }
+
+  @Test
+  public void testPercentilesAreTheHighestLatencyOfTheirBucket() {
+    LatencyHistogram h = new LatencyHistogram();
+    h.record(256);
+    h.record(1000);
+    //256 and 257 share a bucket
+    assertEquals(257, h.getPercentile(50));
+    assertEquals(1000, h.getPercentile(100));
+    assertEquals(-1, new LatencyHistogram().getPercentile(50));
+  }
+
+  @Test
+  public void testWriteReadAndMerge() throws Exception {
+    LatencyHistogram a = new LatencyHistogram();
+    LatencyHistogram b = new LatencyHistogram();
+    for (int i = 0; i < 1000; i++) {
+      a.record(i);
+      b.record(i * 100);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    b.write(new DataOutputStream(out));
+    LatencyHistogram read = LatencyHistogram.read(new DataInputStream(new ByteArrayInputStream(out.toByteArray())));
+    assertEquals(b.getCount(), read.getCount());
+    assertEquals(b.getMean(), read.getMean(), 0);
+    assertEquals(b.getPercentile(99), read.getPercentile(99));
+
+    a.merge(read);
+    assertEquals(2000, a.getCount());
+    assertEquals(0, a.getMin());
+    assertEquals(99900, a.getMax());
+    //the 1000th latency, 989, is in the bucket of 988 to 991
+    assertEquals(991, a.getPercentile(50));
+  }
+}
@@ -0,0 +1,70 @@
+package com.yahoo.ycsb.measurements;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
+
+public class TestOneMeasurementTimeSeries {
+  String export(OneMeasurementTimeSeries m) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TextMeasurementsExporter exporter = new TextMeasurementsExporter(out);
+    m.exportMeasurements(exporter);
+    exporter.close();
+    return out.toString();
+  }
+
+  @Test
+  public void testSpilledIntervalsAreExportedInOrder() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(OneMeasurementTimeSeries.BUFFER_SIZE, "4");
+    OneMeasurementTimeSeries m = new OneMeasurementTimeSeries("READ", props);
+    m.checkEndOfUnit(false);
+
+    //ten intervals, six of which do not fit the ring buffer
+    for (int i = 0; i < 10; i++) {
+      m.count = 1;
+      m.sum = i;
+      m.currentunit = i * 1000;
+      m.checkEndOfUnit(true);
+    }
+    assertEquals(6, m._spilled);
+    assertEquals(4, m._size);
+
+    String[] lines = export(m).split("\n");
+    //the spill file is closed once exported
+    assertNull(m._spill);
+    int interval = 0;
+    for (String line : lines) {
+      if (line.startsWith("[READ], " + (interval * 1000) + ", ")) {
+        assertEquals("[READ], " + (interval * 1000) + ", " + (double) interval, line.trim());
+        interval++;
+      }
+    }
+    assertEquals(10, interval);
+  }
+
+  @Test
+  public void testConcurrentMeasurementsAreNotLost() throws Exception {
+    final OneMeasurementTimeSeries m = new OneMeasurementTimeSeries("UPDATE", new Properties());
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        public void run() {
+          for (int j = 0; j < 100000; j++) {
+            m.measure(1);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertEquals(400000, m.operations);
+    assertEquals(400000, m.totallatency);
+  }
+}
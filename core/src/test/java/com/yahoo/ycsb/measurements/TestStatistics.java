@@ -0,0 +1,47 @@
+package com.yahoo.ycsb.measurements;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestStatistics {
+  @Test
+  public void testMeanAndStddev() {
+    double[] values = { 1, 2, 3, 4, 5 };
+    assertEquals(3, Statistics.mean(values), 1e-9);
+    assertEquals(Math.sqrt(2.5), Statistics.stddev(values), 1e-9);
+    assertEquals(0, Statistics.stddev(new double[] { 7 }), 0);
+  }
+
+  @Test
+  public void testTQuantiles() {
+    assertEquals(12.706, Statistics.t975(1), 0);
+    assertEquals(2.776, Statistics.t975(4), 0);
+    assertEquals(2.776, Statistics.t975(4.9), 0);
+    assertEquals(2.042, Statistics.t975(30), 0);
+    assertEquals(2.021, Statistics.t975(40), 0);
+    assertEquals(1.980, Statistics.t975(1000), 0);
+    assertTrue(Double.isNaN(Statistics.t975(0.5)));
+  }
+
+  @Test
+  public void testMeanInterval() {
+    //3 +- 2.776*sqrt(2.5)/sqrt(5)
+    double[] interval = Statistics.meanInterval(new double[] { 1, 2, 3, 4, 5 });
+    assertEquals(1.037072, interval[0], 1e-6);
+    assertEquals(4.962928, interval[1], 1e-6);
+    assertNull(Statistics.meanInterval(new double[] { 1 }));
+  }
+
+  @Test
+  public void testDifferenceInterval() {
+    //Welch: variances of the means 1/3 each, 4 degrees of freedom, 3 +- 2.776*sqrt(2/3)
+    double[] interval = Statistics.differenceInterval(new double[] { 1, 2, 3 }, new double[] { 4, 5, 6 });
+    assertEquals(0.733405, interval[0], 1e-6);
+    assertEquals(5.266595, interval[1], 1e-6);
+
+    interval = Statistics.differenceInterval(new double[] { 2, 2 }, new double[] { 5, 5 });
+    assertEquals(3, interval[0], 0);
+    assertEquals(3, interval[1], 0);
+    assertNull(Statistics.differenceInterval(new double[] { 1 }, new double[] { 1, 2 }));
+  }
+}
@@ -0,0 +1,42 @@
+package com.yahoo.ycsb.measurements.exporter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+import com.yahoo.ycsb.measurements.LatencyHistogram;
+
+public class TestBinaryMeasurementsExporter {
+  @Test
+  public void testExportIsReadBack() throws Exception {
+    LatencyHistogram h = new LatencyHistogram();
+    for (int i = 0; i < 100; i++) {
+      h.record(i * 10);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryMeasurementsExporter exporter = new BinaryMeasurementsExporter(out);
+    exporter.writeMetadata("revision", "abc");
+    exporter.write("OVERALL", "RunTime(ms)", 1000);
+    exporter.write("OVERALL", "Throughput(ops/sec)", 1234.5);
+    exporter.writeHistogram("READ", h);
+    exporter.close();
+
+    RunResult result = BinaryMeasurementsExporter.read(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals("abc", result.metadata.get("revision"));
+    assertEquals(1000.0, result.get("OVERALL", "RunTime(ms)"));
+    assertEquals(1234.5, result.get("OVERALL", "Throughput(ops/sec)"));
+    assertNull(result.get("OVERALL", "Operations"));
+    LatencyHistogram read = result.histograms.get("READ");
+    assertEquals(100, read.getCount());
+    assertEquals(h.getMean(), read.getMean(), 0);
+    assertEquals(h.getPercentile(95), read.getPercentile(95));
+  }
+
+  @Test(expectedExceptions = IOException.class)
+  public void testOtherFilesAreRejected() throws Exception {
+    BinaryMeasurementsExporter.read(new ByteArrayInputStream("[OVERALL], RunTime(ms), 1000".getBytes()));
+  }
+}
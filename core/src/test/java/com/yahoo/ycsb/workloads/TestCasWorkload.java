@@ -0,0 +1,70 @@
+package com.yahoo.ycsb.workloads;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.NullDB;
+import com.yahoo.ycsb.measurements.Measurements;
+
+public class TestCasWorkload {
+  /**
+   * A record whose version another writer bumps the first times it is compared.
+   */
+  static class RacingDB extends NullDB {
+    int version = 0;
+    int races;
+
+    RacingDB(int races) {
+      this.races = races;
+    }
+
+    public int read(String table, String key, Set<String> fields, HashMap<String, Object> result) {
+      if (version > 0) {
+        result.put("version", Integer.toString(version).getBytes());
+      }
+      return 0;
+    }
+
+    public int conditionalUpdate(String table, String key, String versionfield, ByteIterator expected, HashMap<String, ByteIterator> values) {
+      String seen = (expected == null) ? null : new String(expected.toArray());
+      if (races > 0) {
+        races--;
+        version++;
+        return CONFLICT;
+      }
+      assertEquals((version == 0) ? null : Integer.toString(version), seen);
+      version = Integer.parseInt(values.get(versionfield).toString());
+      return 0;
+    }
+  }
+
+  @Test
+  public void testConflictsAreRetriedWithTheNewVersion() throws Exception {
+    Measurements.setProperties(new Properties());
+    Properties props = new Properties();
+    props.setProperty("recordcount", "1");
+    props.setProperty("operationcount", "1");
+    props.setProperty(CoreWorkload.CAS_PROPORTION_PROPERTY, "1");
+    props.setProperty(CoreWorkload.CAS_MAX_RETRIES_PROPERTY, "2");
+    CoreWorkload workload = new CoreWorkload();
+    workload.init(props);
+    workload.cascounters.reset();
+
+    RacingDB db = new RacingDB(2);
+    workload.doTransactionCAS(db);
+    assertEquals(3, db.version);
+    assertEquals(3, workload.cascounters.get("Attempts"));
+    assertEquals(2, workload.cascounters.get("Retries"));
+    assertEquals(1, workload.cascounters.get("Successes"));
+
+    db.races = 3;
+    workload.doTransactionCAS(db);
+    assertEquals(1, workload.cascounters.get("GaveUp"));
+    assertEquals(1, workload.cascounters.get("Successes"));
+  }
+}
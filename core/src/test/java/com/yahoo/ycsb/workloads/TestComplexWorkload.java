@@ -0,0 +1,101 @@
+package com.yahoo.ycsb.workloads;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.NullDB;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.RunResultExporter;
+
+public class TestComplexWorkload {
+  /**
+   * Keeps the length of every field of every update.
+   */
+  static class UpdateDB extends NullDB {
+    List<HashMap<String, Integer>> updates = new ArrayList<HashMap<String, Integer>>();
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+      HashMap<String, Integer> lengths = new HashMap<String, Integer>();
+      for (Map.Entry<String, ByteIterator> value : values.entrySet()) {
+        lengths.put(value.getKey(), (int) value.getValue().bytesLeft());
+      }
+      updates.add(lengths);
+      return 0;
+    }
+  }
+
+  /**
+   * A single 1000 byte record that grows by 1000 bytes up to maxdocumentsize.
+   */
+  ComplexWorkload workload(String growthmode, int maxdocumentsize) throws Exception {
+    Measurements.setProperties(new Properties());
+    Measurements.getMeasurements().reset();
+    Properties props = new Properties();
+    props.setProperty("recordcount", "1");
+    props.setProperty("operationcount", "1");
+    props.setProperty("fieldcount", "1");
+    props.setProperty("fieldlength", "1000");
+    props.setProperty(ComplexWorkload.GROWTH_PER_UPDATE_PROPERTY, "1000");
+    props.setProperty(ComplexWorkload.MAX_DOCUMENT_SIZE_PROPERTY, Integer.toString(maxdocumentsize));
+    props.setProperty(ComplexWorkload.GROWTH_MODE_PROPERTY, growthmode);
+    ComplexWorkload workload = new ComplexWorkload();
+    workload.init(props);
+    return workload;
+  }
+
+  UpdateDB grow(ComplexWorkload workload, int updates) {
+    UpdateDB db = new UpdateDB();
+    for (int i = 0; i < updates; i++) {
+      workload.doTransactionGrowUpdate(db);
+    }
+    return db;
+  }
+
+  @Test
+  public void testFieldModeRewritesOneLongerField() throws Exception {
+    UpdateDB db = grow(workload("field", 3500), 4);
+    int[] lengths = { 1000, 2000, 2500, 2500 };
+    for (int i = 0; i < lengths.length; i++) {
+      assertEquals(1, db.updates.get(i).size());
+      assertEquals(lengths[i], (int) db.updates.get(i).get("growth"));
+    }
+  }
+
+  @Test
+  public void testNewFieldsModeAddsAFieldEachTime() throws Exception {
+    UpdateDB db = grow(workload("newfields", 3500), 4);
+    String[] fields = { "growth0", "growth1", "growth2", "growth2" };
+    int[] lengths = { 1000, 1000, 500, 500 };
+    for (int i = 0; i < lengths.length; i++) {
+      assertEquals(1, db.updates.get(i).size());
+      assertEquals(lengths[i], (int) db.updates.get(i).get(fields[i]));
+    }
+  }
+
+  @Test
+  public void testUpdatesAreMeasuredBySizeBucket() throws Exception {
+    ComplexWorkload workload = workload("field", 3500);
+    grow(workload, 3);
+    RunResultExporter exporter = new RunResultExporter();
+    Measurements.getMeasurements().exportMeasurements(exporter);
+    //records of 2000, then 3000 and 3500 bytes
+    assertEquals(1.0, exporter.getResult().get("GROWING UPDATE 2KB", "Operations"));
+    assertEquals(2.0, exporter.getResult().get("GROWING UPDATE 4KB", "Operations"));
+  }
+
+  @Test
+  public void testRecordsAtTheMaximumSizeAreUpdatedInPlace() throws Exception {
+    UpdateDB db = grow(workload("field", 1000), 2);
+    for (HashMap<String, Integer> update : db.updates) {
+      assertFalse(update.containsKey("growth"));
+      assertEquals(1000, (int) update.get("field0"));
+    }
+  }
+}
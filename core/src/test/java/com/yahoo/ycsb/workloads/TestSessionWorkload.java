@@ -0,0 +1,34 @@
+package com.yahoo.ycsb.workloads;
+
+import java.util.HashMap;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+import com.yahoo.ycsb.ByteIterator;
+
+public class TestSessionWorkload {
+  @Test
+  public void testItemsComeFromTheRefsOfTheProfile() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("recordcount", "50");
+    props.setProperty("operationcount", "100");
+    props.setProperty(SessionWorkload.REF_COUNT_PROPERTY, "4");
+    SessionWorkload workload = new SessionWorkload();
+    workload.init(props);
+
+    //a record as the bindings return it, with the refs written at load
+    HashMap<String, ByteIterator> values = workload.buildValues();
+    HashMap<String, Object> record = new HashMap<String, Object>(values);
+    int[] refs = SessionWorkload.parseRefs(record);
+    assertEquals(4, refs.length);
+    for (int ref : refs) {
+      assertTrue(ref >= 0 && ref < 50);
+    }
+
+    record.put(SessionWorkload.REFS_FIELD, "3,7".getBytes());
+    assertEquals(7, SessionWorkload.parseRefs(record)[1]);
+    assertNull(SessionWorkload.parseRefs(new HashMap<String, Object>()));
+  }
+}
@@ -0,0 +1,57 @@
+package com.yahoo.ycsb.workloads;
+
+import java.util.Properties;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+import com.yahoo.ycsb.WorkloadException;
+
+public class TestSpecWorkload {
+  SpecWorkload workload(String spec) throws Exception {
+    Properties props = new Properties();
+    props.setProperty("recordcount", "100");
+    props.setProperty("operationcount", "1000");
+    SpecWorkload workload = new SpecWorkload();
+    workload.init(props, new ObjectMapper().readTree(spec.replace('\'', '"')));
+    return workload;
+  }
+
+  @Test
+  public void testOperationsAreDrawnByWeight() throws Exception {
+    SpecWorkload workload = workload("{'operations': ["
+        + "{'type': 'read', 'weight': 3, 'fields': ['field0']},"
+        + "{'type': 'delete', 'weight': 0},"
+        + "{'type': 'update', 'weight': 1, 'set': ['field1']}]}");
+    //operations without weight are left out of the table
+    assertEquals(2, workload.operations.length);
+    assertTrue(workload.operationFor(0.0) instanceof SpecWorkload.ReadOperation);
+    assertTrue(workload.operationFor(0.74) instanceof SpecWorkload.ReadOperation);
+    assertTrue(workload.operationFor(0.75) instanceof SpecWorkload.UpdateOperation);
+    assertTrue(workload.operationFor(0.9999999) instanceof SpecWorkload.UpdateOperation);
+    //the default record is fieldcount fields of random bytes
+    assertEquals(10, workload.recordfields.length);
+    assertTrue(workload.bytesrecord);
+  }
+
+  @Test
+  public void testQueryValuesDefaultToTheRecordField() throws Exception {
+    SpecWorkload workload = workload("{'record': {'intkey': {'type': 'int', 'min': 5, 'max': 5},"
+        + "'field0': {'type': 'bytes', 'length': 10}},"
+        + "'operations': [{'type': 'secondaryread', 'weight': 1, 'field': 'intkey'}]}");
+    SpecWorkload.SecondaryReadOperation read = (SpecWorkload.SecondaryReadOperation) workload.operations[0];
+    assertEquals(5, read.value.next());
+    assertFalse(workload.bytesrecord);
+  }
+
+  @Test
+  public void testErrorsNameTheOperation() throws Exception {
+    try {
+      workload("{'operations': [{'type': 'read', 'weight': 1}, {'type': 'secondaryread', 'weight': 1, 'field': 'nope'}]}");
+      fail();
+    } catch (WorkloadException e) {
+      assertTrue(e.getMessage(), e.getMessage().startsWith("operations[1].value"));
+    }
+  }
+}
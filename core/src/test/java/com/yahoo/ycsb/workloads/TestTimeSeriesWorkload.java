@@ -0,0 +1,50 @@
+package com.yahoo.ycsb.workloads;
+
+import java.util.HashSet;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestTimeSeriesWorkload {
+  TimeSeriesWorkload workload(double outoforder) throws Exception {
+    Properties props = new Properties();
+    props.setProperty("recordcount", "1000");
+    props.setProperty(TimeSeriesWorkload.SERIES_COUNT_PROPERTY, "7");
+    props.setProperty(TimeSeriesWorkload.OUT_OF_ORDER_FRACTION_PROPERTY, Double.toString(outoforder));
+    props.setProperty(TimeSeriesWorkload.MAX_DELAY_PROPERTY, "5");
+    TimeSeriesWorkload workload = new TimeSeriesWorkload();
+    workload.init(props);
+    return workload;
+  }
+
+  @Test
+  public void testLateArrivalsWriteEveryPointOnce() throws Exception {
+    TimeSeriesWorkload workload = workload(0.3);
+    //a load split over two clients, with windows cut at both ends
+    int[][] ranges = { { 0, 503 }, { 503, 1000 } };
+    HashSet<String> keys = new HashSet<String>();
+    int late = 0;
+    for (int[] range : ranges) {
+      for (long n = range[0]; n < range[1]; n++) {
+        long step = workload.arrivingStep(n, range[0], range[1]);
+        if (step != n / 7) {
+          late++;
+          assertTrue(Math.abs(step - n / 7) < 5);
+        }
+        assertTrue(keys.add(workload.buildKeyName((int) (n % 7), step)));
+      }
+    }
+    for (long n = 0; n < 1000; n++) {
+      assertTrue(keys.contains(workload.buildKeyName((int) (n % 7), n / 7)));
+    }
+    assertTrue(late > 0);
+  }
+
+  @Test
+  public void testKeysOrderPointsByTime() throws Exception {
+    TimeSeriesWorkload workload = workload(0);
+    assertTrue(workload.buildKeyName(3, 9).compareTo(workload.buildKeyName(3, 10)) < 0);
+    assertEquals(3, workload.arrivingStep(25, 0, 1000));
+  }
+}
@@ -0,0 +1,709 @@
+/**
+ * Memory-mapped append-log store binding for YCSB.
+ */
+
+package com.yahoo.ycsb.db;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.DBException;
+import com.yahoo.ycsb.measurements.Counters;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded log-structured store for YCSB framework, on local disk only, to study the behavior of a storage
+ * engine without a cluster.
+ *
+ * Every write appends an entry to the head segment, a file of logstore.segmentsize bytes mapped into memory
+ * through FileChannel.map, and an in-memory index maps each key to the segment and offset of its latest entry.
+ * An update appends the whole merged record, so it writes more than it was given; deletes append a tombstone.
+ * Reads go through the mapping, so a record that was just written is read back from the page cache.
+ *
+ * The index is a ConcurrentSkipListMap per table rather than a hash map, so scans can walk the keys in order.
+ * Writes are serialized by one lock, as appends to a single log are; reads take no lock.
+ *
+ * A background thread compacts every segment but the head in which superseded entries take more than
+ * logstore.compaction.threshold of the space: it appends the live entries again and deletes the file.
+ * logstore.sync chooses when the mapped segments are forced to disk: never (none), after every write (always),
+ * or every logstore.sync.interval ms (interval).
+ *
+ * The segments are kept in logstore.dir, and the index is rebuilt from them when the store is opened, so a load
+ * phase can be followed by a run phase. The logical bytes written by the client, the bytes appended to the log,
+ * including compaction, and their ratio are exported with the measurements under [LOGSTORE].
+ *
+ * Only the operations of CoreWorkload are supported; the secondary and complex reads and scans and the
+ * aggregates return 1.
+ *
+ * Properties to set:
+ *
+ * logstore.dir=/tmp/ycsb-logstore logstore.segmentsize=67108864 logstore.sync=none
+ */
+public class LogStoreClient extends DB {
+
+    /** The directory of the segment files. */
+    public static final String DIR = "logstore.dir";
+
+    /** The size of a segment file in bytes; no record can be larger. */
+    public static final String SEGMENT_SIZE = "logstore.segmentsize";
+    public static final String SEGMENT_SIZE_DEFAULT = "67108864";
+
+    /** When to force the segments to disk: none, always or interval. */
+    public static final String SYNC = "logstore.sync";
+    public static final String SYNC_DEFAULT = "none";
+
+    /** The time between two forces of the head segment with sync=interval, in ms. */
+    public static final String SYNC_INTERVAL = "logstore.sync.interval";
+    public static final String SYNC_INTERVAL_DEFAULT = "1000";
+
+    /** The time between two checks for segments to compact, in ms, or 0 to never compact. */
+    public static final String COMPACTION_INTERVAL = "logstore.compaction.interval";
+    public static final String COMPACTION_INTERVAL_DEFAULT = "1000";
+
+    /** The fraction of superseded entries above which a segment is compacted. */
+    public static final String COMPACTION_THRESHOLD = "logstore.compaction.threshold";
+    public static final String COMPACTION_THRESHOLD_DEFAULT = "0.5";
+
+    static final byte PUT = 1;
+    static final byte DELETE = 2;
+
+    /** The length and the kind of an entry, before its contents. */
+    static final int HEADER = 5;
+
+    /** The write amplification of the store, and its segments when it was closed. */
+    static class LogStoreCounters extends Counters {
+        volatile int segments = 0;
+
+        LogStoreCounters() {
+            super("LOGSTORE");
+        }
+
+        @Override
+        public void exportMeasurements(MeasurementsExporter exporter) throws IOException {
+            super.exportMeasurements(exporter);
+            long logical = get("LogicalBytes");
+            if (logical > 0) {
+                exporter.write(getName(), "WriteAmplification", ((double) get("WrittenBytes")) / logical);
+            }
+            exporter.write(getName(), "Segments", segments);
+        }
+    }
+
+    /** A mapped segment file. */
+    static class Segment {
+        int id;
+        File file;
+        FileChannel channel;
+        MappedByteBuffer buffer;
+        /** The end of the entries; only the head segment grows. */
+        volatile int end = 0;
+        /** The bytes of the entries that were superseded. */
+        AtomicLong garbage = new AtomicLong();
+
+        Segment(File dir, int id, int size) throws IOException {
+            this.id = id;
+            file = new File(dir, String.format("segment-%08d.log", id));
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        /** @return the length of the entry at the offset, or 0 at the end of the entries */
+        int lengthAt(int offset) {
+            return (offset + HEADER > buffer.capacity()) ? 0 : buffer.getInt(offset);
+        }
+    }
+
+    /** An entry read back from a segment. */
+    static class Entry {
+        byte kind;
+        String table;
+        String key;
+        HashMap<String, byte[]> fields = new HashMap<String, byte[]>();
+    }
+
+    /** The state of the store, shared by all the DB instances. */
+    static class Store extends Thread {
+        File dir;
+        int segmentsize;
+        String sync;
+        long syncinterval;
+        long compactioninterval;
+        double compactionthreshold;
+
+        ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<Integer, Segment>();
+        volatile Segment head;
+        ConcurrentHashMap<String, ConcurrentSkipListMap<String, Long>> indexes = new ConcurrentHashMap<String, ConcurrentSkipListMap<String, Long>>();
+
+        LogStoreCounters counters;
+
+        // the maintenance thread waits on this rather than being interrupted, which would close the channel it uses
+        final Object wakeup = new Object();
+        volatile boolean closed = false;
+
+        Store(Properties p) throws IOException {
+            setDaemon(true);
+            setName("LogStore maintenance");
+            dir = new File(p.getProperty(DIR, new File(System.getProperty("java.io.tmpdir"), "ycsb-logstore").getPath()));
+            segmentsize = Integer.parseInt(p.getProperty(SEGMENT_SIZE, SEGMENT_SIZE_DEFAULT));
+            sync = p.getProperty(SYNC, SYNC_DEFAULT);
+            syncinterval = Long.parseLong(p.getProperty(SYNC_INTERVAL, SYNC_INTERVAL_DEFAULT));
+            compactioninterval = Long.parseLong(p.getProperty(COMPACTION_INTERVAL, COMPACTION_INTERVAL_DEFAULT));
+            compactionthreshold = Double.parseDouble(p.getProperty(COMPACTION_THRESHOLD, COMPACTION_THRESHOLD_DEFAULT));
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Could not create " + dir);
+            }
+            counters = (LogStoreCounters) Measurements.getMeasurements().registerCounters(new LogStoreCounters());
+            recover();
+        }
+
+        /**
+         * Map the existing segments and replay them in order to rebuild the index.
+         */
+        void recover() throws IOException {
+            File[] files = dir.listFiles();
+            for (File f : files) {
+                String name = f.getName();
+                if (name.startsWith("segment-") && name.endsWith(".log")) {
+                    int id = Integer.parseInt(name.substring(8, name.length() - 4));
+                    segments.put(id, new Segment(dir, id, (int) Math.max(segmentsize, f.length())));
+                }
+            }
+            for (Segment segment : segments.values()) {
+                int offset = 0;
+                int length;
+                while ((length = segment.lengthAt(offset)) > 0) {
+                    Entry entry = read(segment, offset);
+                    long location = location(segment.id, offset);
+                    supersede(index(entry.table).get(entry.key));
+                    if (entry.kind == PUT) {
+                        index(entry.table).put(entry.key, location);
+                    }
+                    else {
+                        index(entry.table).remove(entry.key);
+                        segment.garbage.addAndGet(HEADER + length);
+                    }
+                    offset += HEADER + length;
+                }
+                segment.end = offset;
+            }
+            head = segments.isEmpty() ? roll() : segments.lastEntry().getValue();
+        }
+
+        Segment roll() throws IOException {
+            int id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+            Segment segment = new Segment(dir, id, segmentsize);
+            segments.put(id, segment);
+            return segment;
+        }
+
+        ConcurrentSkipListMap<String, Long> index(String table) {
+            ConcurrentSkipListMap<String, Long> index = indexes.get(table);
+            if (index == null) {
+                index = new ConcurrentSkipListMap<String, Long>();
+                ConcurrentSkipListMap<String, Long> previous = indexes.putIfAbsent(table, index);
+                if (previous != null) {
+                    index = previous;
+                }
+            }
+            return index;
+        }
+
+        static long location(int segment, int offset) {
+            return (((long) segment) << 32) | offset;
+        }
+
+        /**
+         * Count the entry at the location, if any, as garbage of its segment.
+         */
+        void supersede(Long location) {
+            if (location != null) {
+                Segment segment = segments.get((int) (location >>> 32));
+                if (segment != null) {
+                    segment.garbage.addAndGet(HEADER + segment.lengthAt((int) (long) location));
+                }
+            }
+        }
+
+        static Entry read(Segment segment, int offset) throws IOException {
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(offset);
+            byte[] contents = new byte[buffer.getInt()];
+            Entry entry = new Entry();
+            entry.kind = buffer.get();
+            buffer.get(contents);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents));
+            entry.table = in.readUTF();
+            entry.key = in.readUTF();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String name = in.readUTF();
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                entry.fields.put(name, value);
+            }
+            return entry;
+        }
+
+        /**
+         * @return the latest entry of the key, or null if it has none
+         */
+        Entry get(String table, String key) throws IOException {
+            ConcurrentSkipListMap<String, Long> index = index(table);
+            while (true) {
+                Long location = index.get(key);
+                if (location == null) {
+                    return null;
+                }
+                Segment segment = segments.get((int) (location >>> 32));
+                if (segment != null) {
+                    return read(segment, (int) (long) location);
+                }
+                // the segment was just compacted, the index has moved on
+            }
+        }
+
+        static byte[] encode(String table, String key, Map<String, byte[]> fields) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeUTF(table);
+            out.writeUTF(key);
+            out.writeInt(fields.size());
+            for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+                out.writeUTF(field.getKey());
+                out.writeInt(field.getValue().length);
+                out.write(field.getValue());
+            }
+            out.close();
+            return bytes.toByteArray();
+        }
+
+        /**
+         * Append an entry to the head segment, rolling to a new one if it does not fit, and point the index at it.
+         * The caller holds the lock of the store.
+         */
+        long append(byte kind, String table, String key, Map<String, byte[]> fields) throws IOException {
+            byte[] contents = encode(table, key, fields);
+            if (HEADER + contents.length > segmentsize) {
+                throw new IOException("Record " + key + " of " + contents.length + " bytes is larger than a segment");
+            }
+            if (head.end + HEADER + contents.length > head.buffer.capacity()) {
+                head.buffer.force();
+                head = roll();
+            }
+            int offset = head.end;
+            ByteBuffer buffer = head.buffer.duplicate();
+            buffer.position(offset);
+            buffer.putInt(contents.length);
+            buffer.put(kind);
+            buffer.put(contents);
+            head.end = offset + HEADER + contents.length;
+            counters.add("WrittenBytes", HEADER + contents.length);
+            if (sync.equals("always")) {
+                head.buffer.force();
+            }
+
+            long location = location(head.id, offset);
+            ConcurrentSkipListMap<String, Long> index = index(table);
+            supersede(index.get(key));
+            if (kind == PUT) {
+                index.put(key, location);
+            }
+            else {
+                index.remove(key);
+                head.garbage.addAndGet(HEADER + contents.length);
+            }
+            return location;
+        }
+
+        /**
+         * Sync the head segment and compact the segments with too much garbage, until interrupted.
+         */
+        public void run() {
+            long period = Long.MAX_VALUE;
+            if (sync.equals("interval")) {
+                period = syncinterval;
+            }
+            if (compactioninterval > 0) {
+                period = Math.min(period, compactioninterval);
+            }
+            long lastcompaction = System.currentTimeMillis();
+            try {
+                while (true) {
+                    synchronized (wakeup) {
+                        if (!closed) {
+                            wakeup.wait(period);
+                        }
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    if (sync.equals("interval")) {
+                        head.buffer.force();
+                    }
+                    if (compactioninterval > 0 && System.currentTimeMillis() - lastcompaction >= compactioninterval) {
+                        compact();
+                        lastcompaction = System.currentTimeMillis();
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                // closed
+            }
+            catch (IOException e) {
+                System.err.println("LogStore maintenance failed: " + e.toString());
+            }
+        }
+
+        void compact() throws IOException {
+            for (Segment segment : segments.values()) {
+                if (segment != head && segment.end > 0 && segment.garbage.get() > compactionthreshold * segment.end) {
+                    compact(segment);
+                }
+            }
+        }
+
+        /**
+         * Append the live entries of a segment again and delete it. Tombstones are kept as long as an older
+         * segment may still hold an entry they delete.
+         */
+        void compact(Segment segment) throws IOException {
+            long copied = 0;
+            int offset = 0;
+            int length;
+            while (offset < segment.end && (length = segment.lengthAt(offset)) > 0) {
+                Entry entry = read(segment, offset);
+                long location = location(segment.id, offset);
+                synchronized (this) {
+                    Long current = index(entry.table).get(entry.key);
+                    boolean live = (entry.kind == PUT) ? (current != null && current == location)
+                            : (current == null && segments.firstKey() < segment.id);
+                    if (live) {
+                        append(entry.kind, entry.table, entry.key, entry.fields);
+                        copied += HEADER + length;
+                    }
+                }
+                offset += HEADER + length;
+            }
+            synchronized (this) {
+                segments.remove(segment.id);
+                counters.add("CompactedSegments", 1);
+                counters.add("ReclaimedBytes", segment.end - copied);
+            }
+            segment.channel.close();
+            if (!segment.file.delete()) {
+                System.err.println("Could not delete compacted segment " + segment.file);
+            }
+        }
+
+        void close() throws IOException {
+            synchronized (wakeup) {
+                closed = true;
+                wakeup.notifyAll();
+            }
+            try {
+                join();
+            }
+            catch (InterruptedException e) {
+                // go on closing
+            }
+            for (Segment segment : segments.values()) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+            counters.segments = segments.size();
+        }
+    }
+
+    static Store store = null;
+
+    /** Count the number of times initialized to close the store on the last {@link #cleanup()}. */
+    private static int initCount = 0;
+
+    /**
+     * Initialize any state for this DB.
+     * Called once per DB instance; there is one DB instance per client thread.
+     */
+    @Override
+    public void init() throws DBException {
+        synchronized (LogStoreClient.class) {
+            if (initCount++ > 0) {
+                return;
+            }
+            try {
+                store = new Store(getProperties());
+            }
+            catch (IOException e) {
+                initCount--;
+                throw new DBException("Could not open the log store: " + e.getMessage(), e);
+            }
+            store.start();
+        }
+    }
+
+    /**
+     * Cleanup any state for this DB.
+     * Called once per DB instance; there is one DB instance per client thread.
+     */
+    @Override
+    public void cleanup() throws DBException {
+        synchronized (LogStoreClient.class) {
+            if (--initCount > 0) {
+                return;
+            }
+            try {
+                store.close();
+            }
+            catch (IOException e) {
+                throw new DBException("Could not close the log store: " + e.getMessage(), e);
+            }
+            store = null;
+        }
+    }
+
+    static long logicalSize(String key, Map<String, byte[]> fields) {
+        long size = key.length();
+        for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+            size += field.getKey().length() + field.getValue().length;
+        }
+        return size;
+    }
+
+    static void copy(Entry entry, Set<String> fields, HashMap<String, Object> result) {
+        if (fields == null) {
+            result.putAll(entry.fields);
+        }
+        else {
+            for (String field : fields) {
+                if (entry.fields.containsKey(field)) {
+                    result.put(field, entry.fields.get(field));
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete a record from the database.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to delete.
+     * @return Zero on success, a non-zero error code on error. See this class's description for a discussion of error codes.
+     */
+    @Override
+    public int delete(String table, String key) {
+        try {
+            HashMap<String, byte[]> none = new HashMap<String, byte[]>();
+            store.counters.add("LogicalBytes", key.length());
+            synchronized (store) {
+                store.append(DELETE, table, key, none);
+            }
+            return 0;
+        }
+        catch (IOException e) {
+            System.err.println(e.toString());
+            return 1;
+        }
+    }
+
+    /**
+     * Insert a record in the database. Any field/value pairs in the specified values HashMap will be written into the record with the specified
+     * record key.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to insert.
+     * @param values A HashMap of field/value pairs to insert in the record
+     * @return Zero on success, a non-zero error code on error. See this class's description for a discussion of error codes.
+     */
+    @Override
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+        HashMap<String, byte[]> fields = new HashMap<String, byte[]>();
+        for (Map.Entry<String, ByteIterator> value : values.entrySet()) {
+            fields.put(value.getKey(), value.getValue().toArray());
+        }
+        return put(table, key, fields);
+    }
+
+    /**
+     * Insert a record in the database. Values that are not ByteIterators or byte arrays are stored as their
+     * string representation.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to insert.
+     * @param values A HashMap of field/value pairs to insert in the record
+     * @return Zero on success, a non-zero error code on error. See this class's description for a discussion of error codes.
+     */
+    @Override
+    public int complexinsert(String table, String key, HashMap<String, Object> values) {
+        HashMap<String, byte[]> fields = new HashMap<String, byte[]>();
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            Object v = value.getValue();
+            if (v instanceof ByteIterator) {
+                fields.put(value.getKey(), ((ByteIterator) v).toArray());
+            }
+            else if (v instanceof byte[]) {
+                fields.put(value.getKey(), (byte[]) v);
+            }
+            else {
+                fields.put(value.getKey(), String.valueOf(v).getBytes());
+            }
+        }
+        return put(table, key, fields);
+    }
+
+    int put(String table, String key, HashMap<String, byte[]> fields) {
+        try {
+            store.counters.add("LogicalBytes", logicalSize(key, fields));
+            synchronized (store) {
+                store.append(PUT, table, key, fields);
+            }
+            return 0;
+        }
+        catch (IOException e) {
+            System.err.println(e.toString());
+            return 1;
+        }
+    }
+
+    /**
+     * Read a record from the database. Each field/value pair from the result will be stored in a HashMap.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to read.
+     * @param fields The list of fields to read, or null for all of them
+     * @param result A HashMap of field/value pairs for the result
+     * @return Zero on success, a non-zero error code on error or "not found".
+     */
+    @Override
+    public int read(String table, String key, Set<String> fields, HashMap<String, Object> result) {
+        try {
+            Entry entry = store.get(table, key);
+            if (entry == null) {
+                return 1;
+            }
+            copy(entry, fields, result);
+            return 0;
+        }
+        catch (IOException e) {
+            System.err.println(e.toString());
+            return 1;
+        }
+    }
+
+    /**
+     * Update a record in the database. Any field/value pairs in the specified values HashMap will be written into the record with the specified
+     * record key, overwriting any existing values with the same field name. The whole merged record is appended.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to write.
+     * @param values A HashMap of field/value pairs to update in the record
+     * @return Zero on success, a non-zero error code on error. See this class's description for a discussion of error codes.
+     */
+    @Override
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+        HashMap<String, byte[]> changes = new HashMap<String, byte[]>();
+        for (Map.Entry<String, ByteIterator> value : values.entrySet()) {
+            changes.put(value.getKey(), value.getValue().toArray());
+        }
+        try {
+            synchronized (store) {
+                Entry old = store.get(table, key);
+                if (old == null) {
+                    return 1;
+                }
+                store.counters.add("LogicalBytes", logicalSize(key, changes));
+                old.fields.putAll(changes);
+                store.append(PUT, table, key, old.fields);
+            }
+            return 0;
+        }
+        catch (IOException e) {
+            System.err.println(e.toString());
+            return 1;
+        }
+    }
+
+    /**
+     * Perform a range scan for a set of records in the database. Each field/value pair from the result will be stored in a HashMap.
+     *
+     * @param table The name of the table
+     * @param startkey The record key of the first record to read.
+     * @param recordcount The number of records to read
+     * @param fields The list of fields to read, or null for all of them
+     * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+     * @return Zero on success, a non-zero error code on error. See this class's description for a discussion of error codes.
+     */
+    @Override
+    public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String, Object>> result) {
+        try {
+            for (String key : store.index(table).tailMap(startkey, true).keySet()) {
+                if (result.size() >= recordcount) {
+                    break;
+                }
+                Entry entry = store.get(table, key);
+                if (entry != null) {
+                    HashMap<String, Object> resultMap = new HashMap<String, Object>();
+                    copy(entry, fields, resultMap);
+                    result.add(resultMap);
+                }
+            }
+            return 0;
+        }
+        catch (IOException e) {
+            System.err.println(e.toString());
+            return 1;
+        }
+    }
+
+    @Override
+    public int read(String table, String fieldname, Object key, Set<String> fields, HashMap<String, Object> result) {
+        return 1;
+    }
+
+    @Override
+    public int read(String table, String fieldname, Object key, String fieldname2, Object lbdate, Object ubdate,
+            Set<String> fields, HashMap<String, Object> result) {
+        return 1;
+    }
+
+    @Override
+    public int scan(String table, String fieldname, Object startkey, int recordcount, Set<String> fields,
+            Vector<HashMap<String, Object>> result) {
+        return 1;
+    }
+
+    @Override
+    public int scan(String table, String fieldname, Object startkey, String fieldname2, Object lbdate, Object ubdate,
+            int recordcount, Set<String> fields, Vector<HashMap<String, Object>> result) {
+        return 1;
+    }
+
+    @Override
+    public int aggregate(String table, String fieldNameMatch, Object startkeyMatch, Object endkeyMatch, int aggregaterecordcount,
+            String fieldNameGroup, String groupfunction, int topNresults, Vector<HashMap<String, Object>> result) {
+        return 1;
+    }
+
+    @Override
+    public int aggregate(String table, String fieldNameGroup, int len, Vector<HashMap<String, Object>> result) {
+        return 1;
+    }
+}
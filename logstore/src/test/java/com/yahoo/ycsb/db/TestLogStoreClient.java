@@ -0,0 +1,116 @@
+package com.yahoo.ycsb.db;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Vector;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.StringByteIterator;
+import com.yahoo.ycsb.measurements.Measurements;
+
+public class TestLogStoreClient {
+  File dir;
+  Properties props;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    Measurements.setProperties(new Properties());
+    dir = File.createTempFile("logstore", "");
+    dir.delete();
+    props = new Properties();
+    props.setProperty(LogStoreClient.DIR, dir.getPath());
+    props.setProperty(LogStoreClient.SEGMENT_SIZE, "4096");
+    props.setProperty(LogStoreClient.COMPACTION_INTERVAL, "0");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    for (File f : dir.listFiles()) {
+      f.delete();
+    }
+    dir.delete();
+  }
+
+  LogStoreClient open() throws Exception {
+    LogStoreClient db = new LogStoreClient();
+    db.setProperties(props);
+    db.init();
+    return db;
+  }
+
+  HashMap<String, ByteIterator> values(String value) {
+    HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put("field0", new StringByteIterator(value));
+    return values;
+  }
+
+  String read(LogStoreClient db, String key) {
+    HashMap<String, Object> result = new HashMap<String, Object>();
+    return (db.read("usertable", key, null, result) == 0) ? new String((byte[]) result.get("field0")) : null;
+  }
+
+  @Test
+  public void testIndexIsRebuiltOnOpen() throws Exception {
+    LogStoreClient db = open();
+    for (int i = 0; i < 100; i++) {
+      assertEquals(0, db.insert("usertable", "user" + i, values("v" + i)));
+    }
+    assertEquals(0, db.update("usertable", "user1", values("changed")));
+    assertEquals(0, db.delete("usertable", "user2"));
+    db.cleanup();
+
+    db = open();
+    assertEquals("changed", read(db, "user1"));
+    assertNull(read(db, "user2"));
+    assertEquals("v99", read(db, "user99"));
+    Vector<HashMap<String, Object>> result = new Vector<HashMap<String, Object>>();
+    assertEquals(0, db.scan("usertable", "user0", 3, null, result));
+    assertEquals(3, result.size());
+    db.cleanup();
+  }
+
+  @Test
+  public void testCompactionKeepsLatestValues() throws Exception {
+    LogStoreClient db = open();
+    for (int round = 0; round < 20; round++) {
+      for (int i = 0; i < 10; i++) {
+        assertEquals(0, db.insert("usertable", "user" + i, values("v" + round)));
+      }
+    }
+    assertEquals(0, db.delete("usertable", "user0"));
+    int before = dir.listFiles().length;
+    LogStoreClient.store.compact();
+    assertTrue(dir.listFiles().length < before);
+    for (int i = 1; i < 10; i++) {
+      assertEquals("v19", read(db, "user" + i));
+    }
+    assertNull(read(db, "user0"));
+    db.cleanup();
+
+    db = open();
+    assertNull(read(db, "user0"));
+    assertEquals("v19", read(db, "user9"));
+    db.cleanup();
+  }
+
+  @Test
+  public void testOnlyWrittenRecordsCountAsLogicalBytes() throws Exception {
+    LogStoreClient db = open();
+    try {
+      long logical = LogStoreClient.store.counters.get("LogicalBytes");
+      assertEquals(1, db.update("usertable", "missing", values("v")));
+      assertEquals(logical, LogStoreClient.store.counters.get("LogicalBytes"));
+      assertEquals(0, db.insert("usertable", "user1", values("v")));
+      assertTrue(LogStoreClient.store.counters.get("LogicalBytes") > logical);
+      assertTrue(LogStoreClient.store.counters.get("WrittenBytes") > 0);
+    } finally {
+      db.cleanup();
+    }
+  }
+}
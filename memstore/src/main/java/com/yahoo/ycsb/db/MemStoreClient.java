@@ -0,0 +1,881 @@
+/**
+ * In-process reference store binding for YCSB.
+ */
+
+package com.yahoo.ycsb.db;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.DB;
+import com.yahoo.ycsb.DBException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-process reference store for YCSB framework, with no server and no dependency. It implements every
+ * operation of DB, including the secondary and complex reads and scans and the aggregates of ComplexWorkload,
+ * so any workload can be checked, and the overhead of the client measured, without a live database.
+ *
+ * Each table is a ConcurrentSkipListMap from key to record, with a secondary index, from field value to the
+ * keys of the records that have it, on each of the memstore.indexes fields. Records are never changed in place:
+ * a write builds a new record and swaps it in under the lock of its key's stripe, so the writes to a key and
+ * the updates of its index entries are serialized, while reads take no lock. Queries on a field that is not
+ * indexed scan the whole table. Fields may be given by a dotted path into nested sub-documents, for queries,
+ * indexes and updates alike.
+ *
+ * The semantics follow the MongoDB binding: reads of a missing record return 1, inserting an existing key
+ * returns 1, and updates and deletes of a missing record do nothing.
+ *
+ * The data only lives as long as the client, unless memstore.file is set: the tables are then loaded from it
+ * by the first DB instance and saved to it by the last one, so a load phase can be followed by a run phase.
+ *
+ * Properties to set:
+ *
+ * memstore.indexes=intkey,stringkey,datekey memstore.stripes=64 memstore.file=/tmp/ycsb.memstore
+ */
+public class MemStoreClient extends DB {
+
+    /** The fields that have a secondary index. */
+    public static final String INDEXES = "memstore.indexes";
+    public static final String INDEXES_DEFAULT = "intkey,stringkey,datekey";
+
+    /** The number of locks the keys are spread over. */
+    public static final String STRIPES = "memstore.stripes";
+    public static final String STRIPES_DEFAULT = "64";
+
+    /** The file the tables are loaded from and saved to, if any. */
+    public static final String FILE = "memstore.file";
+
+    /**
+     * Orders the values of a field: values of the same type by their natural order, numbers by value, and
+     * values of different types by the name of their type, so one index can hold a mix of them.
+     */
+    static class ValueOrder implements Comparator<Object>, Serializable {
+        private static final long serialVersionUID = 1L;
+
+        @SuppressWarnings("unchecked")
+        public int compare(Object a, Object b) {
+            if (a instanceof Number && b instanceof Number) {
+                return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+            }
+            if (a.getClass() == b.getClass() && a instanceof Comparable) {
+                return ((Comparable<Object>) a).compareTo(b);
+            }
+            return a.getClass().getName().compareTo(b.getClass().getName());
+        }
+    }
+
+    static final ValueOrder VALUE_ORDER = new ValueOrder();
+
+    /** A table, its records by key and its secondary indexes. */
+    static class Table {
+        ConcurrentSkipListMap<String, Map<String, Object>> records = new ConcurrentSkipListMap<String, Map<String, Object>>();
+        HashMap<String, ConcurrentSkipListMap<Object, ConcurrentSkipListSet<String>>> indexes =
+                new HashMap<String, ConcurrentSkipListMap<Object, ConcurrentSkipListSet<String>>>();
+
+        Table(String[] indexed) {
+            for (String field : indexed) {
+                indexes.put(field, new ConcurrentSkipListMap<Object, ConcurrentSkipListSet<String>>(VALUE_ORDER));
+            }
+        }
+
+        /**
+         * Replace the record of a key, or remove it if the record is null, and update the indexes. The caller
+         * holds the lock of the key.
+         */
+        void put(String key, Map<String, Object> record) {
+            Map<String, Object> old = (record == null) ? records.remove(key) : records.put(key, record);
+            for (Map.Entry<String, ConcurrentSkipListMap<Object, ConcurrentSkipListSet<String>>> index : indexes.entrySet()) {
+                Object before = (old == null) ? null : indexValue(fieldValue(old, index.getKey()));
+                Object after = (record == null) ? null : indexValue(fieldValue(record, index.getKey()));
+                if (before != null && !before.equals(after)) {
+                    // empty key sets are left in place, another writer may be adding to them
+                    ConcurrentSkipListSet<String> keys = index.getValue().get(before);
+                    if (keys != null) {
+                        keys.remove(key);
+                    }
+                }
+                if (after != null && !after.equals(before)) {
+                    ConcurrentSkipListSet<String> keys = index.getValue().get(after);
+                    if (keys == null) {
+                        keys = new ConcurrentSkipListSet<String>();
+                        ConcurrentSkipListSet<String> previous = index.getValue().putIfAbsent(after, keys);
+                        if (previous != null) {
+                            keys = previous;
+                        }
+                    }
+                    keys.add(key);
+                }
+            }
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Table> tables = new ConcurrentHashMap<String, Table>();
+
+    private static String[] indexed;
+
+    private static Object[] locks;
+
+    private static String file;
+
+    /** Count the number of times initialized to save the tables on the last {@link #cleanup()}. */
+    private static int initCount = 0;
+
+    /**
+     * Initialize any state for this DB.
+     * Called once per DB instance; there is one DB instance per client thread.
+     */
+    @Override
+    public void init() throws DBException {
+        synchronized (MemStoreClient.class) {
+            if (initCount++ > 0) {
+                return;
+            }
+            Properties props = getProperties();
+            indexed = props.getProperty(INDEXES, INDEXES_DEFAULT).split(",");
+            for (int i = 0; i < indexed.length; i++) {
+                indexed[i] = indexed[i].trim();
+            }
+            locks = new Object[Integer.parseInt(props.getProperty(STRIPES, STRIPES_DEFAULT))];
+            for (int i = 0; i < locks.length; i++) {
+                locks[i] = new Object();
+            }
+            file = props.getProperty(FILE);
+            if (file != null && new File(file).exists()) {
+                load(file);
+            }
+        }
+    }
+
+    /**
+     * Cleanup any state for this DB.
+     * Called once per DB instance; there is one DB instance per client thread.
+     */
+    @Override
+    public void cleanup() throws DBException {
+        synchronized (MemStoreClient.class) {
+            if (--initCount > 0) {
+                return;
+            }
+            if (file != null) {
+                save(file);
+            }
+            tables.clear();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static void load(String file) throws DBException {
+        try {
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String name = in.readUTF();
+                    Map<String, Map<String, Object>> records = (Map<String, Map<String, Object>>) in.readObject();
+                    // the indexes are rebuilt, they may be on other fields than when the file was saved
+                    Table table = new Table(indexed);
+                    for (Map.Entry<String, Map<String, Object>> record : records.entrySet()) {
+                        table.put(record.getKey(), record.getValue());
+                    }
+                    tables.put(name, table);
+                }
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (Exception e) {
+            throw new DBException("Could not load " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    static void save(String file) throws DBException {
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                out.writeInt(tables.size());
+                for (Map.Entry<String, Table> table : tables.entrySet()) {
+                    out.writeUTF(table.getKey());
+                    out.writeObject(table.getValue().records);
+                }
+            }
+            finally {
+                out.close();
+            }
+        }
+        catch (IOException e) {
+            throw new DBException("Could not save " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    static Table getTable(String name) {
+        Table table = tables.get(name);
+        if (table == null) {
+            table = new Table(indexed);
+            Table previous = tables.putIfAbsent(name, table);
+            if (previous != null) {
+                table = previous;
+            }
+        }
+        return table;
+    }
+
+    static Object lockFor(String key) {
+        return locks[(key.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+
+    /**
+     * @return the value as it is indexed and compared: the bytes written through a ByteIterator as a String
+     */
+    static Object indexValue(Object value) {
+        if (value instanceof byte[]) {
+            return new String((byte[]) value);
+        }
+        return value;
+    }
+
+    /**
+     * @return the value of a field, or of a nested field by its dotted path through sub-documents; null if the
+     *         record does not have it
+     */
+    @SuppressWarnings("unchecked")
+    static Object fieldValue(Map<String, Object> record, String path) {
+        Object value = record.get(path);
+        if (value != null || path.indexOf('.') < 0) {
+            return value;
+        }
+        Object current = record;
+        for (String part : path.split("\\.")) {
+            if (!(current instanceof Map)) {
+                return null;
+            }
+            current = ((Map<String, Object>) current).get(part);
+        }
+        return current;
+    }
+
+    /**
+     * Set a field, or a nested field by its dotted path, copying the sub-documents on the way rather than
+     * changing them, as they are shared with the previous version of the record.
+     */
+    @SuppressWarnings("unchecked")
+    static void setFieldValue(Map<String, Object> record, String path, Object value) {
+        int dot = path.indexOf('.');
+        if (dot < 0 || record.containsKey(path)) {
+            record.put(path, value);
+            return;
+        }
+        String head = path.substring(0, dot);
+        Object child = record.get(head);
+        Map<String, Object> copy = (child instanceof Map) ? new LinkedHashMap<String, Object>((Map<String, Object>) child)
+                : new LinkedHashMap<String, Object>();
+        setFieldValue(copy, path.substring(dot + 1), value);
+        record.put(head, copy);
+    }
+
+    /**
+     * @return the value as a number, or null if it is not one
+     */
+    static Number numberValue(Object value) {
+        value = indexValue(value);
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            }
+            catch (NumberFormatException e) {
+                try {
+                    return Double.parseDouble((String) value);
+                }
+                catch (NumberFormatException e2) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return whether the field of the record is between the bounds, inclusive; a null upper bound is unbounded
+     */
+    static boolean matches(Map<String, Object> record, String fieldname, Object lb, Object ub) {
+        Object value = indexValue(fieldValue(record, fieldname));
+        return value != null && VALUE_ORDER.compare(value, lb) >= 0 && (ub == null || VALUE_ORDER.compare(value, ub) <= 0);
+    }
+
+    /**
+     * Find up to limit records whose fieldname is between lb and ub, and if fieldname2 is not null whose
+     * fieldname2 is between lb2 and ub2, in the order of fieldname, through its index if it has one.
+     */
+    static Collection<Map<String, Object>> find(Table table, String fieldname, Object lb, Object ub,
+            String fieldname2, Object lb2, Object ub2, int limit) {
+        LinkedHashMap<String, Map<String, Object>> found = new LinkedHashMap<String, Map<String, Object>>();
+        if (limit <= 0 || (ub != null && VALUE_ORDER.compare(lb, ub) > 0)) {
+            return found.values();
+        }
+        ConcurrentSkipListMap<Object, ConcurrentSkipListSet<String>> index = table.indexes.get(fieldname);
+        if (index != null) {
+            Map<Object, ConcurrentSkipListSet<String>> range = (ub == null) ? index.tailMap(lb, true) : index.subMap(lb, true, ub, true);
+            for (ConcurrentSkipListSet<String> keys : range.values()) {
+                for (String key : keys) {
+                    Map<String, Object> record = table.records.get(key);
+                    // the index may lag behind a concurrent write, check the record itself
+                    if (record != null && matches(record, fieldname, lb, ub)
+                            && (fieldname2 == null || matches(record, fieldname2, lb2, ub2))) {
+                        found.put(key, record);
+                        if (found.size() == limit) {
+                            return found.values();
+                        }
+                    }
+                }
+            }
+        }
+        else {
+            // no index, scan the whole table and sort what matches
+            List<Map.Entry<String, Map<String, Object>>> matching = new ArrayList<Map.Entry<String, Map<String, Object>>>();
+            for (Map.Entry<String, Map<String, Object>> record : table.records.entrySet()) {
+                if (matches(record.getValue(), fieldname, lb, ub)
+                        && (fieldname2 == null || matches(record.getValue(), fieldname2, lb2, ub2))) {
+                    matching.add(record);
+                }
+            }
+            final String field = fieldname;
+            Collections.sort(matching, new Comparator<Map.Entry<String, Map<String, Object>>>() {
+                public int compare(Map.Entry<String, Map<String, Object>> a, Map.Entry<String, Map<String, Object>> b) {
+                    return VALUE_ORDER.compare(indexValue(fieldValue(a.getValue(), field)), indexValue(fieldValue(b.getValue(), field)));
+                }
+            });
+            for (Map.Entry<String, Map<String, Object>> record : matching.subList(0, Math.min(limit, matching.size()))) {
+                found.put(record.getKey(), record.getValue());
+            }
+        }
+        return found.values();
+    }
+
+    static void copy(Map<String, Object> record, Set<String> fields, HashMap<String, Object> result) {
+        if (fields == null) {
+            result.putAll(record);
+        }
+        else {
+            for (String field : fields) {
+                if (record.containsKey(field)) {
+                    result.put(field, record.get(field));
+                }
+            }
+        }
+    }
+
+    static void copy(Collection<Map<String, Object>> records, Set<String> fields, Vector<HashMap<String, Object>> result) {
+        for (Map<String, Object> record : records) {
+            HashMap<String, Object> resultMap = new HashMap<String, Object>();
+            copy(record, fields, resultMap);
+            result.add(resultMap);
+        }
+    }
+
+    /**
+     * Delete a record from the database.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to delete.
+     * @return Zero on success, a non-zero error code on error. See this class's description for a discussion of error codes.
+     */
+    @Override
+    public int delete(String table, String key) {
+        Table t = getTable(table);
+        synchronized (lockFor(key)) {
+            t.put(key, null);
+        }
+        return 0;
+    }
+
+    /**
+     * Insert a record in the database. Any field/value pairs in the specified values HashMap will be written into the record with the specified
+     * record key.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to insert.
+     * @param values A HashMap of field/value pairs to insert in the record
+     * @return Zero on success, a non-zero error code on error. See this class's description for a discussion of error codes.
+     */
+    @Override
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+        HashMap<String, Object> record = new HashMap<String, Object>();
+        for (Map.Entry<String, ByteIterator> value : values.entrySet()) {
+            record.put(value.getKey(), value.getValue().toArray());
+        }
+        return insertRecord(table, key, record);
+    }
+
+    /**
+     * Insert a record in the database. Any field/value pairs in the specified values HashMap will be written into the record with the specified
+     * record key.
+     * Extended YCSB secondary lookups
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to insert.
+     * @param values A HashMap of field/value pairs to insert in the record
+     * @return Zero on success, a non-zero error code on error. See this class's description for a discussion of error codes.
+     */
+    @Override
+    public int complexinsert(String table, String key, HashMap<String, Object> values) {
+        HashMap<String, Object> record = new HashMap<String, Object>();
+        for (Map.Entry<String, Object> value : values.entrySet()) {
+            Object v = value.getValue();
+            record.put(value.getKey(), (v instanceof ByteIterator) ? ((ByteIterator) v).toArray() : v);
+        }
+        return insertRecord(table, key, record);
+    }
+
+    int insertRecord(String table, String key, HashMap<String, Object> record) {
+        Table t = getTable(table);
+        synchronized (lockFor(key)) {
+            if (t.records.containsKey(key)) {
+                return 1;
+            }
+            t.put(key, record);
+        }
+        return 0;
+    }
+
+    /**
+     * Read a record from the database. Each field/value pair from the result will be stored in a HashMap.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to read.
+     * @param fields The list of fields to read, or null for all of them
+     * @param result A HashMap of field/value pairs for the result
+     * @return Zero on success, a non-zero error code on error or "not found".
+     */
+    @Override
+    public int read(String table, String key, Set<String> fields, HashMap<String, Object> result) {
+        Map<String, Object> record = getTable(table).records.get(key);
+        if (record == null) {
+            return 1;
+        }
+        copy(record, fields, result);
+        return 0;
+    }
+
+    /**
+     * Read a record from the database. Each field/value pair from the result will be stored in a HashMap.
+     * Extended YCSB secondary lookups
+     *
+     * @param table The name of the table
+     * @param fieldname The secondary read field of the table
+     * @param key The record key of the record to read.
+     * @param fields The list of fields to read, or null for all of them
+     * @param result A HashMap of field/value pairs for the result
+     * @return Zero on success, a non-zero error code on error or "not found".
+     */
+    @Override
+    public int read(String table, String fieldname, Object key, Set<String> fields, HashMap<String, Object> result) {
+        for (Map<String, Object> record : find(getTable(table), fieldname, indexValue(key), indexValue(key), null, null, null, 1)) {
+            copy(record, fields, result);
+            return 0;
+        }
+        return 1;
+    }
+
+    /**
+     * Read a record from the database. Each field/value pair from the result will be stored in a HashMap.
+     * Extended YCSB complex lookups
+     *
+     * @param table The name of the table
+     * @param fieldname The secondary read field of the table
+     * @param key The record key of the record to read.
+     * @param fieldname2 The compound read field of the table
+     * @param lbdate The lower bound date key of the record to read.
+     * @param ubdate The upper bound date key of the record to read
+     * @param fields The list of fields to read, or null for all of them
+     * @param result A HashMap of field/value pairs for the result
+     * @return Zero on success, a non-zero error code on error or "not found".
+     */
+    @Override
+    public int read(String table, String fieldname, Object key, String fieldname2, Object lbdate, Object ubdate,
+            Set<String> fields, HashMap<String, Object> result) {
+        for (Map<String, Object> record : find(getTable(table), fieldname, indexValue(key), indexValue(key),
+                fieldname2, indexValue(lbdate), indexValue(ubdate), 1)) {
+            copy(record, fields, result);
+            return 0;
+        }
+        return 1;
+    }
+
+    /**
+     * Update a record in the database. Any field/value pairs in the specified values HashMap will be written into the record with the specified
+     * record key, overwriting any existing values with the same field name.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to write.
+     * @param values A HashMap of field/value pairs to update in the record
+     * @return Zero on success, a non-zero error code on error. See this class's description for a discussion of error codes.
+     */
+    @Override
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+        Table t = getTable(table);
+        HashMap<String, Object> changes = new HashMap<String, Object>();
+        for (Map.Entry<String, ByteIterator> value : values.entrySet()) {
+            changes.put(value.getKey(), value.getValue().toArray());
+        }
+        synchronized (lockFor(key)) {
+            Map<String, Object> old = t.records.get(key);
+            if (old != null) {
+                HashMap<String, Object> record = new HashMap<String, Object>(old);
+                for (Map.Entry<String, Object> change : changes.entrySet()) {
+                    setFieldValue(record, change.getKey(), change.getValue());
+                }
+                t.put(key, record);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Write a record, creating it if it is missing, with the lookup and the write under the lock of the key.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to write.
+     * @param values A HashMap of field/value pairs to write in the record
+     * @return Zero on success, a non-zero error code on error. See this class's description for a discussion of error codes.
+     */
+    @Override
+    public int upsert(String table, String key, HashMap<String, ByteIterator> values) {
+        Table t = getTable(table);
+        HashMap<String, Object> changes = new HashMap<String, Object>();
+        for (Map.Entry<String, ByteIterator> value : values.entrySet()) {
+            changes.put(value.getKey(), value.getValue().toArray());
+        }
+        synchronized (lockFor(key)) {
+            Map<String, Object> old = t.records.get(key);
+            HashMap<String, Object> record = (old == null) ? new HashMap<String, Object>() : new HashMap<String, Object>(old);
+            for (Map.Entry<String, Object> change : changes.entrySet()) {
+                setFieldValue(record, change.getKey(), change.getValue());
+            }
+            t.put(key, record);
+        }
+        return 0;
+    }
+
+    /**
+     * Update a record if its version field still holds the expected bytes, checked and written under the lock of the key.
+     */
+    @Override
+    public int conditionalUpdate(String table, String key, String versionfield, ByteIterator expected, HashMap<String, ByteIterator> values) {
+        Table t = getTable(table);
+        byte[] expectedbytes = (expected == null) ? null : expected.toArray();
+        HashMap<String, Object> changes = new HashMap<String, Object>();
+        for (Map.Entry<String, ByteIterator> value : values.entrySet()) {
+            changes.put(value.getKey(), value.getValue().toArray());
+        }
+        synchronized (lockFor(key)) {
+            Map<String, Object> old = t.records.get(key);
+            if (old == null) {
+                return DB.CONFLICT;
+            }
+            Object version = fieldValue(old, versionfield);
+            boolean matches = (expectedbytes == null) ? version == null
+                    : version instanceof byte[] && Arrays.equals((byte[]) version, expectedbytes);
+            if (!matches) {
+                return DB.CONFLICT;
+            }
+            HashMap<String, Object> record = new HashMap<String, Object>(old);
+            for (Map.Entry<String, Object> change : changes.entrySet()) {
+                setFieldValue(record, change.getKey(), change.getValue());
+            }
+            t.put(key, record);
+        }
+        return 0;
+    }
+
+    /**
+     * Add delta to a counter field under the lock of the key. A number field stays a number; a new counter is kept
+     * as the bytes of its decimal value, as the fields written through update are read back as bytes.
+     *
+     * @return Zero on success, 1 if the record is missing or the field does not hold a number.
+     */
+    @Override
+    public int increment(String table, String key, String field, long delta) {
+        Table t = getTable(table);
+        synchronized (lockFor(key)) {
+            Map<String, Object> old = t.records.get(key);
+            if (old == null) {
+                return 1;
+            }
+            Object value = fieldValue(old, field);
+            Object counter;
+            try {
+                if (value instanceof Number) {
+                    counter = ((Number) value).longValue() + delta;
+                } else {
+                    long current = (value == null) ? 0 : Long.parseLong((value instanceof byte[]) ? new String((byte[]) value) : value.toString());
+                    counter = Long.toString(current + delta).getBytes();
+                }
+            } catch (NumberFormatException e) {
+                return 1;
+            }
+            HashMap<String, Object> record = new HashMap<String, Object>(old);
+            setFieldValue(record, field, counter);
+            t.put(key, record);
+        }
+        return 0;
+    }
+
+    /**
+     * Perform a range scan for a set of records in the database. Each field/value pair from the result will be stored in a HashMap.
+     *
+     * @param table The name of the table
+     * @param startkey The record key of the first record to read.
+     * @param recordcount The number of records to read
+     * @param fields The list of fields to read, or null for all of them
+     * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+     * @return Zero on success, a non-zero error code on error. See this class's description for a discussion of error codes.
+     */
+    @Override
+    public int scan(String table, String startkey, int recordcount, Set<String> fields, Vector<HashMap<String, Object>> result) {
+        List<Map<String, Object>> records = new ArrayList<Map<String, Object>>();
+        for (Map<String, Object> record : getTable(table).records.tailMap(startkey, true).values()) {
+            if (records.size() >= recordcount) {
+                break;
+            }
+            records.add(record);
+        }
+        copy(records, fields, result);
+        return 0;
+    }
+
+    /**
+     * Perform a range scan for a set of records in the database. Each field/value pair from the result will be stored in a HashMap.
+     * Extended YCSB secondary scans
+     *
+     * @param table The name of the table
+     * @param fieldname The secondary read field of the table
+     * @param startkey The record key of the first record to read.
+     * @param recordcount The number of records to read
+     * @param fields The list of fields to read, or null for all of them
+     * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+     * @return Zero on success, a non-zero error code on error. See this class's description for a discussion of error codes.
+     */
+    @Override
+    public int scan(String table, String fieldname, Object startkey, int recordcount, Set<String> fields,
+            Vector<HashMap<String, Object>> result) {
+        copy(find(getTable(table), fieldname, indexValue(startkey), null, null, null, null, recordcount), fields, result);
+        return 0;
+    }
+
+    /**
+     * Perform a range scan for a set of records in the database. Each field/value pair from the result will be stored in a HashMap.
+     * Extended YCSB complex scans
+     *
+     * @param table The name of the table
+     * @param fieldname The secondary read field of the table
+     * @param startkey The value of the secondary read field of the records to read.
+     * @param fieldname2 The compound read field of the table
+     * @param lbdate The lower bound date key of the record to read.
+     * @param ubdate The upper bound date key of the record to read
+     * @param recordcount The number of records to read
+     * @param fields The list of fields to read, or null for all of them
+     * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+     * @return Zero on success, a non-zero error code on error or "not found".
+     */
+    @Override
+    public int scan(String table, String fieldname, Object startkey, String fieldname2, Object lbdate, Object ubdate,
+            int recordcount, Set<String> fields, Vector<HashMap<String, Object>> result) {
+        copy(find(getTable(table), fieldname, indexValue(startkey), indexValue(startkey),
+                fieldname2, indexValue(lbdate), indexValue(ubdate), recordcount), fields, result);
+        return 0;
+    }
+
+    /** The accumulated intkey values of one group of an aggregate. */
+    static class Group {
+        Object id;
+        int count = 0;
+        int numbers = 0;
+        double sum = 0;
+        boolean integral = true;
+        Object first = null;
+        Object last = null;
+        Object min = null;
+        Object max = null;
+
+        Group(Object id) {
+            this.id = id;
+        }
+
+        void add(Object value) {
+            count++;
+            Number number = numberValue(value);
+            if (number == null) {
+                return;
+            }
+            numbers++;
+            sum += number.doubleValue();
+            integral &= (number instanceof Integer || number instanceof Long);
+            if (first == null) {
+                first = number;
+            }
+            last = number;
+            if (min == null || VALUE_ORDER.compare(number, min) < 0) {
+                min = number;
+            }
+            if (max == null || VALUE_ORDER.compare(number, max) > 0) {
+                max = number;
+            }
+        }
+
+        /**
+         * @return the value of the group function, or null if the group has no numeric values for it
+         */
+        Object get(String groupfunction) {
+            switch (groupfunction) {
+                case "count":
+                    return count;
+                case "sum":
+                    return integral ? (Object) (long) sum : (Object) sum;
+                case "avg":
+                    return (numbers == 0) ? null : (Object) (sum / numbers);
+                case "first":
+                    return first;
+                case "last":
+                    return last;
+                case "min":
+                    return min;
+                case "max":
+                    return max;
+                default:
+                    throw new IllegalArgumentException("Invalid accumulator: " + groupfunction);
+            }
+        }
+    }
+
+    /**
+     * Orders the rows of an aggregate by the given field, largest first and missing values last.
+     */
+    static Comparator<HashMap<String, Object>> descending(final String field) {
+        return new Comparator<HashMap<String, Object>>() {
+            public int compare(HashMap<String, Object> a, HashMap<String, Object> b) {
+                Object x = a.get(field);
+                Object y = b.get(field);
+                if (x == null || y == null) {
+                    return (x == null) ? ((y == null) ? 0 : 1) : -1;
+                }
+                return VALUE_ORDER.compare(y, x);
+            }
+        };
+    }
+
+    /**
+     * Perform an aggregate for a set of records in the database. Each field/value pair from the result will be stored in a HashMap.
+     * Extended YCSB aggregates
+     *
+     * @param table The name of the table
+     * @param fieldNameMatch The field of the table used for matching records
+     * @param startkeyMatch The start record key to be matched for aggregate
+     * @param endkeyMatch The end record key to be matched for aggregate
+     * @param aggregaterecordcount The number of records to be filtered for aggregate
+     * @param fieldNameGroup The field of the table used for grouping records
+     * @param groupfunction The function name used for grouping records: valid values are "sum", "avg", "count", "first", "last", "min", "max"
+     * @param topNresults The number of results from aggregate output to return
+     * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+     * @return Zero on success, a non-zero error code on error or "not found".
+     */
+    @Override
+    public int aggregate(String table, String fieldNameMatch, Object startkeyMatch, Object endkeyMatch, int aggregaterecordcount,
+            String fieldNameGroup, String groupfunction, int topNresults, Vector<HashMap<String, Object>> result) {
+        String fieldNameGrouped = "intkey";
+        try {
+            LinkedHashMap<Object, Group> groups = new LinkedHashMap<Object, Group>();
+            for (Map<String, Object> record : find(getTable(table), fieldNameMatch, indexValue(startkeyMatch), indexValue(endkeyMatch),
+                    null, null, null, aggregaterecordcount)) {
+                Object id = indexValue(fieldValue(record, fieldNameGroup));
+                Group group = groups.get(id);
+                if (group == null) {
+                    group = new Group(id);
+                    groups.put(id, group);
+                }
+                group.add(fieldValue(record, fieldNameGrouped));
+            }
+
+            List<HashMap<String, Object>> rows = new ArrayList<HashMap<String, Object>>();
+            for (Group group : groups.values()) {
+                HashMap<String, Object> row = new HashMap<String, Object>();
+                row.put("_id", group.id);
+                row.put(groupfunction + fieldNameGrouped, group.get(groupfunction));
+                rows.add(row);
+            }
+            Collections.sort(rows, descending(groupfunction + fieldNameGrouped));
+            result.addAll(rows.subList(0, Math.min(topNresults, rows.size())));
+            return 0;
+        }
+        catch (Exception e) {
+            System.err.println(e.toString());
+            return 1;
+        }
+    }
+
+    /**
+     * Perform an aggregate for a set of records in the database. Each field/value pair from the result will be stored in a HashMap.
+     * Extended YCSB simple aggregates
+     *
+     * @param table The name of the table
+     * @param fieldNameGroup The field of the table used for grouping records
+     * @param len The number of records to be filtered for aggregate
+     * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+     * @return Zero on success, a non-zero error code on error or "not found".
+     */
+    @Override
+    public int aggregate(String table, String fieldNameGroup, int len, Vector<HashMap<String, Object>> result) {
+        TreeSet<Object> ids = new TreeSet<Object>(Collections.reverseOrder(VALUE_ORDER));
+        boolean missing = false;
+        int seen = 0;
+        for (Map<String, Object> record : getTable(table).records.values()) {
+            if (seen++ >= len) {
+                break;
+            }
+            Object id = indexValue(fieldValue(record, fieldNameGroup));
+            if (id == null) {
+                missing = true;
+            }
+            else {
+                ids.add(id);
+            }
+        }
+        for (Object id : ids) {
+            HashMap<String, Object> row = new HashMap<String, Object>();
+            row.put("_id", id);
+            result.add(row);
+        }
+        if (missing) {
+            HashMap<String, Object> row = new HashMap<String, Object>();
+            row.put("_id", null);
+            result.add(row);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,149 @@
+package com.yahoo.ycsb.db;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Vector;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.StringByteIterator;
+
+public class TestMemStoreClient {
+  MemStoreClient db;
+
+  @BeforeMethod
+  public void setUp() throws Exception {
+    db = new MemStoreClient();
+    db.setProperties(new Properties());
+    db.init();
+    for (int i = 0; i < 10; i++) {
+      HashMap<String, Object> values = new HashMap<String, Object>();
+      values.put("intkey", i);
+      values.put("stringkey", (i % 2 == 0) ? "even" : "odd");
+      values.put("datekey", new Date(1000L * i));
+      values.put("field0", ("value" + i).getBytes());
+      assertEquals(0, db.complexinsert("usertable", "user" + i, values));
+    }
+  }
+
+  @AfterMethod
+  public void tearDown() throws Exception {
+    db.cleanup();
+  }
+
+  @Test
+  public void testSecondaryReadFollowsUpdates() {
+    HashMap<String, Object> result = new HashMap<String, Object>();
+    assertEquals(0, db.read("usertable", "stringkey", "odd", null, result));
+    assertEquals("odd", result.get("stringkey"));
+
+    HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put("stringkey", new StringByteIterator("changed"));
+    for (int i = 1; i < 10; i += 2) {
+      assertEquals(0, db.update("usertable", "user" + i, values));
+    }
+    assertEquals(1, db.read("usertable", "stringkey", "odd", null, new HashMap<String, Object>()));
+    assertEquals(0, db.read("usertable", "stringkey", "changed", null, new HashMap<String, Object>()));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testNestedPathsAreQueriedAndUpdated() {
+    HashMap<String, Object> values = new HashMap<String, Object>();
+    LinkedHashMap<String, Object> address = new LinkedHashMap<String, Object>();
+    address.put("zip", 94301);
+    address.put("street", "main".getBytes());
+    values.put("address", address);
+    assertEquals(0, db.complexinsert("usertable", "nested", values));
+
+    HashMap<String, Object> result = new HashMap<String, Object>();
+    assertEquals(0, db.read("usertable", "address.zip", 94301, null, result));
+    assertEquals(94301, ((Map<String, Object>) result.get("address")).get("zip"));
+
+    HashMap<String, ByteIterator> update = new HashMap<String, ByteIterator>();
+    update.put("address.street", new StringByteIterator("elm"));
+    assertEquals(0, db.update("usertable", "nested", update));
+    result.clear();
+    assertEquals(0, db.read("usertable", "nested", null, result));
+    Map<String, Object> updated = (Map<String, Object>) result.get("address");
+    assertEquals("elm", new String((byte[]) updated.get("street")));
+    assertEquals(94301, updated.get("zip"));
+    // the record read before the update is not changed
+    assertEquals("main", new String((byte[]) address.get("street")));
+  }
+
+  @Test
+  public void testComplexScanAppliesBothConditions() {
+    Vector<HashMap<String, Object>> result = new Vector<HashMap<String, Object>>();
+    assertEquals(0, db.scan("usertable", "stringkey", "even", "datekey", new Date(2000), new Date(6000), 10, null, result));
+    assertEquals(3, result.size());
+    for (HashMap<String, Object> record : result) {
+      int i = (Integer) record.get("intkey");
+      assertTrue(i == 2 || i == 4 || i == 6);
+    }
+  }
+
+  @Test
+  public void testAggregateGroupsAndSortsDescending() {
+    Vector<HashMap<String, Object>> result = new Vector<HashMap<String, Object>>();
+    assertEquals(0, db.aggregate("usertable", "intkey", 0, 9, 100, "stringkey", "sum", 10, result));
+    assertEquals(2, result.size());
+    assertEquals("odd", result.get(0).get("_id"));
+    assertEquals(25L, result.get(0).get("sumintkey"));
+    assertEquals("even", result.get(1).get("_id"));
+    assertEquals(20L, result.get(1).get("sumintkey"));
+  }
+
+  @Test
+  public void testConcurrentIncrementsAreNotLost() throws Exception {
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        public void run() {
+          for (int j = 0; j < 1000; j++) {
+            db.increment("usertable", "user0", "counter", 1);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, db.increment("usertable", "user1", "intkey", 10));
+
+    HashMap<String, Object> result = new HashMap<String, Object>();
+    assertEquals(0, db.read("usertable", "user0", null, result));
+    assertEquals("4000", new String((byte[]) result.get("counter")));
+    assertEquals(0, db.read("usertable", "user1", null, result));
+    assertEquals(11L, result.get("intkey"));
+    assertEquals(1, db.increment("usertable", "user0", "field0", 1));
+    assertEquals(1, db.increment("usertable", "missing", "counter", 1));
+  }
+
+  @Test
+  public void testUpsertCreatesOrMergesRecords() {
+    HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put("field1", new StringByteIterator("new"));
+    assertEquals(0, db.upsert("usertable", "user1", values));
+    // the values were read by the first upsert
+    values.put("field1", new StringByteIterator("new"));
+    assertEquals(0, db.upsert("usertable", "user10", values));
+
+    HashMap<String, Object> result = new HashMap<String, Object>();
+    assertEquals(0, db.read("usertable", "user1", null, result));
+    assertEquals("value1", new String((byte[]) result.get("field0")));
+    assertEquals("new", new String((byte[]) result.get("field1")));
+    result.clear();
+    assertEquals(0, db.read("usertable", "user10", null, result));
+    assertEquals(1, result.size());
+    assertEquals("new", new String((byte[]) result.get("field1")));
+  }
+}
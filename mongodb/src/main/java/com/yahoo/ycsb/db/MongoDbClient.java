@@ -25,6 +25,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.List;
 import java.util.Arrays;
 
+import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBAddress;
 import com.mongodb.DBCollection;
@@ -286,7 +287,7 @@ public class MongoDbClient extends DB {
             DBCollection collection = db.getCollection(table);
             DBObject r = new BasicDBObject().append("_id", key);
             for (String k : values.keySet()) {
-                r.put(k, values.get(k));
+                r.put(k, toDBValue(values.get(k)));
             }
             WriteResult res = collection.insert(r, writeConcern);
             return 0;
@@ -529,6 +530,122 @@ public class MongoDbClient extends DB {
         }
     }
 
+    /**
+     * Write a record, creating it if it is missing: an update of the fields with the upsert flag, so the server
+     * looks the record up and writes it in one call.
+     *
+     * @param table The name of the table
+     * @param key The record key of the record to write.
+     * @param values A HashMap of field/value pairs to write in the record
+     * @return Zero on success, a non-zero error code on error. See this class's description for a discussion of error codes.
+     */
+    @Override
+    public int upsert(String table, String key,
+            HashMap<String, ByteIterator> values) {
+        com.mongodb.DB db = null;
+        try {
+            db = mongos[random.nextInt(mongos.length)].getDB(database);
+
+            db.requestStart();
+
+            DBCollection collection = db.getCollection(table);
+            DBObject q = new BasicDBObject().append("_id", key);
+            DBObject fieldsToSet = new BasicDBObject();
+            for (Map.Entry<String, ByteIterator> value : values.entrySet()) {
+                fieldsToSet.put(value.getKey(), value.getValue().toArray());
+            }
+            DBObject u = new BasicDBObject("$set", fieldsToSet);
+            collection.update(q, u, true, false, writeConcern);
+            return 0;
+        }
+        catch (Exception e) {
+            System.err.println(e.toString());
+            return 1;
+        }
+        finally {
+            if (db != null) {
+                db.requestDone();
+            }
+        }
+    }
+
+    /**
+     * Update a record if its version field still holds the expected bytes. The version is part of the query, so
+     * the check and the write are one atomic update of the document. Conflicts are only seen with an
+     * acknowledged write concern.
+     *
+     * @return Zero on success, DB.CONFLICT if the record or its version did not match, 1 on error.
+     */
+    @Override
+    public int conditionalUpdate(String table, String key, String versionfield, ByteIterator expected,
+            HashMap<String, ByteIterator> values) {
+        com.mongodb.DB db = null;
+        try {
+            db = mongos[random.nextInt(mongos.length)].getDB(database);
+
+            db.requestStart();
+
+            DBCollection collection = db.getCollection(table);
+            DBObject q = new BasicDBObject().append("_id", key);
+            if (expected == null) {
+                q.put(versionfield, new BasicDBObject("$exists", false));
+            }
+            else {
+                q.put(versionfield, expected.toArray());
+            }
+            DBObject u = new BasicDBObject();
+            DBObject fieldsToSet = new BasicDBObject();
+            for (Map.Entry<String, ByteIterator> value : values.entrySet()) {
+                fieldsToSet.put(value.getKey(), value.getValue().toArray());
+            }
+            u.put("$set", fieldsToSet);
+            WriteResult res = collection.update(q, u, false, false,
+                    writeConcern);
+            return (res.getN() == 0) ? DB.CONFLICT : 0;
+        }
+        catch (Exception e) {
+            System.err.println(e.toString());
+            return 1;
+        }
+        finally {
+            if (db != null) {
+                db.requestDone();
+            }
+        }
+    }
+
+    /**
+     * Add delta to a counter field with $inc, which the server applies atomically to the document. A missing
+     * record is only seen with an acknowledged write concern.
+     *
+     * @return Zero on success, 1 if the record is missing or on error.
+     */
+    @Override
+    public int increment(String table, String key, String field, long delta) {
+        com.mongodb.DB db = null;
+        try {
+            db = mongos[random.nextInt(mongos.length)].getDB(database);
+
+            db.requestStart();
+
+            DBCollection collection = db.getCollection(table);
+            DBObject q = new BasicDBObject().append("_id", key);
+            DBObject u = new BasicDBObject("$inc", new BasicDBObject(field, delta));
+            WriteResult res = collection.update(q, u, false, false, writeConcern);
+            // a missing record is not created, and is an error as in the other bindings
+            return (res.getN() == 0) ? 1 : 0;
+        }
+        catch (Exception e) {
+            System.err.println(e.toString());
+            return 1;
+        }
+        finally {
+            if (db != null) {
+                db.requestDone();
+            }
+        }
+    }
+
     /**
      * Perform a range scan for a set of records in the database. Each field/value pair from the result will be stored in a HashMap.
      *
@@ -873,6 +990,32 @@ public class MongoDbClient extends DB {
 
     }
 
+    /**
+     * Convert a value of a complex insert to what the driver encodes natively: nested maps become sub-documents,
+     * lists become arrays, byte iterators become binary; numbers, dates, strings and byte arrays pass as they are.
+     */
+    @SuppressWarnings("unchecked")
+    static Object toDBValue(Object value) {
+        if (value instanceof Map && !(value instanceof DBObject)) {
+            BasicDBObject document = new BasicDBObject();
+            for (Map.Entry<String, Object> e : ((Map<String, Object>) value).entrySet()) {
+                document.put(e.getKey(), toDBValue(e.getValue()));
+            }
+            return document;
+        }
+        if (value instanceof List && !(value instanceof DBObject)) {
+            BasicDBList array = new BasicDBList();
+            for (Object element : (List<Object>) value) {
+                array.add(toDBValue(element));
+            }
+            return array;
+        }
+        if (value instanceof ByteIterator) {
+            return ((ByteIterator) value).toArray();
+        }
+        return value;
+    }
+
     /**
      * TODO - Finish
      *